@@ -82,6 +82,7 @@ import com.android.calendar.DayView;
 import com.android.calendar.CalendarController.ViewType;
 import com.android.calendar.agenda.AgendaFragment;
 import com.android.calendar.alerts.AlertService;
+import com.android.calendar.event.CalendarExporter;
 import com.android.calendar.month.MonthByWeekFragment;
 import com.android.calendar.selectcalendars.SelectVisibleCalendarsFragment;
 
@@ -99,7 +100,8 @@ import static android.provider.CalendarContract.EXTRA_EVENT_END_TIME;
 import static com.android.calendar.DayView.MILLIS_PER_HOUR;
 
 public class AllInOneActivity extends AbstractCalendarActivity implements ActionHandler,
-        OnSharedPreferenceChangeListener, SearchView.OnQueryTextListener, SearchView.OnSuggestionListener, NavigationView.OnNavigationItemSelectedListener {
+        OnSharedPreferenceChangeListener, SearchView.OnQueryTextListener, SearchView.OnSuggestionListener, NavigationView.OnNavigationItemSelectedListener,
+        EventChangeTracker.Listener {
     private static final String TAG = "AllInOneActivity";
     private static final boolean DEBUG = false;
     private static final String BUNDLE_KEY_RESTORE_TIME = "key_restore_time";
@@ -136,9 +138,12 @@ public class AllInOneActivity extends AbstractCalendarActivity implements Action
 
         @Override
         public void onChange(boolean selfChange) {
-            eventsChanged();
+            mChangeTracker.check(true);
+            EventSearchIndex.getInstance(AllInOneActivity.this).update();
         }
     };
+    // Works out which days the changes reported to mObserver affect
+    private EventChangeTracker mChangeTracker;
     private boolean mOnSaveInstanceStateCalled = false;
     private boolean mBackToPreviousView = false;
     private long NEDtime = -1; // not visible
@@ -387,6 +392,7 @@ public class AllInOneActivity extends AbstractCalendarActivity implements Action
         prefs.registerOnSharedPreferenceChangeListener(this);
 
         mContentResolver = getContentResolver();
+        mChangeTracker = new EventChangeTracker(this, new Handler(), this);
     }
 
     private void checkAppPermissions() {
@@ -587,6 +593,10 @@ public class AllInOneActivity extends AbstractCalendarActivity implements Action
 
         mContentResolver.registerContentObserver(CalendarContract.Events.CONTENT_URI,
             true, mObserver);
+        // The views reload everything when they resume, so we only need to
+        // catch up with any changes made while we were paused.
+        mChangeTracker.check(false);
+        EventSearchIndex.getInstance(this).update();
         if (mUpdateOnResume) {
             initFragments(mController.getTime(), mController.getViewType(), null);
             mUpdateOnResume = false;
@@ -913,6 +923,8 @@ public class AllInOneActivity extends AbstractCalendarActivity implements Action
             return false;
         } else if (itemId == R.id.action_import) {
             ImportActivity.pickImportFile(this);
+        } else if (itemId == R.id.action_export) {
+            CalendarExporter.pickCalendar(this);
         } else if (itemId == R.id.action_view_settings) {
             Intent intent = new Intent(this, SettingsActivity.class);
             intent.putExtra(SettingsActivityKt.EXTRA_SHOW_FRAGMENT, ViewDetailsPreferences.class.getName());
@@ -1313,6 +1325,13 @@ public class AllInOneActivity extends AbstractCalendarActivity implements Action
         mController.sendAction(this, ControllerAction.EVENTS_CHANGED, null, null, -1, ViewType.CURRENT);
     }
 
+    @Override
+    public void onEventsChanged(EventChangeTracker.Changes changes) {
+        if (!mPaused) {
+            mController.sendEventsChanged(this, changes);
+        }
+    }
+
     @Override
     public boolean onQueryTextChange(String newText) {
         return false;
@@ -68,6 +68,12 @@ public class CalendarController {
     public static final long EXTRA_GOTO_TIME = 2;
     public static final long EXTRA_GOTO_BACK_TO_PREVIOUS = 4;
     public static final long EXTRA_GOTO_TODAY = 8;
+    /**
+     * Pass to the ExtraLong parameter for ControllerAction.SEARCH while the
+     * query is still being typed, so that it is answered from the search
+     * index
+     */
+    public static final long EXTRA_SEARCH_AS_YOU_TYPE = 0x20;
     private static final boolean DEBUG = false;
     private static final String TAG = "CalendarController";
     private static final WeakHashMap<Context, WeakReference<CalendarController>> instances
@@ -97,6 +103,8 @@ public class CalendarController {
     private int mPreviousViewType = -1;
     private long mEventId = -1;
     private long mDateFlags = 0;
+    // The changes being dispatched by sendEventsChanged(), if any
+    private EventChangeTracker.Changes mEventChanges;
 
     private CalendarController(Context context) {
         mContext = context;
@@ -265,6 +273,33 @@ public class CalendarController {
         this.sendAction(sender, actionInfo);
     }
 
+    /**
+     * Sends ControllerAction.EVENTS_CHANGED for a change whose affected
+     * days are known. Handlers can call {@link #getEventChanges} from
+     * their eventsChanged() to find out which days they need to reload.
+     *
+     * @param sender  object of the caller
+     * @param changes the days affected, from an {@link EventChangeTracker}
+     */
+    public void sendEventsChanged(Object sender, EventChangeTracker.Changes changes) {
+        mEventChanges = changes;
+        try {
+            sendAction(sender, ControllerAction.EVENTS_CHANGED, null, null, -1,
+                ViewType.CURRENT);
+        } finally {
+            mEventChanges = null;
+        }
+    }
+
+    /**
+     * @return the changes being sent by {@link #sendEventsChanged}, or null
+     * if the handler is being told about a change without them and must
+     * reload everything.
+     */
+    public EventChangeTracker.Changes getEventChanges() {
+        return mEventChanges;
+    }
+
     public void sendAction(Object sender, final ActionInfo actionInfo) {
         // TODO Throw exception on invalid actions
 
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import java.util.Arrays;
+
+/**
+ * Assigns columns to overlapping events for Event.computePositions().
+ * The events are presented in order of their start times, and each one gets
+ * the lowest numbered column which isn't used by an event which is still
+ * active when it starts. There is no limit on the number of columns.
+ *
+ * The active events are kept in a min-heap ordered by their ends, so that
+ * the ones which have finished can be found without looking at the rest,
+ * and the columns which they free are kept in another min-heap so that the
+ * lowest free column can be found quickly. Laying out n events takes
+ * O(n log n) time, and the heaps only need to grow when more events are
+ * active at the same time than ever before.
+ */
+class ColumnAllocator {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Heap of active events, ordered by mActiveEnd
+    private long[] mActiveEnd = new long[INITIAL_CAPACITY];
+    private int[] mActiveColumn = new int[INITIAL_CAPACITY];
+    private int mActiveCount;
+    // Heap of free columns below mNextColumn
+    private int[] mFree = new int[INITIAL_CAPACITY];
+    private int mFreeCount;
+    // The lowest column which has never been used since the last reset
+    private int mNextColumn;
+
+    /**
+     * Forgets all the active events, ready for a new layout.
+     */
+    void reset() {
+        mActiveCount = 0;
+        mFreeCount = 0;
+        mNextColumn = 0;
+    }
+
+    /**
+     * Frees the columns of the events which end at or before start.
+     * @param start the start of the next event
+     * @return the number of events which are still active
+     */
+    int expire(long start) {
+        while (mActiveCount > 0 && mActiveEnd[0] <= start) {
+            int column = mActiveColumn[0];
+            --mActiveCount;
+            if (mActiveCount > 0) {
+                mActiveEnd[0] = mActiveEnd[mActiveCount];
+                mActiveColumn[0] = mActiveColumn[mActiveCount];
+                siftActiveDown();
+            }
+            pushFree(column);
+        }
+        if (mActiveCount == 0) {
+            // Every column is free, so we can start again from column 0.
+            mFreeCount = 0;
+            mNextColumn = 0;
+        }
+        return mActiveCount;
+    }
+
+    /**
+     * Finds a column for the next event, which becomes active.
+     * @param end when the event ends (exclusive)
+     * @return the lowest column which isn't being used by an active event
+     */
+    int allocate(long end) {
+        int column = mFreeCount > 0 ? popFree() : mNextColumn++;
+        if (mActiveCount == mActiveEnd.length) {
+            mActiveEnd = Arrays.copyOf(mActiveEnd, mActiveCount * 2);
+            mActiveColumn = Arrays.copyOf(mActiveColumn, mActiveCount * 2);
+        }
+        // Sift up
+        int i = mActiveCount++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (mActiveEnd[parent] <= end) {
+                break;
+            }
+            mActiveEnd[i] = mActiveEnd[parent];
+            mActiveColumn[i] = mActiveColumn[parent];
+            i = parent;
+        }
+        mActiveEnd[i] = end;
+        mActiveColumn[i] = column;
+        return column;
+    }
+
+    private void siftActiveDown() {
+        long end = mActiveEnd[0];
+        int column = mActiveColumn[0];
+        int i = 0;
+        int half = mActiveCount >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < mActiveCount && mActiveEnd[child + 1] < mActiveEnd[child]) {
+                ++child;
+            }
+            if (end <= mActiveEnd[child]) {
+                break;
+            }
+            mActiveEnd[i] = mActiveEnd[child];
+            mActiveColumn[i] = mActiveColumn[child];
+            i = child;
+        }
+        mActiveEnd[i] = end;
+        mActiveColumn[i] = column;
+    }
+
+    private void pushFree(int column) {
+        if (mFreeCount == mFree.length) {
+            mFree = Arrays.copyOf(mFree, mFreeCount * 2);
+        }
+        int i = mFreeCount++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (mFree[parent] <= column) {
+                break;
+            }
+            mFree[i] = mFree[parent];
+            i = parent;
+        }
+        mFree[i] = column;
+    }
+
+    private int popFree() {
+        int result = mFree[0];
+        int column = mFree[--mFreeCount];
+        int i = 0;
+        int half = mFreeCount >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < mFreeCount && mFree[child + 1] < mFree[child]) {
+                ++child;
+            }
+            if (column <= mFree[child]) {
+                break;
+            }
+            mFree[i] = mFree[child];
+            i = child;
+        }
+        if (mFreeCount > 0) {
+            mFree[i] = column;
+        }
+        return result;
+    }
+}
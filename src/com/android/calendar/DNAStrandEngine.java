@@ -0,0 +1,427 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Makes the DNA strands for the month view, as
+ * {@link Utils#createDNAStrands} does, but for all the weeks of an
+ * EventStore at once. It goes through the events once in the order of the
+ * store, which is by start time, passing each event to the weeks which it
+ * is on, so each week sees its events in the same order as
+ * createDNAStrands would. The segments of each week are kept in arrays of
+ * ints and the strands are found by searching an array of colors, so
+ * nothing is allocated for each event and no colors are boxed.
+ *
+ * The strands are kept until they are asked for with a different
+ * geometry. A new engine should be made when the events change.
+ *
+ * This is only used on the UI thread.
+ */
+public class DNAStrandEngine {
+    private static final String TAG = "DNAStrandEngine";
+
+    private static final int DAYS_PER_WEEK = 7;
+
+    private final EventStore mEvents;
+    private final int mFirstJulianDay;
+    private final int mNumWeeks;
+
+    // The geometry which mStrands was made for
+    private int mTop;
+    private int mBottom;
+    private int mMinPixels;
+    private int[] mDayXs = null;
+    // The strands of each week, null for a week with no events
+    private Utils.DNAStrand[][] mStrands = null;
+
+    /**
+     * @param events the events sorted by start time
+     * @param firstJulianDay the first day of the first week
+     * @param numWeeks the number of weeks to make strands for
+     */
+    public DNAStrandEngine(EventStore events, int firstJulianDay, int numWeeks) {
+        mEvents = events;
+        mFirstJulianDay = firstJulianDay;
+        mNumWeeks = numWeeks;
+    }
+
+    /**
+     * Gets the strands for the week starting on weekStart, making the
+     * strands for all the weeks if this is the first call or the geometry
+     * has changed. The parameters are the same as those of
+     * {@link Utils#createDNAStrands}, whose days are the days of the week.
+     * @return the strands with the conflict strand first, or null if the
+     * week has no events or isn't one of ours
+     */
+    public Utils.DNAStrand[] getStrands(int weekStart, int top, int bottom, int minPixels,
+                                        int[] dayXs, Context context)
+    {
+        int week = weekStart - mFirstJulianDay;
+        if (   (week < 0)
+            || (week % DAYS_PER_WEEK != 0)
+            || (week / DAYS_PER_WEEK >= mNumWeeks)
+            || (dayXs == null)
+            || (dayXs.length < 1)
+            || (dayXs.length > DAYS_PER_WEEK)
+            || (bottom - top < 8)
+            || (minPixels < 0))
+        {
+            return null;
+        }
+        if (   (mStrands == null)
+            || (top != mTop)
+            || (bottom != mBottom)
+            || (minPixels != mMinPixels)
+            || !Arrays.equals(dayXs, mDayXs))
+        {
+            mTop = top;
+            mBottom = bottom;
+            mMinPixels = minPixels;
+            mDayXs = dayXs.clone();
+            Utils.loadDNAParameters(context);
+            mStrands = makeStrands();
+        }
+        return mStrands[week / DAYS_PER_WEEK];
+    }
+
+    // The one sweep through the events
+    private Utils.DNAStrand[][] makeStrands() {
+        long start = System.nanoTime();
+        int numDays = mDayXs.length;
+        Week[] weeks = new Week[mNumWeeks];
+        int size = mEvents.size();
+        for (int i = 0; i < size; ++i) {
+            int startDay = mEvents.getStartDay(i);
+            int endDay = mEvents.getEndDay(i);
+            if (startDay > endDay) {
+                Log.wtf(TAG, "Event starts after it ends: " + mEvents.getTitle(i));
+                continue;
+            }
+            int firstWeek = Math.max(startDay - mFirstJulianDay, 0) / DAYS_PER_WEEK;
+            int lastWeek = endDay - mFirstJulianDay;
+            if (lastWeek < 0) {
+                continue;
+            }
+            lastWeek = Math.min(lastWeek / DAYS_PER_WEEK, mNumWeeks - 1);
+            for (int w = firstWeek; w <= lastWeek; ++w) {
+                int weekStart = mFirstJulianDay + w * DAYS_PER_WEEK;
+                // The week may show fewer than seven days.
+                if (startDay >= weekStart + numDays) {
+                    continue;
+                }
+                if (weeks[w] == null) {
+                    weeks[w] = new Week(weekStart, numDays, mTop, mBottom, mMinPixels);
+                }
+                weeks[w].addEvent(mEvents, i);
+            }
+        }
+        Utils.DNAStrand[][] strands = new Utils.DNAStrand[mNumWeeks][];
+        for (int w = 0; w < mNumWeeks; ++w) {
+            if (weeks[w] != null) {
+                strands[w] = weeks[w].weave(mTop, mBottom, mDayXs);
+            }
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Made DNA for " + size + " events in " + mNumWeeks + " weeks in "
+                + (System.nanoTime() - start) / 1000 + "us");
+        }
+        return strands;
+    }
+
+    /**
+     * The segments of one week. This follows Utils.createDNAStrands step
+     * by step, with the segments in arrays instead of a list.
+     */
+    private static final class Week {
+        private final int mFirstJulianDay;
+        private final int mLastJulianDay;
+        private final int mNumDays;
+        private final int mMinMinutes;
+        private final int mMinOtherMinutes;
+
+        // The segments in order, as in DNASegment
+        private int[] mStart = new int[16];
+        private int[] mEnd = new int[16];
+        private int[] mColor = new int[16];
+        private int[] mDay = new int[16];
+        private int mSize = 0;
+        // Tracks the segment which was last when an event was started, see
+        // addEvent(). This is -1 if it has been removed, when mLastEnd
+        // holds its end.
+        private int mLast;
+        private int mLastEnd;
+
+        private int[] mAllDays = null;
+
+        Week(int firstJulianDay, int numDays, int top, int bottom, int minPixels) {
+            mFirstJulianDay = firstJulianDay;
+            mLastJulianDay = firstJulianDay + numDays - 1;
+            mNumDays = numDays;
+            mMinMinutes = minPixels * 4 * Utils.WORK_DAY_MINUTES / (3 * (bottom - top));
+            mMinOtherMinutes = mMinMinutes * 5 / 2;
+        }
+
+        private int getLastEnd() {
+            return mLast >= 0 ? mEnd[mLast] : mLastEnd;
+        }
+
+        private void insert(int i, int start, int end, int color, int day) {
+            if (mSize == mStart.length) {
+                int capacity = mSize * 2;
+                mStart = Arrays.copyOf(mStart, capacity);
+                mEnd = Arrays.copyOf(mEnd, capacity);
+                mColor = Arrays.copyOf(mColor, capacity);
+                mDay = Arrays.copyOf(mDay, capacity);
+            }
+            int moved = mSize - i;
+            System.arraycopy(mStart, i, mStart, i + 1, moved);
+            System.arraycopy(mEnd, i, mEnd, i + 1, moved);
+            System.arraycopy(mColor, i, mColor, i + 1, moved);
+            System.arraycopy(mDay, i, mDay, i + 1, moved);
+            mStart[i] = start;
+            mEnd[i] = end;
+            mColor[i] = color;
+            mDay[i] = day;
+            ++mSize;
+            if (mLast >= i) {
+                ++mLast;
+            }
+        }
+
+        private void remove(int i) {
+            if (mLast == i) {
+                mLastEnd = mEnd[i];
+                mLast = -1;
+            } else if (mLast > i) {
+                --mLast;
+            }
+            int moved = mSize - i - 1;
+            System.arraycopy(mStart, i + 1, mStart, i, moved);
+            System.arraycopy(mEnd, i + 1, mEnd, i, moved);
+            System.arraycopy(mColor, i + 1, mColor, i, moved);
+            System.arraycopy(mDay, i + 1, mDay, i, moved);
+            --mSize;
+        }
+
+        // As Utils.addAllDayToStrands
+        private void addAllDay(int color, int startDay, int endDay) {
+            if (mAllDays == null) {
+                mAllDays = new int[mNumDays];
+            }
+            int end = Math.min(endDay - mFirstJulianDay, mNumDays - 1);
+            for (int i = Math.max(startDay - mFirstJulianDay, 0); i <= end; i++) {
+                mAllDays[i] = mAllDays[i] != 0 ? Utils.CONFLICT_COLOR : color;
+            }
+        }
+
+        // As Utils.addNewSegment
+        private void addNewSegment(int color, int startDay, int startTime, int endDay,
+                                   int endTime, int minStart)
+        {
+            // If this is a multiday event split it up by day
+            while (startDay != endDay) {
+                addDaySegment(color, startDay, startTime, Utils.DAY_IN_MINUTES - 1, minStart);
+                ++startDay;
+                startTime = 0;
+                minStart = 0;
+            }
+            addDaySegment(color, startDay, startTime, endTime, minStart);
+        }
+
+        private void addDaySegment(int color, int day, int startTime, int endTime,
+                                   int minStart)
+        {
+            int dayOffset = (day - mFirstJulianDay) * Utils.DAY_IN_MINUTES;
+            int endOfDay = dayOffset + Utils.DAY_IN_MINUTES - 1;
+            int start = Math.max(dayOffset + startTime, minStart);
+            int minEnd = Math.min(start + mMinMinutes, endOfDay);
+            int end = Math.min(Math.max(dayOffset + endTime, minEnd), endOfDay);
+            insert(mSize, start, end, color, day);
+        }
+
+        void addEvent(EventStore events, int index) {
+            int color = events.getColor(index);
+            int startDay = events.getStartDay(index);
+            int endDay = events.getEndDay(index);
+            if (events.drawAsAllday(index)) {
+                addAllDay(color, startDay, endDay);
+                return;
+            }
+            int startTime = events.getStartTime(index);
+            int endTime = events.getEndTime(index);
+            final int dayMinutes = Utils.DAY_IN_MINUTES;
+            if (startDay < mFirstJulianDay) {
+                startDay = mFirstJulianDay;
+                startTime = 0;
+            }
+            // If it starts after the work day make sure the start is at least
+            // minPixels from midnight
+            if (startTime > dayMinutes - mMinOtherMinutes) {
+                startTime = dayMinutes - mMinOtherMinutes;
+            }
+            if (endDay > mLastJulianDay) {
+                endDay = mLastJulianDay;
+                endTime = dayMinutes - 1;
+            }
+            // If the end time is before the work day make sure it ends at least
+            // minPixels after midnight
+            if (endTime < mMinOtherMinutes) {
+                endTime = mMinOtherMinutes;
+            }
+            // Make short events outside the work day at least minPixels long.
+            if (startDay == endDay && endTime - startTime < mMinOtherMinutes) {
+                if (startTime < Utils.WORK_DAY_START_MINUTES) {
+                    endTime = Math.min(startTime + mMinOtherMinutes,
+                            Utils.WORK_DAY_START_MINUTES + mMinMinutes);
+                } else if (endTime > Utils.WORK_DAY_END_MINUTES) {
+                    endTime = Math.min(endTime + mMinOtherMinutes, dayMinutes - 1);
+                    if (endTime - startTime < mMinOtherMinutes) {
+                        startTime = endTime - mMinOtherMinutes;
+                    }
+                }
+            }
+
+            if (mSize == 0) {
+                addNewSegment(color, startDay, startTime, endDay, endTime, 0);
+                return;
+            }
+            mLast = mSize - 1;
+            int lastEnd = mEnd[mLast];
+            int startMinute = (startDay - mFirstJulianDay) * dayMinutes + startTime;
+            int endMinute = Math.max((endDay - mFirstJulianDay) * dayMinutes + endTime,
+                    startMinute + mMinMinutes);
+            if (startMinute < 0) {
+                startMinute = 0;
+            }
+            if (endMinute >= Utils.WEEK_IN_MINUTES) {
+                endMinute = Utils.WEEK_IN_MINUTES - 1;
+            }
+            // If we start before the last segment ends, this may conflict
+            // with other events.
+            if (startMinute < lastEnd) {
+                int i = mSize;
+                // find the last segment this event intersects with
+                while (--i >= 0 && endMinute < mStart[i]);
+
+                // for each segment this event intersects with
+                for (; i >= 0 && startMinute <= mEnd[i]; i--) {
+                    int curr = i;
+                    if (mColor[curr] == Utils.CONFLICT_COLOR) {
+                        continue;
+                    }
+                    // split off the right side if it isn't too small
+                    if (endMinute < mEnd[curr] - mMinMinutes) {
+                        insert(curr + 1, endMinute + 1, mEnd[curr], mColor[curr], mDay[curr]);
+                        mEnd[curr] = endMinute;
+                    }
+                    // split off the left side if it isn't too small
+                    if (startMinute > mStart[curr] + mMinMinutes) {
+                        insert(curr, mStart[curr], startMinute - 1, mColor[curr], mDay[curr]);
+                        curr = ++i;
+                        mStart[curr] = startMinute;
+                    }
+                    // merge with a conflict on the right on the same day
+                    if (i + 1 < mSize) {
+                        int rhs = i + 1;
+                        if (mColor[rhs] == Utils.CONFLICT_COLOR && mDay[curr] == mDay[rhs]
+                                && mStart[rhs] <= mEnd[curr] + 1) {
+                            mStart[rhs] = Math.min(mStart[curr], mStart[rhs]);
+                            remove(curr);
+                            // the right segment is now at i
+                            curr = i;
+                        }
+                    }
+                    // merge with a conflict on the left on the same day
+                    if (i - 1 >= 0) {
+                        int lhs = i - 1;
+                        if (mColor[lhs] == Utils.CONFLICT_COLOR && mDay[curr] == mDay[lhs]
+                                && mEnd[lhs] >= mStart[curr] - 1) {
+                            mEnd[lhs] = Math.max(mEnd[curr], mEnd[lhs]);
+                            remove(curr);
+                            curr = lhs;
+                            i--;
+                        }
+                    }
+                    mColor[curr] = Utils.CONFLICT_COLOR;
+                }
+            }
+            // If this event extends beyond the last segment add a new segment
+            lastEnd = getLastEnd();
+            if (endMinute > lastEnd) {
+                addNewSegment(color, startDay, startTime, endDay, endTime, lastEnd);
+            }
+        }
+
+        // As Utils.weaveDNAStrands: the conflict strand comes first, then a
+        // strand for each other color in the order in which they appear.
+        Utils.DNAStrand[] weave(int top, int bottom, int[] dayXs) {
+            int[] colors = new int[8];
+            int[] counts = new int[8];
+            colors[0] = Utils.CONFLICT_COLOR;
+            int numColors = 1;
+            for (int s = 0; s < mSize; ++s) {
+                int c = 0;
+                while (c < numColors && colors[c] != mColor[s]) {
+                    ++c;
+                }
+                if (c == numColors) {
+                    if (numColors == colors.length) {
+                        colors = Arrays.copyOf(colors, numColors * 2);
+                        counts = Arrays.copyOf(counts, numColors * 2);
+                    }
+                    colors[numColors++] = mColor[s];
+                }
+                ++counts[c];
+            }
+            Utils.DNAStrand[] strands = new Utils.DNAStrand[numColors];
+            for (int c = 0; c < numColors; ++c) {
+                Utils.DNAStrand strand = new Utils.DNAStrand();
+                strand.color = colors[c];
+                strand.count = counts[c];
+                strand.points = new float[counts[c] * 4];
+                strands[c] = strand;
+            }
+            strands[0].allDays = mAllDays;
+
+            int height = bottom - top;
+            int workDayHeight = height * 3 / 4;
+            int remainderHeight = (height - workDayHeight) / 2;
+            for (int s = 0; s < mSize; ++s) {
+                int c = 0;
+                while (colors[c] != mColor[s]) {
+                    ++c;
+                }
+                Utils.DNAStrand strand = strands[c];
+                int x = dayXs[mDay[s] - mFirstJulianDay];
+                int y0 = top + Utils.getPixelOffsetFromMinutes(
+                    mStart[s] % Utils.DAY_IN_MINUTES, workDayHeight, remainderHeight);
+                int y1 = top + Utils.getPixelOffsetFromMinutes(
+                    mEnd[s] % Utils.DAY_IN_MINUTES, workDayHeight, remainderHeight);
+                strand.points[strand.position++] = x;
+                strand.points[strand.position++] = y0;
+                strand.points[strand.position++] = x;
+                strand.points[strand.position++] = y1;
+            }
+            return strands;
+        }
+    }
+}
@@ -56,6 +56,8 @@ public class DayFragment extends Fragment implements CalendarController.ActionHa
     protected Animation mInAnimationBackward;
     protected Animation mOutAnimationBackward;
     EventLoader mEventLoader;
+    // Shared by both the DayViews in mViewSwitcher
+    EventLayoutCache mLayoutCache;
 
     Time mSelectedDay = new Time();
 
@@ -99,6 +101,7 @@ public class DayFragment extends Fragment implements CalendarController.ActionHa
         mOutAnimationBackward = AnimationUtils.loadAnimation(context, R.anim.slide_right_out);
 
         mEventLoader = new EventLoader(context);
+        mLayoutCache = new EventLayoutCache();
     }
 
     @Override
@@ -122,7 +125,8 @@ public class DayFragment extends Fragment implements CalendarController.ActionHa
     public View makeView() {
         mTZUpdater.run();
         DayView view = new DayView(getActivity(), CalendarController
-                .getInstance(getActivity()), mViewSwitcher, mEventLoader, mNumDays);
+                .getInstance(getActivity()), mViewSwitcher, mEventLoader, mLayoutCache,
+                mNumDays);
         view.setId(VIEW_ID);
         view.setLayoutParams(new ViewSwitcher.LayoutParams(
                 LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
@@ -237,15 +241,27 @@ public class DayFragment extends Fragment implements CalendarController.ActionHa
     }
 
     public void eventsChanged() {
+        EventChangeTracker.Changes changes =
+            CalendarController.getInstance(getActivity()).getEventChanges();
+        if (changes == null) {
+            mEventLoader.invalidateCache();
+        } else {
+            // Only the affected days need to go to the provider again.
+            mEventLoader.invalidateCache(changes);
+        }
         if (mViewSwitcher == null) {
             return;
         }
         DayView view = (DayView) mViewSwitcher.getCurrentView();
-        view.clearCachedEvents();
-        view.reloadEvents();
+        if (changes == null || view.isAffectedBy(changes)) {
+            view.clearCachedEvents();
+            view.reloadEvents();
+        }
 
         view = (DayView) mViewSwitcher.getNextView();
-        view.clearCachedEvents();
+        if (changes == null || view.isAffectedBy(changes)) {
+            view.clearCachedEvents();
+        }
     }
 
     public long getSupportedActionTypes() {
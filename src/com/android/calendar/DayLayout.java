@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The events for one page of a DayView, laid out ready to draw. DayView
+ * creates one for each reload and {@link #layOut} is run on the
+ * EventLoader's thread once the events have been loaded, so that the UI
+ * thread only has to swap it in.
+ *
+ * Nothing else may use the events until the layout has been posted to the
+ * UI thread: after that it belongs to the DayView and isn't changed.
+ */
+class DayLayout {
+
+    final ArrayList<Event> events;
+    // The events in events which are drawn as all day events
+    final ArrayList<Event> allDayEvents = new ArrayList<>();
+    // The days which the page shows: events may extend beyond them
+    final int firstJulianDay;
+    final int numDays;
+    // How many all day events there are on each day, and the most on any day
+    final int[] numAllDayEvents;
+    int maxAllDayEvents;
+    // The earliest hour at which a timed event starts or ends on each day
+    final int[] earliestStartHour;
+    // The value passed to Event.computePositions()
+    final long minimumDurationMillis;
+    EventIndex eventIndex;
+    EventIndex allDayIndex;
+
+    /**
+     * @param events the list which the EventLoader will load the events into
+     * @param firstJulianDay the first day which the page shows
+     * @param numDays the number of days which the page shows
+     * @param minimumDurationMillis the shortest event duration for
+     *     Event.computePositions() at the current cell height
+     */
+    DayLayout(ArrayList<Event> events, int firstJulianDay, int numDays,
+              long minimumDurationMillis)
+    {
+        this.events = events;
+        this.firstJulianDay = firstJulianDay;
+        this.numDays = numDays;
+        this.minimumDurationMillis = minimumDurationMillis;
+        numAllDayEvents = new int[numDays];
+        earliestStartHour = new int[numDays];
+        Arrays.fill(earliestStartHour, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lays out the events. This runs on the loader thread.
+     */
+    void layOut() {
+        Event.computePositions(events, minimumDurationMillis);
+        for (Event e : events) {
+            if (e.drawAsAllday()) {
+                allDayEvents.add(e);
+            }
+        }
+        maxAllDayEvents = countDays(events, firstJulianDay, numDays,
+            numAllDayEvents, earliestStartHour);
+        eventIndex = EventIndex.forEvents(events, EventIndex.BY_MINUTE, 0, false);
+        allDayIndex = EventIndex.forEvents(allDayEvents, EventIndex.BY_DAY, 0, true);
+    }
+
+    /**
+     * Counts the all day events on each day in a range, and lowers the
+     * earliest start hours of the days to those of the timed events.
+     * @param numAllDayEvents filled in with the number of all day events
+     *                        on each day
+     * @param earliestStartHour each day's entry is lowered to the earliest
+     *                          hour at which a timed event starts or ends
+     *                          on that day, if that is earlier
+     * @return the largest number of all day events on any day
+     */
+    static int countDays(ArrayList<Event> events, int firstJulianDay, int numDays,
+                         int[] numAllDayEvents, int[] earliestStartHour)
+    {
+        int lastJulianDay = firstJulianDay + numDays - 1;
+        int maxAllDayEvents = 0;
+        Arrays.fill(numAllDayEvents, 0, numDays, 0);
+        for (Event event : events) {
+            if (event.startDay > lastJulianDay || event.endDay < firstJulianDay) {
+                continue;
+            }
+            if (event.drawAsAllday()) {
+                // Count all the events being drawn as allDay events
+                final int firstDay = Math.max(event.startDay, firstJulianDay);
+                final int lastDay = Math.min(event.endDay, lastJulianDay);
+                for (int day = firstDay; day <= lastDay; day++) {
+                    final int count = ++numAllDayEvents[day - firstJulianDay];
+                    if (maxAllDayEvents < count) {
+                        maxAllDayEvents = count;
+                    }
+                }
+            } else {
+                int daynum = event.startDay - firstJulianDay;
+                int hour = event.startTime / 60;
+                if (daynum >= 0 && hour < earliestStartHour[daynum]) {
+                    earliestStartHour[daynum] = hour;
+                }
+
+                // Also check the end hour in case the event spans more than
+                // one day.
+                daynum = event.endDay - firstJulianDay;
+                hour = event.endTime / 60;
+                if (daynum < numDays && hour < earliestStartHour[daynum]) {
+                    earliestStartHour[daynum] = hour;
+                }
+            }
+        }
+        return maxAllDayEvents;
+    }
+}
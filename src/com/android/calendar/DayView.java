@@ -47,15 +47,11 @@ import android.os.Handler;
 import android.provider.CalendarContract.Attendees;
 import android.provider.CalendarContract.Calendars;
 import android.provider.CalendarContract.Events;
-import android.text.Layout.Alignment;
-import android.text.SpannableStringBuilder;
 import android.text.StaticLayout;
-import android.text.TextPaint;
 import android.text.TextUtils;
 import android.text.format.DateFormat;
 import android.text.format.DateUtils;
 import android.text.format.Time;
-import android.text.style.StyleSpan;
 import android.util.Log;
 import android.view.ContextMenu;
 import android.view.ContextMenu.ContextMenuInfo;
@@ -93,8 +89,6 @@ import java.util.Calendar;
 import java.util.Formatter;
 import java.util.List;
 import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import ws.xsoh.etar.R;
 
@@ -156,7 +150,6 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
     private static final int HOUR_GAP = 1;
     // More events text will transition between invisible and this alpha
     private static final int MORE_EVENTS_MAX_ALPHA = 0x4C;
-    private static final int MAX_EVENT_TEXT_LEN = 500;
     /**
      * The initial state of the touch mode when we enter this view.
      */
@@ -346,6 +339,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
     private final Paint mSelectionPaint = new Paint();
     private final DismissPopup mDismissPopup = new DismissPopup();
     private final EventLoader mEventLoader;
+    private final EventLayoutCache mLayoutCache;
     private final ArrayList<Event> mSelectedEvents = new ArrayList<>();
     private final DeleteEventHelper mDeleteEventHelper;
 
@@ -364,7 +358,6 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
     private final String mCreateNewEventString;
     private final String mNewEventHintString;
     private final String mNewAllDayEventHintString;
-    private final Pattern drawTextSanitizerFilter = Pattern.compile("[\t\n],");
     protected boolean mPaused = true;
     protected Context mContext;
     protected int mNumDays = 7;
@@ -382,6 +375,9 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
     private static int mSelectionJulianDay; // to save recomputing it all the time
     private static Event mSelectedEvent;
     private static int mFirstDayOfWeek; // First day of the week
+    // Which way the user last swiped: 1 forwards, -1 backwards.
+    // Used to decide which adjacent page to prefetch first.
+    private static int mSwipeDirection = 1;
 
     // These are set by setSelectionFromPosition()
     private static boolean mClickedAllday;     // user clicked in the all day region
@@ -442,6 +438,8 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
      * in the method clearCachedEvents()).
      */
     private long mLastReloadMillis;
+    // The id of our most recent load, so that cleanup() can cancel it
+    private int mLoadId;
     private final Runnable mCancelCallback = new Runnable() {
         public void run() {
             clearCachedEvents();
@@ -449,6 +447,12 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
     };
     private ArrayList<Event> mEvents = new ArrayList<Event>();
     private ArrayList<Event> mAllDayEvents = new ArrayList<Event>();
+    // Find the timed events in mEvents, and the events in mAllDayEvents, on
+    // a day without looking at all of them.
+    private EventIndex mEventIndex = new EventIndex(EventIndex.BY_MINUTE, 0, 1);
+    private EventIndex mAllDayIndex = new EventIndex(EventIndex.BY_DAY, 0, 1);
+    // The minimum duration which mEvents was last laid out with
+    private long mPositionsMinimumDuration = -1;
     private StaticLayout[] mLayouts = null;
     private StaticLayout[] mAllDayLayouts = null;
     private int mSelectionDay;        // Julian day
@@ -587,7 +591,8 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
     private boolean mIgnoreOneKeyEvent = false;
 
     public DayView(Context context, CalendarController controller,
-            ViewSwitcher viewSwitcher, EventLoader eventLoader, int numDays) {
+            ViewSwitcher viewSwitcher, EventLoader eventLoader,
+            EventLayoutCache layoutCache, int numDays) {
         super(context);
         mContext = context;
         initAccessibilityVariables();
@@ -697,6 +702,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
                 .getDrawable(R.drawable.panel_month_event_holo_light);
 
         mEventLoader = eventLoader;
+        mLayoutCache = layoutCache;
         mEventGeometry = new EventGeometry();
         mEventGeometry.setMinEventHeight(MIN_EVENT_HEIGHT);
         mEventGeometry.setHourGap(HOUR_GAP);
@@ -1248,6 +1254,12 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         }
     }
 
+    // The shortest duration for which an event is laid out, which makes it
+    // tall enough to see at the current cell height.
+    private long getMinimumDurationMillis() {
+        return (long) (MIN_EVENT_HEIGHT * DateUtils.MINUTE_IN_MILLIS / (mCellHeight / 60.0f));
+    }
+
     /**
      * Measures the space needed for various parts of the view after
      * loading new events.  This can change if there are all-day events.
@@ -1325,9 +1337,14 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         mNumHours = mGridAreaHeight / (mCellHeight + HOUR_GAP);
         mEventGeometry.setHourHeight(mCellHeight);
 
-        final long minimumDurationMillis = (long)
-                (MIN_EVENT_HEIGHT * DateUtils.MINUTE_IN_MILLIS / (mCellHeight / 60.0f));
-        Event.computePositions(mEvents, minimumDurationMillis);
+        // The events are normally laid out for the current cell height
+        // when they are loaded, so we only need to do it again if the
+        // height has changed since then.
+        final long minimumDurationMillis = getMinimumDurationMillis();
+        if (minimumDurationMillis != mPositionsMinimumDuration) {
+            Event.computePositions(mEvents, minimumDurationMillis);
+            mPositionsMinimumDuration = minimumDurationMillis;
+        }
 
         // Compute the top of our reachable view
         mMaxViewStartY = HOUR_GAP + 24 * (mCellHeight + HOUR_GAP) - mGridAreaHeight;
@@ -2919,6 +2936,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
             outToXValue = 1.0f;
         }
 
+        mSwipeDirection = forward ? 1 : -1;
         mTempTime.set(mController.getTime());
         if (forward) {
             mTempTime.monthDay += mNumDays;
@@ -2992,6 +3010,15 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         mLastReloadMillis = 0;
     }
 
+    /**
+     * @return true if a change to the calendar data may affect the events
+     * which we have loaded
+     */
+    boolean isAffectedBy(EventChangeTracker.Changes changes) {
+        // reloadEvents() loads a day either side of the ones we show.
+        return changes.intersects(mFirstJulianDay - 1, mLastJulianDay + 1);
+    }
+
     // setter for the alpha used by the cross fade animator, do not remove
     public void setEventsAlpha(int alpha) {
         mEventsAlpha = alpha;
@@ -3018,28 +3045,41 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         // We load from one day before to one day after the visible view
         // so that DPAD_LEFT from the first day and DPAD_RIGHT from the last day
         // will work correctly.
+        // The events are laid out on the loader thread too, so that all we
+        // have to do here when they arrive is to swap them in.
+        // The text layouts are made there as well, so the loader thread gets
+        // its own copy of the paint and of the view's width.
         final ArrayList<Event> events = new ArrayList<Event>();
-        mEventLoader.loadEventsInBackground(
+        final DayLayout layout = new DayLayout(events, mFirstJulianDay, mNumDays,
+            getMinimumDurationMillis());
+        final Paint textPaint = new Paint(mEventTextPaint);
+        final int textColor = mEventTextColor;
+        final int viewWidth = mViewWidth;
+        final int hoursWidth = mHoursWidth;
+        mLoadId = mEventLoader.loadEventsInBackground(
             mNumDays + 2, events, mFirstJulianDay - 1, new Runnable() {
+                public void run() {
+                    layout.layOut();
+                    prepareEventLayouts(layout, textPaint, textColor, viewWidth, hoursWidth);
+                }
+            }, new Runnable() {
                 public void run() {
                 boolean fadeinEvents = mFirstJulianDay != mLoadedFirstJulianDay;
                 mEvents = events;
                 mLoadedFirstJulianDay = mFirstJulianDay;
-                if (mAllDayEvents == null) {
-                    mAllDayEvents = new ArrayList<>();
-                } else {
-                    mAllDayEvents.clear();
-                }
+                mAllDayEvents = layout.allDayEvents;
+                mEventIndex = layout.eventIndex;
+                mAllDayIndex = layout.allDayIndex;
+                mPositionsMinimumDuration = layout.minimumDurationMillis;
 
-                // Create a shorter array for all day events
-                boolean found = false;
-                for (Event e : events) {
-                    if (e.drawAsAllday()) { mAllDayEvents.add(e); }
-                    if (e.equals(mSelectedEvent)) { found = true; }
-                }
                 // If the selected event no longer exists (it got deleted),
                 // deselect it.
-                if (!found) { setSelectedEvent(null); }
+                if (!events.contains(mSelectedEvent)) { setSelectedEvent(null); }
+                // Turn on with "adb shell setprop log.tag.DayView DEBUG"
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Layout cache " + mLayoutCache + ", hit rate "
+                        + mLayoutCache.getHitRate());
+                }
 
                 // New events, new layouts
                 if (mLayouts == null || mLayouts.length < events.size()) {
@@ -3056,7 +3096,13 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
                     Arrays.fill(mAllDayLayouts, null);
                 }
 
-                computeAllDaySpace();
+                if (   layout.firstJulianDay == mFirstJulianDay
+                    && layout.numDays == mNumDays)
+                {
+                    useAllDaySpace(layout);
+                } else {
+                    computeAllDaySpace();
+                }
 
                 mRemeasure = true;
                 mComputeSelectedEvents = true;
@@ -3073,10 +3119,28 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
                 } else{
                     invalidate();
                 }
+                prefetchAdjacentPages();
             }
         }, mCancelCallback);
     }
 
+    /**
+     * Once the current page is showing, ask the EventLoader to load the
+     * pages on either side into its cache, so that swiping to them doesn't
+     * have to wait for the provider. The side which the user last swiped
+     * towards goes first. The ranges match what reloadEvents() will ask for
+     * on those pages.
+     */
+    private void prefetchAdjacentPages() {
+        int next = mFirstJulianDay + mNumDays - 1;
+        int previous = mFirstJulianDay - mNumDays - 1;
+        if (mSwipeDirection < 0) {
+            mEventLoader.prefetchInBackground(mNumDays + 2, previous, next);
+        } else {
+            mEventLoader.prefetchInBackground(mNumDays + 2, next, previous);
+        }
+    }
+
      public void stopEventsAnimation() {
         if (mEventsCrossFadeAnimation != null) {
             mEventsCrossFadeAnimation.cancel();
@@ -3097,50 +3161,24 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         // Make a pass over all the events, and keep track of the maximum
         // number of all-day events in any one day.  Also, keep track of
         // the earliest event in each day.
-        int maxAllDayEvents = mSelectionAllday ? 1 : 0;
-
-        final ArrayList<Event> events = mEvents;
-        final int len = events.size();
-        // Num of all-day-events on each day.
-        final int[] eventsCount = new int[mLastJulianDay - mFirstJulianDay + 1];
-        Arrays.fill(mNumAllDayEvents, 0);
-        for (int ii = 0; ii < len; ii++) {
-            Event event = events.get(ii);
-            if (event.startDay > mLastJulianDay || event.endDay < mFirstJulianDay) {
-                continue;
-            }
-            if (event.drawAsAllday()) {
-                // Count all the events being drawn as allDay events
-                final int firstDay = Math.max(event.startDay, mFirstJulianDay);
-                final int lastDay = Math.min(event.endDay, mLastJulianDay);
-                for (int day = firstDay; day <= lastDay; day++) {
-                    final int count = ++mNumAllDayEvents[day - mFirstJulianDay];
-                    if (maxAllDayEvents < count) {
-                        maxAllDayEvents = count;
-                    }
-                }
-
-                int daynum = event.startDay - mFirstJulianDay;
-
-                if (daynum < 0) {
-                    daynum = 0;
-                }
+        setMaxAlldayEvents(DayLayout.countDays(mEvents, mFirstJulianDay, mNumDays,
+            mNumAllDayEvents, mEarliestStartHour));
+    }
 
-            } else {
-                int daynum = event.startDay - mFirstJulianDay;
-                int hour = event.startTime / 60;
-                if (daynum >= 0 && hour < mEarliestStartHour[daynum]) {
-                    mEarliestStartHour[daynum] = hour;
-                }
+    // As computeAllDaySpace(), but using the counts which were made on the
+    // loader thread.
+    private void useAllDaySpace(DayLayout layout) {
+        System.arraycopy(layout.numAllDayEvents, 0, mNumAllDayEvents, 0, mNumDays);
+        for (int day = 0; day < mNumDays; day++) {
+            mEarliestStartHour[day] = Math.min(mEarliestStartHour[day],
+                layout.earliestStartHour[day]);
+        }
+        setMaxAlldayEvents(layout.maxAllDayEvents);
+    }
 
-                // Also check the end hour in case the event spans more than
-                // one day.
-                daynum = event.endDay - mFirstJulianDay;
-                hour = event.endTime / 60;
-                if (daynum < mNumDays && hour < mEarliestStartHour[daynum]) {
-                    mEarliestStartHour[daynum] = hour;
-                }
-            }
+    private void setMaxAlldayEvents(int maxAllDayEvents) {
+        if (mSelectionAllday && maxAllDayEvents < 1) {
+            maxAllDayEvents = 1;
         }
         mMaxAlldayEvents = maxAllDayEvents;
         initAllDayHeights();
@@ -3260,8 +3298,13 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
 
     // Computes the x position for the left side of the given day (base 0)
     private int computeDayLeftPosition(int day) {
-        int effectiveWidth = mViewWidth - mHoursWidth;
-        return day * effectiveWidth / mNumDays + mHoursWidth;
+        return computeDayLeftPosition(day, mViewWidth, mHoursWidth, mNumDays);
+    }
+
+    private static int computeDayLeftPosition(int day, int viewWidth, int hoursWidth,
+                                              int numDays) {
+        int effectiveWidth = viewWidth - hoursWidth;
+        return day * effectiveWidth / numDays + hoursWidth;
     }
 
     private void drawAllDayHighlights(Canvas canvas, Paint p) {
@@ -3741,8 +3784,105 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         return maxWidth;
     }
 
+    private static void setEventTextColor(Paint paint, Event event, int textColor) {
+        switch (event.selfAttendeeStatus) {
+            case Attendees.ATTENDEE_STATUS_INVITED:
+                paint.setColor(event.color);
+                break;
+            case Attendees.ATTENDEE_STATUS_DECLINED:
+                paint.setColor(textColor);
+                paint.setAlpha(Utils.DECLINED_EVENT_TEXT_ALPHA);
+                break;
+            case Attendees.ATTENDEE_STATUS_NONE: // Your own events
+            case Attendees.ATTENDEE_STATUS_ACCEPTED:
+            case Attendees.ATTENDEE_STATUS_TENTATIVE:
+            default:
+                paint.setColor(textColor);
+                break;
+        }
+    }
+
+    /**
+     * Makes the text layouts for a page of events in the shared cache, so
+     * that drawing them only has to look them up. This runs on the loader
+     * thread after the events have been laid out, and works out the width
+     * of each event's text the same way as drawEvents(), drawAllDayEvents()
+     * and drawEventRect() do.
+     */
+    private void prepareEventLayouts(DayLayout layout, Paint paint, int textColor,
+                                     int viewWidth, int hoursWidth) {
+        final int numDays = layout.numDays;
+        if (viewWidth <= hoursWidth || numDays <= 0) {
+            // Not measured yet
+            return;
+        }
+        final int firstDay = layout.firstJulianDay;
+        final int lastDay = firstDay + numDays - 1;
+        final int allDayCellWidth = (viewWidth - hoursWidth) / numDays - DAY_GAP;
+        for (Event event : layout.events) {
+            if (event.startDay > lastDay || event.endDay < firstDay) {
+                continue;
+            }
+            setEventTextColor(paint, event, textColor);
+            if (event.drawAsAllday()) {
+                int startIndex = event.startDay - firstDay;
+                int endIndex = event.endDay - firstDay;
+                int leftOffset = 0;
+                int rightOffset = 0;
+                if (startIndex < 0) {
+                    startIndex = 0;
+                } else {
+                    leftOffset = (event.startTime * allDayCellWidth) / MINUTES_PER_DAY;
+                }
+                if (endIndex >= numDays) {
+                    endIndex = numDays - 1;
+                } else {
+                    rightOffset = ((MINUTES_PER_DAY - event.endTime) * allDayCellWidth)
+                        / MINUTES_PER_DAY;
+                }
+                int left = computeDayLeftPosition(startIndex, viewWidth, hoursWidth, numDays)
+                    + leftOffset;
+                int right = computeDayLeftPosition(endIndex + 1, viewWidth, hoursWidth, numDays)
+                    - DAY_GAP - rightOffset;
+                prepareEventLayout(event, paint, left, right,
+                    EVENT_ALL_DAY_TEXT_LEFT_MARGIN, EVENT_ALL_DAY_TEXT_RIGHT_MARGIN);
+                continue;
+            }
+            int maxCols = event.getMaxColumns();
+            if (maxCols <= 0) {
+                continue;
+            }
+            int from = Math.max(event.startDay, firstDay) - firstDay;
+            int to = Math.min(event.endDay, lastDay) - firstDay;
+            for (int dayIndex = from; dayIndex <= to; dayIndex++) {
+                int left = computeDayLeftPosition(dayIndex, viewWidth, hoursWidth, numDays) + 1;
+                int cellWidth = computeDayLeftPosition(dayIndex + 1, viewWidth, hoursWidth,
+                    numDays) - left + 1;
+                float colWidth = (float) (cellWidth - (maxCols + 1) * DAY_GAP) / (float) maxCols;
+                float eventLeft = left + event.getColumn() * (colWidth + DAY_GAP);
+                prepareEventLayout(event, paint, eventLeft, eventLeft + colWidth,
+                    EVENT_TEXT_LEFT_MARGIN, EVENT_TEXT_RIGHT_MARGIN);
+            }
+        }
+    }
+
+    private void prepareEventLayout(Event event, Paint paint, float eventLeft,
+                                    float eventRight, int leftMargin, int rightMargin) {
+        int left = (int) eventLeft + EVENT_RECT_LEFT_MARGIN;
+        int right = (int) eventRight - EVENT_RECT_RIGHT_MARGIN;
+        if (right <= left) {
+            return;
+        }
+        if (right - left > leftMargin + rightMargin) {
+            left += leftMargin;
+            right -= rightMargin;
+        }
+        mLayoutCache.prepare(event, paint, right - left);
+    }
+
     /**
-     * Return the layout for a numbered event. Create it if not already existing
+     * Return the layout for a numbered event. Get it from the shared
+     * cache if not already known to this view.
      */
     private StaticLayout getEventLayout(
         StaticLayout[] layouts, int i, Event event, Paint paint, Rect r)
@@ -3756,38 +3896,10 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         // the width hasn't changed (due to vertical resizing which causes
         // re-layout of events at min height)
         if (layout == null || r.width() != layout.getWidth()) {
-            SpannableStringBuilder bob = new SpannableStringBuilder();
-            if (event.title != null) {
-                // MAX - 1 since we add a space
-                bob.append(drawTextSanitizer(event.title.toString(), MAX_EVENT_TEXT_LEN - 1));
-                bob.setSpan(new StyleSpan(android.graphics.Typeface.BOLD), 0,
-                            bob.length(), 0);
-                bob.append(' ');
-            }
-            if (event.location != null) {
-                bob.append(drawTextSanitizer(event.location.toString(),
-                        MAX_EVENT_TEXT_LEN - bob.length()));
-            }
-
-            switch (event.selfAttendeeStatus) {
-                case Attendees.ATTENDEE_STATUS_INVITED:
-                    paint.setColor(event.color);
-                    break;
-                case Attendees.ATTENDEE_STATUS_DECLINED:
-                    paint.setColor(mEventTextColor);
-                    paint.setAlpha(Utils.DECLINED_EVENT_TEXT_ALPHA);
-                    break;
-                case Attendees.ATTENDEE_STATUS_NONE: // Your own events
-                case Attendees.ATTENDEE_STATUS_ACCEPTED:
-                case Attendees.ATTENDEE_STATUS_TENTATIVE:
-                default:
-                    paint.setColor(mEventTextColor);
-                    break;
-            }
+            setEventTextColor(paint, event, mEventTextColor);
 
             // Leave a one pixel boundary on the left and right of the rectangle for the event
-            layout = new StaticLayout(bob, 0, bob.length(), new TextPaint(paint), r.width(),
-                    Alignment.ALIGN_NORMAL, 1.0f, 0.0f, true, null, r.width());
+            layout = mLayoutCache.getLayout(event, paint, r.width());
 
             layouts[i] = layout;
         }
@@ -4006,14 +4118,17 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         mSelectionRect.right = mSelectionRect.left + cellWidth;
 
         final ArrayList<Event> events = mEvents;
-        int numEvents = events.size();
+        final EventIndex index = mEventIndex;
+        int numEvents = index.queryDays(date, date);
         EventGeometry geometry = mEventGeometry;
 
         final int viewEndY = mViewStartY + mViewHeight - DAY_HEADER_HEIGHT - mAlldayHeight;
 
         int alpha = eventTextPaint.getAlpha();
         eventTextPaint.setAlpha(mEventsAlpha);
-        for (int i = 0; i < numEvents; i++) {
+        for (int n = 0; n < numEvents; n++) {
+            // i is the event's index in events and mLayouts
+            int i = index.getResult(n);
             Event event = events.get(i);
             if (!geometry.computeEventRect(date, left, top, cellWidth, event)) {
                 continue;
@@ -4114,26 +4229,6 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         mRect.right = (int) event.right - EVENT_RECT_RIGHT_MARGIN;
     }
 
-
-    // Sanitize a string before passing it to drawText or else we get little
-    // squares. For newlines and tabs before a comma, delete the character.
-    // Otherwise, just replace them with a space.
-    private String drawTextSanitizer(String string, int maxEventTextLen) {
-        Matcher m = drawTextSanitizerFilter.matcher(string);
-        string = m.replaceAll(",");
-
-        int len = string.length();
-        if (maxEventTextLen <= 0) {
-            string = "";
-            len = 0;
-        } else if (len > maxEventTextLen) {
-            string = string.substring(0, maxEventTextLen);
-            len = maxEventTextLen;
-        }
-
-        return string.replace('\n', ' ');
-    }
-
     private void drawEventText(StaticLayout eventLayout, Canvas canvas,
                                int top, int bottom, boolean center)
     {
@@ -4715,7 +4810,9 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
             view.mBaseDate.monthDay -= mNumDays;
             view.setSelectedDay(mSelectionDay - mNumDays);
             switchForward = false;
+            mSwipeDirection = -1;
         } else {
+            mSwipeDirection = 1;
             view.mBaseDate.monthDay += mNumDays;
             view.setSelectedDay(mSelectionDay + mNumDays);
             switchForward = true;
@@ -5019,7 +5116,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         mClickedEvent = null;
         int cellWidth = mCellWidth;
         ArrayList<Event> events = mEvents;
-        int numEvents = events.size();
+        int numEvents;
         int top = mFirstHourOffset + mFirstCell - mFirstHour * (mCellHeight + HOUR_GAP);
         if (x < mHoursWidth) {
             if (y < mFirstCell) { return false; } // nothing to select here
@@ -5040,9 +5137,9 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
                 maxUnexpandedColumn--;
             }
             events = mAllDayEvents;
-            numEvents = events.size();
-            for (int i = 0; i < numEvents; i++) {
-                Event event = events.get(i);
+            numEvents = mAllDayIndex.queryDays(mClickedDay, mClickedDay);
+            for (int n = 0; n < numEvents; n++) {
+                Event event = events.get(mAllDayIndex.getResult(n));
                 if (!event.drawAsAllday() ||
                     (!mShowAllAllDayEvents && event.getColumn() >= maxUnexpandedColumn)) {
                     // Don't check non-allday events or events that aren't shown
@@ -5101,8 +5198,9 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
 
             EventGeometry geometry = mEventGeometry;
 
-            for (int i = 0; i < numEvents; i++) {
-                Event event = events.get(i);
+            numEvents = mEventIndex.queryDays(mClickedDay, mClickedDay);
+            for (int n = 0; n < numEvents; n++) {
+                Event event = events.get(mEventIndex.getResult(n));
                 if (!geometry.computeEventRect(mClickedDay, left, top, cellWidth, event)) {
                     continue;
                 }
@@ -5174,6 +5272,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         }
         mPaused = true;
         mLastPopupEventID = INVALID_EVENT_ID;
+        mEventLoader.cancel(mLoadId);
         if (mHandler != null) {
             mHandler.removeCallbacks(mDismissPopup);
             mHandler.removeCallbacks(mUpdateCurrentTime);
@@ -41,8 +41,9 @@ import com.android.calendar.settings.GeneralPreferences;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -75,6 +76,35 @@ public class Event implements Cloneable {
     private static final String SORT_ALLDAY_BY =
             "startDay ASC, endDay DESC, title ASC";
     private static final String DISPLAY_AS_ALLDAY = "dispAllday";
+    // Load timed and all day instances with one query instead of two.
+    private static final boolean SINGLE_QUERY = true;
+    /**
+     * The same order as SORT_ALLDAY_BY, for sorting all day events which
+     * came back from a query in SORT_EVENTS_BY order.
+     *
+     * An event which had a null or empty title is marked untitled, and
+     * sorts first, as SQL sorts NULL and '' before any other title. An
+     * event which really has the placeholder text as its title sorts by
+     * its text.
+     */
+    private static final Comparator<Event> ALLDAY_ORDER = new Comparator<Event>() {
+        @Override
+        public int compare(Event a, Event b) {
+            if (a.startDay != b.startDay) {
+                return a.startDay < b.startDay ? -1 : 1;
+            }
+            if (a.endDay != b.endDay) {
+                return a.endDay > b.endDay ? -1 : 1;
+            }
+            boolean aUntitled = a.untitled;
+            boolean bUntitled = b.untitled;
+            if (aUntitled || bUntitled) {
+                // Untitled events keep their query order among themselves
+                return aUntitled == bUntitled ? 0 : (aUntitled ? -1 : 1);
+            }
+            return a.title.toString().compareTo(b.title.toString());
+        }
+    };
     // The projection to use when querying instances to build a list of events
     public static final String[] EVENT_PROJECTION = new String[] {
             Instances.TITLE,
@@ -103,42 +133,42 @@ public class Event implements Cloneable {
     // and avoids the maintenance burden of keeping track of the indices by hand.
     private static final List<String> eventProjection = Arrays.asList(EVENT_PROJECTION);
     // The indices for the projection array above.
-    private static final int PROJECTION_TITLE_INDEX =
+    /* package */ static final int PROJECTION_TITLE_INDEX =
         eventProjection.indexOf(Instances.TITLE);
-    private static final int PROJECTION_LOCATION_INDEX =
+    /* package */ static final int PROJECTION_LOCATION_INDEX =
         eventProjection.indexOf(Instances.EVENT_LOCATION);
-    private static final int PROJECTION_ALL_DAY_INDEX =
+    /* package */ static final int PROJECTION_ALL_DAY_INDEX =
         eventProjection.indexOf(Instances.ALL_DAY);
-    private static final int PROJECTION_COLOR_INDEX =
+    /* package */ static final int PROJECTION_COLOR_INDEX =
         eventProjection.indexOf(Instances.DISPLAY_COLOR);
     @SuppressWarnings("unused")
-    private static final int PROJECTION_TIMEZONE_INDEX =
+    /* package */ static final int PROJECTION_TIMEZONE_INDEX =
         eventProjection.indexOf(Instances.EVENT_TIMEZONE);
-    private static final int PROJECTION_EVENT_ID_INDEX =
+    /* package */ static final int PROJECTION_EVENT_ID_INDEX =
         eventProjection.indexOf(Instances.EVENT_ID);
-    private static final int PROJECTION_BEGIN_INDEX =
+    /* package */ static final int PROJECTION_BEGIN_INDEX =
         eventProjection.indexOf(Instances.BEGIN);
-    private static final int PROJECTION_END_INDEX =
+    /* package */ static final int PROJECTION_END_INDEX =
         eventProjection.indexOf(Instances.END);
-    private static final int PROJECTION_START_DAY_INDEX =
+    /* package */ static final int PROJECTION_START_DAY_INDEX =
         eventProjection.indexOf(Instances.START_DAY);
-    private static final int PROJECTION_END_DAY_INDEX =
+    /* package */ static final int PROJECTION_END_DAY_INDEX =
         eventProjection.indexOf(Instances.END_DAY);
-    private static final int PROJECTION_START_MINUTE_INDEX =
+    /* package */ static final int PROJECTION_START_MINUTE_INDEX =
         eventProjection.indexOf(Instances.START_MINUTE);
-    private static final int PROJECTION_END_MINUTE_INDEX =
+    /* package */ static final int PROJECTION_END_MINUTE_INDEX =
         eventProjection.indexOf(Instances.END_MINUTE);
-    private static final int PROJECTION_HAS_ALARM_INDEX =
+    /* package */ static final int PROJECTION_HAS_ALARM_INDEX =
         eventProjection.indexOf(Instances.HAS_ALARM);
-    private static final int PROJECTION_RRULE_INDEX =
+    /* package */ static final int PROJECTION_RRULE_INDEX =
         eventProjection.indexOf(Instances.RRULE);
-    private static final int PROJECTION_RDATE_INDEX =
+    /* package */ static final int PROJECTION_RDATE_INDEX =
         eventProjection.indexOf(Instances.RDATE);
-    private static final int PROJECTION_SELF_ATTENDEE_STATUS_INDEX =
+    /* package */ static final int PROJECTION_SELF_ATTENDEE_STATUS_INDEX =
         eventProjection.indexOf(Instances.SELF_ATTENDEE_STATUS);
-    private static final int PROJECTION_ORGANIZER_INDEX =
+    /* package */ static final int PROJECTION_ORGANIZER_INDEX =
         eventProjection.indexOf(Events.ORGANIZER);
-    private static final int PROJECTION_GUESTS_CAN_MODIFY =
+    /* package */ static final int PROJECTION_GUESTS_CAN_MODIFY =
         eventProjection.indexOf(Instances.GUESTS_CAN_MODIFY);
 
     private static final String EVENTS_WHERE = DISPLAY_AS_ALLDAY + "=0";
@@ -148,6 +178,9 @@ public class Event implements Cloneable {
     public long id;
     public int color;
     public CharSequence title;
+    // True if the title was null or empty, and has been replaced by the
+    // "no title" label
+    public boolean untitled;
     public CharSequence location;
     public boolean allDay;
     public String organizer;
@@ -174,9 +207,23 @@ public class Event implements Cloneable {
 
     /**
      * Loads <i>days</i> days worth of instances starting at <i>startDay</i>.
+     * @return true if the events were loaded, false if we don't have
+     * permission to read the calendar or a more recent request has
+     * superseded this one.
      */
-    public static void loadEvents(Context context, ArrayList<Event> events, int startDay, int days,
+    public static boolean loadEvents(Context context, ArrayList<Event> events, int startDay, int days,
             int requestId, AtomicInteger sequenceNumber) {
+        return loadEvents(context, events, startDay, days, requestId, sequenceNumber,
+            SINGLE_QUERY);
+    }
+
+    /**
+     * As above, but lets the caller choose between a single query for both
+     * timed and all day instances and the old pair of queries.
+     */
+    /* package */ static boolean loadEvents(Context context, ArrayList<Event> events,
+            int startDay, int days, int requestId, AtomicInteger sequenceNumber,
+            boolean singleQuery) {
 
         if (PROFILE) {
             Debug.startMethodTracing("loadEvents");
@@ -186,7 +233,7 @@ public class Event implements Cloneable {
                 Manifest.permission.READ_CALENDAR)
                 != PackageManager.PERMISSION_GRANTED) {
             //If permission is not granted then just return.
-            return;
+            return false;
         }
 
         Cursor cEvents = null;
@@ -210,14 +257,35 @@ public class Event implements Cloneable {
             SharedPreferences prefs = GeneralPreferences.Companion.getSharedPreferences(context);
             boolean hideDeclined = prefs.getBoolean(GeneralPreferences.KEY_HIDE_DECLINED,
                     false);
+            String hideString = Instances.SELF_ATTENDEE_STATUS + "!="
+                    + Attendees.ATTENDEE_STATUS_DECLINED;
+
+            if (singleQuery) {
+                // The provider only has to expand recurring events over the
+                // range once. The timed instances come back in the right
+                // order, but the all day ones are sorted by their start day
+                // rather than their start time, so we sort those ourselves.
+                cEvents = instancesQuery(context.getContentResolver(), startDay,
+                        endDay, hideDeclined ? hideString : null, SORT_EVENTS_BY);
+
+                // Check if we should return early because there are more recent
+                // load requests waiting.
+                if (requestId != sequenceNumber.get()) {
+                    return false;
+                }
+
+                ArrayList<Event> allDayEvents = new ArrayList<>();
+                addEventsFromCursor(events, allDayEvents, cEvents, context);
+                Collections.sort(allDayEvents, ALLDAY_ORDER);
+                events.addAll(allDayEvents);
+                return true;
+            }
 
             String where = EVENTS_WHERE;
             String whereAllday = ALLDAY_WHERE;
             if (hideDeclined) {
-                String hideString = " AND " + Instances.SELF_ATTENDEE_STATUS + "!="
-                        + Attendees.ATTENDEE_STATUS_DECLINED;
-                where += hideString;
-                whereAllday += hideString;
+                where += " AND " + hideString;
+                whereAllday += " AND " + hideString;
             }
 
             cEvents = instancesQuery(context.getContentResolver(), startDay,
@@ -228,12 +296,14 @@ public class Event implements Cloneable {
             // Check if we should return early because there are more recent
             // load requests waiting.
             if (requestId != sequenceNumber.get()) {
-                return;
+                return false;
             }
 
-            buildEventsFromCursor(events, cEvents, context, startDay, endDay);
-            buildEventsFromCursor(events, cAllday, context, startDay, endDay);
-
+            // Each query only returns the events of one kind, so they can
+            // both go straight into events.
+            addEventsFromCursor(events, events, cEvents, context);
+            addEventsFromCursor(events, events, cAllday, context);
+            return true;
         } finally {
             if (cEvents != null) {
                 cEvents.close();
@@ -319,6 +389,44 @@ public class Event implements Cloneable {
         }
     }
 
+    /**
+     * Adds all the events from a cursor returned by instancesQuery(), which
+     * only returns instances in the range that was asked for, so we don't
+     * need to check their days again. Events drawn as all day events go to
+     * allDayEvents and the others go to events: these can be the same list.
+     *
+     * @param events The list for timed events
+     * @param allDayEvents The list for all day events
+     * @param cEvents Events to add to the lists
+     * @param context Context for getting resources
+     */
+    private static void addEventsFromCursor(ArrayList<Event> events,
+                                            ArrayList<Event> allDayEvents,
+                                            Cursor cEvents, Context context)
+    {
+        if (cEvents == null) {
+            Log.e(TAG, "addEventsFromCursor: null cursor!");
+            return;
+        }
+
+        if (cEvents.getCount() == 0) {
+            return;
+        }
+
+        Resources res = context.getResources();
+        mNoTitleString = res.getString(R.string.no_title_label);
+        mNoColorColor = res.getColor(R.color.event_center);
+        cEvents.moveToPosition(-1);
+        while (cEvents.moveToNext()) {
+            Event e = generateEventFromCursor(cEvents);
+            if (e.drawAsAllday()) {
+                allDayEvents.add(e);
+            } else {
+                events.add(e);
+            }
+        }
+    }
+
     /**
      * @param cEvents Cursor pointing at event
      * @return An event created from the cursor
@@ -335,6 +443,7 @@ public class Event implements Cloneable {
 
         if (e.title == null || e.title.length() == 0) {
             e.title = mNoTitleString;
+            e.untitled = true;
         }
 
         if (!cEvents.isNull(PROJECTION_COLOR_INDEX)) {
@@ -394,97 +503,56 @@ public class Event implements Cloneable {
 
     private static void doComputePositions(ArrayList<Event> eventsList,
             long minimumDurationMillis, boolean doAlldayEvents) {
-        final ArrayList<Event> activeList = new ArrayList<>();
+        final ColumnAllocator columns = new ColumnAllocator();
         final ArrayList<Event> groupList = new ArrayList<>();
 
         if (minimumDurationMillis < 0) {
             minimumDurationMillis = 0;
         }
 
-        long colMask = 0;
         int maxCols = 0;
         for (Event event : eventsList) {
             // Process all-day events separately
             if (event.drawAsAllday() != doAlldayEvents)
                 continue;
 
-           if (!doAlldayEvents) {
-                colMask = removeNonAlldayActiveEvents(
-                        event, activeList.iterator(), minimumDurationMillis, colMask);
+            // Remove the inactive events. An active all-day event becomes
+            // inactive when its end day is less than the current event's
+            // start day, and any other event when its end time is less than
+            // or equal to the current event's start time.
+            long start;
+            long end;
+            if (doAlldayEvents) {
+                start = event.startDay;
+                end = event.endDay + 1;
             } else {
-                colMask = removeAlldayActiveEvents(event, activeList.iterator(), colMask);
+                start = event.getStartMillis();
+                end = start + Math.max(
+                        event.getEndMillis() - start, minimumDurationMillis);
             }
+            int activeCount = columns.expire(start);
 
-            // If the active list is empty, then reset the max columns, clear
-            // the column bit mask, and empty the groupList.
-            if (activeList.isEmpty()) {
+            // If there are no active events, then reset the max columns and
+            // empty the groupList.
+            if (activeCount == 0) {
                 for (Event ev : groupList) {
                     ev.setMaxColumns(maxCols);
                 }
                 maxCols = 0;
-                colMask = 0;
                 groupList.clear();
             }
 
-            // Find the first empty column.  Empty columns are represented by
-            // zero bits in the column mask "colMask".
-            int col = findFirstZeroBit(colMask);
-            if (col == 64)
-                col = 63;
-            colMask |= (1L << col);
-            event.setColumn(col);
-            activeList.add(event);
+            event.setColumn(columns.allocate(end));
             groupList.add(event);
-            int len = activeList.size();
-            if (maxCols < len)
-                maxCols = len;
+            ++activeCount;
+            if (maxCols < activeCount)
+                maxCols = activeCount;
         }
         for (Event ev : groupList) {
             ev.setMaxColumns(maxCols);
         }
     }
 
-    private static long removeAlldayActiveEvents(Event event, Iterator<Event> iter, long colMask) {
-        // Remove the inactive allday events. An event on the active list
-        // becomes inactive when the end day is less than the current event's
-        // start day.
-        while (iter.hasNext()) {
-            final Event active = iter.next();
-            if (active.endDay < event.startDay) {
-                colMask &= ~(1L << active.getColumn());
-                iter.remove();
-            }
-        }
-        return colMask;
-    }
-
-    private static long removeNonAlldayActiveEvents(
-            Event event, Iterator<Event> iter, long minDurationMillis, long colMask) {
-        long start = event.getStartMillis();
-        // Remove the inactive events. An event on the active list
-        // becomes inactive when its end time is less than or equal to
-        // the current event's start time.
-        while (iter.hasNext()) {
-            final Event active = iter.next();
-
-            final long duration = Math.max(
-                    active.getEndMillis() - active.getStartMillis(), minDurationMillis);
-            if ((active.getStartMillis() + duration) <= start) {
-                colMask &= ~(1L << active.getColumn());
-                iter.remove();
-            }
-        }
-        return colMask;
-    }
-
-    public static int findFirstZeroBit(long val) {
-        for (int ii = 0; ii < 64; ++ii) {
-            if ((val & (1L << ii)) == 0)
-                return ii;
-        }
-        return 64;
-    }
-
     /**
      * Indicates whether some other object is "equal to" this one.
      * <p>
@@ -572,6 +640,7 @@ public class Event implements Cloneable {
         Event e = new Event();
 
         e.title = title;
+        e.untitled = untitled;
         e.color = color;
         e.location = location;
         e.allDay = allDay;
@@ -593,6 +662,7 @@ public class Event implements Cloneable {
     public final void copyTo(Event dest) {
         dest.id = id;
         dest.title = title;
+        dest.untitled = untitled;
         dest.color = color;
         dest.location = location;
         dest.allDay = allDay;
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+
+/**
+ * A cache of instances loaded by {@link EventLoader}, organised by Julian day.
+ * Swiping a DayView moves the visible range by a few days, and most of the
+ * new range has usually just been loaded, so we remember what we got and
+ * only ask the provider for the days which we haven't seen yet.
+ *
+ * Each cached day holds every instance which overlaps it, so an instance
+ * lasting several days is held by each of them: {@link #get} makes sure
+ * that it is only returned once. The lists for each day are kept in the
+ * order in which the provider returned them, which makes the assembled list
+ * come out in the same order as a single query over the whole range would.
+ *
+ * The cache belongs to the EventLoader, so both the DayViews in the
+ * DayFragment's ViewSwitcher share it. All access is synchronized because
+ * it is read and filled on the loader thread but invalidated from the UI
+ * thread.
+ */
+class EventCache {
+
+    // A rough estimate of the memory used by an Event and its strings.
+    private static final int EVENT_SIZE_ESTIMATE = 400;
+    // The cache may use up to this fraction of the maximum heap size.
+    private static final int HEAP_FRACTION = 32;
+
+    /**
+     * The instances overlapping one day. Timed instances and instances
+     * drawn as all day are kept separately because they are sorted
+     * differently, see Event.SORT_EVENTS_BY and Event.SORT_ALLDAY_BY.
+     */
+    private static class Day {
+        final ArrayList<Event> events = new ArrayList<>();
+        final ArrayList<Event> allDayEvents = new ArrayList<>();
+    }
+
+    private final LruCache<Integer, Day> mDays;
+    private String mTimezone;
+    // Incremented by invalidate() so that loads which started before the
+    // invalidation don't put stale results into the cache.
+    private int mGeneration;
+
+    EventCache() {
+        long maxEvents = Runtime.getRuntime().maxMemory()
+            / HEAP_FRACTION / EVENT_SIZE_ESTIMATE;
+        mDays = new LruCache<Integer, Day>((int)Math.min(maxEvents, Integer.MAX_VALUE)) {
+            @Override
+            protected int sizeOf(Integer julianDay, Day day) {
+                // Count an empty day as one so that it isn't free.
+                return 1 + day.events.size() + day.allDayEvents.size();
+            }
+        };
+    }
+
+    /**
+     * Forget everything: called when the calendar data has changed.
+     */
+    synchronized void invalidate() {
+        mDays.evictAll();
+        ++mGeneration;
+    }
+
+    /**
+     * Forget the days which may have been affected by a change to the
+     * calendar data, keeping the rest.
+     */
+    synchronized void invalidate(EventChangeTracker.Changes changes) {
+        if (changes.needsFullReload()) {
+            invalidate();
+            return;
+        }
+        for (int i = 0; i < changes.getRangeCount(); ++i) {
+            int lastDay = changes.getLastDay(i);
+            for (int day = changes.getFirstDay(i); day <= lastDay; ++day) {
+                mDays.remove(day);
+            }
+        }
+        // Loads in progress may have read the old data for those days.
+        ++mGeneration;
+    }
+
+    /**
+     * Julian days depend on the time zone, so if it has changed since we
+     * last loaded anything, the cached days are no use to us.
+     * @param timezone the time zone which the next load will use
+     */
+    synchronized void checkTimezone(String timezone) {
+        if (!TextUtils.equals(timezone, mTimezone)) {
+            invalidate();
+            mTimezone = timezone;
+        }
+    }
+
+    synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * @return the first day in the range which isn't in the cache, or
+     * endDay + 1 if they all are.
+     */
+    synchronized int firstMissingDay(int startDay, int endDay) {
+        for (int day = startDay; day <= endDay; ++day) {
+            if (mDays.get(day) == null) {
+                return day;
+            }
+        }
+        return endDay + 1;
+    }
+
+    /**
+     * @return the last day in the range which isn't in the cache, or
+     * startDay - 1 if they all are.
+     */
+    synchronized int lastMissingDay(int startDay, int endDay) {
+        for (int day = endDay; day >= startDay; --day) {
+            if (mDays.get(day) == null) {
+                return day;
+            }
+        }
+        return startDay - 1;
+    }
+
+    /**
+     * Adds the result of a load to the cache.
+     * @param generation the value of getGeneration() before the load started:
+     *                   if the cache has been invalidated since then, the
+     *                   result is discarded.
+     * @param startDay the first day which was loaded
+     * @param endDay the last day which was loaded
+     * @param loaded the events returned by Event.loadEvents()
+     */
+    synchronized void put(int generation, int startDay, int endDay,
+                          ArrayList<Event> loaded)
+    {
+        if (generation != mGeneration) {
+            return;
+        }
+        Day[] days = new Day[endDay - startDay + 1];
+        for (int i = 0; i < days.length; ++i) {
+            days[i] = new Day();
+        }
+        for (Event e : loaded) {
+            int first = Math.max(e.startDay, startDay);
+            int last = Math.min(e.endDay, endDay);
+            boolean allDay = e.drawAsAllday();
+            for (int day = first; day <= last; ++day) {
+                Day d = days[day - startDay];
+                if (allDay) {
+                    d.allDayEvents.add(e);
+                } else {
+                    d.events.add(e);
+                }
+            }
+        }
+        for (int i = 0; i < days.length; ++i) {
+            mDays.put(startDay + i, days[i]);
+        }
+    }
+
+    /**
+     * Fills events with copies of the cached instances overlapping the
+     * range, in the same order as Event.loadEvents() would have produced.
+     * We return copies because DayView stores its layout in the Event
+     * objects and the two DayViews may be showing the same instance.
+     * @return true if the whole range was in the cache, false (and events
+     * unchanged) if not.
+     */
+    synchronized boolean get(int startDay, int endDay, ArrayList<Event> events) {
+        Day[] days = new Day[endDay - startDay + 1];
+        for (int i = 0; i < days.length; ++i) {
+            days[i] = mDays.get(startDay + i);
+            if (days[i] == null) {
+                return false;
+            }
+        }
+        events.clear();
+        // Timed events first, then all day ones, as Event.loadEvents() does.
+        for (int i = 0; i < days.length; ++i) {
+            addFirstOccurrences(days[i].events, startDay, startDay + i, events);
+        }
+        for (int i = 0; i < days.length; ++i) {
+            addFirstOccurrences(days[i].allDayEvents, startDay, startDay + i, events);
+        }
+        return true;
+    }
+
+    // Copy the events from one day's list whose first day in the range
+    // is that day, so that each event is only copied once.
+    private static void addFirstOccurrences(ArrayList<Event> list, int startDay,
+                                            int day, ArrayList<Event> events)
+    {
+        for (Event e : list) {
+            if (Math.max(e.startDay, startDay) == day) {
+                Event copy = new Event();
+                e.copyTo(copy);
+                events.add(copy);
+            }
+        }
+    }
+}
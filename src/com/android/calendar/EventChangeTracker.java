@@ -0,0 +1,481 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.provider.CalendarContract.Calendars;
+import android.provider.CalendarContract.Events;
+import android.text.format.Time;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Works out which days are affected when the provider tells us that the
+ * calendar data has changed, so that the views only reload those days.
+ *
+ * A sync adapter touches every event that it uploads or downloads, and
+ * most of those writes only change its own bookkeeping columns (DIRTY,
+ * _SYNC_ID and so on), which make no difference to what we draw. When a
+ * change is notified, we ask the {@link EventScanner}, whose scan of the
+ * Events table (which is much cheaper than expanding Instances) is shared
+ * with the other clients, which events have changed since our last scan.
+ * We read only those rows, and compare a fingerprint of the columns which
+ * we show with the one we kept for each event in the visible calendars.
+ *
+ * The result is a {@link Changes} listing the Julian days which the
+ * changed events covered before and after the change. If a recurrence
+ * rule changed, or a recurring event which doesn't end was added or
+ * removed, we can't bound the affected days, and the Changes asks for a
+ * full reload.
+ *
+ * Scans run on AsyncTask.SERIAL_EXECUTOR, and notifications which arrive
+ * while a scan is waiting to start are folded into it. The result is
+ * posted to the handler given to the constructor.
+ */
+public class EventChangeTracker {
+    private static final String TAG = "EventChangeTracker";
+    private static final boolean DEBUG = false;
+
+    // If a change touches more separate ranges of days than this, it's
+    // cheaper to reload everything than to check them all.
+    private static final int MAX_RANGES = 32;
+
+    /* package */ static final String[] PROJECTION = new String[] {
+        Events._ID,
+        Events.CALENDAR_ID,
+        Events.DTSTART,
+        Events.DTEND,
+        Events.LAST_DATE,
+        Events.ORIGINAL_INSTANCE_TIME,
+        Events.RRULE,
+        Events.RDATE,
+        Events.EXRULE,
+        Events.EXDATE,
+        // The remaining columns are only fingerprinted
+        Events.TITLE,
+        Events.EVENT_LOCATION,
+        Events.ALL_DAY,
+        Events.DURATION,
+        Events.DISPLAY_COLOR,
+        Events.EVENT_TIMEZONE,
+        Events.HAS_ALARM,
+        Events.SELF_ATTENDEE_STATUS,
+        Events.STATUS,
+        Events.ORGANIZER,
+        Events.GUESTS_CAN_MODIFY,
+        Events.ORIGINAL_ID,
+    };
+    private static final List<String> projection = Arrays.asList(PROJECTION);
+    private static final int PROJECTION_ID_INDEX = projection.indexOf(Events._ID);
+    private static final int PROJECTION_CALENDAR_ID_INDEX =
+        projection.indexOf(Events.CALENDAR_ID);
+    private static final int PROJECTION_DTSTART_INDEX = projection.indexOf(Events.DTSTART);
+    private static final int PROJECTION_DTEND_INDEX = projection.indexOf(Events.DTEND);
+    private static final int PROJECTION_LAST_DATE_INDEX = projection.indexOf(Events.LAST_DATE);
+    private static final int PROJECTION_ORIGINAL_INSTANCE_TIME_INDEX =
+        projection.indexOf(Events.ORIGINAL_INSTANCE_TIME);
+    private static final int PROJECTION_RRULE_INDEX = projection.indexOf(Events.RRULE);
+    private static final int PROJECTION_RDATE_INDEX = projection.indexOf(Events.RDATE);
+    private static final int PROJECTION_EXDATE_INDEX = projection.indexOf(Events.EXDATE);
+
+    // Events in calendars which we don't show don't matter, and deleted
+    // events are only kept until the sync adapter has told the server.
+    private static final String SELECTION =
+        Calendars.VISIBLE + "=1 AND " + Events.DELETED + "=0";
+
+    /**
+     * Receives the result of a scan on the UI thread.
+     */
+    public interface Listener {
+        void onEventsChanged(Changes changes);
+    }
+
+    /**
+     * The days affected by a change to the calendar data.
+     */
+    public static class Changes {
+        private boolean mFullReload;
+        // Sorted, non overlapping, inclusive pairs of Julian days
+        private int[] mRanges = new int[8];
+        private int mCount;
+
+        /**
+         * @return true if nothing we show has changed
+         */
+        public boolean isEmpty() {
+            return !mFullReload && mCount == 0;
+        }
+
+        /**
+         * @return true if the affected days couldn't be worked out, so
+         * everything must be reloaded
+         */
+        public boolean needsFullReload() {
+            return mFullReload;
+        }
+
+        /**
+         * @return true if any day from firstDay to lastDay inclusive may
+         * have changed
+         */
+        public boolean intersects(int firstDay, int lastDay) {
+            if (mFullReload) {
+                return true;
+            }
+            for (int i = 0; i < mCount; i += 2) {
+                if (mRanges[i] <= lastDay && mRanges[i + 1] >= firstDay) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int getRangeCount() {
+            return mCount / 2;
+        }
+
+        int getFirstDay(int range) {
+            return mRanges[2 * range];
+        }
+
+        int getLastDay(int range) {
+            return mRanges[2 * range + 1];
+        }
+
+        void setFullReload() {
+            mFullReload = true;
+            mCount = 0;
+        }
+
+        /**
+         * Adds a range of days, merging it with any ranges which it
+         * overlaps or touches.
+         */
+        public void addRange(int firstDay, int lastDay) {
+            if (mFullReload) {
+                return;
+            }
+            int i = 0;
+            while (i < mCount && mRanges[i + 1] < firstDay - 1) {
+                i += 2;
+            }
+            int j = i;
+            while (j < mCount && mRanges[j] <= lastDay + 1) {
+                firstDay = Math.min(firstDay, mRanges[j]);
+                lastDay = Math.max(lastDay, mRanges[j + 1]);
+                j += 2;
+            }
+            if (i == j) {
+                if (mCount / 2 >= MAX_RANGES) {
+                    setFullReload();
+                    return;
+                }
+                if (mCount == mRanges.length) {
+                    mRanges = Arrays.copyOf(mRanges, 2 * mCount);
+                }
+                System.arraycopy(mRanges, i, mRanges, i + 2, mCount - i);
+                mCount += 2;
+            } else if (j > i + 2) {
+                System.arraycopy(mRanges, j, mRanges, i + 2, mCount - j);
+                mCount -= j - i - 2;
+            }
+            mRanges[i] = firstDay;
+            mRanges[i + 1] = lastDay;
+        }
+
+        @Override
+        public String toString() {
+            if (mFullReload) {
+                return "full reload";
+            }
+            StringBuilder sb = new StringBuilder("days");
+            for (int i = 0; i < mCount; i += 2) {
+                sb.append(' ').append(mRanges[i]).append('-').append(mRanges[i + 1]);
+            }
+            return sb.toString();
+        }
+    }
+
+    // What we remember about each event
+    private static final class Row {
+        long hash;
+        long ruleHash;
+        // The Julian days which its instances can cover, widened by a day
+        // at each end because all day events are stored in UTC.
+        int firstDay;
+        int lastDay;
+        // False if it recurs for ever, so its days can't be bounded.
+        boolean bounded;
+    }
+
+    private final Context mContext;
+    private final EventScanner mScanner;
+    private final Handler mHandler;
+    private final Listener mListener;
+    // Only used on the executor's thread: the events in the visible
+    // calendars, or null if we don't know what the views have loaded, and
+    // the last scan which we have seen.
+    private LongSparseArray<Row> mRows;
+    private long mLastScan;
+    // Guarded by this
+    private boolean mScanPending;
+    private boolean mNotify;
+
+    private final Runnable mScan = new Runnable() {
+        @Override
+        public void run() {
+            boolean notify;
+            synchronized (EventChangeTracker.this) {
+                mScanPending = false;
+                notify = mNotify;
+                mNotify = false;
+            }
+            final Changes changes = scan();
+            if (notify && !changes.isEmpty()) {
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mListener.onEventsChanged(changes);
+                    }
+                });
+            }
+        }
+    };
+
+    public EventChangeTracker(Context context, Handler handler, Listener listener) {
+        mContext = context.getApplicationContext();
+        mScanner = EventScanner.getInstance(mContext);
+        mHandler = handler;
+        mListener = listener;
+    }
+
+    /**
+     * Compares the calendar data with what we saw last time.
+     * @param notify true to tell the listener what has changed, false if
+     *               the views are reloading everything anyway and we only
+     *               need to bring our fingerprints up to date
+     */
+    public void check(boolean notify) {
+        mScanner.markChanged();
+        synchronized (this) {
+            mNotify |= notify;
+            if (mScanPending) {
+                // The waiting scan will see this change as well.
+                return;
+            }
+            mScanPending = true;
+        }
+        AsyncTask.SERIAL_EXECUTOR.execute(mScan);
+    }
+
+    private Changes scan() {
+        long start = System.nanoTime();
+        Changes changes = new Changes();
+        Cursor cursor = null;
+        try {
+            TimeZone timeZone = TimeZone.getTimeZone(Utils.getTimeZone(mContext, null));
+            EventScanner.ChangedEvents changed = mScanner.getChangesSince(mLastScan);
+            if (changed == null || changed.isAll() || mRows == null) {
+                if (changed != null) {
+                    cursor = query(SELECTION);
+                }
+                changes = update(cursor, timeZone);
+            } else {
+                long[] ids = changed.getIds();
+                for (int i = 0; i < ids.length; i += EventScanner.MAX_IDS_PER_QUERY) {
+                    int end = Math.min(i + EventScanner.MAX_IDS_PER_QUERY, ids.length);
+                    cursor = query(SELECTION + " AND "
+                        + EventScanner.buildIdSelection(Events._ID, ids, i, end));
+                    if (cursor == null) {
+                        update(null, timeZone);
+                        changes.setFullReload();
+                        break;
+                    }
+                    update(cursor, Arrays.copyOfRange(ids, i, end), timeZone, changes);
+                    cursor.close();
+                    cursor = null;
+                }
+            }
+            if (changed != null) {
+                mLastScan = changed.getScan();
+            }
+        } catch (RuntimeException e) {
+            // We may have lost permission to read the calendar.
+            Log.e(TAG, "Scanning events failed", e);
+            mRows = null;
+            changes = new Changes();
+            changes.setFullReload();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        if (DEBUG) {
+            Log.d(TAG, "Scanned events in " + (System.nanoTime() - start) / 1000
+                + "us: " + changes);
+        }
+        return changes;
+    }
+
+    private Cursor query(String selection) {
+        return mContext.getContentResolver().query(
+            Events.CONTENT_URI, PROJECTION, selection, null, null);
+    }
+
+    /**
+     * Reads all the events from the cursor, remembers them, and works out
+     * what has changed since the last time.
+     * @param cursor the events, as returned for PROJECTION, or null if the
+     *               query failed
+     * @param timeZone the time zone which the views use
+     */
+    /* package */ Changes update(Cursor cursor, TimeZone timeZone) {
+        Changes changes = new Changes();
+        if (cursor == null) {
+            mRows = null;
+            changes.setFullReload();
+            return changes;
+        }
+        LongSparseArray<Row> rows = new LongSparseArray<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            rows.put(cursor.getLong(PROJECTION_ID_INDEX), readRow(cursor, timeZone));
+        }
+        LongSparseArray<Row> old = mRows;
+        mRows = rows;
+        if (old == null) {
+            // We don't know what the views have loaded.
+            changes.setFullReload();
+            return changes;
+        }
+        for (int i = 0; i < rows.size(); ++i) {
+            compare(changes, old.get(rows.keyAt(i)), rows.valueAt(i));
+        }
+        // Events which have gone, or whose calendar has been hidden
+        for (int i = 0; i < old.size(); ++i) {
+            if (rows.get(old.keyAt(i)) == null) {
+                addRow(changes, old.valueAt(i));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Reads the events from the cursor, which has the rows which are still
+     * visible of those which the {@link EventScanner} says have changed,
+     * and adds what has changed since the last time to changes.
+     * @param cursor the events, as returned for PROJECTION
+     * @param ids the ids of the events which may have changed
+     * @param timeZone the time zone which the views use
+     */
+    /* package */ void update(Cursor cursor, long[] ids, TimeZone timeZone, Changes changes) {
+        LongSparseArray<Row> rows = new LongSparseArray<>(ids.length);
+        while (cursor.moveToNext()) {
+            rows.put(cursor.getLong(PROJECTION_ID_INDEX), readRow(cursor, timeZone));
+        }
+        for (long id : ids) {
+            Row row = rows.get(id);
+            Row oldRow = mRows.get(id);
+            if (row == null) {
+                if (oldRow != null) {
+                    addRow(changes, oldRow);
+                    mRows.remove(id);
+                }
+            } else {
+                compare(changes, oldRow, row);
+                mRows.put(id, row);
+            }
+        }
+    }
+
+    private static void compare(Changes changes, Row oldRow, Row row) {
+        if (oldRow == null) {
+            addRow(changes, row);
+        } else if (oldRow.hash != row.hash) {
+            if (oldRow.ruleHash != row.ruleHash) {
+                changes.setFullReload();
+            } else {
+                addRow(changes, oldRow);
+                addRow(changes, row);
+            }
+        }
+    }
+
+    private static void addRow(Changes changes, Row row) {
+        if (row.bounded) {
+            changes.addRange(row.firstDay, row.lastDay);
+        } else {
+            changes.setFullReload();
+        }
+    }
+
+    private static int julianDay(long millis, TimeZone timeZone) {
+        return Time.getJulianDay(millis, timeZone.getOffset(millis) / 1000);
+    }
+
+    private static Row readRow(Cursor cursor, TimeZone timeZone) {
+        Row row = new Row();
+        // Fingerprints of the columns which we show, and separately of
+        // the recurrence rules.
+        long hash = Fingerprint.START;
+        long ruleHash = hash;
+        int count = cursor.getColumnCount();
+        for (int i = 0; i < count; ++i) {
+            if (i == PROJECTION_ID_INDEX || i == PROJECTION_CALENDAR_ID_INDEX) {
+                continue;
+            }
+            String value = cursor.getString(i);
+            hash = Fingerprint.add(hash, value);
+            if (i >= PROJECTION_RRULE_INDEX && i <= PROJECTION_EXDATE_INDEX) {
+                ruleHash = Fingerprint.add(ruleHash, value);
+            }
+        }
+        row.hash = hash;
+        row.ruleHash = ruleHash;
+
+        long dtStart = cursor.getLong(PROJECTION_DTSTART_INDEX);
+        long end;
+        if (!cursor.isNull(PROJECTION_LAST_DATE_INDEX)) {
+            end = cursor.getLong(PROJECTION_LAST_DATE_INDEX);
+        } else if (   cursor.isNull(PROJECTION_RRULE_INDEX)
+                   && cursor.isNull(PROJECTION_RDATE_INDEX))
+        {
+            end = cursor.isNull(PROJECTION_DTEND_INDEX)
+                ? dtStart : cursor.getLong(PROJECTION_DTEND_INDEX);
+        } else {
+            // A recurring event with no last date goes on for ever.
+            return row;
+        }
+        long first = dtStart;
+        if (!cursor.isNull(PROJECTION_ORIGINAL_INSTANCE_TIME_INDEX)) {
+            // An exception also changes the day of the instance it replaces.
+            long original = cursor.getLong(PROJECTION_ORIGINAL_INSTANCE_TIME_INDEX);
+            first = Math.min(first, original);
+            end = Math.max(end, original);
+        }
+        row.firstDay = julianDay(first, timeZone) - 1;
+        row.lastDay = julianDay(Math.max(first, end), timeZone) + 1;
+        row.bounded = true;
+        return row;
+    }
+}
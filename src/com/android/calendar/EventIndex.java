@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An interval tree over a list of events, which finds the events
+ * overlapping a time range, or a point in time, in O(log n + k) where k is
+ * the number of events found, instead of looking at every event.
+ *
+ * Events are identified by their position in the list which the index was
+ * built from, so that callers can use the id to find the event and anything
+ * else which they keep for it by position, such as a layout. The index is
+ * built once for each list, by {@link #forEvents}, and isn't changed after
+ * that: a reload builds a new one along with the new layout.
+ *
+ * The tree is a treap, ordered by the start of each interval and augmented
+ * with the latest end in each subtree, and is held in parallel arrays
+ * indexed by id so that building it doesn't allocate a node per event.
+ * Intervals are closed: an event overlaps [from, to] if it starts at or
+ * before to and ends at or after from.
+ *
+ * The index isn't thread safe: each thread which uses it needs its own.
+ */
+public class EventIndex {
+
+    /**
+     * Key events by startMillis and endMillis. An event which ends at
+     * exactly the same time as another one starts doesn't overlap it.
+     */
+    public static final int BY_MILLIS = 0;
+    /**
+     * Key events by startDay and endDay.
+     */
+    public static final int BY_DAY = 1;
+    /**
+     * Key events by the minute since the start of Julian day 0, from startDay
+     * and startTime to endDay and endTime. This gives the same result as
+     * BY_DAY for whole days, see {@link #queryDays}, but can also be
+     * queried for parts of a day.
+     */
+    public static final int BY_MINUTE = 2;
+
+    private static final int NIL = -1;
+
+    private final int mKeyType;
+    private final long mMinimumDurationMillis;
+    private int mRoot = NIL;
+    private int mSize;
+    private long[] mStart;
+    private long[] mEnd;
+    // The latest end of any interval in the subtree rooted at each node
+    private long[] mMaxEnd;
+    private int[] mLeft;
+    private int[] mRight;
+    private int[] mPriority;
+    private int[] mResult;
+    private int mResultCount;
+
+    /**
+     * Creates an empty index, for a view which has no events yet.
+     * @param keyType BY_MILLIS, BY_DAY or BY_MINUTE
+     * @param minimumDurationMillis for BY_MILLIS, shorter events are treated
+     *                              as if they lasted this long, as
+     *                              Event.computePositions() does.
+     * @param capacity the largest id + 1
+     */
+    public EventIndex(int keyType, long minimumDurationMillis, int capacity) {
+        mKeyType = keyType;
+        mMinimumDurationMillis = Math.max(minimumDurationMillis, 0);
+        allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * Creates an index over the events in a list which are, or are not,
+     * drawn as all day events.
+     */
+    public static EventIndex forEvents(ArrayList<Event> events, int keyType,
+            long minimumDurationMillis, boolean allDay)
+    {
+        int size = events.size();
+        EventIndex index = new EventIndex(keyType, minimumDurationMillis, size);
+        for (int i = 0; i < size; ++i) {
+            Event e = events.get(i);
+            if (e.drawAsAllday() == allDay) {
+                index.put(i, e);
+            }
+        }
+        return index;
+    }
+
+    private void allocate(int capacity) {
+        mStart = new long[capacity];
+        mEnd = new long[capacity];
+        mMaxEnd = new long[capacity];
+        mLeft = new int[capacity];
+        mRight = new int[capacity];
+        mPriority = new int[capacity];
+        mResult = new int[capacity];
+        for (int id = 0; id < capacity; ++id) {
+            // A fixed pseudo-random priority for each id: this keeps the
+            // treap balanced whatever order the events are added in, and
+            // makes its shape repeatable.
+            int h = id * 0x9E3779B9;
+            mPriority[id] = h ^ (h >>> 16);
+        }
+    }
+
+    public int getKeyType() {
+        return mKeyType;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    // Adds the event at position id in the list.
+    private void put(int id, Event e) {
+        switch (mKeyType) {
+            case BY_DAY:
+                put(id, e.startDay, e.endDay);
+                break;
+            case BY_MINUTE:
+                put(id, minuteKey(e.startDay, e.startTime),
+                    minuteKey(e.endDay, e.endTime));
+                break;
+            default:
+                put(id, e.startMillis, millisEndKey(e.startMillis, e.endMillis));
+                break;
+        }
+    }
+
+    private static long minuteKey(int julianDay, int minute) {
+        return (long)julianDay * DayView.MINUTES_PER_DAY + minute;
+    }
+
+    // The intervals are closed, so the last millisecond of the event is
+    // one before its end.
+    private long millisEndKey(long startMillis, long endMillis) {
+        return startMillis + Math.max(endMillis - startMillis, mMinimumDurationMillis) - 1;
+    }
+
+    private void put(int id, long start, long end) {
+        ++mSize;
+        mStart[id] = start;
+        mEnd[id] = end;
+        mLeft[id] = NIL;
+        mRight[id] = NIL;
+        mMaxEnd[id] = end;
+        mRoot = insert(mRoot, id);
+    }
+
+    // Treap order: by start, then by id so that every key is distinct.
+    private boolean before(int a, int b) {
+        return mStart[a] < mStart[b] || (mStart[a] == mStart[b] && a < b);
+    }
+
+    private void pull(int node) {
+        long maxEnd = mEnd[node];
+        int left = mLeft[node];
+        int right = mRight[node];
+        if (left != NIL && mMaxEnd[left] > maxEnd) {
+            maxEnd = mMaxEnd[left];
+        }
+        if (right != NIL && mMaxEnd[right] > maxEnd) {
+            maxEnd = mMaxEnd[right];
+        }
+        mMaxEnd[node] = maxEnd;
+    }
+
+    private int insert(int node, int id) {
+        if (node == NIL) {
+            return id;
+        }
+        if (before(id, node)) {
+            int left = insert(mLeft[node], id);
+            mLeft[node] = left;
+            if (mPriority[left] > mPriority[node]) {
+                // rotate right
+                mLeft[node] = mRight[left];
+                mRight[left] = node;
+                pull(node);
+                pull(left);
+                return left;
+            }
+        } else {
+            int right = insert(mRight[node], id);
+            mRight[node] = right;
+            if (mPriority[right] > mPriority[node]) {
+                // rotate left
+                mRight[node] = mLeft[right];
+                mLeft[right] = node;
+                pull(node);
+                pull(right);
+                return right;
+            }
+        }
+        pull(node);
+        return node;
+    }
+
+    /**
+     * Finds the events which overlap [from, to]. The ids of the events found
+     * are available from {@link #getResult} until the next query, in
+     * increasing order, which is the order of the list the index was built
+     * from.
+     * @return the number of events found
+     */
+    public int query(long from, long to) {
+        mResultCount = 0;
+        collect(mRoot, from, to);
+        Arrays.sort(mResult, 0, mResultCount);
+        return mResultCount;
+    }
+
+    /**
+     * Finds the events which include the time t.
+     * @return the number of events found
+     */
+    public int queryPoint(long t) {
+        return query(t, t);
+    }
+
+    /**
+     * Finds the events on any of the days from firstDay to lastDay. The index
+     * must be keyed BY_DAY or BY_MINUTE.
+     * @return the number of events found
+     */
+    public int queryDays(int firstDay, int lastDay) {
+        switch (mKeyType) {
+            case BY_DAY:
+                return query(firstDay, lastDay);
+            case BY_MINUTE:
+                return query(minuteKey(firstDay, 0),
+                    minuteKey(lastDay, DayView.MINUTES_PER_DAY - 1));
+            default:
+                throw new IllegalStateException("Index is not keyed by day");
+        }
+    }
+
+    /**
+     * @return the id of the n'th event found by the last query
+     */
+    public int getResult(int n) {
+        return mResult[n];
+    }
+
+    private void collect(int node, long from, long to) {
+        // Descend iteratively to the right to keep the recursion shallow.
+        while (node != NIL && mMaxEnd[node] >= from) {
+            collect(mLeft[node], from, to);
+            if (mStart[node] > to) {
+                // Everything to the right starts even later.
+                return;
+            }
+            if (mEnd[node] >= from) {
+                mResult[mResultCount++] = node;
+            }
+            node = mRight[node];
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.graphics.Paint;
+import android.text.Layout.Alignment;
+import android.text.SpannableStringBuilder;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.text.style.StyleSpan;
+import android.util.LruCache;
+
+import java.util.regex.Pattern;
+
+/**
+ * A cache of the text layouts for the events drawn by DayView. Laying out
+ * the title and location of an event is the most expensive part of drawing
+ * it, and DayView used to throw its layouts away every time it reloaded
+ * its events, which it does each time it is swiped to a new page.
+ *
+ * Layouts are looked up by the event's id, title and location, and the
+ * colour, text size and width with which they are drawn, so they survive
+ * reloads and changes to other events. The cache belongs to the
+ * DayFragment, so both the DayViews in its ViewSwitcher share it.
+ *
+ * DayView calls {@link #prepare} for the events of a page on the loader
+ * thread, after it has laid them out, so that when they are drawn the UI
+ * thread only has to look the layouts up. {@link #getLayout} still builds
+ * any layout which is missing, for instance after the view has been
+ * resized.
+ *
+ * Layouts are made on the loader thread and used on the UI thread, so
+ * they are kept in (thread safe) LruCaches.
+ */
+class EventLayoutCache {
+
+    /* package */ static final int MAX_EVENT_TEXT_LEN = 500;
+    private static final int MAX_LAYOUTS = 500;
+    private static final int MAX_TEXTS = 1000;
+
+    private static final Pattern SANITIZER_FILTER = Pattern.compile("[\t\n],");
+
+    /**
+     * What a layout depends on. Keys for the text cache have a color and
+     * width of 0, since the text doesn't depend on them.
+     */
+    private static final class Key {
+        final long id;
+        final String title;
+        final String location;
+        final float textSize;
+        final int color;
+        final int width;
+
+        Key(long id, String title, String location, float textSize, int color, int width) {
+            this.id = id;
+            this.title = title;
+            this.location = location;
+            this.textSize = textSize;
+            this.color = color;
+            this.width = width;
+        }
+
+        Key(Event event, float textSize, int color, int width) {
+            this(event.id,
+                event.title == null ? null : event.title.toString(),
+                event.location == null ? null : event.location.toString(),
+                textSize, color, width);
+        }
+
+        Key textKey() {
+            return new Key(id, title, location, textSize, 0, 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key)o;
+            return id == k.id && textSize == k.textSize && color == k.color
+                && width == k.width && TextUtils.equals(title, k.title)
+                && TextUtils.equals(location, k.location);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = (int)(id ^ (id >>> 32));
+            h = 31 * h + (title == null ? 0 : title.hashCode());
+            h = 31 * h + (location == null ? 0 : location.hashCode());
+            h = 31 * h + Float.floatToIntBits(textSize);
+            h = 31 * h + color;
+            return 31 * h + width;
+        }
+    }
+
+    private final LruCache<Key, StaticLayout> mLayouts = new LruCache<>(MAX_LAYOUTS);
+    private final LruCache<Key, CharSequence> mTexts = new LruCache<>(MAX_TEXTS);
+    private int mHits;
+    private int mMisses;
+
+    private static String sanitize(String string, int maxEventTextLen) {
+        string = SANITIZER_FILTER.matcher(string).replaceAll(",");
+        if (maxEventTextLen <= 0) {
+            string = "";
+        } else if (string.length() > maxEventTextLen) {
+            string = string.substring(0, maxEventTextLen);
+        }
+        return string.replace('\n', ' ');
+    }
+
+    // The text which DayView draws for an event: the title in bold followed
+    // by the location.
+    private static CharSequence buildText(Key key) {
+        SpannableStringBuilder bob = new SpannableStringBuilder();
+        if (key.title != null) {
+            // MAX - 1 since we add a space
+            bob.append(sanitize(key.title, MAX_EVENT_TEXT_LEN - 1));
+            bob.setSpan(new StyleSpan(android.graphics.Typeface.BOLD), 0,
+                        bob.length(), 0);
+            bob.append(' ');
+        }
+        if (key.location != null) {
+            bob.append(sanitize(key.location, MAX_EVENT_TEXT_LEN - bob.length()));
+        }
+        return bob;
+    }
+
+    private StaticLayout build(Key key, Paint paint) {
+        Key textKey = key.textKey();
+        CharSequence text = mTexts.get(textKey);
+        if (text == null) {
+            text = buildText(textKey);
+            mTexts.put(textKey, text);
+        }
+        return new StaticLayout(text, 0, text.length(), new TextPaint(paint), key.width,
+                Alignment.ALIGN_NORMAL, 1.0f, 0.0f, true, null, key.width);
+    }
+
+    /**
+     * Returns the layout of an event's text, creating it if necessary.
+     * This is called on the UI thread.
+     * @param event the event
+     * @param paint the paint to draw it with, which has its colour set
+     * @param width the width to lay it out in
+     */
+    StaticLayout getLayout(Event event, Paint paint, int width) {
+        Key key = new Key(event, paint.getTextSize(), paint.getColor(), width);
+        StaticLayout layout = mLayouts.get(key);
+        if (layout != null) {
+            ++mHits;
+            return layout;
+        }
+        ++mMisses;
+        layout = build(key, paint);
+        mLayouts.put(key, layout);
+        return layout;
+    }
+
+    /**
+     * Makes the layout of an event's text if it isn't already cached, so
+     * that {@link #getLayout} will find it. This is called on the loader
+     * thread, so the paint must not be one which the UI thread uses.
+     * @param event the event
+     * @param paint the paint it will be drawn with, which has its colour set
+     * @param width the width it will be laid out in
+     */
+    void prepare(Event event, Paint paint, int width) {
+        Key key = new Key(event, paint.getTextSize(), paint.getColor(), width);
+        if (mLayouts.get(key) == null) {
+            mLayouts.put(key, build(key, paint));
+        }
+    }
+
+    int getHits() {
+        return mHits;
+    }
+
+    int getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * @return the fraction of layouts which were found in the cache
+     */
+    float getHitRate() {
+        int total = mHits + mMisses;
+        return total == 0 ? 0f : (float)mHits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "layouts " + mLayouts.size() + ", texts " + mTexts.size()
+            + ", hits " + mHits + ", misses " + mMisses;
+    }
+}
@@ -23,28 +23,46 @@ import android.content.Context;
 import android.database.Cursor;
 import android.os.Handler;
 import android.os.Process;
+import android.os.SystemClock;
 import android.provider.CalendarContract;
 import android.provider.CalendarContract.EventDays;
+import android.text.TextUtils;
 import android.util.Log;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class EventLoader {
 
+    private static final String TAG = "EventLoader";
+
+    // Request priorities: lower numbers are taken from the queue first.
+    private static final int PRIORITY_SHUTDOWN = 0;
+    private static final int PRIORITY_VISIBLE = 1;
+    private static final int PRIORITY_PREFETCH = 2;
+    private static final int PRIORITY_BADGES = 3;
+
+    // Pending ranges are only coalesced into one query up to this many days,
+    // so that a visible load doesn't get held up by a huge query.
+    private static final int MAX_COALESCED_DAYS = 42;
+
     private final Context mContext;
     private final Handler mHandler = new Handler();
     private final AtomicInteger mSequenceNumber = new AtomicInteger();
 
-    private final LinkedBlockingQueue<LoadRequest> mLoaderQueue;
+    private final RequestQueue mLoaderQueue;
     private LoaderThread mLoaderThread;
     private final ContentResolver mResolver;
+    private final EventCache mCache = new EventCache();
+    private final Stats mStats = new Stats();
 
     public EventLoader(Context context) {
         mContext = context;
-        mLoaderQueue = new LinkedBlockingQueue<>();
+        mLoaderQueue = new RequestQueue(mStats);
         mResolver = context.getContentResolver();
     }
 
@@ -63,6 +81,22 @@ public class EventLoader {
         mLoaderThread.shutdown();
     }
 
+    /**
+     * Call this when the calendar data has changed, so that the next load
+     * goes to the provider instead of using the cached events.
+     */
+    public void invalidateCache() {
+        mCache.invalidate();
+    }
+
+    /**
+     * Call this when the calendar data has changed and we know which days
+     * are affected, so that only those days go to the provider again.
+     */
+    public void invalidateCache(EventChangeTracker.Changes changes) {
+        mCache.invalidate(changes);
+    }
+
     /**
      * Loads "numDays" days worth of events, starting at start, into events.
      * Posts uiCallback to the {@link Handler} for this view, which will run in the UI thread.
@@ -71,11 +105,30 @@ public class EventLoader {
      * the ones that were passed in on the call that results in the background thread getting
      * created are used, and the most recent call's worth of data is loaded into events and posted
      * via the uiCallback.
+     * Days which have already been loaded are taken from the cache, and only
+     * the missing ones are queried from the provider.
+     * @return an id which can be passed to cancel()
      */
-    public void loadEventsInBackground(
+    public int loadEventsInBackground(
         final int numDays, final ArrayList<Event> events,
         int startDay, final Runnable successCallback,
         final Runnable cancelCallback)
+    {
+        return loadEventsInBackground(numDays, events, startDay, null,
+            successCallback, cancelCallback);
+    }
+
+    /**
+     * As above, but also runs layoutStage on the loader thread after the
+     * events have been loaded and before successCallback is posted, so that
+     * the caller can do any work which it needs to do on the events before
+     * it can draw them without holding up the UI thread. layoutStage isn't
+     * run if the request has been superseded or cancelled.
+     */
+    public int loadEventsInBackground(
+        final int numDays, final ArrayList<Event> events,
+        int startDay, final Runnable layoutStage,
+        final Runnable successCallback, final Runnable cancelCallback)
     {
         // Increment the sequence number for requests.  We don't care if the
         // sequence numbers wrap around because we test for equality with the
@@ -84,24 +137,182 @@ public class EventLoader {
 
         // Send the load request to the background thread
         LoadEventsRequest request = new LoadEventsRequest(id, startDay, numDays,
-                events, successCallback, cancelCallback);
+                events, Utils.getTimeZone(mContext, null),
+                layoutStage, successCallback, cancelCallback);
+        mLoaderQueue.put(request);
+        return id;
+    }
+
+    /**
+     * Loads "numDays" days worth of events starting at each of startDays
+     * into the cache, in the order given, so that a later call of
+     * loadEventsInBackground() for those days doesn't have to wait for the
+     * provider. This is dropped if another load is requested before it has
+     * finished, since the user has moved on and it is probably no longer
+     * useful. Prefetches only run when no visible load is waiting.
+     */
+    public void prefetchInBackground(int numDays, int... startDays) {
+        // Don't increment the sequence number: this must not cancel the load
+        // which is currently being shown, but anything later cancels this.
+        int id = mSequenceNumber.get();
+        String timezone = Utils.getTimeZone(mContext, null);
+        for (int startDay : startDays) {
+            mLoaderQueue.put(new PrefetchRequest(id, startDay, numDays, timezone));
+        }
+    }
+
+    /**
+     * Finds out which of "numDays" days starting at startDay have any
+     * events, and sets the corresponding elements of eventDays.
+     * Posts uiCallback to the {@link Handler} when done. These requests
+     * are for decorations, so they wait until any loads of visible events
+     * or prefetches have been done.
+     */
+    public void loadEventDaysInBackground(int startDay, int numDays, boolean[] eventDays,
+            final Runnable uiCallback)
+    {
+        LoadEventDaysRequest request = new LoadEventDaysRequest(
+            startDay, numDays, eventDays, uiCallback);
+        mLoaderQueue.put(request);
+    }
+
+    /**
+     * Cancels a load started by loadEventsInBackground() if it hasn't
+     * finished yet. Its cancelCallback will be posted instead of its
+     * successCallback.
+     * @param id the value returned by loadEventsInBackground()
+     */
+    public void cancel(int id) {
+        mLoaderQueue.cancel(id, this);
+    }
+
+    /**
+     * @return a snapshot of the counters for the loader thread.
+     */
+    public Stats getStats() {
+        synchronized (mStats) {
+            Stats stats = new Stats();
+            stats.queueDepth = mStats.queueDepth;
+            stats.maxQueueDepth = mStats.maxQueueDepth;
+            stats.requests = mStats.requests;
+            stats.skipped = mStats.skipped;
+            stats.queries = mStats.queries;
+            stats.coalesced = mStats.coalesced;
+            stats.totalWaitMillis = mStats.totalWaitMillis;
+            stats.maxWaitMillis = mStats.maxWaitMillis;
+            stats.totalQueryMillis = mStats.totalQueryMillis;
+            stats.maxQueryMillis = mStats.maxQueryMillis;
+            return stats;
+        }
+    }
 
-        try {
-            mLoaderQueue.put(request);
-        } catch (InterruptedException ex) {
-            // The put() method fails with InterruptedException if the
-            // queue is full. This should never happen because the queue
-            // has no limit.
-            Log.e("Cal", "loadEventsInBackground() interrupted!");
+    /**
+     * Counters which show whether the loader thread is keeping up, for
+     * instance while a sync is changing lots of events.
+     */
+    public static class Stats {
+        public int queueDepth;          // requests waiting now
+        public int maxQueueDepth;       // most requests ever waiting at once
+        public int requests;            // requests taken from the queue
+        public int skipped;             // superseded or cancelled requests
+        public int queries;             // provider queries
+        public int coalesced;           // pending requests merged into a query
+        public long totalWaitMillis;    // time requests spent in the queue
+        public long maxWaitMillis;
+        public long totalQueryMillis;   // time spent in provider queries
+        public long maxQueryMillis;
+
+        @Override
+        public String toString() {
+            return "queued " + queueDepth + " (max " + maxQueueDepth
+                + "), requests " + requests + ", skipped " + skipped
+                + ", queries " + queries + ", coalesced " + coalesced
+                + ", wait " + totalWaitMillis + "ms (max " + maxWaitMillis
+                + "ms), query " + totalQueryMillis + "ms (max "
+                + maxQueryMillis + "ms)";
+        }
+    }
+
+    private void countQuery(long startMillis) {
+        long millis = SystemClock.uptimeMillis() - startMillis;
+        synchronized (mStats) {
+            ++mStats.queries;
+            mStats.totalQueryMillis += millis;
+            if (millis > mStats.maxQueryMillis) {
+                mStats.maxQueryMillis = millis;
+            }
+        }
+    }
+
+    /**
+     * Makes sure that the cache holds the days from startDay to endDay,
+     * querying the provider for any which are missing. This may include
+     * some cached days in the middle, but usually the missing days are all
+     * at one end. If other pending requests want days overlapping the ones
+     * which we are about to query, we load those too in the same query, so
+     * that they can be answered from the cache.
+     * Called on the loader thread.
+     * @return false if we couldn't load the missing days because we don't
+     * have permission or the request has been superseded.
+     */
+    private boolean fillCache(int id, int startDay, int endDay, String timezone) {
+        mCache.checkTimezone(timezone);
+        int generation = mCache.getGeneration();
+        int first = mCache.firstMissingDay(startDay, endDay);
+        if (first > endDay) {
+            return true;
+        }
+        int last = mCache.lastMissingDay(startDay, endDay);
+        int[] range = { first, last };
+        int coalesced = mLoaderQueue.coalesce(
+            range, timezone, mSequenceNumber.get(), MAX_COALESCED_DAYS);
+        if (coalesced > 0) {
+            synchronized (mStats) {
+                mStats.coalesced += coalesced;
+            }
+            first = mCache.firstMissingDay(range[0], range[1]);
+            last = mCache.lastMissingDay(range[0], range[1]);
+        }
+        ArrayList<Event> missing = new ArrayList<>();
+        long queryStart = SystemClock.uptimeMillis();
+        boolean loaded = Event.loadEvents(mContext, missing, first,
+            last - first + 1, id, mSequenceNumber);
+        countQuery(queryStart);
+        if (loaded) {
+            mCache.put(generation, first, last, missing);
         }
+        return loaded;
     }
 
-    private interface LoadRequest {
-        void processRequest(EventLoader eventLoader);
-        void skipRequest(EventLoader eventLoader);
+    private static abstract class LoadRequest {
+        // Set by RequestQueue.put()
+        int priority;
+        long order;
+        long queuedMillis;
+        // Set when a running request is cancelled
+        volatile boolean cancelled;
+
+        LoadRequest(int priority) {
+            this.priority = priority;
+        }
+
+        /**
+         * @return true if the request has been superseded by a later one
+         * and there is no point in doing it.
+         */
+        boolean isStale(EventLoader eventLoader) {
+            return false;
+        }
+
+        abstract void processRequest(EventLoader eventLoader);
+        abstract void skipRequest(EventLoader eventLoader);
     }
 
-    private static class ShutdownRequest implements LoadRequest {
+    private static class ShutdownRequest extends LoadRequest {
+        ShutdownRequest() {
+            super(PRIORITY_SHUTDOWN);
+        }
+
         public void processRequest(EventLoader eventLoader) {
         }
 
@@ -115,7 +326,7 @@ public class EventLoader {
      * and filling in the eventDays array.
      *
      */
-    private static class LoadEventDaysRequest implements LoadRequest {
+    private static class LoadEventDaysRequest extends LoadRequest {
         /**
          * The projection used by the EventDays query.
          */
@@ -128,6 +339,15 @@ public class EventLoader {
         public boolean[] eventDays;
         public Runnable uiCallback;
 
+        public LoadEventDaysRequest(int startDay, int numDays, boolean[] eventDays,
+                final Runnable uiCallback) {
+            super(PRIORITY_BADGES);
+            this.startDay = startDay;
+            this.numDays = numDays;
+            this.eventDays = eventDays;
+            this.uiCallback = uiCallback;
+        }
+
         @Override
         public void processRequest(EventLoader eventLoader)
         {
@@ -136,7 +356,9 @@ public class EventLoader {
             Arrays.fill(eventDays, false);
 
             //query which days have events
+            long queryStart = SystemClock.uptimeMillis();
             Cursor cursor = EventDays.query(eventLoader.mResolver, startDay, numDays, PROJECTION);
+            eventLoader.countQuery(queryStart);
             try {
                 int startDayColumnIndex = cursor.getColumnIndexOrThrow(EventDays.STARTDAY);
                 int endDayColumnIndex = cursor.getColumnIndexOrThrow(EventDays.ENDDAY);
@@ -145,9 +367,9 @@ public class EventLoader {
                 while (cursor.moveToNext()) {
                     int firstDay = cursor.getInt(startDayColumnIndex);
                     int lastDay = cursor.getInt(endDayColumnIndex);
-                    //we want the entire range the event occurs, but only within the month
+                    //we want the entire range the event occurs, but only within the range
                     int firstIndex = Math.max(firstDay - startDay, 0);
-                    int lastIndex = Math.min(lastDay - startDay, 30);
+                    int lastIndex = Math.min(lastDay - startDay, eventDays.length - 1);
 
                     for(int i = firstIndex; i <= lastIndex; i++) {
                         eventDays[i] = true;
@@ -166,31 +388,56 @@ public class EventLoader {
         }
     }
 
-    private static class LoadEventsRequest implements LoadRequest {
+    private static class LoadEventsRequest extends LoadRequest {
 
         public int id;
         public int startDay;
         public int numDays;
         public ArrayList<Event> events;
+        public String timezone;
+        public Runnable layoutStage;
         public Runnable successCallback;
         public Runnable cancelCallback;
 
         public LoadEventsRequest(int id, int startDay, int numDays, ArrayList<Event> events,
+                String timezone, final Runnable layoutStage,
                 final Runnable successCallback, final Runnable cancelCallback) {
+            super(PRIORITY_VISIBLE);
             this.id = id;
             this.startDay = startDay;
             this.numDays = numDays;
             this.events = events;
+            this.timezone = timezone;
+            this.layoutStage = layoutStage;
             this.successCallback = successCallback;
             this.cancelCallback = cancelCallback;
         }
 
+        @Override
+        boolean isStale(EventLoader eventLoader) {
+            return id != eventLoader.mSequenceNumber.get();
+        }
+
         public void processRequest(EventLoader eventLoader) {
-            Event.loadEvents(eventLoader.mContext, events, startDay,
-                    numDays, id, eventLoader.mSequenceNumber);
+            int endDay = startDay + numDays - 1;
+            boolean loaded = eventLoader.fillCache(id, startDay, endDay, timezone);
+            if (loaded && !eventLoader.mCache.get(startDay, endDay, events)) {
+                // The cache got invalidated while we were loading, or the
+                // range is too big for it: load the whole range directly.
+                long queryStart = SystemClock.uptimeMillis();
+                Event.loadEvents(eventLoader.mContext, events, startDay,
+                        numDays, id, eventLoader.mSequenceNumber);
+                eventLoader.countQuery(queryStart);
+            }
+
+            if (layoutStage != null && id == eventLoader.mSequenceNumber.get()
+                && !cancelled)
+            {
+                layoutStage.run();
+            }
 
             // Check if we are still the most recent request.
-            if (id == eventLoader.mSequenceNumber.get()) {
+            if (id == eventLoader.mSequenceNumber.get() && !cancelled) {
                 eventLoader.mHandler.post(successCallback);
             } else {
                 eventLoader.mHandler.post(cancelCallback);
@@ -202,24 +449,197 @@ public class EventLoader {
         }
     }
 
+    private static class PrefetchRequest extends LoadRequest {
+
+        public int id;
+        public int startDay;
+        public int numDays;
+        public String timezone;
+
+        public PrefetchRequest(int id, int startDay, int numDays, String timezone) {
+            super(PRIORITY_PREFETCH);
+            this.id = id;
+            this.startDay = startDay;
+            this.numDays = numDays;
+            this.timezone = timezone;
+        }
+
+        @Override
+        boolean isStale(EventLoader eventLoader) {
+            return id != eventLoader.mSequenceNumber.get();
+        }
+
+        public void processRequest(EventLoader eventLoader) {
+            eventLoader.fillCache(id, startDay, startDay + numDays - 1, timezone);
+        }
+
+        public void skipRequest(EventLoader eventLoader) {
+        }
+    }
+
+    /**
+     * The requests waiting for the loader thread. Requests are taken in
+     * order of priority, and in the order in which they were queued within
+     * each priority.
+     */
+    private static class RequestQueue {
+        private final PriorityQueue<LoadRequest> mQueue = new PriorityQueue<>(
+            16, new Comparator<LoadRequest>() {
+                @Override
+                public int compare(LoadRequest a, LoadRequest b) {
+                    if (a.priority != b.priority) {
+                        return a.priority < b.priority ? -1 : 1;
+                    }
+                    return Long.compare(a.order, b.order);
+                }
+            });
+        private final Stats mStats;
+        private long mNextOrder;
+        // The request which the loader thread is working on, if any
+        private LoadRequest mRunning;
+
+        RequestQueue(Stats stats) {
+            mStats = stats;
+        }
+
+        synchronized void put(LoadRequest request) {
+            request.order = mNextOrder++;
+            request.queuedMillis = SystemClock.uptimeMillis();
+            mQueue.add(request);
+            synchronized (mStats) {
+                mStats.queueDepth = mQueue.size();
+                if (mStats.queueDepth > mStats.maxQueueDepth) {
+                    mStats.maxQueueDepth = mStats.queueDepth;
+                }
+            }
+            notifyAll();
+        }
+
+        /**
+         * Waits for the next request which is worth doing, skipping any
+         * which have been superseded.
+         */
+        synchronized LoadRequest take(EventLoader eventLoader)
+            throws InterruptedException
+        {
+            mRunning = null;
+            while (true) {
+                while (mQueue.isEmpty()) {
+                    wait();
+                }
+                LoadRequest request = mQueue.poll();
+                long waited = SystemClock.uptimeMillis() - request.queuedMillis;
+                boolean stale = request.isStale(eventLoader);
+                synchronized (mStats) {
+                    mStats.queueDepth = mQueue.size();
+                    ++mStats.requests;
+                    mStats.totalWaitMillis += waited;
+                    if (waited > mStats.maxWaitMillis) {
+                        mStats.maxWaitMillis = waited;
+                    }
+                    if (stale) {
+                        ++mStats.skipped;
+                    }
+                }
+                if (stale) {
+                    // Let the request know that it was skipped
+                    request.skipRequest(eventLoader);
+                } else {
+                    mRunning = request;
+                    return request;
+                }
+            }
+        }
+
+        synchronized void cancel(int id, EventLoader eventLoader) {
+            if (   (mRunning instanceof LoadEventsRequest)
+                && (((LoadEventsRequest)mRunning).id == id))
+            {
+                mRunning.cancelled = true;
+            }
+            Iterator<LoadRequest> iter = mQueue.iterator();
+            while (iter.hasNext()) {
+                LoadRequest request = iter.next();
+                if (   (request instanceof LoadEventsRequest)
+                    && (((LoadEventsRequest)request).id == id))
+                {
+                    iter.remove();
+                    request.skipRequest(eventLoader);
+                    synchronized (mStats) {
+                        mStats.queueDepth = mQueue.size();
+                        ++mStats.skipped;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Extends range to include the ranges of any pending instance loads
+         * which overlap it, as long as the result isn't longer than maxDays.
+         * The pending requests stay in the queue, but will find everything
+         * they need in the cache.
+         * @param range the first and last days which are going to be queried,
+         *              updated in place
+         * @param timezone the time zone of the query
+         * @param id the current sequence number: requests with other ids
+         *           are stale and will be skipped anyway
+         * @return the number of pending requests which were merged
+         */
+        synchronized int coalesce(int[] range, String timezone, int id, int maxDays) {
+            int merged = 0;
+            boolean changed = true;
+            ArrayList<LoadRequest> pending = new ArrayList<>(mQueue);
+            while (changed) {
+                changed = false;
+                Iterator<LoadRequest> iter = pending.iterator();
+                while (iter.hasNext()) {
+                    LoadRequest request = iter.next();
+                    int start;
+                    int end;
+                    if (request instanceof LoadEventsRequest) {
+                        LoadEventsRequest r = (LoadEventsRequest)request;
+                        if ((r.id != id) || !TextUtils.equals(r.timezone, timezone)) {
+                            continue;
+                        }
+                        start = r.startDay;
+                        end = r.startDay + r.numDays - 1;
+                    } else if (request instanceof PrefetchRequest) {
+                        PrefetchRequest r = (PrefetchRequest)request;
+                        if ((r.id != id) || !TextUtils.equals(r.timezone, timezone)) {
+                            continue;
+                        }
+                        start = r.startDay;
+                        end = r.startDay + r.numDays - 1;
+                    } else {
+                        continue;
+                    }
+                    if (   (start > range[1]) || (end < range[0])
+                        || (Math.max(end, range[1]) - Math.min(start, range[0]) >= maxDays))
+                    {
+                        continue;
+                    }
+                    range[0] = Math.min(start, range[0]);
+                    range[1] = Math.max(end, range[1]);
+                    iter.remove();
+                    ++merged;
+                    changed = true;
+                }
+            }
+            return merged;
+        }
+    }
+
     private static class LoaderThread extends Thread {
-        LinkedBlockingQueue<LoadRequest> mQueue;
+        RequestQueue mQueue;
         EventLoader mEventLoader;
 
-        public LoaderThread(LinkedBlockingQueue<LoadRequest> queue, EventLoader eventLoader) {
+        public LoaderThread(RequestQueue queue, EventLoader eventLoader) {
             mQueue = queue;
             mEventLoader = eventLoader;
         }
 
         public void shutdown() {
-            try {
-                mQueue.put(new ShutdownRequest());
-            } catch (InterruptedException ex) {
-                // The put() method fails with InterruptedException if the
-                // queue is full. This should never happen because the queue
-                // has no limit.
-                Log.e("Cal", "LoaderThread.shutdown() interrupted!");
-            }
+            mQueue.put(new ShutdownRequest());
         }
 
         @Override
@@ -228,22 +648,18 @@ public class EventLoader {
             while (true) {
                 try {
                     // Wait for the next request
-                    LoadRequest request = mQueue.take();
-
-                    // If there are a bunch of requests already waiting, then
-                    // skip all but the most recent request.
-                    while (!mQueue.isEmpty()) {
-                        // Let the request know that it was skipped
-                        request.skipRequest(mEventLoader);
-
-                        // Skip to the next request
-                        request = mQueue.take();
-                    }
+                    LoadRequest request = mQueue.take(mEventLoader);
 
+                    // Anything else waiting stays in the queue for the
+                    // next loader thread.
                     if (request instanceof ShutdownRequest) {
                         return;
                     }
                     request.processRequest(mEventLoader);
+                    // Turn on with "adb shell setprop log.tag.EventLoader DEBUG"
+                    if (Log.isLoggable(TAG, Log.DEBUG)) {
+                        Log.d(TAG, mEventLoader.getStats().toString());
+                    }
                 } catch (InterruptedException ex) {
                     Log.e("Cal", "background LoaderThread interrupted!");
                 }
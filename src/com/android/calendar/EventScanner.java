@@ -0,0 +1,551 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.CalendarContract.Calendars;
+import android.provider.CalendarContract.Events;
+import android.provider.CalendarContract.Reminders;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the events which have changed when the provider reports a change,
+ * with one scan of the Events and Reminders tables shared by everything
+ * which needs to know: {@link EventChangeTracker}, {@link EventSearchIndex}
+ * and the alarm index in AlertService.
+ *
+ * The provider has no modification time for events, so we keep a
+ * fingerprint of the columns and reminders of each event, and a scan
+ * compares them with the last one. Scans are numbered, and each event
+ * remembers the scan in which it last changed, so a client which remembers
+ * the last scan it saw can ask {@link #getChangesSince} for only the
+ * events which have changed since, and then read just those rows, with
+ * the columns it needs.
+ *
+ * The description is fingerprinted too, although it can be long, because
+ * a sync adapter can change only the description without setting DIRTY,
+ * and the search index must see that. Only its fingerprint is kept.
+ *
+ * Only the first scan since the process started reads every event. After
+ * that a scan reads the Calendars table, and keeps a fingerprint of each
+ * calendar's sync state (_SYNC_ID and CAL_SYNC1 to CAL_SYNC10, where sync
+ * adapters keep their sync tokens) and settings as a watermark. It reads
+ * the events of the calendars whose watermark has changed, and the events
+ * with DIRTY set, which are those changed by apps rather than by a sync
+ * adapter. An event which was dirty and isn't now is read again by id, in
+ * case it has gone. Events in local calendars stay dirty, because there is
+ * no sync adapter to clear DIRTY, so they are read every time. A sync
+ * adapter which changes events without changing its calendar's sync state
+ * isn't seen until the process restarts.
+ *
+ * {@link #markChanged} is called whenever a client is told that the
+ * provider has changed. The next call to {@link #getChangesSince} scans,
+ * and later calls use that scan until the next change, so that a change
+ * costs one scan however many clients ask about it.
+ */
+public class EventScanner {
+    private static final String TAG = "EventScanner";
+    private static final boolean DEBUG = false;
+
+    // How many deleted events to remember. If more are deleted, every
+    // client has to read everything again.
+    private static final int MAX_REMOVED = 1000;
+
+    // How many ids to put in one "_id IN (...)" selection
+    public static final int MAX_IDS_PER_QUERY = 500;
+
+    /* package */ static final String[] PROJECTION = new String[] {
+        Events._ID,
+        Events.CALENDAR_ID,
+        Events.VISIBLE,
+        Events.DIRTY,
+        Events.DELETED,
+        Events.DTSTART,
+        Events.DTEND,
+        Events.DURATION,
+        Events.LAST_DATE,
+        Events.ALL_DAY,
+        Events.EVENT_TIMEZONE,
+        Events.RRULE,
+        Events.RDATE,
+        Events.EXRULE,
+        Events.EXDATE,
+        Events.ORIGINAL_ID,
+        Events.ORIGINAL_INSTANCE_TIME,
+        Events.TITLE,
+        Events.EVENT_LOCATION,
+        Events.DESCRIPTION,
+        Events.DISPLAY_COLOR,
+        Events.HAS_ALARM,
+        Events.SELF_ATTENDEE_STATUS,
+        Events.STATUS,
+        Events.ORGANIZER,
+        Events.GUESTS_CAN_MODIFY,
+    };
+    private static final int PROJECTION_ID_INDEX = 0;
+    private static final int PROJECTION_CALENDAR_ID_INDEX = 1;
+    private static final int PROJECTION_DIRTY_INDEX = 3;
+    private static final int PROJECTION_DELETED_INDEX = 4;
+
+    // Deleted events are only kept until the sync adapter has told the
+    // server. Hidden calendars are included, so that showing or hiding one
+    // is a change to its events.
+    private static final String SELECTION = Events.DELETED + "=0";
+
+    // Deleted events are included, so that we see them go.
+    private static final String DIRTY_SELECTION = Events.DIRTY + "=1";
+
+    private static final String[] REMINDERS_PROJECTION = new String[] {
+        Reminders.EVENT_ID,
+        Reminders.MINUTES,
+        Reminders.METHOD,
+    };
+
+    // What makes up a calendar's watermark
+    private static final String[] CALENDARS_PROJECTION = new String[] {
+        Calendars._ID,
+        Calendars.ACCOUNT_NAME,
+        Calendars.ACCOUNT_TYPE,
+        Calendars._SYNC_ID,
+        Calendars.DIRTY,
+        Calendars.DELETED,
+        Calendars.CAL_SYNC1,
+        Calendars.CAL_SYNC2,
+        Calendars.CAL_SYNC3,
+        Calendars.CAL_SYNC4,
+        Calendars.CAL_SYNC5,
+        Calendars.CAL_SYNC6,
+        Calendars.CAL_SYNC7,
+        Calendars.CAL_SYNC8,
+        Calendars.CAL_SYNC9,
+        Calendars.CAL_SYNC10,
+        Calendars.CALENDAR_COLOR,
+        Calendars.CALENDAR_ACCESS_LEVEL,
+        Calendars.CALENDAR_TIME_ZONE,
+        Calendars.OWNER_ACCOUNT,
+        Calendars.VISIBLE,
+        Calendars.SYNC_EVENTS,
+    };
+
+    private static EventScanner sInstance;
+
+    /**
+     * The events which have changed since a scan.
+     */
+    public static final class ChangedEvents {
+        private final long mScan;
+        private final long[] mIds;
+
+        ChangedEvents(long scan, long[] ids) {
+            mScan = scan;
+            mIds = ids;
+        }
+
+        /**
+         * @return the number of the scan which found these changes, to pass
+         * to the next call of {@link #getChangesSince}
+         */
+        public long getScan() {
+            return mScan;
+        }
+
+        /**
+         * @return true if the client has to read every event, because it
+         * hasn't seen a scan since the process started, or we have
+         * forgotten what changed since then
+         */
+        public boolean isAll() {
+            return mIds == null;
+        }
+
+        /**
+         * @return the sorted ids of the events which have been added,
+         * changed or removed, or null if {@link #isAll}
+         */
+        public long[] getIds() {
+            return mIds;
+        }
+    }
+
+    // What we remember about each event
+    private static final class Entry {
+        long hash;
+        long changedIn;
+        long calendarId;
+        boolean dirty;
+    }
+
+    // An event read by a scan
+    private static final class Row {
+        long hash;
+        long calendarId;
+        boolean dirty;
+    }
+
+    private final Context mContext;
+    private final AtomicInteger mChangeCount = new AtomicInteger();
+    // The rest is guarded by this
+    private int mScannedChangeCount;
+    // Null until the first scan, or after one has failed
+    private LongSparseArray<Entry> mEvents;
+    // The watermark of each calendar in the last scan
+    private LongSparseArray<Long> mCalendars;
+    // The scan in which each deleted event went
+    private final LongSparseArray<Long> mRemoved = new LongSparseArray<>();
+    private long mScan;
+    // Clients which last saw an earlier scan than this must read everything.
+    private long mFirstScan = 1;
+
+    /* package */ EventScanner(Context context) {
+        mContext = context;
+    }
+
+    public static synchronized EventScanner getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new EventScanner(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Makes the next call to {@link #getChangesSince} scan the provider
+     * again. This may be called on any thread, and doesn't wait for a scan
+     * which is running.
+     */
+    public void markChanged() {
+        mChangeCount.incrementAndGet();
+    }
+
+    /**
+     * Finds the events which have changed since the given scan, scanning
+     * the provider first if it has reported a change since the last scan.
+     * This queries the provider, so it must not be called on the UI thread.
+     *
+     * @param scan the value of {@link ChangedEvents#getScan} from the last
+     *             call, or 0 the first time
+     * @return the changes, or null if the provider couldn't be read
+     */
+    public synchronized ChangedEvents getChangesSince(long scan) {
+        int changeCount = mChangeCount.get();
+        if (mEvents == null || changeCount != mScannedChangeCount) {
+            if (!scan()) {
+                return null;
+            }
+            mScannedChangeCount = changeCount;
+        }
+        if (scan < mFirstScan) {
+            return new ChangedEvents(mScan, null);
+        }
+        LongSparseArray<Boolean> ids = new LongSparseArray<>();
+        for (int i = 0; i < mEvents.size(); ++i) {
+            if (mEvents.valueAt(i).changedIn > scan) {
+                ids.put(mEvents.keyAt(i), Boolean.TRUE);
+            }
+        }
+        for (int i = 0; i < mRemoved.size(); ++i) {
+            if (mRemoved.valueAt(i) > scan) {
+                ids.put(mRemoved.keyAt(i), Boolean.TRUE);
+            }
+        }
+        // The keys of a LongSparseArray are sorted.
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = ids.keyAt(i);
+        }
+        return new ChangedEvents(mScan, result);
+    }
+
+    /**
+     * @return a selection which matches the rows whose column is one of
+     * ids[from] to ids[to - 1]
+     */
+    public static String buildIdSelection(String column, long[] ids, int from, int to) {
+        StringBuilder sb = new StringBuilder(column).append(" IN (");
+        for (int i = from; i < to; ++i) {
+            if (i > from) {
+                sb.append(',');
+            }
+            sb.append(ids[i]);
+        }
+        return sb.append(')').toString();
+    }
+
+    // Reads the events which may have changed and compares their
+    // fingerprints with the last scan. Returns false if a query failed.
+    private boolean scan() {
+        long start = System.nanoTime();
+        int read;
+        try {
+            read = mEvents == null ? scanAll() : scanChanges();
+        } catch (RuntimeException e) {
+            // We may have lost permission to read the calendar.
+            Log.e(TAG, "Scanning events failed", e);
+            read = -1;
+        }
+        if (read < 0) {
+            mEvents = null;
+            mCalendars = null;
+            return false;
+        }
+        if (DEBUG) {
+            Log.d(TAG, "Scan " + mScan + " read " + read + " of " + mEvents.size()
+                + " events in " + (System.nanoTime() - start) / 1000 + "us");
+        }
+        return true;
+    }
+
+    // Reads every event. Returns the number read, or -1 if a query failed.
+    private int scanAll() {
+        LongSparseArray<Long> calendars = readCalendars();
+        LongSparseArray<Row> rows = new LongSparseArray<>();
+        if (calendars == null || !readEvents(SELECTION, rows, null)) {
+            return -1;
+        }
+        LongSparseArray<Long> reminders = readReminders(null);
+        if (reminders == null) {
+            return -1;
+        }
+        ++mScan;
+        // Nobody can know what changed before this.
+        mFirstScan = mScan;
+        mRemoved.clear();
+        LongSparseArray<Entry> events = new LongSparseArray<>(rows.size());
+        for (int i = 0; i < rows.size(); ++i) {
+            Entry entry = new Entry();
+            set(entry, rows.valueAt(i), reminders.get(rows.keyAt(i)));
+            events.put(rows.keyAt(i), entry);
+        }
+        mEvents = events;
+        mCalendars = calendars;
+        return rows.size();
+    }
+
+    // Reads the events of the calendars whose watermark has changed, and
+    // those which are or were dirty. Returns the number read, or -1 if a
+    // query failed.
+    private int scanChanges() {
+        LongSparseArray<Long> calendars = readCalendars();
+        if (calendars == null) {
+            return -1;
+        }
+        // The calendars which have changed or gone
+        LongSparseArray<Boolean> changedCalendars = new LongSparseArray<>();
+        for (int i = 0; i < calendars.size(); ++i) {
+            Long old = mCalendars.get(calendars.keyAt(i));
+            if (old == null || !old.equals(calendars.valueAt(i))) {
+                changedCalendars.put(calendars.keyAt(i), Boolean.TRUE);
+            }
+        }
+        for (int i = 0; i < mCalendars.size(); ++i) {
+            if (calendars.get(mCalendars.keyAt(i)) == null) {
+                changedCalendars.put(mCalendars.keyAt(i), Boolean.TRUE);
+            }
+        }
+
+        LongSparseArray<Row> rows = new LongSparseArray<>();
+        LongSparseArray<Boolean> deleted = new LongSparseArray<>();
+        long[] calendarIds = getKeys(changedCalendars);
+        for (int i = 0; i < calendarIds.length; i += MAX_IDS_PER_QUERY) {
+            int end = Math.min(i + MAX_IDS_PER_QUERY, calendarIds.length);
+            if (!readEvents(SELECTION + " AND "
+                    + buildIdSelection(Events.CALENDAR_ID, calendarIds, i, end),
+                rows, deleted))
+            {
+                return -1;
+            }
+        }
+        if (!readEvents(DIRTY_SELECTION, rows, deleted)) {
+            return -1;
+        }
+        // An event which was dirty and isn't now has been synced, or deleted
+        // without ever having been synced.
+        LongSparseArray<Boolean> recheck = new LongSparseArray<>();
+        for (int i = 0; i < mEvents.size(); ++i) {
+            long id = mEvents.keyAt(i);
+            Entry entry = mEvents.valueAt(i);
+            if (   entry.dirty && rows.get(id) == null && deleted.get(id) == null
+                && changedCalendars.get(entry.calendarId) == null)
+            {
+                recheck.put(id, Boolean.TRUE);
+            }
+        }
+        long[] recheckIds = getKeys(recheck);
+        for (int i = 0; i < recheckIds.length; i += MAX_IDS_PER_QUERY) {
+            int end = Math.min(i + MAX_IDS_PER_QUERY, recheckIds.length);
+            if (!readEvents(buildIdSelection(Events._ID, recheckIds, i, end), rows, deleted)) {
+                return -1;
+            }
+        }
+        LongSparseArray<Long> reminders = readReminders(getKeys(rows));
+        if (reminders == null) {
+            return -1;
+        }
+
+        ++mScan;
+        for (int i = 0; i < rows.size(); ++i) {
+            long id = rows.keyAt(i);
+            Row row = rows.valueAt(i);
+            Entry entry = mEvents.get(id);
+            if (entry == null) {
+                entry = new Entry();
+                mEvents.put(id, entry);
+                mRemoved.remove(id);
+            }
+            set(entry, row, reminders.get(id));
+        }
+        ArrayList<Long> removed = new ArrayList<>();
+        for (int i = 0; i < mEvents.size(); ++i) {
+            long id = mEvents.keyAt(i);
+            if (   rows.get(id) == null
+                && (   deleted.get(id) != null || recheck.get(id) != null
+                    || changedCalendars.get(mEvents.valueAt(i).calendarId) != null))
+            {
+                removed.add(id);
+            }
+        }
+        for (long id : removed) {
+            mEvents.remove(id);
+            mRemoved.put(id, mScan);
+        }
+        if (mRemoved.size() > MAX_REMOVED) {
+            mRemoved.clear();
+            mFirstScan = mScan;
+        }
+        mCalendars = calendars;
+        return rows.size();
+    }
+
+    // Sets what we remember about an event from a scan, noting whether it
+    // has changed.
+    private void set(Entry entry, Row row, Long reminderHash) {
+        long hash = Fingerprint.add(row.hash, reminderHash == null ? 0 : reminderHash);
+        if (entry.changedIn == 0 || entry.hash != hash) {
+            entry.hash = hash;
+            entry.changedIn = mScan;
+        }
+        entry.calendarId = row.calendarId;
+        entry.dirty = row.dirty;
+    }
+
+    private static long[] getKeys(LongSparseArray<?> array) {
+        long[] keys = new long[array.size()];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = array.keyAt(i);
+        }
+        return keys;
+    }
+
+    // Returns the watermark of each calendar, or null if the query failed.
+    private LongSparseArray<Long> readCalendars() {
+        Cursor cursor = mContext.getContentResolver().query(
+            Calendars.CONTENT_URI, CALENDARS_PROJECTION, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        LongSparseArray<Long> calendars = new LongSparseArray<>();
+        try {
+            int count = cursor.getColumnCount();
+            while (cursor.moveToNext()) {
+                long hash = Fingerprint.START;
+                for (int i = 1; i < count; ++i) {
+                    hash = Fingerprint.add(hash, cursor.getString(i));
+                }
+                calendars.put(cursor.getLong(0), hash);
+            }
+        } finally {
+            cursor.close();
+        }
+        return calendars;
+    }
+
+    // Reads the events which match a selection into rows, or, if they have
+    // been deleted, into deleted. Returns false if the query failed.
+    private boolean readEvents(String selection, LongSparseArray<Row> rows,
+                               LongSparseArray<Boolean> deleted) {
+        Cursor cursor = mContext.getContentResolver().query(
+            Events.CONTENT_URI, PROJECTION, selection, null, null);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            int count = cursor.getColumnCount();
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(PROJECTION_ID_INDEX);
+                if (cursor.getInt(PROJECTION_DELETED_INDEX) != 0) {
+                    rows.remove(id);
+                    deleted.put(id, Boolean.TRUE);
+                    continue;
+                }
+                Row row = new Row();
+                row.hash = Fingerprint.START;
+                for (int i = 0; i < count; ++i) {
+                    if (i != PROJECTION_ID_INDEX) {
+                        row.hash = Fingerprint.add(row.hash, cursor.getString(i));
+                    }
+                }
+                row.calendarId = cursor.getLong(PROJECTION_CALENDAR_ID_INDEX);
+                row.dirty = cursor.getInt(PROJECTION_DIRTY_INDEX) != 0;
+                rows.put(id, row);
+            }
+        } finally {
+            cursor.close();
+        }
+        return true;
+    }
+
+    // Returns a fingerprint of the reminders of each of the events which
+    // has any, or of every event if ids is null, or null if a query failed.
+    private LongSparseArray<Long> readReminders(long[] ids) {
+        LongSparseArray<Long> reminders = new LongSparseArray<>();
+        if (ids == null) {
+            return readReminders(null, reminders) ? reminders : null;
+        }
+        for (int i = 0; i < ids.length; i += MAX_IDS_PER_QUERY) {
+            int end = Math.min(i + MAX_IDS_PER_QUERY, ids.length);
+            if (!readReminders(buildIdSelection(Reminders.EVENT_ID, ids, i, end), reminders)) {
+                return null;
+            }
+        }
+        return reminders;
+    }
+
+    private boolean readReminders(String selection, LongSparseArray<Long> reminders) {
+        Cursor cursor = mContext.getContentResolver().query(
+            Reminders.CONTENT_URI, REMINDERS_PROJECTION, selection, null, null);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                long eventId = cursor.getLong(0);
+                long hash = Fingerprint.add(Fingerprint.START, cursor.getLong(1));
+                hash = Fingerprint.add(hash, cursor.getLong(2));
+                // Order independent, since the rows may come in any order
+                Long old = reminders.get(eventId);
+                reminders.put(eventId, old == null ? hash : old + hash);
+            }
+        } finally {
+            cursor.close();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.AsyncTask;
+import android.provider.CalendarContract.Events;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import java.util.Arrays;
+
+/**
+ * A full text index over the titles, descriptions and locations of the
+ * events, kept in an SQLite FTS4 table in our own database.
+ *
+ * Searching Instances.CONTENT_SEARCH_BY_DAY_URI makes the provider expand
+ * the recurrences and LIKE-scan every event each time the query changes.
+ * Instead {@link #match} looks the words up in the index, which takes a
+ * few milliseconds, and the agenda then only asks the provider for the
+ * instances of the events which matched.
+ *
+ * Each word of the query matches the start of a word in the event, so
+ * "din" finds "Dinner", but unlike the provider's search it doesn't find
+ * words in the middle ("ner"), or attendees. So the index only answers
+ * searches made as the user types, and a search which the user submits
+ * still goes to the provider.
+ *
+ * {@link #update} asks the {@link EventScanner} which events have changed
+ * since the last update, reads only those rows, with their descriptions,
+ * and rewrites them if the fingerprint of their indexed columns, kept for
+ * each event in the table "indexed", has changed. The first update since
+ * the process started reads every event, so that the index can't miss
+ * changes made by other apps while we weren't running, and the index is
+ * not used until it has finished. Updates run on
+ * AsyncTask.SERIAL_EXECUTOR; {@link #match} may be called on any thread.
+ */
+public class EventSearchIndex {
+    private static final String TAG = "EventSearchIndex";
+    private static final boolean DEBUG = false;
+
+    private static final String DATABASE_NAME = "event_search.db";
+    private static final int DATABASE_VERSION = 1;
+    private static final String FTS_TABLE = "events_fts";
+    private static final String INDEXED_TABLE = "indexed";
+    private static final String COLUMN_TITLE = "title";
+    private static final String COLUMN_DESCRIPTION = "description";
+    private static final String COLUMN_LOCATION = "location";
+    private static final String COLUMN_ID = "_id";
+    private static final String COLUMN_HASH = "hash";
+
+    // If more events than this match, it's quicker to let the provider do
+    // the search than to send it a list of all their ids.
+    private static final int MAX_MATCHES = 500;
+
+    private static final String[] PROJECTION = new String[] {
+        Events._ID,
+        Events.TITLE,
+        Events.DESCRIPTION,
+        Events.EVENT_LOCATION,
+    };
+    private static final int PROJECTION_ID_INDEX = 0;
+    private static final int PROJECTION_TITLE_INDEX = 1;
+    private static final int PROJECTION_DESCRIPTION_INDEX = 2;
+    private static final int PROJECTION_LOCATION_INDEX = 3;
+
+    // Hidden calendars are left to the agenda's own selection, so that
+    // showing one doesn't need the index to be updated.
+    private static final String SELECTION = Events.DELETED + "=0";
+
+    private static EventSearchIndex sInstance;
+
+    private final Context mContext;
+    private final EventScanner mScanner;
+    private final String mDatabaseName;
+    private final Helper mHelper;
+    // Only used on the executor's thread: the fingerprint of each indexed
+    // event, null until it has been read from the database, and the last
+    // scan which we have seen.
+    private LongSparseArray<Long> mHashes;
+    private long mLastScan;
+    private volatile boolean mReady;
+    private volatile int mEventCount;
+    private volatile long mLastRebuildMillis = -1;
+    // Guarded by this
+    private boolean mUpdatePending;
+    private boolean mRebuild;
+
+    private final Runnable mUpdate = new Runnable() {
+        @Override
+        public void run() {
+            boolean rebuild;
+            synchronized (EventSearchIndex.this) {
+                mUpdatePending = false;
+                rebuild = mRebuild;
+                mRebuild = false;
+            }
+            scan(rebuild);
+        }
+    };
+
+    private static class Helper extends SQLiteOpenHelper {
+        Helper(Context context, String name) {
+            super(context, name, null, DATABASE_VERSION);
+            // Searches can read while an update is writing.
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE " + FTS_TABLE + " USING fts4("
+                + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_LOCATION
+                + ", tokenize=unicode61)");
+            db.execSQL("CREATE TABLE " + INDEXED_TABLE + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY, " + COLUMN_HASH + " INTEGER NOT NULL)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // The index can always be made again from the provider.
+            db.execSQL("DROP TABLE IF EXISTS " + FTS_TABLE);
+            db.execSQL("DROP TABLE IF EXISTS " + INDEXED_TABLE);
+            onCreate(db);
+        }
+    }
+
+    /* package */ EventSearchIndex(Context context, EventScanner scanner, String databaseName) {
+        mContext = context;
+        mScanner = scanner;
+        mDatabaseName = databaseName;
+        mHelper = new Helper(mContext, databaseName);
+    }
+
+    public static synchronized EventSearchIndex getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new EventSearchIndex(context.getApplicationContext(),
+                EventScanner.getInstance(context), DATABASE_NAME);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Brings the index up to date with the provider in the background,
+     * rewriting only the events which have changed.
+     */
+    public void update() {
+        schedule(false);
+    }
+
+    /**
+     * Throws the index away and makes it again from the provider in the
+     * background. The time it took is logged, and returned by
+     * {@link #getLastRebuildMillis}.
+     */
+    public void rebuild() {
+        schedule(true);
+    }
+
+    private void schedule(boolean rebuild) {
+        mScanner.markChanged();
+        synchronized (this) {
+            mRebuild |= rebuild;
+            if (mUpdatePending) {
+                // The waiting update will see this change as well.
+                return;
+            }
+            mUpdatePending = true;
+        }
+        AsyncTask.SERIAL_EXECUTOR.execute(mUpdate);
+    }
+
+    /**
+     * @return true if {@link #match} can be used
+     */
+    public boolean isReady() {
+        return mReady;
+    }
+
+    /**
+     * @return the number of events in the index
+     */
+    public int getEventCount() {
+        return mEventCount;
+    }
+
+    /**
+     * @return the size in bytes of the index's database file
+     */
+    public long getSizeBytes() {
+        return mContext.getDatabasePath(mDatabaseName).length();
+    }
+
+    /**
+     * @return how long the last rebuild took in milliseconds, or -1 if
+     * there hasn't been one since the process started
+     */
+    public long getLastRebuildMillis() {
+        return mLastRebuildMillis;
+    }
+
+    /**
+     * Finds the events whose title, description or location contain a word
+     * starting with each word of the query.
+     *
+     * @param query the words typed by the user
+     * @return the ids of the matching events, or null if the index isn't
+     * ready or too many events match, in which case the caller should ask
+     * the provider to do the search
+     */
+    public long[] match(String query) {
+        if (!mReady) {
+            return null;
+        }
+        String expression = buildMatchExpression(query);
+        if (expression == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        Cursor cursor = null;
+        try {
+            cursor = mHelper.getReadableDatabase().rawQuery("SELECT docid FROM " + FTS_TABLE
+                + " WHERE " + FTS_TABLE + " MATCH ? LIMIT " + (MAX_MATCHES + 1),
+                new String[] { expression });
+            int count = cursor.getCount();
+            if (count > MAX_MATCHES) {
+                return null;
+            }
+            long[] ids = new long[count];
+            for (int i = 0; i < count && cursor.moveToNext(); ++i) {
+                ids[i] = cursor.getLong(0);
+            }
+            if (DEBUG) {
+                Log.d(TAG, "Matched " + count + " events for \"" + query + "\" in "
+                    + (System.nanoTime() - start) / 1000 + "us");
+            }
+            return ids;
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Searching the index failed", e);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Turns what the user typed into an FTS MATCH expression which finds
+     * events with a word starting with each of the words typed. Quotes are
+     * dropped, so nothing typed can be taken as an FTS operator, and so are
+     * words which are only punctuation.
+     *
+     * @return the expression, or null if there are no words
+     */
+    /* package */ static String buildMatchExpression(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String word : query.replace('"', ' ').trim().split("\\s+")) {
+            if (!hasLetterOrDigit(word)) {
+                // The tokenizer would drop it, and then nothing would match.
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append('"').append(word).append("*\"");
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    private static boolean hasLetterOrDigit(String word) {
+        for (int i = 0; i < word.length(); ++i) {
+            if (Character.isLetterOrDigit(word.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A fingerprint of the indexed columns
+    /* package */ static long hash(String title, String description, String location) {
+        long hash = Fingerprint.add(Fingerprint.START, title);
+        hash = Fingerprint.add(hash, description);
+        return Fingerprint.add(hash, location);
+    }
+
+    /* package */ void close() {
+        mHelper.close();
+    }
+
+    /* package */ void scan(boolean rebuild) {
+        long start = System.nanoTime();
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = mHelper.getWritableDatabase();
+            if (rebuild) {
+                db.delete(FTS_TABLE, null, null);
+                db.delete(INDEXED_TABLE, null, null);
+                mHashes = new LongSparseArray<>();
+            } else if (mHashes == null) {
+                mHashes = readHashes(db);
+            }
+            // An empty index is being made from scratch.
+            rebuild |= mHashes.size() == 0;
+            EventScanner.ChangedEvents events = mScanner.getChangesSince(mLastScan);
+            if (events == null) {
+                mReady = false;
+                return;
+            }
+            int changed = 0;
+            if (rebuild || events.isAll()) {
+                cursor = mContext.getContentResolver().query(
+                    Events.CONTENT_URI, PROJECTION, SELECTION, null, null);
+                if (cursor == null) {
+                    return;
+                }
+                changed = update(db, cursor, null);
+            } else {
+                long[] ids = events.getIds();
+                for (int i = 0; i < ids.length; i += EventScanner.MAX_IDS_PER_QUERY) {
+                    int end = Math.min(i + EventScanner.MAX_IDS_PER_QUERY, ids.length);
+                    cursor = mContext.getContentResolver().query(Events.CONTENT_URI,
+                        PROJECTION, SELECTION + " AND "
+                            + EventScanner.buildIdSelection(Events._ID, ids, i, end),
+                        null, null);
+                    if (cursor == null) {
+                        return;
+                    }
+                    changed += update(db, cursor, Arrays.copyOfRange(ids, i, end));
+                    cursor.close();
+                    cursor = null;
+                }
+            }
+            mLastScan = events.getScan();
+            mEventCount = mHashes.size();
+            mReady = true;
+            long millis = (System.nanoTime() - start) / 1000000;
+            if (rebuild) {
+                mLastRebuildMillis = millis;
+                Log.i(TAG, "Indexed " + mEventCount + " events in " + millis + "ms, "
+                    + getSizeBytes() + " bytes");
+            } else if (DEBUG) {
+                Log.d(TAG, "Updated " + changed + " of " + mEventCount + " events in "
+                    + millis + "ms");
+            }
+        } catch (SQLiteException e) {
+            // Start again from nothing next time.
+            Log.e(TAG, "Updating the index failed", e);
+            mReady = false;
+            mHashes = null;
+            synchronized (this) {
+                mRebuild = true;
+            }
+        } catch (RuntimeException e) {
+            // We may have lost permission to read the calendar.
+            Log.e(TAG, "Reading events failed", e);
+            mReady = false;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private static LongSparseArray<Long> readHashes(SQLiteDatabase db) {
+        LongSparseArray<Long> hashes = new LongSparseArray<>();
+        Cursor cursor = db.query(INDEXED_TABLE, new String[] { COLUMN_ID, COLUMN_HASH },
+            null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                hashes.put(cursor.getLong(0), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return hashes;
+    }
+
+    // Writes the events from the cursor whose fingerprints have changed,
+    // and removes those which have gone, in one transaction. The cursor
+    // has every event if ids is null, or else those of ids which are still
+    // there. Returns the number of events added, changed or removed.
+    private int update(SQLiteDatabase db, Cursor cursor, long[] ids) {
+        LongSparseArray<Boolean> seen = new LongSparseArray<>(cursor.getCount());
+        LongSparseArray<Long> written = new LongSparseArray<>();
+        LongSparseArray<Boolean> gone = new LongSparseArray<>();
+        db.beginTransaction();
+        try {
+            SQLiteStatement deleteText =
+                db.compileStatement("DELETE FROM " + FTS_TABLE + " WHERE docid=?");
+            SQLiteStatement insertText = db.compileStatement("INSERT INTO " + FTS_TABLE
+                + " (docid, " + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", "
+                + COLUMN_LOCATION + ") VALUES (?, ?, ?, ?)");
+            SQLiteStatement putHash = db.compileStatement("INSERT OR REPLACE INTO "
+                + INDEXED_TABLE + " (" + COLUMN_ID + ", " + COLUMN_HASH + ") VALUES (?, ?)");
+            SQLiteStatement deleteHash = db.compileStatement(
+                "DELETE FROM " + INDEXED_TABLE + " WHERE " + COLUMN_ID + "=?");
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(PROJECTION_ID_INDEX);
+                String title = cursor.getString(PROJECTION_TITLE_INDEX);
+                String description = cursor.getString(PROJECTION_DESCRIPTION_INDEX);
+                String location = cursor.getString(PROJECTION_LOCATION_INDEX);
+                long hash = hash(title, description, location);
+                seen.put(id, Boolean.TRUE);
+                Long old = mHashes.get(id);
+                if (old != null && old == hash) {
+                    continue;
+                }
+                if (old != null) {
+                    deleteText.bindLong(1, id);
+                    deleteText.executeUpdateDelete();
+                }
+                insertText.bindLong(1, id);
+                bindString(insertText, 2, title);
+                bindString(insertText, 3, description);
+                bindString(insertText, 4, location);
+                insertText.executeInsert();
+                putHash.bindLong(1, id);
+                putHash.bindLong(2, hash);
+                putHash.executeInsert();
+                written.put(id, hash);
+            }
+            if (ids == null) {
+                for (int i = 0; i < mHashes.size(); ++i) {
+                    if (seen.get(mHashes.keyAt(i)) == null) {
+                        gone.put(mHashes.keyAt(i), Boolean.TRUE);
+                    }
+                }
+            } else {
+                for (long id : ids) {
+                    if (seen.get(id) == null && mHashes.get(id) != null) {
+                        gone.put(id, Boolean.TRUE);
+                    }
+                }
+            }
+            for (int i = 0; i < gone.size(); ++i) {
+                long id = gone.keyAt(i);
+                deleteText.bindLong(1, id);
+                deleteText.executeUpdateDelete();
+                deleteHash.bindLong(1, id);
+                deleteHash.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        // Only now that the database has them
+        for (int i = 0; i < written.size(); ++i) {
+            mHashes.put(written.keyAt(i), written.valueAt(i));
+        }
+        for (int i = 0; i < gone.size(); ++i) {
+            mHashes.remove(gone.keyAt(i));
+        }
+        return written.size() + gone.size();
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
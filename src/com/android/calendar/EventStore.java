@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.text.TextUtils;
+import android.text.format.DateUtils;
+import android.util.SparseIntArray;
+
+import java.util.HashMap;
+
+import ws.xsoh.etar.R;
+
+/**
+ * A compact list of instances, stored as parallel arrays of primitives
+ * rather than as an ArrayList of {@link Event} objects. A view over a long
+ * range of a busy calendar would otherwise create tens of thousands of
+ * Events, each with its own strings: here the instances of a repeating
+ * event all share the same title, location and organizer strings.
+ *
+ * Code which needs an Event can get one with getEvent(), which fills in
+ * an Event supplied by the caller, so that one Event can be reused as a
+ * flyweight while iterating over the store.
+ *
+ * The store is filled in order from a cursor and is not modified after
+ * that.
+ */
+public class EventStore {
+
+    // Bits in mFlags
+    private static final int FLAG_ALL_DAY = 1;
+    private static final int FLAG_HAS_ALARM = 2;
+    private static final int FLAG_REPEATING = 4;
+    private static final int FLAG_GUESTS_CAN_MODIFY = 8;
+    private static final int FLAG_DRAW_AS_ALLDAY = 16;
+    private static final int FLAG_UNTITLED = 32;
+
+    private int mSize;
+    private long[] mIds;
+    private long[] mStartMillis;
+    private long[] mEndMillis;
+    private int[] mStartDay;
+    private int[] mEndDay;
+    private int[] mStartTime;
+    private int[] mEndTime;
+    private int[] mColor;
+    private int[] mSelfAttendeeStatus;
+    private int[] mFlags;
+    private String[] mTitle;
+    private String[] mLocation;
+    private String[] mOrganizer;
+
+    public EventStore(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate(int capacity) {
+        mIds = grow(mIds, capacity);
+        mStartMillis = grow(mStartMillis, capacity);
+        mEndMillis = grow(mEndMillis, capacity);
+        mStartDay = grow(mStartDay, capacity);
+        mEndDay = grow(mEndDay, capacity);
+        mStartTime = grow(mStartTime, capacity);
+        mEndTime = grow(mEndTime, capacity);
+        mColor = grow(mColor, capacity);
+        mSelfAttendeeStatus = grow(mSelfAttendeeStatus, capacity);
+        mFlags = grow(mFlags, capacity);
+        mTitle = grow(mTitle, capacity);
+        mLocation = grow(mLocation, capacity);
+        mOrganizer = grow(mOrganizer, capacity);
+    }
+
+    private int[] grow(int[] a, int capacity) {
+        int[] b = new int[capacity];
+        if (a != null) { System.arraycopy(a, 0, b, 0, mSize); }
+        return b;
+    }
+
+    private long[] grow(long[] a, int capacity) {
+        long[] b = new long[capacity];
+        if (a != null) { System.arraycopy(a, 0, b, 0, mSize); }
+        return b;
+    }
+
+    private String[] grow(String[] a, int capacity) {
+        String[] b = new String[capacity];
+        if (a != null) { System.arraycopy(a, 0, b, 0, mSize); }
+        return b;
+    }
+
+    /**
+     * Builds a store from a cursor using {@link Event#EVENT_PROJECTION},
+     * keeping the instances in cursor order. Like
+     * Event.buildEventsFromCursor(), this skips instances outside the
+     * range of days.
+     */
+    public static EventStore fromCursor(Cursor cEvents, Context context,
+                                        int startDay, int endDay)
+    {
+        if (cEvents == null) {
+            return new EventStore(1);
+        }
+        EventStore store = new EventStore(cEvents.getCount());
+        if (cEvents.getCount() == 0) {
+            return store;
+        }
+
+        Resources res = context.getResources();
+        String noTitle = res.getString(R.string.no_title_label);
+        int noColor = res.getColor(R.color.event_center);
+        // Used to intern the strings, so that all the instances of a
+        // repeating event share them
+        HashMap<String, String> strings = new HashMap<>();
+        // Most calendars have only a few colours, so remember the display
+        // colour for each one instead of converting it for every instance.
+        SparseIntArray colors = new SparseIntArray();
+
+        cEvents.moveToPosition(-1);
+        while (cEvents.moveToNext()) {
+            int first = cEvents.getInt(Event.PROJECTION_START_DAY_INDEX);
+            int last = cEvents.getInt(Event.PROJECTION_END_DAY_INDEX);
+            if (first > endDay || last < startDay) {
+                continue;
+            }
+            int i = store.mSize++;
+            store.mIds[i] = cEvents.getLong(Event.PROJECTION_EVENT_ID_INDEX);
+            store.mStartDay[i] = first;
+            store.mEndDay[i] = last;
+            store.mStartMillis[i] = cEvents.getLong(Event.PROJECTION_BEGIN_INDEX);
+            store.mEndMillis[i] = cEvents.getLong(Event.PROJECTION_END_INDEX);
+            store.mStartTime[i] = cEvents.getInt(Event.PROJECTION_START_MINUTE_INDEX);
+            store.mEndTime[i] = cEvents.getInt(Event.PROJECTION_END_MINUTE_INDEX);
+            store.mSelfAttendeeStatus[i] =
+                cEvents.getInt(Event.PROJECTION_SELF_ATTENDEE_STATUS_INDEX);
+
+            String title = cEvents.getString(Event.PROJECTION_TITLE_INDEX);
+            boolean untitled = TextUtils.isEmpty(title);
+            store.mTitle[i] = untitled ? noTitle : intern(strings, title);
+            store.mLocation[i] = intern(strings,
+                cEvents.getString(Event.PROJECTION_LOCATION_INDEX));
+            store.mOrganizer[i] = intern(strings,
+                cEvents.getString(Event.PROJECTION_ORGANIZER_INDEX));
+
+            if (cEvents.isNull(Event.PROJECTION_COLOR_INDEX)) {
+                store.mColor[i] = noColor;
+            } else {
+                int color = cEvents.getInt(Event.PROJECTION_COLOR_INDEX);
+                int index = colors.indexOfKey(color);
+                if (index < 0) {
+                    int displayColor = Utils.getDisplayColorFromColor(color);
+                    colors.put(color, displayColor);
+                    store.mColor[i] = displayColor;
+                } else {
+                    store.mColor[i] = colors.valueAt(index);
+                }
+            }
+
+            int flags = untitled ? FLAG_UNTITLED : 0;
+            boolean allDay = cEvents.getInt(Event.PROJECTION_ALL_DAY_INDEX) != 0;
+            if (allDay) {
+                flags |= FLAG_ALL_DAY;
+            }
+            if (cEvents.getInt(Event.PROJECTION_HAS_ALARM_INDEX) != 0) {
+                flags |= FLAG_HAS_ALARM;
+            }
+            if (   !TextUtils.isEmpty(cEvents.getString(Event.PROJECTION_RRULE_INDEX))
+                || !TextUtils.isEmpty(cEvents.getString(Event.PROJECTION_RDATE_INDEX)))
+            {
+                flags |= FLAG_REPEATING;
+            }
+            if (cEvents.getInt(Event.PROJECTION_GUESTS_CAN_MODIFY) != 0) {
+                flags |= FLAG_GUESTS_CAN_MODIFY;
+            }
+            // Use >= so we'll pick up Exchange allday events, as Event does
+            if (   allDay
+                || store.mEndMillis[i] - store.mStartMillis[i] >= DateUtils.DAY_IN_MILLIS)
+            {
+                flags |= FLAG_DRAW_AS_ALLDAY;
+            }
+            store.mFlags[i] = flags;
+        }
+        return store;
+    }
+
+    private static String intern(HashMap<String, String> strings, String s) {
+        if (s == null) {
+            return null;
+        }
+        String interned = strings.get(s);
+        if (interned == null) {
+            strings.put(s, s);
+            return s;
+        }
+        return interned;
+    }
+
+    /**
+     * Adds a copy of an Event to the end of the store.
+     */
+    public void add(Event e) {
+        if (mSize == mIds.length) {
+            allocate(mSize * 2);
+        }
+        int i = mSize++;
+        mIds[i] = e.id;
+        mStartDay[i] = e.startDay;
+        mEndDay[i] = e.endDay;
+        mStartMillis[i] = e.startMillis;
+        mEndMillis[i] = e.endMillis;
+        mStartTime[i] = e.startTime;
+        mEndTime[i] = e.endTime;
+        mSelfAttendeeStatus[i] = e.selfAttendeeStatus;
+        mTitle[i] = e.title == null ? null : e.title.toString();
+        mLocation[i] = e.location == null ? null : e.location.toString();
+        mOrganizer[i] = e.organizer;
+        mColor[i] = e.color;
+        int flags = 0;
+        if (e.allDay) { flags |= FLAG_ALL_DAY; }
+        if (e.hasAlarm) { flags |= FLAG_HAS_ALARM; }
+        if (e.isRepeating) { flags |= FLAG_REPEATING; }
+        if (e.guestsCanModify) { flags |= FLAG_GUESTS_CAN_MODIFY; }
+        if (e.drawAsAllday()) { flags |= FLAG_DRAW_AS_ALLDAY; }
+        if (e.untitled) { flags |= FLAG_UNTITLED; }
+        mFlags[i] = flags;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Fills in an Event with the values of the instance at index, so that
+     * code which expects Events can use the store.
+     * @param index which instance
+     * @param e the Event to fill in: this can be reused for each instance.
+     * @return e
+     */
+    public Event getEvent(int index, Event e) {
+        e.id = mIds[index];
+        e.title = mTitle[index];
+        e.location = mLocation[index];
+        e.organizer = mOrganizer[index];
+        e.color = mColor[index];
+        e.startDay = mStartDay[index];
+        e.endDay = mEndDay[index];
+        e.startTime = mStartTime[index];
+        e.endTime = mEndTime[index];
+        e.startMillis = mStartMillis[index];
+        e.endMillis = mEndMillis[index];
+        e.selfAttendeeStatus = mSelfAttendeeStatus[index];
+        int flags = mFlags[index];
+        e.allDay = (flags & FLAG_ALL_DAY) != 0;
+        e.hasAlarm = (flags & FLAG_HAS_ALARM) != 0;
+        e.isRepeating = (flags & FLAG_REPEATING) != 0;
+        e.guestsCanModify = (flags & FLAG_GUESTS_CAN_MODIFY) != 0;
+        e.untitled = (flags & FLAG_UNTITLED) != 0;
+        return e;
+    }
+
+    public long getId(int index) {
+        return mIds[index];
+    }
+
+    public String getTitle(int index) {
+        return mTitle[index];
+    }
+
+    public String getLocation(int index) {
+        return mLocation[index];
+    }
+
+    public int getColor(int index) {
+        return mColor[index];
+    }
+
+    public int getStartDay(int index) {
+        return mStartDay[index];
+    }
+
+    public int getEndDay(int index) {
+        return mEndDay[index];
+    }
+
+    public int getStartTime(int index) {
+        return mStartTime[index];
+    }
+
+    public int getEndTime(int index) {
+        return mEndTime[index];
+    }
+
+    public long getStartMillis(int index) {
+        return mStartMillis[index];
+    }
+
+    public long getEndMillis(int index) {
+        return mEndMillis[index];
+    }
+
+    public int getSelfAttendeeStatus(int index) {
+        return mSelfAttendeeStatus[index];
+    }
+
+    public boolean isAllDay(int index) {
+        return (mFlags[index] & FLAG_ALL_DAY) != 0;
+    }
+
+    public boolean drawAsAllday(int index) {
+        return (mFlags[index] & FLAG_DRAW_AS_ALLDAY) != 0;
+    }
+}
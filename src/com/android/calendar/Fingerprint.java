@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+/**
+ * 64 bit FNV-1a hashes, used as fingerprints to tell whether something has
+ * changed since we last saw it, without keeping a copy of it.
+ *
+ * Start with {@link #START} and add each value in turn:
+ *
+ *     long hash = Fingerprint.add(Fingerprint.START, title);
+ *     hash = Fingerprint.add(hash, begin);
+ *
+ * Strings are hashed a byte at a time over their UTF-16 chars, after their
+ * length, so null, "", and text moved from one value to the next all give
+ * different fingerprints. Numbers are hashed a byte at a time over all 64
+ * bits.
+ */
+public final class Fingerprint {
+    /**
+     * The FNV-1a offset basis, which is the fingerprint of nothing.
+     */
+    public static final long START = 0xcbf29ce484222325L;
+
+    private static final long PRIME = 0x100000001b3L;
+
+    private Fingerprint() {
+    }
+
+    /**
+     * @return hash with the 8 bytes of value added, lowest first
+     */
+    public static long add(long hash, long value) {
+        for (int i = 0; i < 8; ++i) {
+            hash = (hash ^ (value & 0xFF)) * PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    /**
+     * @return hash with the length of s (-1 for null) and then its chars
+     * added, each char low byte first
+     */
+    public static long add(long hash, CharSequence s) {
+        if (s == null) {
+            return add(hash, -1L);
+        }
+        int length = s.length();
+        hash = add(hash, (long) length);
+        for (int i = 0; i < length; ++i) {
+            char c = s.charAt(i);
+            hash = (hash ^ (c & 0xFF)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        return hash;
+    }
+}
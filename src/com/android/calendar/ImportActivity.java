@@ -2,6 +2,7 @@ package com.android.calendar;
 
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.app.ProgressDialog;
 import android.content.ActivityNotFoundException;
 import android.content.ContentResolver;
 import android.content.Context;
@@ -14,14 +15,17 @@ import android.os.Bundle;
 import android.os.Environment;
 import android.provider.CalendarContract;
 import android.text.TextUtils;
+import android.util.Log;
 import android.widget.Toast;
+import com.android.calendar.event.BulkImporter;
 import com.android.calendar.event.EditEventActivity;
 import com.android.calendar.icalendar.Attendee;
 import com.android.calendar.icalendar.IcalendarUtils;
-import com.android.calendar.icalendar.VCalendar;
+import com.android.calendar.icalendar.VCalendarReader;
 import com.android.calendar.icalendar.VEvent;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -33,8 +37,14 @@ import java.util.TimeZone;
 import ws.xsoh.etar.R;
 
 public class ImportActivity extends Activity {
+    private static final String TAG = "ImportActivity";
+
+    private static final int RESULT_ERROR = 0;
+    private static final int RESULT_EDIT = 1;
+    private static final int RESULT_IMPORTED = 2;
 
     LinkedList<CalendarEventModel> mEvents;
+    private ProgressDialog mProgressDialog;
     public static final File EXPORT_SDCARD_DIRECTORY = new File(
         Environment.getExternalStorageDirectory(), "CalendarEvents");
 
@@ -138,24 +148,16 @@ public class ImportActivity extends Activity {
         finish();
     }
 
-    //FIXME should really do this in background task
     private void parseCalFile() {
-        Uri uri = getIntent().getData();
-        VCalendar calendar = IcalendarUtils.readCalendarFromFile(this, uri);
-
-        if (calendar == null) {
-            showErrorToast();
-        }
-
-        if (CalendarApplication.mEvents.size() == 0) {
-            showErrorToast();
-        }
-
-        if (CalendarApplication.mEvents.size() > 1) {
-            // For the time being we don't handle more than one VEVENT
-            showErrorToast();
-        }
+        mProgressDialog = new ProgressDialog(this);
+        mProgressDialog.setIndeterminate(true);
+        mProgressDialog.setCancelable(false);
+        mProgressDialog.setMessage(getString(R.string.cal_import_reading));
+        mProgressDialog.show();
+        new ImportTask().execute(getIntent().getData());
+    }
 
+    private void startEditing() {
         Intent intent = new Intent(this, EditEventActivity.class);
 
         // FIXME move this to VEVENT decoding
@@ -173,6 +175,102 @@ public class ImportActivity extends Activity {
         }
     }
 
+    /**
+     * Reads the file on a worker thread. A file with one VEVENT is opened in
+     * the editor, as before, but the events of a file with more than one
+     * are all written to the default calendar by a {@link BulkImporter}.
+     */
+    private class ImportTask extends AsyncTask<Uri, BulkImporter, Integer>
+        implements BulkImporter.ProgressListener
+    {
+        private BulkImporter mImporter;
+
+        @Override
+        protected Integer doInBackground(Uri... uris) {
+            VCalendarReader reader =
+                IcalendarUtils.openCalendarReader(ImportActivity.this, uris[0]);
+            if (reader == null) {
+                return RESULT_ERROR;
+            }
+            try {
+                CalendarEventModel event = reader.nextEvent();
+                if (event == null) {
+                    return RESULT_ERROR;
+                }
+                CalendarEventModel next = reader.nextEvent();
+                if (next == null) {
+                    synchronized (CalendarApplication.mEvents) {
+                        CalendarApplication.mEvents.clear();
+                        CalendarApplication.mEvents.add(event);
+                    }
+                    return RESULT_EDIT;
+                }
+                mImporter = new BulkImporter(ImportActivity.this);
+                mImporter.setProgressListener(this);
+                if (!mImporter.start()) {
+                    return RESULT_ERROR;
+                }
+                mImporter.add(event);
+                // There may be many more, so decode them on all the cores
+                reader.setParallel(true);
+                do {
+                    mImporter.add(next);
+                } while ((next = reader.nextEvent()) != null);
+                mImporter.finish();
+                return RESULT_IMPORTED;
+            } catch (IOException | RuntimeException e) {
+                // VEvent throws a RuntimeException for some lines which it
+                // can't parse, and the decode tasks rethrow it from
+                // nextEvent.
+                Log.w(TAG, "Failed to read " + uris[0], e);
+                if (mImporter != null) {
+                    mImporter.finish();
+                    return RESULT_IMPORTED;
+                }
+                return RESULT_ERROR;
+            } finally {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+
+        @Override
+        public void onProgress(BulkImporter importer) {
+            publishProgress(importer);
+        }
+
+        @Override
+        protected void onProgressUpdate(BulkImporter... importers) {
+            BulkImporter importer = importers[0];
+            mProgressDialog.setMessage(getString(R.string.cal_import_progress,
+                importer.getImportedCount(), importer.getEventsPerSecond()));
+        }
+
+        @Override
+        protected void onPostExecute(Integer result) {
+            mProgressDialog.dismiss();
+            switch (result) {
+                case RESULT_EDIT:
+                    startEditing();
+                    break;
+                case RESULT_IMPORTED:
+                    Toast.makeText(ImportActivity.this,
+                        getString(R.string.cal_import_done_msg,
+                            mImporter.getImportedCount(), mImporter.getSkippedCount(),
+                            mImporter.getFailedCount()),
+                        Toast.LENGTH_LONG).show();
+                    finish();
+                    break;
+                default:
+                    showErrorToast();
+                    break;
+            }
+        }
+    }
+
     private boolean isTimeStartOfDay(String dtStart, String dtStartParam) {
         // convert to epoch milli seconds
         long timeStamp = getLocalTimeFromString(dtStart, dtStartParam);
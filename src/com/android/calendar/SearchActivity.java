@@ -74,6 +74,7 @@ public class SearchActivity extends AppCompatActivity implements CalendarControl
 
         @Override
         public void onChange(boolean selfChange) {
+            EventSearchIndex.getInstance(SearchActivity.this).update();
             eventsChanged();
         }
     };
@@ -303,6 +304,7 @@ public class SearchActivity extends AppCompatActivity implements CalendarControl
         invalidateOptionsMenu();
         mTimeChangesReceiver = Utils.setTimeChangesReceiver(this, mTimeChangesUpdater);
         mContentResolver.registerContentObserver(Events.CONTENT_URI, true, mObserver);
+        EventSearchIndex.getInstance(this).update();
         // We call this in case the user changed the time zone
         eventsChanged();
     }
@@ -337,6 +339,18 @@ public class SearchActivity extends AppCompatActivity implements CalendarControl
 
     @Override
     public boolean onQueryTextChange(String newText) {
+        // Searching as the user types is only quick enough with the index.
+        // Setting the text of a query which has been searched for brings us
+        // here too, and mustn't replace its results with the index's.
+        if (   EventSearchIndex.getInstance(this).isReady()
+            && EventSearchIndex.buildMatchExpression(newText) != null
+            && !newText.equals(mQuery))
+        {
+            mQuery = newText;
+            mController.sendAction(this, CalendarController.ControllerAction.SEARCH, null, null, -1,
+                ViewType.CURRENT, CalendarController.EXTRA_SEARCH_AS_YOU_TYPE, newText,
+                getComponentName());
+        }
         return false;
     }
 
@@ -879,18 +879,7 @@ public class Utils {
             ArrayList<Event> events, int top, int bottom, int minPixels, int[] dayXs,
             Context context) {
 
-        if (!mMinutesLoaded) {
-            if (context == null) {
-                Log.wtf(TAG, "No context and haven't loaded parameters yet! Can't create DNA.");
-            }
-            Resources res = context.getResources();
-            CONFLICT_COLOR = res.getColor(R.color.month_dna_conflict_time_color);
-            WORK_DAY_START_MINUTES = res.getInteger(R.integer.work_start_minutes);
-            WORK_DAY_END_MINUTES = res.getInteger(R.integer.work_end_minutes);
-            WORK_DAY_END_LENGTH = DAY_IN_MINUTES - WORK_DAY_END_MINUTES;
-            WORK_DAY_MINUTES = WORK_DAY_END_MINUTES - WORK_DAY_START_MINUTES;
-            mMinutesLoaded = true;
-        }
+        loadDNAParameters(context);
 
         if (events == null || events.isEmpty() || dayXs == null || dayXs.length < 1
                 || bottom - top < 8 || minPixels < 0) {
@@ -1092,6 +1081,23 @@ public class Utils {
         return strands;
     }
 
+    // Loads the conflict color and the work day from resources the first
+    // time that we make any DNA.
+    static void loadDNAParameters(Context context) {
+        if (!mMinutesLoaded) {
+            if (context == null) {
+                Log.wtf(TAG, "No context and haven't loaded parameters yet! Can't create DNA.");
+            }
+            Resources res = context.getResources();
+            CONFLICT_COLOR = res.getColor(R.color.month_dna_conflict_time_color);
+            WORK_DAY_START_MINUTES = res.getInteger(R.integer.work_start_minutes);
+            WORK_DAY_END_MINUTES = res.getInteger(R.integer.work_end_minutes);
+            WORK_DAY_END_LENGTH = DAY_IN_MINUTES - WORK_DAY_END_MINUTES;
+            WORK_DAY_MINUTES = WORK_DAY_END_MINUTES - WORK_DAY_START_MINUTES;
+            mMinutesLoaded = true;
+        }
+    }
+
     // This figures out allDay colors as allDay events are found
     private static void addAllDayToStrands(Event event, HashMap<Integer, DNAStrand> strands,
             int firstJulianDay, int numDays) {
@@ -1161,7 +1167,7 @@ public class Utils {
      * Compute a pixel offset from the top for a given minute from the work day
      * height and the height of the top area.
      */
-    private static int getPixelOffsetFromMinutes(int minute, int workDayHeight,
+    static int getPixelOffsetFromMinutes(int minute, int workDayHeight,
             int remainderHeight) {
         int y;
         if (minute < WORK_DAY_START_MINUTES) {
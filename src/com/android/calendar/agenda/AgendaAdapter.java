@@ -18,16 +18,16 @@ package com.android.calendar.agenda;
 
 import android.content.Context;
 import android.content.res.Resources;
-import android.database.Cursor;
 import android.provider.CalendarContract.Attendees;
 import android.text.TextUtils;
 import android.text.format.DateFormat;
 import android.text.format.DateUtils;
 import android.text.format.Time;
+import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.BaseAdapter;
 import android.widget.LinearLayout;
-import android.widget.ResourceCursorAdapter;
 import android.widget.TextView;
 
 import com.android.calendar.ColorChipView;
@@ -40,7 +40,14 @@ import java.util.TimeZone;
 
 import ws.xsoh.etar.R;
 
-public class AgendaAdapter extends ResourceCursorAdapter {
+/**
+ * Makes the views for the events in an {@link AgendaPage}. Positions are
+ * event positions within the page.
+ */
+public class AgendaAdapter extends BaseAdapter {
+    private final Context mContext;
+    private final LayoutInflater mInflater;
+    private final int mResource;
     private final String mNoTitleLabel;
     private final Resources mResources;
     private final int mDeclinedColor;
@@ -59,10 +66,12 @@ public class AgendaAdapter extends ResourceCursorAdapter {
     private float mScale;
     private int COLOR_CHIP_ALL_DAY_HEIGHT;
     private int COLOR_CHIP_HEIGHT;
+    private AgendaPage mPage;
 
     public AgendaAdapter(Context context, int resource) {
-        super(context, resource, null);
-
+        mContext = context;
+        mInflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+        mResource = resource;
         mResources = context.getResources();
         mNoTitleLabel = mResources.getString(R.string.no_title_label);
         mDeclinedColor = DynamicTheme.getColor(context, "agenda_item_declined_color");
@@ -84,8 +93,40 @@ public class AgendaAdapter extends ResourceCursorAdapter {
 
     }
 
+    public void changePage(AgendaPage page) {
+        mPage = page;
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        return mPage == null ? 0 : mPage.size();
+    }
+
+    /**
+     * @return the page holding the event at this position
+     */
+    @Override
+    public Object getItem(int position) {
+        return mPage;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mPage == null ? 0 : mPage.getInstanceId(position);
+    }
+
     @Override
-    public void bindView(View view, Context context, Cursor cursor) {
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView;
+        if (view == null) {
+            view = mInflater.inflate(mResource, parent, false);
+        }
+        bindView(view, mContext, mPage, position);
+        return view;
+    }
+
+    private void bindView(View view, Context context, AgendaPage page, int position) {
         ViewHolder holder = null;
 
         // Listview may get confused and pass in a different type of view since
@@ -107,11 +148,11 @@ public class AgendaAdapter extends ResourceCursorAdapter {
             holder.colorChip = (ColorChipView)view.findViewById(R.id.agenda_item_color);
         }
 
-        holder.startTimeMilli = cursor.getLong(AgendaWindowAdapter.INDEX_BEGIN);
+        holder.startTimeMilli = page.getBegin(position);
         // Fade text if event was declined and set the color chip mode (response
-        boolean allDay = cursor.getInt(AgendaWindowAdapter.INDEX_ALL_DAY) != 0;
+        boolean allDay = page.isAllDay(position);
         holder.allDay = allDay;
-        int selfAttendeeStatus = cursor.getInt(AgendaWindowAdapter.INDEX_SELF_ATTENDEE_STATUS);
+        int selfAttendeeStatus = page.getSelfAttendeeStatus(position);
         if (selfAttendeeStatus == Attendees.ATTENDEE_STATUS_DECLINED) {
             holder.title.setTextColor(mDeclinedColor);
             holder.when.setTextColor(mWhereDeclinedColor);
@@ -139,10 +180,9 @@ public class AgendaAdapter extends ResourceCursorAdapter {
         holder.colorChip.setLayoutParams(params);
 
         // Deal with exchange events that the owner cannot respond to
-        int canRespond = cursor.getInt(AgendaWindowAdapter.INDEX_CAN_ORGANIZER_RESPOND);
-        if (canRespond == 0) {
-            String owner = cursor.getString(AgendaWindowAdapter.INDEX_OWNER_ACCOUNT);
-            String organizer = cursor.getString(AgendaWindowAdapter.INDEX_ORGANIZER);
+        if (!page.canOrganizerRespond(position)) {
+            String owner = page.getOwnerAccount(position);
+            String organizer = page.getOrganizer(position);
             if (owner.equals(organizer)) {
                 holder.colorChip.setDrawStyle(ColorChipView.DRAW_FULL);
                 holder.title.setTextColor(mStandardColor);
@@ -155,23 +195,23 @@ public class AgendaAdapter extends ResourceCursorAdapter {
         TextView when = holder.when;
         TextView where = holder.where;
 
-        holder.instanceId = cursor.getLong(AgendaWindowAdapter.INDEX_INSTANCE_ID);
+        holder.instanceId = page.getInstanceId(position);
 
         /* Calendar Color */
-        int color = Utils.getDisplayColorFromColor(cursor.getInt(AgendaWindowAdapter.INDEX_COLOR));
+        int color = Utils.getDisplayColorFromColor(page.getColor(position));
         holder.colorChip.setColor(color);
 
         // What
-        String titleString = cursor.getString(AgendaWindowAdapter.INDEX_TITLE);
+        String titleString = page.getTitle(position);
         if (titleString == null || titleString.length() == 0) {
             titleString = mNoTitleLabel;
         }
         title.setText(titleString);
 
         // When
-        long begin = cursor.getLong(AgendaWindowAdapter.INDEX_BEGIN);
-        long end = cursor.getLong(AgendaWindowAdapter.INDEX_END);
-        String eventTz = cursor.getString(AgendaWindowAdapter.INDEX_TIME_ZONE);
+        long begin = page.getBegin(position);
+        long end = page.getEnd(position);
+        String eventTz = page.getTimeZone(position);
         int flags = 0;
         String whenString;
         // It's difficult to update all the adapters so just query this each
@@ -205,7 +245,7 @@ public class AgendaAdapter extends ResourceCursorAdapter {
         when.setText(whenString);
 
         // Where
-        String whereString = cursor.getString(AgendaWindowAdapter.INDEX_EVENT_LOCATION);
+        String whereString = page.getLocation(position);
         if (whereString != null && whereString.length() > 0) {
             where.setVisibility(View.VISIBLE);
             where.setText(whereString);
@@ -17,7 +17,6 @@
 package com.android.calendar.agenda;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.graphics.Typeface;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
@@ -30,13 +29,12 @@ import android.widget.TextView;
 
 import com.android.calendar.DynamicTheme;
 import com.android.calendar.Utils;
-import com.android.calendar.agenda.AgendaWindowAdapter.DayAdapterInfo;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Formatter;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Locale;
+import java.util.PriorityQueue;
 
 import ws.xsoh.etar.R;
 
@@ -52,6 +50,10 @@ public class AgendaByDayAdapter extends BaseAdapter {
     private final StringBuilder mStringBuilder;
     private ArrayList<RowInfo> mRowInfo;
     private int mTodayJulianDay;
+    // The position of the day header of the first day with events that is
+    // "today" or later, or -1. The adapter uses it to create a view with a
+    // visual separator between the past and the present/future.
+    private int mFirstDayAfterYesterday = -1;
     private Time mTmpTime;
     private String mTimeZone;
     private final Runnable mTZUpdater = new Runnable() {
@@ -282,38 +284,53 @@ public class AgendaByDayAdapter extends BaseAdapter {
         mRowInfo = null;
     }
 
-    public void changeCursor(DayAdapterInfo info) {
-        calculateDays(info);
-        mAgendaAdapter.changeCursor(info.cursor);
+    /**
+     * Shows the events in a page. The page's rows have already been worked
+     * out, so this does no work apart from telling the list.
+     */
+    public void changePage(AgendaPage page) {
+        mRowInfo = page.getRows();
+        mTodayJulianDay = page.todayJulianDay;
+        mFirstDayAfterYesterday = -1;
+        mAgendaAdapter.changePage(page);
     }
 
-    public void calculateDays(DayAdapterInfo dayAdapterInfo) {
-        Cursor cursor = dayAdapterInfo.cursor;
-        ArrayList<RowInfo> rowInfo = new ArrayList<RowInfo>();
+    /**
+     * Works out the list rows for the events in a page: a day header for
+     * each day which has events, followed by the events, with multiple-day
+     * events repeated on each day that they cover within the page's range.
+     * This is called on the worker thread which builds the page, and only
+     * looks at that page's events: pages cover separate ranges of days, and
+     * the query for each range returns the multiple-day events which
+     * started before it, so the rows of neighbouring pages join up.
+     *
+     * @param page the events, sorted by start day and start time
+     * @param timeZone the time zone in which to lay out the days
+     */
+    static ArrayList<RowInfo> calculateDays(AgendaPage page, String timeZone) {
+        int count = page.size();
+        ArrayList<RowInfo> rowInfo = new ArrayList<RowInfo>(count * 2);
         int prevStartDay = -1;
 
-        Time tempTime = new Time(mTimeZone);
-        long now = System.currentTimeMillis();
-        tempTime.set(now);
-        mTodayJulianDay = Time.getJulianDay(now, tempTime.gmtoff);
-
-        LinkedList<MultipleDayInfo> multipleDayList = new LinkedList<MultipleDayInfo>();
-        for (int position = 0; cursor.moveToNext(); position++) {
-            int startDay = cursor.getInt(AgendaWindowAdapter.INDEX_START_DAY);
-            long id = cursor.getLong(AgendaWindowAdapter.INDEX_EVENT_ID);
-            long startTime =  cursor.getLong(AgendaWindowAdapter.INDEX_BEGIN);
-            long endTime =  cursor.getLong(AgendaWindowAdapter.INDEX_END);
-            long instanceId = cursor.getLong(AgendaWindowAdapter.INDEX_INSTANCE_ID);
-            boolean allDay = cursor.getInt(AgendaWindowAdapter.INDEX_ALL_DAY) != 0;
+        DayTimes times = new DayTimes(timeZone);
+
+        MultipleDays multipleDays = new MultipleDays();
+        for (int position = 0; position < count; position++) {
+            int startDay = page.getStartDay(position);
+            long id = page.getEventId(position);
+            long startTime = page.getBegin(position);
+            long endTime = page.getEnd(position);
+            long instanceId = page.getInstanceId(position);
+            boolean allDay = page.isAllDay(position);
             if (allDay) {
-                startTime = Utils.convertAlldayUtcToLocal(tempTime, startTime, mTimeZone);
-                endTime = Utils.convertAlldayUtcToLocal(tempTime, endTime, mTimeZone);
+                startTime = times.convertAlldayStart(startTime);
+                endTime = times.convertAlldayEnd(endTime);
             }
             // Skip over the days outside of the adapter's range
-            startDay = Math.max(startDay, dayAdapterInfo.start);
+            startDay = Math.max(startDay, page.start);
             // Make sure event's start time is not before the start of the day
             // (setJulianDay sets the time to 12:00am)
-            long adapterStartTime = tempTime.setJulianDay(startDay);
+            long adapterStartTime = times.getDayStart(startDay);
             startTime = Math.max(startTime, adapterStartTime);
 
             if (startDay != prevStartDay) {
@@ -324,37 +341,8 @@ public class AgendaByDayAdapter extends BaseAdapter {
                     // If there are any multiple-day events that span the empty
                     // range of days, then create day headers and events for
                     // those multiple-day events.
-                    boolean dayHeaderAdded = false;
-                    for (int currentDay = prevStartDay + 1; currentDay <= startDay; currentDay++) {
-                        dayHeaderAdded = false;
-                        Iterator<MultipleDayInfo> iter = multipleDayList.iterator();
-                        while (iter.hasNext()) {
-                            MultipleDayInfo info = iter.next();
-                            // If this event has ended then remove it from the
-                            // list.
-                            if (info.mEndDay < currentDay) {
-                                iter.remove();
-                                continue;
-                            }
-
-                            // If this is the first event for the day, then
-                            // insert a day header.
-                            if (!dayHeaderAdded) {
-                                rowInfo.add(new RowInfo(TYPE_DAY, currentDay));
-                                dayHeaderAdded = true;
-                            }
-                            long nextMidnight = Utils.getNextMidnight(tempTime,
-                                    info.mEventStartTimeMilli, mTimeZone);
-
-                            long infoEndTime = (info.mEndDay == currentDay) ?
-                                    info.mEventEndTimeMilli : nextMidnight;
-                            rowInfo.add(new RowInfo(TYPE_MEETING, currentDay, info.mPosition,
-                                    info.mEventId, info.mEventStartTimeMilli,
-                                    infoEndTime, info.mInstanceId, info.mAllDay));
-
-                            info.mEventStartTimeMilli = nextMidnight;
-                        }
-                    }
+                    boolean dayHeaderAdded =
+                            multipleDays.addRows(rowInfo, prevStartDay + 1, startDay, times);
 
                     // If the day header was not added for the start day, then
                     // add it now.
@@ -367,13 +355,13 @@ public class AgendaByDayAdapter extends BaseAdapter {
 
             // If this event spans multiple days, then add it to the multipleDay
             // list.
-            int endDay = cursor.getInt(AgendaWindowAdapter.INDEX_END_DAY);
+            int endDay = page.getEndDay(position);
 
             // Skip over the days outside of the adapter's range
-            endDay = Math.min(endDay, dayAdapterInfo.end);
+            endDay = Math.min(endDay, page.end);
             if (endDay > startDay) {
-                long nextMidnight = Utils.getNextMidnight(tempTime, startTime, mTimeZone);
-                multipleDayList.add(new MultipleDayInfo(position, endDay, id, nextMidnight,
+                long nextMidnight = times.getNextMidnight(startTime);
+                multipleDays.add(new MultipleDayInfo(position, endDay, id, nextMidnight,
                         endTime, instanceId, allDay));
                 // Add in the event for this cursor position - since it is the start of a multi-day
                 // event, the end time is midnight
@@ -389,38 +377,9 @@ public class AgendaByDayAdapter extends BaseAdapter {
         // There are no more cursor events but we might still have multiple-day
         // events left.  So create day headers and events for those.
         if (prevStartDay > 0) {
-            for (int currentDay = prevStartDay + 1; currentDay <= dayAdapterInfo.end;
-                    currentDay++) {
-                boolean dayHeaderAdded = false;
-                Iterator<MultipleDayInfo> iter = multipleDayList.iterator();
-                while (iter.hasNext()) {
-                    MultipleDayInfo info = iter.next();
-                    // If this event has ended then remove it from the
-                    // list.
-                    if (info.mEndDay < currentDay) {
-                        iter.remove();
-                        continue;
-                    }
-
-                    // If this is the first event for the day, then
-                    // insert a day header.
-                    if (!dayHeaderAdded) {
-                        rowInfo.add(new RowInfo(TYPE_DAY, currentDay));
-                        dayHeaderAdded = true;
-                    }
-                    long nextMidnight = Utils.getNextMidnight(tempTime, info.mEventStartTimeMilli,
-                            mTimeZone);
-                    long infoEndTime =
-                            (info.mEndDay == currentDay) ? info.mEventEndTimeMilli : nextMidnight;
-                    rowInfo.add(new RowInfo(TYPE_MEETING, currentDay, info.mPosition,
-                            info.mEventId, info.mEventStartTimeMilli, infoEndTime,
-                            info.mInstanceId, info.mAllDay));
-
-                    info.mEventStartTimeMilli = nextMidnight;
-                }
-            }
+            multipleDays.addRows(rowInfo, prevStartDay + 1, page.end, times);
         }
-        mRowInfo = rowInfo;
+        return rowInfo;
     }
 
     /**
@@ -525,11 +484,7 @@ public class AgendaByDayAdapter extends BaseAdapter {
      */
     public boolean isFirstDayAfterYesterday(int position) {
         int headerPos = getHeaderPosition(position);
-        RowInfo row = mRowInfo.get(headerPos);
-        if (row != null) {
-            return row.mFirstDayAfterYesterday;
-        }
-        return false;
+        return headerPos != -1 && headerPos == mFirstDayAfterYesterday;
     }
 
     /**
@@ -565,8 +520,8 @@ public class AgendaByDayAdapter extends BaseAdapter {
         if (mRowInfo == null || position < 0 || position > mRowInfo.size()) {
             return;
         }
-        RowInfo row = mRowInfo.get(position);
-        row.mFirstDayAfterYesterday = true;
+        // The rows belong to an immutable page, so the mark is kept here.
+        mFirstDayAfterYesterday = getHeaderPosition(position);
     }
 
     /**
@@ -617,7 +572,7 @@ public class AgendaByDayAdapter extends BaseAdapter {
         boolean grayed;
     }
 
-    private static class RowInfo {
+    static class RowInfo {
         // mType is either a day header (TYPE_DAY) or an event (TYPE_MEETING)
         final int mType;
 
@@ -628,10 +583,6 @@ public class AgendaByDayAdapter extends BaseAdapter {
         final long mEventEndTimeMilli;
         final long mInstanceId;
         final boolean mAllDay;
-        // This is used to mark a day header as the first day with events that is "today"
-        // or later. This flag is used by the adapter to create a view with a visual separator
-        // between the past and the present/future
-        boolean mFirstDayAfterYesterday;
 
         RowInfo(int type, int julianDay, int position, long id, long startTime, long endTime,
                 long instanceId, boolean allDay) {
@@ -641,7 +592,6 @@ public class AgendaByDayAdapter extends BaseAdapter {
             mEventId = id;
             mEventStartTimeMilli = startTime;
             mEventEndTimeMilli = endTime;
-            mFirstDayAfterYesterday = false;
             mInstanceId = instanceId;
             mAllDay = allDay;
         }
@@ -653,7 +603,6 @@ public class AgendaByDayAdapter extends BaseAdapter {
             mEventId = 0;
             mEventStartTimeMilli = 0;
             mEventEndTimeMilli = 0;
-            mFirstDayAfterYesterday = false;
             mInstanceId = -1;
             mAllDay = false;
         }
@@ -679,4 +628,135 @@ public class AgendaByDayAdapter extends BaseAdapter {
             mAllDay = allDay;
         }
     }
+
+    /**
+     * The multiple-day events which are still running, in the order in which
+     * they started, which is the order in which they are shown on each day.
+     * A heap ordered by end day tells us without a scan whether any of them
+     * have ended, and lets us skip straight over days with none running.
+     */
+    private static class MultipleDays {
+        private final ArrayList<MultipleDayInfo> mRunning = new ArrayList<MultipleDayInfo>();
+        private final PriorityQueue<MultipleDayInfo> mEndings =
+                new PriorityQueue<MultipleDayInfo>(16, new Comparator<MultipleDayInfo>() {
+                    @Override
+                    public int compare(MultipleDayInfo a, MultipleDayInfo b) {
+                        return a.mEndDay < b.mEndDay ? -1 : (a.mEndDay == b.mEndDay ? 0 : 1);
+                    }
+                });
+
+        void add(MultipleDayInfo info) {
+            mRunning.add(info);
+            mEndings.add(info);
+        }
+
+        // Drops the events which ended before this day.
+        private void removeEnded(int julianDay) {
+            if (mEndings.isEmpty() || mEndings.peek().mEndDay >= julianDay) {
+                return;
+            }
+            do {
+                mEndings.poll();
+            } while (!mEndings.isEmpty() && mEndings.peek().mEndDay < julianDay);
+            int kept = 0;
+            for (int i = 0; i < mRunning.size(); i++) {
+                MultipleDayInfo info = mRunning.get(i);
+                if (info.mEndDay >= julianDay) {
+                    mRunning.set(kept++, info);
+                }
+            }
+            for (int i = mRunning.size() - 1; i >= kept; i--) {
+                mRunning.remove(i);
+            }
+        }
+
+        /**
+         * Adds a day header and a row for each running event on each day
+         * from firstDay to lastDay which has any.
+         *
+         * @return true if a day header was added for lastDay
+         */
+        boolean addRows(ArrayList<RowInfo> rowInfo, int firstDay, int lastDay,
+                        DayTimes times) {
+            boolean dayHeaderAdded = false;
+            for (int currentDay = firstDay; currentDay <= lastDay; currentDay++) {
+                removeEnded(currentDay);
+                if (mRunning.isEmpty()) {
+                    // Nothing more can start until the next event.
+                    return false;
+                }
+                rowInfo.add(new RowInfo(TYPE_DAY, currentDay));
+                dayHeaderAdded = true;
+                for (int i = 0; i < mRunning.size(); i++) {
+                    MultipleDayInfo info = mRunning.get(i);
+                    long nextMidnight = times.getNextMidnight(info.mEventStartTimeMilli);
+                    long infoEndTime = (info.mEndDay == currentDay) ?
+                            info.mEventEndTimeMilli : nextMidnight;
+                    rowInfo.add(new RowInfo(TYPE_MEETING, currentDay, info.mPosition,
+                            info.mEventId, info.mEventStartTimeMilli, infoEndTime,
+                            info.mInstanceId, info.mAllDay));
+
+                    info.mEventStartTimeMilli = nextMidnight;
+                }
+            }
+            return dayHeaderAdded;
+        }
+    }
+
+    /**
+     * The Time calculations which calculateDays makes, each remembering its
+     * last answer. Events mostly come in runs which start on the same day,
+     * all-day events in runs with the same dates, and the multiple-day
+     * events running on a day all move on to the same midnight, so most
+     * calls don't need to touch the Time at all.
+     */
+    private static class DayTimes {
+        private final Time mTime;
+        private final String mTimeZone;
+        private int mJulianDay = -1;
+        private long mDayStart;
+        private long mUtcStart = Long.MIN_VALUE;
+        private long mLocalStart;
+        private long mUtcEnd = Long.MIN_VALUE;
+        private long mLocalEnd;
+        private long mMidnightFrom = Long.MIN_VALUE;
+        private long mMidnight;
+
+        DayTimes(String timeZone) {
+            mTime = new Time(timeZone);
+            mTimeZone = timeZone;
+        }
+
+        long getDayStart(int julianDay) {
+            if (julianDay != mJulianDay) {
+                mJulianDay = julianDay;
+                mDayStart = mTime.setJulianDay(julianDay);
+            }
+            return mDayStart;
+        }
+
+        long convertAlldayStart(long utcTime) {
+            if (utcTime != mUtcStart) {
+                mUtcStart = utcTime;
+                mLocalStart = Utils.convertAlldayUtcToLocal(mTime, utcTime, mTimeZone);
+            }
+            return mLocalStart;
+        }
+
+        long convertAlldayEnd(long utcTime) {
+            if (utcTime != mUtcEnd) {
+                mUtcEnd = utcTime;
+                mLocalEnd = Utils.convertAlldayUtcToLocal(mTime, utcTime, mTimeZone);
+            }
+            return mLocalEnd;
+        }
+
+        long getNextMidnight(long millis) {
+            if (millis != mMidnightFrom) {
+                mMidnightFrom = millis;
+                mMidnight = Utils.getNextMidnight(mTime, millis, mTimeZone);
+            }
+            return mMidnight;
+        }
+    }
 }
@@ -40,6 +40,7 @@ import com.android.calendar.CalendarController;
 import com.android.calendar.CalendarController.ActionInfo;
 import com.android.calendar.CalendarController.ControllerAction;
 import com.android.calendar.CalendarController.ViewType;
+import com.android.calendar.EventChangeTracker;
 import com.android.calendar.StickyHeaderListView;
 import com.android.calendar.Utils;
 import com.android.calendar.settings.GeneralPreferences;
@@ -317,7 +318,7 @@ public class AgendaFragment extends Fragment implements CalendarController.Actio
         mForceReplace = false;
     }
 
-    private void search(String query, Time time) {
+    private void search(String query, Time time, boolean asYouType) {
         mQuery = query;
         if (time != null) {
             mTime.set(time);
@@ -326,12 +327,18 @@ public class AgendaFragment extends Fragment implements CalendarController.Actio
             // The view hasn't been set yet. Just return.
             return;
         }
+        mAgendaListView.setSearchAsYouType(asYouType);
         mAgendaListView.goTo(time, -1, mQuery, true, false);
     }
 
     @Override
     public void eventsChanged() {
         if (mAgendaListView != null) {
+            EventChangeTracker.Changes changes = mController.getEventChanges();
+            if ((changes != null) && !mAgendaListView.isAffectedBy(changes)) {
+                // Nothing we have loaded has changed.
+                return;
+            }
             mAgendaListView.refresh(true);
         }
     }
@@ -352,7 +359,8 @@ public class AgendaFragment extends Fragment implements CalendarController.Actio
                     (actionInfo.selectedTime != null) ? actionInfo.selectedTime : actionInfo.startTime;
             goTo(actionInfo, true);
         } else if (actionInfo.actionType == ControllerAction.SEARCH) {
-            search(actionInfo.query, actionInfo.startTime);
+            search(actionInfo.query, actionInfo.startTime,
+                actionInfo.extraLong == CalendarController.EXTRA_SEARCH_AS_YOU_TYPE);
         } else if (actionInfo.actionType == ControllerAction.EVENTS_CHANGED) {
             eventsChanged();
         }
@@ -390,6 +398,9 @@ public class AgendaFragment extends Fragment implements CalendarController.Actio
     @Override
     public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
             int totalItemCount) {
+        if (mAdapter != null) {
+            mAdapter.onScroll(firstVisibleItem);
+        }
         int julianDay = mAgendaListView.getJulianDayFromPosition(firstVisibleItem
                 - mAgendaListView.getHeaderViewsCount());
         // On error - leave the old view
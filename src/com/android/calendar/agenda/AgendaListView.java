@@ -32,6 +32,7 @@ import android.widget.TextView;
 import com.android.calendar.CalendarController;
 import com.android.calendar.CalendarController.ControllerAction;
 import com.android.calendar.DeleteEventHelper;
+import com.android.calendar.EventChangeTracker;
 import com.android.calendar.Utils;
 import com.android.calendar.agenda.AgendaAdapter.ViewHolder;
 import com.android.calendar.agenda.AgendaWindowAdapter.AgendaItem;
@@ -223,10 +224,26 @@ public class AgendaListView extends ListView implements OnItemClickListener {
         mWindowAdapter.refresh(mTime, id, searchQuery, forced, refreshEventInfo);
     }
 
+    /**
+     * @param asYouType true if the search query is still being typed, so
+     *                  it should be answered from the search index
+     */
+    public void setSearchAsYouType(boolean asYouType) {
+        mWindowAdapter.setSearchAsYouType(asYouType);
+    }
+
     public void refresh(boolean forced) {
         mWindowAdapter.refresh(mTime, -1, null, forced, false);
     }
 
+    /**
+     * @return true if a change to the calendar data may affect the days
+     * which we have loaded
+     */
+    public boolean isAffectedBy(EventChangeTracker.Changes changes) {
+        return mWindowAdapter.isAffectedBy(changes);
+    }
+
     public void deleteSelectedEvent() {
         int position = getSelectedItemPosition();
         AgendaItem agendaItem = mWindowAdapter.getAgendaItemByPosition(position);
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.agenda;
+
+import android.database.Cursor;
+import android.text.format.Time;
+
+import java.util.ArrayList;
+
+/**
+ * An immutable copy of the instances returned by one agenda query, together
+ * with the list rows (day headers and events) worked out from them by
+ * {@link AgendaByDayAdapter#calculateDays}.
+ *
+ * Pages are built on a worker thread, which closes the cursor as soon as
+ * {@link #fromCursor} has copied it. The UI thread only reads the arrays,
+ * so it never needs to touch or close a Cursor. Event positions within a
+ * page are the positions the events had in the cursor.
+ */
+final class AgendaPage {
+    final int start; // first day covered by the query
+    final int end; // last day covered by the query
+    final int todayJulianDay; // today when the page was made
+
+    private final long[] mInstanceId;
+    private final String[] mTitle;
+    private final String[] mLocation;
+    private final boolean[] mAllDay;
+    private final int[] mColor;
+    private final long[] mBegin;
+    private final long[] mEnd;
+    private final long[] mEventId;
+    private final int[] mStartDay;
+    private final int[] mEndDay;
+    private final int[] mSelfAttendeeStatus;
+    private final String[] mOrganizer;
+    private final String[] mOwnerAccount;
+    private final boolean[] mCanOrganizerRespond;
+    private final String[] mTimeZone;
+    private final ArrayList<AgendaByDayAdapter.RowInfo> mRows;
+
+    private AgendaPage(Cursor cursor, int start, int end, String timeZone) {
+        this.start = start;
+        this.end = end;
+        int count = cursor.getCount();
+        mInstanceId = new long[count];
+        mTitle = new String[count];
+        mLocation = new String[count];
+        mAllDay = new boolean[count];
+        mColor = new int[count];
+        mBegin = new long[count];
+        mEnd = new long[count];
+        mEventId = new long[count];
+        mStartDay = new int[count];
+        mEndDay = new int[count];
+        mSelfAttendeeStatus = new int[count];
+        mOrganizer = new String[count];
+        mOwnerAccount = new String[count];
+        mCanOrganizerRespond = new boolean[count];
+        mTimeZone = new String[count];
+        cursor.moveToPosition(-1);
+        for (int i = 0; i < count && cursor.moveToNext(); ++i) {
+            mInstanceId[i] = cursor.getLong(AgendaWindowAdapter.INDEX_INSTANCE_ID);
+            mTitle[i] = cursor.getString(AgendaWindowAdapter.INDEX_TITLE);
+            mLocation[i] = cursor.getString(AgendaWindowAdapter.INDEX_EVENT_LOCATION);
+            mAllDay[i] = cursor.getInt(AgendaWindowAdapter.INDEX_ALL_DAY) != 0;
+            mColor[i] = cursor.getInt(AgendaWindowAdapter.INDEX_COLOR);
+            mBegin[i] = cursor.getLong(AgendaWindowAdapter.INDEX_BEGIN);
+            mEnd[i] = cursor.getLong(AgendaWindowAdapter.INDEX_END);
+            mEventId[i] = cursor.getLong(AgendaWindowAdapter.INDEX_EVENT_ID);
+            mStartDay[i] = cursor.getInt(AgendaWindowAdapter.INDEX_START_DAY);
+            mEndDay[i] = cursor.getInt(AgendaWindowAdapter.INDEX_END_DAY);
+            mSelfAttendeeStatus[i] =
+                cursor.getInt(AgendaWindowAdapter.INDEX_SELF_ATTENDEE_STATUS);
+            mOrganizer[i] = cursor.getString(AgendaWindowAdapter.INDEX_ORGANIZER);
+            mOwnerAccount[i] = cursor.getString(AgendaWindowAdapter.INDEX_OWNER_ACCOUNT);
+            mCanOrganizerRespond[i] =
+                cursor.getInt(AgendaWindowAdapter.INDEX_CAN_ORGANIZER_RESPOND) != 0;
+            mTimeZone[i] = cursor.getString(AgendaWindowAdapter.INDEX_TIME_ZONE);
+        }
+
+        Time time = new Time(timeZone);
+        long now = System.currentTimeMillis();
+        time.set(now);
+        todayJulianDay = Time.getJulianDay(now, time.gmtoff);
+        // The arrays are all filled in, so the rows can be worked out now.
+        mRows = AgendaByDayAdapter.calculateDays(this, timeZone);
+    }
+
+    /**
+     * Copies the rows of an agenda query into a new page. This does not
+     * close the cursor.
+     *
+     * @param cursor the result of the query, with the columns of
+     *        AgendaWindowAdapter.PROJECTION
+     * @param start the first Julian day which the query covered
+     * @param end the last Julian day which the query covered
+     * @param timeZone the time zone in which to lay out the days
+     */
+    static AgendaPage fromCursor(Cursor cursor, int start, int end, String timeZone) {
+        return new AgendaPage(cursor, start, end, timeZone);
+    }
+
+    /**
+     * @return the number of events in the page
+     */
+    int size() {
+        return mInstanceId.length;
+    }
+
+    /**
+     * @return the list rows, which must not be modified
+     */
+    ArrayList<AgendaByDayAdapter.RowInfo> getRows() {
+        return mRows;
+    }
+
+    /**
+     * @return the position of the event instance with this id, or -1
+     */
+    int indexOfInstance(long instanceId) {
+        for (int i = 0; i < mInstanceId.length; ++i) {
+            if (mInstanceId[i] == instanceId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    long getInstanceId(int position) {
+        return mInstanceId[position];
+    }
+
+    String getTitle(int position) {
+        return mTitle[position];
+    }
+
+    String getLocation(int position) {
+        return mLocation[position];
+    }
+
+    boolean isAllDay(int position) {
+        return mAllDay[position];
+    }
+
+    int getColor(int position) {
+        return mColor[position];
+    }
+
+    long getBegin(int position) {
+        return mBegin[position];
+    }
+
+    long getEnd(int position) {
+        return mEnd[position];
+    }
+
+    long getEventId(int position) {
+        return mEventId[position];
+    }
+
+    int getStartDay(int position) {
+        return mStartDay[position];
+    }
+
+    int getEndDay(int position) {
+        return mEndDay[position];
+    }
+
+    int getSelfAttendeeStatus(int position) {
+        return mSelfAttendeeStatus[position];
+    }
+
+    String getOrganizer(int position) {
+        return mOrganizer[position];
+    }
+
+    String getOwnerAccount(int position) {
+        return mOwnerAccount[position];
+    }
+
+    boolean canOrganizerRespond(int position) {
+        return mCanOrganizerRespond[position];
+    }
+
+    String getTimeZone(int position) {
+        return mTimeZone[position];
+    }
+}
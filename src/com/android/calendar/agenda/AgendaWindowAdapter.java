@@ -17,14 +17,15 @@
 package com.android.calendar.agenda;
 
 import android.app.Activity;
-import android.content.AsyncQueryHandler;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.Context;
 import android.content.res.Resources;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.provider.CalendarContract;
 import android.provider.CalendarContract.Attendees;
 import android.provider.CalendarContract.Calendars;
@@ -44,6 +45,8 @@ import android.widget.TextView;
 import com.android.calendar.CalendarController;
 import com.android.calendar.CalendarController.ControllerAction;
 import com.android.calendar.CalendarController.ViewType;
+import com.android.calendar.EventChangeTracker;
+import com.android.calendar.EventSearchIndex;
 import com.android.calendar.StickyHeaderListView;
 import com.android.calendar.Utils;
 
@@ -52,7 +55,7 @@ import java.util.Formatter;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Locale;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ws.xsoh.etar.R;
 
@@ -124,11 +127,16 @@ public class AgendaWindowAdapter extends BaseAdapter
     // position == positionInListView - OFF_BY_ONE_BUG
     // TODO Need to look into this.
     private static final int OFF_BY_ONE_BUG = 1;
-    private static final int MAX_NUM_OF_ADAPTERS = 5;
     private static final int IDEAL_NUM_OF_EVENTS = 50;
+    // Pages which lie entirely more than this many rows away from the
+    // visible part of the list are dropped when a new page arrives.
+    private static final int EVICTION_DISTANCE = 3 * IDEAL_NUM_OF_EVENTS;
     private static final int MIN_QUERY_DURATION = 7; // days
     private static final int MAX_QUERY_DURATION = 60; // days
-    private static final int PREFETCH_BOUNDARY = 1;
+    // Windows can be longer than MAX_QUERY_DURATION when events are sparse
+    private static final int MAX_SPARSE_QUERY_DURATION = 366; // days
+    // Start loading the next window when the list gets this close to an end
+    private static final int PREFETCH_BOUNDARY = IDEAL_NUM_OF_EVENTS / 2;
     /** Times to auto-expand/retry query after getting no data */
     private static final int RETRIES_ON_NO_DATA = 1;
     // Types of Query
@@ -139,12 +147,14 @@ public class AgendaWindowAdapter extends BaseAdapter
 
     private final Context mContext;
     private final Resources mResources;
-    private final QueryHandler mQueryHandler;
+    // Each lane has at most one query in flight, so the next older and
+    // newer windows can load at the same time.
+    private final Lane mCleanLane = new Lane(QUERY_TYPE_CLEAN);
+    private final Lane mOlderLane = new Lane(QUERY_TYPE_OLDER);
+    private final Lane mNewerLane = new Lane(QUERY_TYPE_NEWER);
     private final AgendaListView mAgendaListView;
     private final LinkedList<DayAdapterInfo> mAdapterInfos =
             new LinkedList<DayAdapterInfo>();
-    private final ConcurrentLinkedQueue<QuerySpec> mQueryQueue =
-            new ConcurrentLinkedQueue<QuerySpec>();
     private final TextView mHeaderView;
     private final TextView mFooterView;
     private final boolean mIsTabletConfig;
@@ -170,10 +180,6 @@ public class AgendaWindowAdapter extends BaseAdapter
      * The sum of the rows in all the adapters
      */
     private int mRowCount;
-    /**
-     * The number of times we have queried and gotten no results back
-     */
-    private int mEmptyCursorCount;
     /**
      * Cached value of the last used adapter
      */
@@ -181,21 +187,12 @@ public class AgendaWindowAdapter extends BaseAdapter
     private boolean mDoneSettingUpHeaderFooter = false;
     private int mStickyHeaderSize = 44; // Initial size big enough for it to work
     /**
-     * When the user scrolled to the top, a query will be made for older events
-     * and this will be incremented. Don't make more requests if
-     * mOlderRequests > mOlderRequestsProcessed.
+     * How fast the list is scrolling in rows per second, positive towards
+     * newer events. Used to size the windows which we load ahead of it.
      */
-    private int mOlderRequests;
-    /** Number of "older" query that has been processed. */
-    private int mOlderRequestsProcessed;
-    /**
-     * When the user scrolled to the bottom, a query will be made for newer
-     * events and this will be incremented. Don't make more requests if
-     * mNewerRequests > mNewerRequestsProcessed.
-     */
-    private int mNewerRequests;
-    /** Number of "newer" query that has been processed. */
-    private int mNewerRequestsProcessed;
+    private float mScrollVelocity;
+    private int mLastScrollPosition;
+    private long mLastScrollMillis;
     private String mTimeZone;
     private final Runnable mTZUpdater = new Runnable() {
         @Override
@@ -208,6 +205,8 @@ public class AgendaWindowAdapter extends BaseAdapter
     private boolean mHideDeclined;
     /** The current search query, or null if none */
     private String mSearchQuery;
+    /** True if the search query is still being typed */
+    private boolean mSearchAsYouType;
     private long mSelectedInstanceId = -1;
     private AgendaAdapter.ViewHolder mSelectedVH = null;
 
@@ -223,7 +222,6 @@ public class AgendaWindowAdapter extends BaseAdapter
 
         mTimeZone = Utils.getTimeZone(context, mTZUpdater);
         mAgendaListView = agendaListView;
-        mQueryHandler = new QueryHandler(context.getContentResolver());
 
         mStringBuilder = new StringBuilder(50);
         mFormatter = new Formatter(mStringBuilder, Locale.getDefault());
@@ -329,9 +327,8 @@ public class AgendaWindowAdapter extends BaseAdapter
             }
             // Regular event
             if (curPos >= 0) {
-                info.cursor.moveToPosition(curPos);
-                return info.cursor.getLong(AgendaWindowAdapter.INDEX_EVENT_ID) << 20 +
-                    info.cursor.getLong(AgendaWindowAdapter.INDEX_BEGIN);
+                return info.page.getEventId(curPos) << 20 +
+                    info.page.getBegin(curPos);
             }
             // Day Header
             return info.dayAdapter.findJulianDayFromPosition(position);
@@ -343,18 +340,12 @@ public class AgendaWindowAdapter extends BaseAdapter
 
     // Abstract Method in BaseAdapter
     public View getView(int position, View convertView, ViewGroup parent) {
-        if (position >= (mRowCount - PREFETCH_BOUNDARY)
-                && mNewerRequests <= mNewerRequestsProcessed) {
-            if (DEBUGLOG) Log.e(TAG, "queryForNewerEvents: ");
-            mNewerRequests++;
-            queueQuery(new QuerySpec(QUERY_TYPE_NEWER));
+        if (position >= (mRowCount - PREFETCH_BOUNDARY)) {
+            lookAhead(mNewerLane);
         }
 
-        if (position < PREFETCH_BOUNDARY
-                && mOlderRequests <= mOlderRequestsProcessed) {
-            if (DEBUGLOG) Log.e(TAG, "queryForOlderEvents: ");
-            mOlderRequests++;
-            queueQuery(new QuerySpec(QUERY_TYPE_OLDER));
+        if (position < PREFETCH_BOUNDARY) {
+            lookAhead(mOlderLane);
         }
 
         final View v;
@@ -502,8 +493,8 @@ public class AgendaWindowAdapter extends BaseAdapter
             isDayHeader = true;
         }
 
-        if (cursorPosition < info.cursor.getCount()) {
-            AgendaItem item = buildAgendaItemFromCursor(info.cursor, cursorPosition, isDayHeader);
+        if (cursorPosition < info.page.size()) {
+            AgendaItem item = buildAgendaItem(info.page, cursorPosition, isDayHeader);
             if (!returnEventStartDay && !isDayHeader) {
                 item.startDay = info.dayAdapter.findJulianDayFromPosition(positionInAdapter -
                         info.offset);
@@ -513,18 +504,16 @@ public class AgendaWindowAdapter extends BaseAdapter
         return null;
     }
 
-    private AgendaItem buildAgendaItemFromCursor(final Cursor cursor, int cursorPosition,
+    private AgendaItem buildAgendaItem(final AgendaPage page, int cursorPosition,
             boolean isDayHeader) {
         if (cursorPosition == -1) {
-            cursor.moveToFirst();
-        } else {
-            cursor.moveToPosition(cursorPosition);
+            cursorPosition = 0;
         }
         AgendaItem agendaItem = new AgendaItem();
-        agendaItem.begin = cursor.getLong(AgendaWindowAdapter.INDEX_BEGIN);
-        agendaItem.end = cursor.getLong(AgendaWindowAdapter.INDEX_END);
-        agendaItem.startDay = cursor.getInt(AgendaWindowAdapter.INDEX_START_DAY);
-        agendaItem.allDay = cursor.getInt(AgendaWindowAdapter.INDEX_ALL_DAY) != 0;
+        agendaItem.begin = page.getBegin(cursorPosition);
+        agendaItem.end = page.getEnd(cursorPosition);
+        agendaItem.startDay = page.getStartDay(cursorPosition);
+        agendaItem.allDay = page.isAllDay(cursorPosition);
         if (agendaItem.allDay) { // UTC to Local time conversion
             Time time = new Time(mTimeZone);
             time.setJulianDay(Time.getJulianDay(agendaItem.begin, 0));
@@ -540,7 +529,7 @@ public class AgendaWindowAdapter extends BaseAdapter
 
         // If this is not a day header, then it's an event.
         if (!isDayHeader) {
-            agendaItem.id = cursor.getLong(AgendaWindowAdapter.INDEX_EVENT_ID);
+            agendaItem.id = page.getEventId(cursorPosition);
             if (agendaItem.allDay) {
                 Time time = new Time(mTimeZone);
                 time.setJulianDay(Time.getJulianDay(agendaItem.end, 0));
@@ -574,6 +563,10 @@ public class AgendaWindowAdapter extends BaseAdapter
                         item.allDay), selectedTime);
     }
 
+    public void setSearchAsYouType(boolean asYouType) {
+        mSearchAsYouType = asYouType;
+    }
+
     public void refresh(Time goToTime, long id, String searchQuery, boolean forced,
             boolean refreshEventInfo) {
         if (searchQuery != null) {
@@ -604,12 +597,11 @@ public class AgendaWindowAdapter extends BaseAdapter
                         if (newInstanceId != getSelectedInstanceId()) {
                             setSelectedInstanceId(newInstanceId);
                             mDataChangedHandler.post(mDataChangedRunnable);
-                            Cursor tempCursor = getCursorByPosition(gotoPosition);
-                            if (tempCursor != null) {
+                            AgendaPage tempPage = getPageByPosition(gotoPosition);
+                            if (tempPage != null) {
                                 int tempCursorPosition = getCursorPositionByPosition(gotoPosition);
                                 AgendaItem item =
-                                        buildAgendaItemFromCursor(tempCursor, tempCursorPosition,
-                                                false);
+                                        buildAgendaItem(tempPage, tempCursorPosition, false);
                                 mSelectedVH = new AgendaAdapter.ViewHolder();
                                 mSelectedVH.allDay = item.allDay;
                                 sendViewEvent(item, goToTime.toMillis(false));
@@ -638,9 +630,7 @@ public class AgendaWindowAdapter extends BaseAdapter
             // Pre-fetch more data to overcome a race condition in AgendaListView.shiftSelection
             // Queuing more data with the goToTime set to the selected time skips the call to
             // shiftSelection on refresh.
-            mOlderRequests++;
             queueQuery(0, 0, goToTime, searchQuery, QUERY_TYPE_OLDER, id);
-            mNewerRequests++;
             queueQuery(0, 0, goToTime, searchQuery, QUERY_TYPE_NEWER, id);
         }
     }
@@ -648,27 +638,50 @@ public class AgendaWindowAdapter extends BaseAdapter
     public void close() {
         mShuttingDown = true;
         pruneAdapterInfo(QUERY_TYPE_CLEAN);
-        if (mQueryHandler != null) {
-            mQueryHandler.cancelOperation(0);
-        }
+        mCleanLane.reset();
+        mOlderLane.reset();
+        mNewerLane.reset();
     }
 
     private DayAdapterInfo pruneAdapterInfo(int queryType) {
         synchronized (mAdapterInfos) {
             DayAdapterInfo recycleMe = null;
             if (!mAdapterInfos.isEmpty()) {
-                if (mAdapterInfos.size() >= MAX_NUM_OF_ADAPTERS) {
-                    if (queryType == QUERY_TYPE_NEWER) {
-                        recycleMe = mAdapterInfos.removeFirst();
-                    } else if (queryType == QUERY_TYPE_OLDER) {
-                        recycleMe = mAdapterInfos.removeLast();
-                        // Keep the size only if the oldest items are removed.
-                        recycleMe.size = 0;
+                // Pages hold no cursors, so dropping one is just forgetting it.
+                // Drop the pages at the far end from the new one which are out
+                // of reach of the visible rows, but always keep the one next to
+                // the new page.
+                if (queryType == QUERY_TYPE_NEWER) {
+                    int firstVisible = mAgendaListView.getFirstVisiblePosition() - OFF_BY_ONE_BUG;
+                    int deletedRows = 0;
+                    while (mAdapterInfos.size() > 1) {
+                        DayAdapterInfo info = mAdapterInfos.getFirst();
+                        if (info.offset + info.size + EVICTION_DISTANCE > firstVisible) {
+                            break;
+                        }
+                        mAdapterInfos.removeFirst();
+                        deletedRows += info.size;
+                        recycleMe = info;
                     }
                     if (recycleMe != null) {
-                        if (recycleMe.cursor != null) {
-                            recycleMe.cursor.close();
+                        recycleMe.page = null;
+                        recycleMe.size = deletedRows;
+                        return recycleMe;
+                    }
+                } else if (queryType == QUERY_TYPE_OLDER) {
+                    int lastVisible = mAgendaListView.getLastVisiblePosition() - OFF_BY_ONE_BUG;
+                    while (mAdapterInfos.size() > 1) {
+                        DayAdapterInfo info = mAdapterInfos.getLast();
+                        if (info.offset < lastVisible + EVICTION_DISTANCE) {
+                            break;
                         }
+                        mAdapterInfos.removeLast();
+                        recycleMe = info;
+                    }
+                    if (recycleMe != null) {
+                        recycleMe.page = null;
+                        // Keep the size only if the oldest items are removed.
+                        recycleMe.size = 0;
                         return recycleMe;
                     }
                 }
@@ -680,15 +693,13 @@ public class AgendaWindowAdapter extends BaseAdapter
                     do {
                         info = mAdapterInfos.poll();
                         if (info != null) {
-                            // TODO the following causes ANR's. Do this in a thread.
-                            info.cursor.close();
                             deletedRows += info.size;
                             recycleMe = info;
                         }
                     } while (info != null);
 
                     if (recycleMe != null) {
-                        recycleMe.cursor = null;
+                        recycleMe.page = null;
                         recycleMe.size = deletedRows;
                     }
                 }
@@ -722,6 +733,34 @@ public class AgendaWindowAdapter extends BaseAdapter
         return builder.build();
     }
 
+    // Restricts the selection to the instances of the given events
+    private static String buildSearchSelection(String selection, long[] eventIds) {
+        StringBuilder sb = new StringBuilder(selection);
+        sb.append(" AND ").append(Instances.EVENT_ID).append(" IN (");
+        for (int i = 0; i < eventIds.length; ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(eventIds[i]);
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * @return true if a change to the calendar data may affect the days
+     * which we have loaded
+     */
+    public boolean isAffectedBy(EventChangeTracker.Changes changes) {
+        synchronized (mAdapterInfos) {
+            if (mAdapterInfos.isEmpty()) {
+                // Nothing loaded yet, so we may be waiting for a query.
+                return true;
+            }
+            return changes.intersects(mAdapterInfos.getFirst().start,
+                mAdapterInfos.getLast().end);
+        }
+    }
+
     private boolean isInRange(int start, int end) {
         synchronized (mAdapterInfos) {
             if (mAdapterInfos.isEmpty()) {
@@ -731,19 +770,31 @@ public class AgendaWindowAdapter extends BaseAdapter
         }
     }
 
-    private int calculateQueryDuration(int start, int end) {
-        int queryDuration = MAX_QUERY_DURATION;
+    /**
+     * Works out how many days the next window in a direction should cover.
+     * We aim for IDEAL_NUM_OF_EVENTS rows at the density of the rows which
+     * are already loaded, plus the rows which the list will scroll past
+     * while the query runs if it is being flung that way. When events are
+     * sparse the window can cover up to MAX_SPARSE_QUERY_DURATION days, so
+     * that flinging through them doesn't keep stopping at "loading".
+     */
+    private int calculateQueryDuration(int start, int end, Lane lane) {
+        long queryDuration = MAX_QUERY_DURATION;
         if (mRowCount != 0) {
-            queryDuration = IDEAL_NUM_OF_EVENTS * (end - start + 1) / mRowCount;
+            float speed = lane.mQueryType == QUERY_TYPE_OLDER ?
+                    -mScrollVelocity : mScrollVelocity;
+            long rowsWanted = IDEAL_NUM_OF_EVENTS
+                    + (long) (Math.max(speed, 0) * lane.mLatencyMillis / 1000);
+            queryDuration = rowsWanted * (end - start + 1) / mRowCount;
         }
 
-        if (queryDuration > MAX_QUERY_DURATION) {
-            queryDuration = MAX_QUERY_DURATION;
+        if (queryDuration > MAX_SPARSE_QUERY_DURATION) {
+            queryDuration = MAX_SPARSE_QUERY_DURATION;
         } else if (queryDuration < MIN_QUERY_DURATION) {
             queryDuration = MIN_QUERY_DURATION;
         }
 
-        return queryDuration;
+        return (int) queryDuration;
     }
 
     private boolean queueQuery(int start, int end, Time goToTime,
@@ -759,24 +810,82 @@ public class AgendaWindowAdapter extends BaseAdapter
 
     private boolean queueQuery(QuerySpec queryData) {
         queryData.searchQuery = mSearchQuery;
-        Boolean queuedQuery;
-        synchronized (mQueryQueue) {
-            queuedQuery = false;
-            Boolean doQueryNow = mQueryQueue.isEmpty();
-            mQueryQueue.add(queryData);
-            queuedQuery = true;
-            if (doQueryNow) {
-                doQuery(queryData);
+        queryData.searchAsYouType = mSearchAsYouType;
+        if (queryData.queryType == QUERY_TYPE_CLEAN) {
+            // A clean query replaces everything, so whatever the other lanes
+            // are loading or waiting to load is out of date.
+            mOlderLane.reset();
+            mNewerLane.reset();
+            doQuery(mCleanLane, queryData);
+            return true;
+        }
+        Lane lane = queryData.queryType == QUERY_TYPE_OLDER ? mOlderLane : mNewerLane;
+        if (lane.mRunning != null || mCleanLane.mRunning != null) {
+            // Wait for the window in flight in this direction, or for the
+            // clean query to lay out the days which this one will follow.
+            lane.mWaiting = queryData;
+        } else {
+            doQuery(lane, queryData);
+        }
+        return true;
+    }
+
+    /**
+     * Starts loading the next window in a direction unless one is already
+     * on its way, or we have found that there is nothing more to load.
+     */
+    private void lookAhead(Lane lane) {
+        if (!lane.mExhausted && lane.mRunning == null && lane.mWaiting == null) {
+            if (DEBUGLOG) {
+                Log.e(TAG, lane.mQueryType == QUERY_TYPE_OLDER ?
+                        "queryForOlderEvents: " : "queryForNewerEvents: ");
+            }
+            queueQuery(new QuerySpec(lane.mQueryType));
+        }
+    }
+
+    private void startWaitingQueries() {
+        if (mCleanLane.mRunning == null && mCleanLane.mWaiting != null) {
+            QuerySpec queryData = mCleanLane.mWaiting;
+            mCleanLane.mWaiting = null;
+            doQuery(mCleanLane, queryData);
+        }
+        if (mCleanLane.mRunning != null) {
+            // The other lanes need to know which days it lays out.
+            return;
+        }
+        Lane[] lanes = { mOlderLane, mNewerLane };
+        for (Lane lane : lanes) {
+            if (lane.mRunning == null && lane.mWaiting != null) {
+                QuerySpec queryData = lane.mWaiting;
+                lane.mWaiting = null;
+                if (DEBUGLOG) Log.e(TAG, "Query accepted: " + queryData.queryType);
+                doQuery(lane, queryData);
+            }
+        }
+    }
+
+    /**
+     * @return true if the result of a query joins on to the end of the
+     * loaded days which it was made for
+     */
+    private boolean fitsLoadedDays(QuerySpec data) {
+        synchronized (mAdapterInfos) {
+            if (data.queryType == QUERY_TYPE_CLEAN || mAdapterInfos.isEmpty()) {
+                return true;
             }
+            if (data.queryType == QUERY_TYPE_OLDER) {
+                return data.end == mAdapterInfos.getFirst().start - 1;
+            }
+            return data.start == mAdapterInfos.getLast().end + 1;
         }
-        return queuedQuery;
     }
 
-    private void doQuery(QuerySpec queryData) {
+    private void doQuery(Lane lane, QuerySpec queryData) {
         if (!mAdapterInfos.isEmpty()) {
             int start = mAdapterInfos.getFirst().start;
             int end = mAdapterInfos.getLast().end;
-            int queryDuration = calculateQueryDuration(start, end);
+            int queryDuration = calculateQueryDuration(start, end, lane);
             switch(queryData.queryType) {
                 case QUERY_TYPE_OLDER:
                     queryData.end = start - 1;
@@ -800,6 +909,10 @@ public class AgendaWindowAdapter extends BaseAdapter
                 }
 
                 queryData.queryType = QUERY_TYPE_CLEAN;
+                lane = mCleanLane;
+                // The other lanes start again from the days which this lays out.
+                mOlderLane.requeue();
+                mNewerLane.requeue();
 
                 if (queryData.start > start) {
                     queryData.start = start;
@@ -819,14 +932,10 @@ public class AgendaWindowAdapter extends BaseAdapter
                     + time2.toString() + " then go to " + queryData.goToTime);
         }
 
-        mQueryHandler.cancelOperation(0);
+        lane.cancel();
         if (BASICLOG) queryData.queryStartMillis = System.nanoTime();
 
-        Uri queryUri = buildQueryUri(
-                queryData.start, queryData.end, queryData.searchQuery);
-        mQueryHandler.startQuery(0, queryData, queryUri,
-                PROJECTION, buildQuerySelection(), null,
-                AGENDA_SORT_ORDER);
+        lane.startQuery(queryData, buildQuerySelection(), mTimeZone);
     }
 
     private String formatDateString(int julianDay) {
@@ -896,10 +1005,10 @@ public class AgendaWindowAdapter extends BaseAdapter
         return -1;
     }
 
-    private Cursor getCursorByPosition(int position) {
+    private AgendaPage getPageByPosition(int position) {
         DayAdapterInfo info = getAdapterInfoByPosition(position);
         if (info != null) {
-            return info.cursor;
+            return info.page;
         }
         return null;
     }
@@ -956,6 +1065,27 @@ public class AgendaWindowAdapter extends BaseAdapter
 
     public void setScrollState(int state) {
         mListViewScrollState = state;
+        if (state == OnScrollListener.SCROLL_STATE_IDLE) {
+            mScrollVelocity = 0;
+        }
+    }
+
+    /**
+     * Called as the list scrolls, to keep track of how fast it is going.
+     *
+     * @param firstVisibleItem the list position of the first visible row
+     */
+    public void onScroll(int firstVisibleItem) {
+        long now = SystemClock.uptimeMillis();
+        long elapsed = now - mLastScrollMillis;
+        if (mListViewScrollState != OnScrollListener.SCROLL_STATE_IDLE
+                && elapsed > 0 && elapsed < DateUtils.SECOND_IN_MILLIS) {
+            float velocity = (firstVisibleItem - mLastScrollPosition) * 1000f / elapsed;
+            // The list reports each small step, so smooth them out.
+            mScrollVelocity = (mScrollVelocity + velocity) / 2;
+        }
+        mLastScrollPosition = firstVisibleItem;
+        mLastScrollMillis = now;
     }
 
     private static class QuerySpec {
@@ -964,6 +1094,7 @@ public class AgendaWindowAdapter extends BaseAdapter
         int start;
         int end;
         String searchQuery;
+        boolean searchAsYouType;
         int queryType;
         long id;
 
@@ -1021,7 +1152,7 @@ public class AgendaWindowAdapter extends BaseAdapter
      * event, or a header marking the specific day.
      * <p/>
      * The begin and end times of an AgendaItem should always be in local time, even if the event
-     * is all day.  buildAgendaItemFromCursor() converts each event to local time.
+     * is all day.  buildAgendaItem() converts each event to local time.
      */
     static class AgendaItem {
         long begin;
@@ -1032,10 +1163,10 @@ public class AgendaWindowAdapter extends BaseAdapter
     }
 
     static class DayAdapterInfo {
-        Cursor cursor;
+        AgendaPage page;
         AgendaByDayAdapter dayAdapter;
-        int start; // start day of the cursor's coverage
-        int end; // end day of the cursor's coverage
+        int start; // start day of the page's coverage
+        int end; // end day of the page's coverage
         int offset; // offset in position in the list view
         int size; // dayAdapter.getCount()
 
@@ -1061,20 +1192,125 @@ public class AgendaWindowAdapter extends BaseAdapter
         }
     }
 
-    private class QueryHandler extends AsyncQueryHandler {
+    /**
+     * Runs the agenda queries in one direction. A lane has at most one query
+     * in flight, which runs on AsyncTask.THREAD_POOL_EXECUTOR so that the
+     * older and newer lanes can load at the same time. Each result is copied
+     * into an {@link AgendaPage} and the cursor closed on the worker thread,
+     * and then the page is posted back to the UI thread. cancel() drops the
+     * result of the query in flight.
+     */
+    private class Lane {
+        private final int mQueryType;
+        private final Handler mHandler = new Handler();
+        // Only the query started in the current generation is delivered.
+        private final AtomicInteger mGeneration = new AtomicInteger();
+        // The query in flight, or null
+        private QuerySpec mRunning;
+        // The query to start when this lane is free, or null
+        private QuerySpec mWaiting;
+        // How long the last query in this lane took
+        private long mLatencyMillis;
+        // The number of times in a row we have queried and gotten no results back
+        private int mEmptyCursorCount;
+        // Set when we stop looking ahead in this direction because there was
+        // nothing there. Cleared by a clean query or a click on the header
+        // or footer.
+        private boolean mExhausted;
+
+        public Lane(int queryType) {
+            mQueryType = queryType;
+        }
+
+        public void cancel() {
+            mGeneration.incrementAndGet();
+            mRunning = null;
+        }
 
-        public QueryHandler(ContentResolver cr) {
-            super(cr);
+        // Cancels the query in flight, but runs it again when the lane is next free
+        public void requeue() {
+            if (mRunning != null && mWaiting == null) {
+                mWaiting = mRunning;
+            }
+            cancel();
         }
 
-        @Override
-        protected void onQueryComplete(int token, Object cookie, Cursor cursor) {
+        // Forgets everything this lane was doing
+        public void reset() {
+            cancel();
+            mWaiting = null;
+            mExhausted = false;
+        }
+
+        public void startQuery(final QuerySpec data, final String selection,
+                               final String timeZone) {
+            final int generation = mGeneration.get();
+            mRunning = data;
+            // QuerySpec can be changed on the UI thread while we run.
+            final int start = data.start;
+            final int end = data.end;
+            final String searchQuery = data.searchQuery;
+            final boolean searchAsYouType = data.searchAsYouType;
+            final long startMillis = SystemClock.uptimeMillis();
+            final ContentResolver resolver = mContext.getContentResolver();
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (generation != mGeneration.get()) {
+                        return;
+                    }
+                    Uri uri;
+                    String where = selection;
+                    // The index only finds words by their start, so a search
+                    // which has been submitted goes to the provider, which
+                    // also finds words in the middle, and attendees.
+                    long[] matches = searchQuery == null || !searchAsYouType ? null
+                        : EventSearchIndex.getInstance(mContext).match(searchQuery);
+                    if (matches != null) {
+                        // The index has found the events, so we only need
+                        // the provider to expand their instances.
+                        uri = buildQueryUri(start, end, null);
+                        where = buildSearchSelection(selection, matches);
+                    } else {
+                        uri = buildQueryUri(start, end, searchQuery);
+                    }
+                    AgendaPage page = null;
+                    Cursor cursor = null;
+                    try {
+                        cursor = resolver.query(uri, PROJECTION, where, null,
+                                AGENDA_SORT_ORDER);
+                        if (cursor != null) {
+                            page = AgendaPage.fromCursor(cursor, start, end, timeZone);
+                        }
+                    } catch (RuntimeException e) {
+                        // We may have lost permission to read the calendar.
+                        Log.e(TAG, "Agenda query failed", e);
+                    } finally {
+                        if (cursor != null) {
+                            cursor.close();
+                        }
+                    }
+                    final AgendaPage result = page;
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation == mGeneration.get()) {
+                                mRunning = null;
+                                mLatencyMillis = SystemClock.uptimeMillis() - startMillis;
+                                onPageLoaded(data, result);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+
+        private void onPageLoaded(QuerySpec data, AgendaPage page) {
             if (DEBUGLOG) {
-                Log.d(TAG, "(+)onQueryComplete");
+                Log.d(TAG, "(+)onPageLoaded");
             }
-            QuerySpec data = (QuerySpec)cookie;
 
-            if (cursor == null) {
+            if (page == null) {
               if (mAgendaListView != null && mAgendaListView.getContext() instanceof Activity) {
                 ((Activity) mAgendaListView.getContext()).finish();
               }
@@ -1085,7 +1321,7 @@ public class AgendaWindowAdapter extends BaseAdapter
                 long queryEndMillis = System.nanoTime();
                 Log.e(TAG, "Query time(ms): "
                         + (queryEndMillis - data.queryStartMillis) / 1000000
-                        + " Count: " + cursor.getCount());
+                        + " Count: " + page.size());
             }
 
             if (data.queryType == QUERY_TYPE_CLEAN) {
@@ -1093,19 +1329,30 @@ public class AgendaWindowAdapter extends BaseAdapter
             }
 
             if (mShuttingDown) {
-                cursor.close();
+                return;
+            }
+
+            // Windows are merged in order: each one must join on to the end of
+            // the loaded days which it was made for. If that end has moved
+            // since the query started, because pages were dropped from it,
+            // load the window again from where the end is now.
+            if (!fitsLoadedDays(data)) {
+                if (DEBUGLOG) Log.e(TAG, "Reloading window which no longer fits");
+                doQuery(this, data);
                 return;
             }
 
             // Notify Listview of changes and update position
-            int cursorSize = cursor.getCount();
+            int cursorSize = page.size();
             if (cursorSize > 0 || mAdapterInfos.isEmpty() || data.queryType == QUERY_TYPE_CLEAN) {
-                final int listPositionOffset = processNewCursor(data, cursor);
+                final int listPositionOffset = processNewPage(data, page);
                 int newPosition = -1;
                 if (data.goToTime == null) { // Typical Scrolling type query
                     notifyDataSetChanged();
                     if (listPositionOffset != 0) {
                         mAgendaListView.shiftSelection(listPositionOffset);
+                        // Don't mistake the shift for scrolling.
+                        mLastScrollPosition += listPositionOffset;
                     }
                 } else { // refresh() called. Go to the designated position
                     final Time goToTime = data.goToTime;
@@ -1120,7 +1367,7 @@ public class AgendaWindowAdapter extends BaseAdapter
                         Time actualTime = new Time(mTimeZone);
                         actualTime.set(goToTime);
                         if (DEBUGLOG) {
-                            Log.d(TAG, "onQueryComplete: Updating title...");
+                            Log.d(TAG, "onPageLoaded: Updating title...");
                         }
                         CalendarController.getInstance(mContext).sendAction(this,
                                 ControllerAction.UPDATE_TITLE, actualTime, actualTime, -1,
@@ -1144,56 +1391,41 @@ public class AgendaWindowAdapter extends BaseAdapter
                 // size == 1 means a fresh query. Possibly after the data changed.
                 // Let's check whether mSelectedInstanceId is still valid.
                 if (mAdapterInfos.size() == 1 && mSelectedInstanceId != -1) {
-                    boolean found = false;
-                    cursor.moveToPosition(-1);
-                    while (cursor.moveToNext()) {
-                        if (mSelectedInstanceId == cursor
-                                .getLong(AgendaWindowAdapter.INDEX_INSTANCE_ID)) {
-                            found = true;
-                            break;
-                        }
-                    }
-
-                    if (!found) {
+                    if (page.indexOfInstance(mSelectedInstanceId) == -1) {
                         mSelectedInstanceId = -1;
                     }
                 }
 
                 // Show the requested event
                 if (mShowEventOnStart && data.queryType == QUERY_TYPE_CLEAN) {
-                    Cursor tempCursor = null;
+                    AgendaPage tempPage = null;
                     int tempCursorPosition = -1;
 
                     // If no valid event is selected , just pick the first one
                     if (mSelectedInstanceId == -1) {
-                        if (cursor.moveToFirst()) {
-                            mSelectedInstanceId = cursor
-                                    .getLong(AgendaWindowAdapter.INDEX_INSTANCE_ID);
+                        if (page.size() > 0) {
+                            mSelectedInstanceId = page.getInstanceId(0);
                             // Set up a dummy view holder so we have the right all day
                             // info when the view is created.
                             // TODO determine the full set of what might be useful to
                             // know about the selected view and fill it in.
                             mSelectedVH = new AgendaAdapter.ViewHolder();
-                            mSelectedVH.allDay =
-                                cursor.getInt(AgendaWindowAdapter.INDEX_ALL_DAY) != 0;
-                            tempCursor = cursor;
+                            mSelectedVH.allDay = page.isAllDay(0);
+                            tempPage = page;
                         }
                     } else if (newPosition != -1) {
-                         tempCursor = getCursorByPosition(newPosition);
+                         tempPage = getPageByPosition(newPosition);
                          tempCursorPosition = getCursorPositionByPosition(newPosition);
                     }
-                    if (tempCursor != null) {
-                        AgendaItem item = buildAgendaItemFromCursor(tempCursor, tempCursorPosition,
-                                false);
+                    if (tempPage != null) {
+                        AgendaItem item = buildAgendaItem(tempPage, tempCursorPosition, false);
                         long selectedTime = findStartTimeFromPosition(newPosition);
                         if (DEBUGLOG) {
-                            Log.d(TAG, "onQueryComplete: Sending View Event...");
+                            Log.d(TAG, "onPageLoaded: Sending View Event...");
                         }
                         sendViewEvent(item, selectedTime);
                     }
                 }
-            } else {
-                cursor.close();
             }
 
             // Update header and footer
@@ -1201,8 +1433,10 @@ public class AgendaWindowAdapter extends BaseAdapter
                 OnClickListener headerFooterOnClickListener = new OnClickListener() {
                     public void onClick(View v) {
                         if (v == mHeaderView) {
+                            mOlderLane.mExhausted = false;
                             queueQuery(new QuerySpec(QUERY_TYPE_OLDER));
                         } else {
+                            mNewerLane.mExhausted = false;
                             queueQuery(new QuerySpec(QUERY_TYPE_NEWER));
                         }
                     }};
@@ -1211,119 +1445,96 @@ public class AgendaWindowAdapter extends BaseAdapter
                 mAgendaListView.addFooterView(mFooterView);
                 mDoneSettingUpHeaderFooter = true;
             }
-            synchronized (mQueryQueue) {
-                int totalAgendaRangeStart = -1;
-                int totalAgendaRangeEnd = -1;
-
-                if (cursorSize != 0) {
-                    // Remove the query that just completed
-                    QuerySpec x = mQueryQueue.poll();
-                    if (BASICLOG && !x.equals(data)) {
-                        Log.e(TAG, "onQueryComplete - cookie != head of queue");
-                    }
-                    mEmptyCursorCount = 0;
-                    if (data.queryType == QUERY_TYPE_NEWER) {
-                        mNewerRequestsProcessed++;
-                    } else if (data.queryType == QUERY_TYPE_OLDER) {
-                        mOlderRequestsProcessed++;
-                    }
-
-                    totalAgendaRangeStart = mAdapterInfos.getFirst().start;
-                    totalAgendaRangeEnd = mAdapterInfos.getLast().end;
-                } else { // CursorSize == 0
-                    QuerySpec querySpec = mQueryQueue.peek();
+            int totalAgendaRangeStart = -1;
+            int totalAgendaRangeEnd = -1;
 
-                    // Update Adapter Info with new start and end date range
-                    if (!mAdapterInfos.isEmpty()) {
-                        DayAdapterInfo first = mAdapterInfos.getFirst();
-                        DayAdapterInfo last = mAdapterInfos.getLast();
+            if (cursorSize != 0) {
+                mEmptyCursorCount = 0;
 
-                        if (first.start - 1 <= querySpec.end && querySpec.start < first.start) {
-                            first.start = querySpec.start;
-                        }
+                totalAgendaRangeStart = mAdapterInfos.getFirst().start;
+                totalAgendaRangeEnd = mAdapterInfos.getLast().end;
+            } else { // CursorSize == 0
+                QuerySpec querySpec = data;
 
-                        if (querySpec.start <= last.end + 1 && last.end < querySpec.end) {
-                            last.end = querySpec.end;
-                        }
+                // Update Adapter Info with new start and end date range
+                if (!mAdapterInfos.isEmpty()) {
+                    DayAdapterInfo first = mAdapterInfos.getFirst();
+                    DayAdapterInfo last = mAdapterInfos.getLast();
 
-                        totalAgendaRangeStart = first.start;
-                        totalAgendaRangeEnd = last.end;
-                    } else {
-                        totalAgendaRangeStart = querySpec.start;
-                        totalAgendaRangeEnd = querySpec.end;
+                    if (first.start - 1 <= querySpec.end && querySpec.start < first.start) {
+                        first.start = querySpec.start;
                     }
 
-                    // Update query specification with expanded search range
-                    // and maybe rerun query
-                    switch (querySpec.queryType) {
-                        case QUERY_TYPE_OLDER:
-                            totalAgendaRangeStart = querySpec.start;
-                            querySpec.start -= MAX_QUERY_DURATION;
-                            break;
-                        case QUERY_TYPE_NEWER:
-                            totalAgendaRangeEnd = querySpec.end;
-                            querySpec.end += MAX_QUERY_DURATION;
-                            break;
-                        case QUERY_TYPE_CLEAN:
-                            totalAgendaRangeStart = querySpec.start;
-                            totalAgendaRangeEnd = querySpec.end;
-                            querySpec.start -= MAX_QUERY_DURATION / 2;
-                            querySpec.end += MAX_QUERY_DURATION / 2;
-                            break;
+                    if (querySpec.start <= last.end + 1 && last.end < querySpec.end) {
+                        last.end = querySpec.end;
                     }
 
-                    if (++mEmptyCursorCount > RETRIES_ON_NO_DATA) {
-                        // Nothing in the cursor again. Dropping query
-                        mQueryQueue.poll();
-                    }
+                    totalAgendaRangeStart = first.start;
+                    totalAgendaRangeEnd = last.end;
+                } else {
+                    totalAgendaRangeStart = querySpec.start;
+                    totalAgendaRangeEnd = querySpec.end;
                 }
 
-                updateHeaderFooter(totalAgendaRangeStart, totalAgendaRangeEnd);
-
-                // Go over the events and mark the first day after yesterday
-                // that has events in it
-                // If the range of adapters doesn't include yesterday, skip marking it since it will
-                // mark the first day in the adapters.
-                synchronized (mAdapterInfos) {
-                    DayAdapterInfo info = mAdapterInfos.getFirst();
-                    Time time = new Time(mTimeZone);
-                    long now = System.currentTimeMillis();
-                    time.set(now);
-                    int JulianToday = Time.getJulianDay(now, time.gmtoff);
-                    if (info != null && JulianToday >= info.start && JulianToday
-                            <= mAdapterInfos.getLast().end) {
-                        Iterator<DayAdapterInfo> iter = mAdapterInfos.iterator();
-                        boolean foundDay = false;
-                        while (iter.hasNext() && !foundDay) {
-                            info = iter.next();
-                            for (int i = 0; i < info.size; i++) {
-                                if (info.dayAdapter.findJulianDayFromPosition(i) >= JulianToday) {
-                                    info.dayAdapter.setAsFirstDayAfterYesterday(i);
-                                    foundDay = true;
-                                    break;
-                                }
-                            }
-                        }
-                    }
+                // Update query specification with expanded search range
+                // and maybe rerun query
+                switch (querySpec.queryType) {
+                    case QUERY_TYPE_OLDER:
+                        totalAgendaRangeStart = querySpec.start;
+                        querySpec.start -= MAX_QUERY_DURATION;
+                        break;
+                    case QUERY_TYPE_NEWER:
+                        totalAgendaRangeEnd = querySpec.end;
+                        querySpec.end += MAX_QUERY_DURATION;
+                        break;
+                    case QUERY_TYPE_CLEAN:
+                        totalAgendaRangeStart = querySpec.start;
+                        totalAgendaRangeEnd = querySpec.end;
+                        querySpec.start -= MAX_QUERY_DURATION / 2;
+                        querySpec.end += MAX_QUERY_DURATION / 2;
+                        break;
                 }
 
-                // Fire off the next query if any
-                Iterator<QuerySpec> it = mQueryQueue.iterator();
-                while (it.hasNext()) {
-                    QuerySpec queryData = it.next();
-                    if (queryData.queryType == QUERY_TYPE_CLEAN
-                            || !isInRange(queryData.start, queryData.end)) {
-                        // Query accepted
-                        if (DEBUGLOG) Log.e(TAG, "Query accepted. QueueSize:" + mQueryQueue.size());
-                        doQuery(queryData);
-                        break;
-                    } else {
-                        // Query rejected
-                        it.remove();
-                        if (DEBUGLOG) Log.e(TAG, "Query rejected. QueueSize:" + mQueryQueue.size());
+                if (++mEmptyCursorCount > RETRIES_ON_NO_DATA) {
+                    // Nothing in the cursor again. Dropping query
+                    mExhausted = mQueryType != QUERY_TYPE_CLEAN;
+                } else if (mWaiting == null) {
+                    mWaiting = querySpec;
+                }
+            }
+
+            updateHeaderFooter(totalAgendaRangeStart, totalAgendaRangeEnd);
+
+            // Go over the events and mark the first day after yesterday
+            // that has events in it
+            // If the range of adapters doesn't include yesterday, skip marking it since it will
+            // mark the first day in the adapters.
+            synchronized (mAdapterInfos) {
+                DayAdapterInfo info = mAdapterInfos.getFirst();
+                Time time = new Time(mTimeZone);
+                long now = System.currentTimeMillis();
+                time.set(now);
+                int JulianToday = Time.getJulianDay(now, time.gmtoff);
+                if (info != null && JulianToday >= info.start && JulianToday
+                        <= mAdapterInfos.getLast().end) {
+                    Iterator<DayAdapterInfo> iter = mAdapterInfos.iterator();
+                    boolean foundDay = false;
+                    while (iter.hasNext() && !foundDay) {
+                        info = iter.next();
+                        for (int i = 0; i < info.size; i++) {
+                            if (info.dayAdapter.findJulianDayFromPosition(i) >= JulianToday) {
+                                info.dayAdapter.setAsFirstDayAfterYesterday(i);
+                                foundDay = true;
+                                break;
+                            }
+                        }
                     }
                 }
             }
+
+            // Fire off the next queries if any
+            startWaitingQueries();
+
             if (BASICLOG) {
                 for (DayAdapterInfo info3 : mAdapterInfos) {
                     Log.e(TAG, "> " + info3.toString());
@@ -1332,12 +1543,12 @@ public class AgendaWindowAdapter extends BaseAdapter
         }
 
         /*
-         * Update the adapter info array with a the new cursor. Close out old
-         * cursors as needed.
+         * Update the adapter info array with a the new page. Drop old pages
+         * as needed.
          *
          * @return number of rows removed from the beginning
          */
-        private int processNewCursor(QuerySpec data, Cursor cursor) {
+        private int processNewPage(QuerySpec data, AgendaPage page) {
             synchronized (mAdapterInfos) {
                 // Remove adapter info's from adapterInfos as needed
                 DayAdapterInfo info = pruneAdapterInfo(data.queryType);
@@ -1346,7 +1557,7 @@ public class AgendaWindowAdapter extends BaseAdapter
                     info = new DayAdapterInfo(mContext);
                 } else {
                     if (DEBUGLOG)
-                        Log.e(TAG, "processNewCursor listPositionOffsetA="
+                        Log.e(TAG, "processNewPage listPositionOffsetA="
                                 + -info.size);
                     listPositionOffset = -info.size;
                 }
@@ -1354,8 +1565,8 @@ public class AgendaWindowAdapter extends BaseAdapter
                 // Setup adapter info
                 info.start = data.start;
                 info.end = data.end;
-                info.cursor = cursor;
-                info.dayAdapter.changeCursor(info);
+                info.page = page;
+                info.dayAdapter.changePage(page);
                 info.size = info.dayAdapter.getCount();
 
                 // Insert into adapterInfos
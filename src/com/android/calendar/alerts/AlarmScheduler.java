@@ -112,14 +112,27 @@ public class AlarmScheduler {
      * Schedules the nearest upcoming alarm, to refresh notifications.
      *
      * This is historically done in the provider but we dupe this here so the unbundled
-     * app will work on devices that have modified this portion of the provider.  This
-     * has the limitation of querying events within some interval from now (ie. looks at
-     * reminders for all events occurring in the next week).  This means for example,
+     * app will work on devices that have modified this portion of the provider.  The
+     * next reminder comes from {@link NextAlarmIndex}.  If that can't be used, we fall
+     * back to querying events within some interval from now (ie. looks at reminders for
+     * all events occurring in the next week), which has the limitation that for example,
      * a 2 week notification will not fire on time.
      */
     public static void scheduleNextAlarm(Context context) {
-        scheduleNextAlarm(context, AlertUtils.createAlarmManager(context),
-                REMINDER_QUERY_BATCH_SIZE, System.currentTimeMillis());
+        AlarmManagerInterface alarmManager = AlertUtils.createAlarmManager(context);
+        long currentMillis = System.currentTimeMillis();
+        // The index knows about reminders of any length, and only has to
+        // look at the events again when they have changed.
+        NextAlarmIndex index = NextAlarmIndex.getInstance(context);
+        long alarmTime = index.nextAlarmTime(currentMillis);
+        if (alarmTime >= 0) {
+            if (alarmTime < Long.MAX_VALUE) {
+                scheduleAlarm(context, index.getNextEventId(), alarmTime, currentMillis,
+                        alarmManager);
+            }
+            return;
+        }
+        scheduleNextAlarm(context, alarmManager, REMINDER_QUERY_BATCH_SIZE, currentMillis);
     }
 
     // VisibleForTesting
@@ -249,6 +249,7 @@ public class AlertActivity extends Activity
             NotificationManager nm =
                 (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
             nm.cancelAll();
+            AlertService.NotificationMgrWrapper.forget();
 
             dismissFiredAlarms();
 
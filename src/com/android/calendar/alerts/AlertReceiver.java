@@ -172,6 +172,19 @@ public class AlertReceiver extends BroadcastReceiver {
         }
     }
 
+    /**
+     * Called back by the service when it has nothing to do until a refresh
+     * which it has put off, releasing the wake lock so that the device can
+     * sleep until then. The service stays started.
+     */
+    public static void releaseStartingWakeLock() {
+        synchronized (mStartingServiceSync) {
+            if (mStartingService != null && mStartingService.isHeld()) {
+                mStartingService.release();
+            }
+        }
+    }
+
     private static PendingIntent createClickEventIntent(Context context, long eventId,
             long startMillis, long endMillis, int notificationId) {
         return createDismissAlarmsIntent(context, eventId, startMillis, endMillis, notificationId,
@@ -50,8 +50,12 @@ import androidx.core.content.ContextCompat;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
 import android.text.format.Time;
+import android.service.notification.StatusBarNotification;
 import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
 
+import com.android.calendar.Fingerprint;
 import com.android.calendar.Utils;
 import com.android.calendar.settings.GeneralPreferences;
 
@@ -152,9 +156,17 @@ public class AlertService extends Service {
                     + ">?"
                     + " AND "
                     + CalendarContract.CalendarAlerts.END + ">=?";
+    // The what of the messages which onStartCommand() sends to
+    // mServiceHandler, to tell them from mRefreshScheduler's refresh
+    private static final int MESSAGE_START = 1;
     private static Boolean sReceivedProviderReminderBroadcast = null;
     private volatile Looper mServiceLooper;
     private volatile ServiceHandler mServiceHandler;
+    // Only used on mServiceHandler's thread
+    private NotificationRefreshScheduler mRefreshScheduler;
+    // The latest start id whose finishing waits for mRefreshScheduler's
+    // refresh, or -1
+    private int mDeferredStartId = -1;
 
     static void dismissOldAlerts(Context context) {
         ContentResolver cr = context.getContentResolver();
@@ -874,26 +886,21 @@ public class AlertService extends Service {
             }
         }
 
+        if (action.equals(Intent.ACTION_PROVIDER_CHANGED)) {
+            NextAlarmIndex.getInstance(this).markChanged();
+            // A sync can send dozens of these, so wait until they stop and
+            // then refresh once. The refresh also schedules the next alarm.
+            mRefreshScheduler.request();
+            return;
+        }
+
         if (   providerReminder
-            || action.equals(Intent.ACTION_PROVIDER_CHANGED)
             || action.equals(android.provider.CalendarContract.ACTION_EVENT_REMINDER)
             || (   action.equals(AlertReceiver.EVENT_REMINDER_APP_ACTION)
                 && !Boolean.TRUE.equals(sReceivedProviderReminderBroadcast))
             || action.equals(Intent.ACTION_LOCALE_CHANGED))
         {
-
-            // b/7652098: Add a delay after the provider-changed event before refreshing
-            // notifications to help issue with the unbundled app installed on HTC having
-            // stale notifications.
-            if (action.equals(Intent.ACTION_PROVIDER_CHANGED)) {
-                try {
-                    Thread.sleep(5000);
-                } catch (Exception e) {
-                    // Ignore.
-                }
-            }
-
-            updateAlertNotification(this);
+            refresh();
         } else if (action.equals(Intent.ACTION_TIME_CHANGED)) {
             doTimeChanged();
         } else if (action.equals(AlertReceiver.ACTION_DISMISS_OLD_REMINDERS)) {
@@ -902,7 +909,11 @@ public class AlertService extends Service {
             Log.w(TAG, "Invalid action: " + action);
         }
 
-        // Schedule the alarm for the next upcoming reminder, if not done by the provider.
+        scheduleNextAlarm();
+    }
+
+    // Schedules the alarm for the next upcoming reminder, if not done by the provider.
+    private void scheduleNextAlarm() {
         if (sReceivedProviderReminderBroadcast == null || !sReceivedProviderReminderBroadcast) {
             Log.d(TAG, "Scheduling next alarm with AlarmScheduler. "
                     + "sEventReminderReceived: " + sReceivedProviderReminderBroadcast);
@@ -910,11 +921,24 @@ public class AlertService extends Service {
         }
     }
 
+    // Refreshes the notifications now, which makes any refresh that is
+    // waiting unnecessary.
+    private void refresh() {
+        updateAlertNotification(this);
+        mRefreshScheduler.onRefreshed();
+        if (DEBUG) {
+            Log.d(TAG, NotificationRefreshScheduler.getRefreshCount() + " refreshes for "
+                    + NotificationRefreshScheduler.getRequestCount() + " provider changes, "
+                    + NotificationMgrWrapper.getSkippedCount() + " unchanged notifications kept");
+        }
+    }
+
     private void doTimeChanged() {
+        NextAlarmIndex.getInstance(this).markChanged();
         ContentResolver cr = getContentResolver();
         // TODO Move this into Provider
         rescheduleMissedAlarms(cr, this, AlertUtils.createAlarmManager(this));
-        updateAlertNotification(this);
+        refresh();
     }
 
     @Override
@@ -925,6 +949,17 @@ public class AlertService extends Service {
 
         mServiceLooper = thread.getLooper();
         mServiceHandler = new ServiceHandler(mServiceLooper);
+        mRefreshScheduler = new NotificationRefreshScheduler(mServiceHandler, new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+                scheduleNextAlarm();
+                if (mDeferredStartId >= 0) {
+                    AlertReceiver.finishStartingService(AlertService.this, mDeferredStartId);
+                    mDeferredStartId = -1;
+                }
+            }
+        });
 
         // Flushes old fired alerts from internal storage, if needed.
         AlertUtils.flushOldAlertsFromInternalStorage(getApplication());
@@ -945,7 +980,7 @@ public class AlertService extends Service {
                 startForeground(1337, notification);
             }
 
-            Message msg = mServiceHandler.obtainMessage();
+            Message msg = mServiceHandler.obtainMessage(MESSAGE_START);
             msg.arg1 = startId;
             msg.obj = intent.getExtras();
             mServiceHandler.sendMessage(msg);
@@ -1016,18 +1051,70 @@ public class AlertService extends Service {
     }
 
     // Added wrapper for testing
+    // A refresh usually posts the same notifications as the last one, so
+    // this remembers a signature of what it posted under each id, and
+    // doesn't post a quiet notification again if it hasn't changed and is
+    // still showing, or cancel one which it knows isn't there.
     public static class NotificationMgrWrapper extends NotificationMgr {
+        // Guarded by sPosted. Until the first refresh in this process has
+        // cancelled everything which it didn't post, a notification from
+        // before may still be there.
+        private static final SparseArray<Long> sPosted = new SparseArray<>();
+        private static boolean sKnown;
+        private static int sSkippedCount;
+
         NotificationManager mNm;
+        // The ids of the notifications which are showing, read when first
+        // needed
+        private SparseBooleanArray mActive;
 
         public NotificationMgrWrapper(NotificationManager nm) {
             mNm = nm;
         }
 
+        /**
+         * Must be called when notifications are cancelled without going
+         * through a NotificationMgrWrapper, so that they are posted again.
+         */
+        public static void forget() {
+            synchronized (sPosted) {
+                sPosted.clear();
+                sKnown = false;
+            }
+        }
+
+        /**
+         * @return the number of notifications which weren't posted again
+         * because they hadn't changed
+         */
+        public static int getSkippedCount() {
+            synchronized (sPosted) {
+                return sSkippedCount;
+            }
+        }
+
         @Override
         public void cancel(int id) {
+            synchronized (sPosted) {
+                if (sKnown && sPosted.indexOfKey(id) < 0) {
+                    return;
+                }
+                sPosted.remove(id);
+            }
             mNm.cancel(id);
         }
 
+        @Override
+        public void cancelAllBetween(int from, int to) {
+            super.cancelAllBetween(from, to);
+            // A refresh ends by cancelling the ids which it didn't use.
+            if (to >= MAX_NOTIFICATIONS) {
+                synchronized (sPosted) {
+                    sKnown = true;
+                }
+            }
+        }
+
         @TargetApi(Build.VERSION_CODES.O)
         @Override
         public void createNotificationChannel(NotificationChannel channel) {
@@ -1036,7 +1123,82 @@ public class AlertService extends Service {
 
         @Override
         public void notify(int id, NotificationWrapper nw) {
-            mNm.notify(id, nw.mNotification);
+            Notification n = nw.mNotification;
+            long signature = signature(nw);
+            // A new alert rings or vibrates, so it must always be posted.
+            boolean quiet = n.sound == null && n.tickerText == null
+                && (n.defaults & Notification.DEFAULT_VIBRATE) == 0;
+            boolean unchanged;
+            synchronized (sPosted) {
+                Long posted = sPosted.get(id);
+                unchanged = quiet && posted != null && posted == signature;
+            }
+            if (unchanged && isShowing(id)) {
+                synchronized (sPosted) {
+                    ++sSkippedCount;
+                }
+                return;
+            }
+            synchronized (sPosted) {
+                sPosted.put(id, signature);
+            }
+            mNm.notify(id, n);
+        }
+
+        // The user or the system may have removed a notification which we
+        // posted. Before Android M we can't ask, and rely on its delete
+        // intent calling forget().
+        private boolean isShowing(int id) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                return true;
+            }
+            if (mActive == null) {
+                mActive = getActiveIds(mNm);
+            }
+            return mActive.get(id);
+        }
+
+        @TargetApi(Build.VERSION_CODES.M)
+        private static SparseBooleanArray getActiveIds(NotificationManager nm) {
+            SparseBooleanArray ids = new SparseBooleanArray();
+            for (StatusBarNotification sbn : nm.getActiveNotifications()) {
+                ids.put(sbn.getId(), true);
+            }
+            return ids;
+        }
+
+        // A fingerprint of what the notification shows
+        private static long signature(NotificationWrapper nw) {
+            Notification n = nw.mNotification;
+            long hash = Fingerprint.add(Fingerprint.START, nw.mEventId);
+            hash = Fingerprint.add(hash, nw.mBegin);
+            hash = Fingerprint.add(hash, nw.mEnd);
+            hash = Fingerprint.add(hash, n.priority);
+            hash = Fingerprint.add(hash, n.flags);
+            hash = Fingerprint.add(hash, n.when);
+            if (n.extras != null) {
+                for (String key : n.extras.keySet()) {
+                    Object value = n.extras.get(key);
+                    hash = Fingerprint.add(hash, key);
+                    if (value instanceof CharSequence) {
+                        hash = Fingerprint.add(hash, (CharSequence) value);
+                    } else if (value instanceof CharSequence[]) {
+                        CharSequence[] lines = (CharSequence[]) value;
+                        hash = Fingerprint.add(hash, lines.length);
+                        for (CharSequence line : lines) {
+                            hash = Fingerprint.add(hash, line);
+                        }
+                    } else if (value instanceof Number || value instanceof Boolean) {
+                        hash = Fingerprint.add(hash, value.toString());
+                    }
+                }
+            }
+            if (nw.mNw != null) {
+                for (NotificationWrapper child : nw.mNw) {
+                    hash = Fingerprint.add(hash, signature(child));
+                }
+            }
+            return hash;
         }
     }
 
@@ -1119,9 +1281,23 @@ public class AlertService extends Service {
         @Override
         public void handleMessage(Message msg) {
             processMessage(msg);
+            if (mRefreshScheduler.isPending()) {
+                // Keep the service until the refresh has run, but while it
+                // waits, unless there is more to do, let the device sleep
+                // and take the service out of the foreground.
+                mDeferredStartId = msg.arg1;
+                if (!hasMessages(MESSAGE_START)) {
+                    if (Utils.isOreoOrLater()) {
+                        stopForeground(true);
+                    }
+                    AlertReceiver.releaseStartingWakeLock();
+                }
+                return;
+            }
             // NOTE: We MUST not call stopSelf() directly, since we need to
             // make sure the wake lock acquired by AlertReceiver is released.
             AlertReceiver.finishStartingService(AlertService.this, msg.arg1);
+            mDeferredStartId = -1;
         }
     }
 }
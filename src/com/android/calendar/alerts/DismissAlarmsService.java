@@ -107,6 +107,7 @@ public class DismissAlarmsService extends IntentService {
             NotificationManager nm =
                     (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
             nm.cancel(notificationId);
+            AlertService.NotificationMgrWrapper.forget();
         }
 
         if (showEvent) {
@@ -0,0 +1,739 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.alerts;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.CalendarContract.Events;
+import android.provider.CalendarContract.Instances;
+import android.provider.CalendarContract.Reminders;
+import android.text.format.DateUtils;
+import android.text.format.Time;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import com.android.calendar.EventScanner;
+import com.android.calendar.Fingerprint;
+import com.android.calendar.Utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * The upcoming reminder times of the events, kept in a min-heap of
+ * (alarm time, event id, begin) which is saved in the app's files, so that
+ * {@link AlarmScheduler} can find the next alarm without expanding a week
+ * of instances and querying their reminders every time it is called.
+ *
+ * The heap holds the alarms of every instance which begins before
+ * mCoveredUntil. That is extended, one slice of instances at a time, to
+ * stay more than the longest reminder ahead of now, so reminders of any
+ * length fire on time.
+ *
+ * When the provider reports a change, {@link #markChanged} makes the next
+ * call ask the {@link EventScanner}, whose scan of the Events and
+ * Reminders tables is shared with the UI, which events have changed, and
+ * read only those, keeping a fingerprint of each event because the
+ * provider has no modification time for events. The first call since the
+ * process started reads them all. Only the events whose fingerprint has
+ * changed are expanded again. Their old
+ * alarms are left in the heap, but each alarm records the version of its
+ * event, and alarms whose version is out of date are dropped when they
+ * reach the top. Finding the next alarm when nothing has changed is
+ * O(log n) for each alarm which has passed.
+ *
+ * This is only used from AlertService's thread.
+ */
+class NextAlarmIndex {
+    private static final String TAG = "NextAlarmIndex";
+    private static final String FILE_NAME = "next_alarms";
+    private static final int FILE_VERSION = 2;
+
+    // How far beyond the longest reminder each slice of instances reaches
+    private static final long LOOKAHEAD_MS = DateUtils.WEEK_IN_MILLIS;
+    // All day instances begin at midnight UTC, which may be most of a day
+    // from local midnight.
+    private static final long ALL_DAY_SLACK_MS = DateUtils.DAY_IN_MILLIS;
+    // AlarmScheduler never sets an alarm further ahead than this.
+    private static final long MAX_ALARM_ELAPSED_MS = DateUtils.DAY_IN_MILLIS;
+
+    static final String[] EVENTS_PROJECTION = new String[] {
+        Events._ID,
+        Events.ORIGINAL_ID,
+        Events.DTSTART,
+        Events.DTEND,
+        Events.DURATION,
+        Events.RRULE,
+        Events.RDATE,
+        Events.EXRULE,
+        Events.EXDATE,
+        Events.LAST_DATE,
+        Events.ALL_DAY,
+        Events.EVENT_TIMEZONE,
+        Events.ORIGINAL_INSTANCE_TIME,
+        Events.STATUS,
+    };
+    private static final List<String> eventsProjection = Arrays.asList(EVENTS_PROJECTION);
+    private static final int EVENTS_INDEX_ID = eventsProjection.indexOf(Events._ID);
+    private static final int EVENTS_INDEX_ORIGINAL_ID =
+        eventsProjection.indexOf(Events.ORIGINAL_ID);
+    private static final String EVENTS_WHERE =
+        Events.VISIBLE + "=1 AND " + Events.DELETED + "=0";
+    private static final String REMINDERS_WHERE = Reminders.METHOD + "=1";
+    private static final String INSTANCES_WHERE =
+        Events.VISIBLE + "=1 AND " + Events.HAS_ALARM + "=1";
+
+    private static NextAlarmIndex sInstance;
+
+    // What we remember about each event
+    static final class EventState {
+        long hash;
+        int version;
+        long originalId = -1;
+        // The reminder minutes, or null if it has none
+        int[] minutes;
+    }
+
+    private final Context mContext;
+    private final EventScanner mScanner;
+    private final AtomicFile mFile;
+    private boolean mLoaded;
+    private boolean mChanged = true;
+    private String mTimeZone;
+    private long mCoveredUntil;
+    private int mMaxReminderMinutes;
+    private int mNextVersion = 1;
+    private LongSparseArray<EventState> mEvents = new LongSparseArray<>();
+    private final AlarmHeap mHeap = new AlarmHeap();
+    private long mNextEventId;
+    // The last scan which we have seen
+    private long mLastScan;
+
+    private NextAlarmIndex(Context context) {
+        mContext = context.getApplicationContext();
+        mScanner = EventScanner.getInstance(mContext);
+        mFile = new AtomicFile(new File(mContext.getFilesDir(), FILE_NAME));
+    }
+
+    static synchronized NextAlarmIndex getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NextAlarmIndex(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Makes the next call to {@link #nextAlarmTime} look for changed events
+     * and reminders.
+     */
+    synchronized void markChanged() {
+        mChanged = true;
+        mScanner.markChanged();
+    }
+
+    /**
+     * @return the id of the event whose alarm {@link #nextAlarmTime} last
+     * returned, or 0 if it was a wake up to look further ahead
+     */
+    synchronized long getNextEventId() {
+        return mNextEventId;
+    }
+
+    /**
+     * Finds the time of the next reminder after now, bringing the index up
+     * to date first if the provider has reported a change.
+     *
+     * @return the time of the alarm, Long.MAX_VALUE if there are no
+     * reminders, or -1 if the index can't be used and the caller should
+     * work out the next alarm itself
+     */
+    synchronized long nextAlarmTime(long now) {
+        try {
+            if (!mLoaded) {
+                load();
+                mLoaded = true;
+                // We don't know what happened while we weren't running.
+                mChanged = true;
+            }
+            String timeZone = TimeZone.getDefault().getID();
+            boolean dirty = false;
+            if (!timeZone.equals(mTimeZone)) {
+                // All day reminders have moved, so start again.
+                clear(timeZone, now);
+                mChanged = true;
+            }
+            ContentResolver resolver = mContext.getContentResolver();
+            if (mChanged) {
+                if (!update(resolver, now)) {
+                    return fail();
+                }
+                mChanged = false;
+                dirty = true;
+            }
+            if (safeUntil() < now + MAX_ALARM_ELAPSED_MS) {
+                if (!extend(resolver, now)) {
+                    return fail();
+                }
+                dirty = true;
+            }
+            if (dirty) {
+                mHeap.compact(mEvents);
+                save();
+            }
+        } catch (RuntimeException e) {
+            // We may have lost permission to read the calendar.
+            Log.e(TAG, "Updating the alarm index failed", e);
+            return fail();
+        }
+        long alarmTime = mHeap.next(now, mEvents);
+        mNextEventId = mHeap.isEmpty() ? 0 : mHeap.peekEventId();
+        if (alarmTime > safeUntil() && mMaxReminderMinutes > 0) {
+            // Instances which begin after mCoveredUntil may remind us
+            // earlier than this, so come back and look further ahead.
+            alarmTime = safeUntil();
+            mNextEventId = 0;
+        }
+        return alarmTime;
+    }
+
+    // An update may have stopped half way, so start again next time.
+    private long fail() {
+        mTimeZone = null;
+        return -1;
+    }
+
+    // Alarms before this time are all in the heap.
+    private long safeUntil() {
+        return mCoveredUntil - mMaxReminderMinutes * DateUtils.MINUTE_IN_MILLIS
+            - ALL_DAY_SLACK_MS;
+    }
+
+    private void clear(String timeZone, long now) {
+        mTimeZone = timeZone;
+        mCoveredUntil = now;
+        mMaxReminderMinutes = 0;
+        mEvents = new LongSparseArray<>();
+        mHeap.clear();
+        // Read all the events again.
+        mLastScan = 0;
+    }
+
+    // Reads the events which have changed and their reminders, and expands
+    // the instances of those whose fingerprint has changed. Returns false
+    // if a query failed.
+    private boolean update(ContentResolver resolver, long now) {
+        long start = System.nanoTime();
+        EventScanner.ChangedEvents changedEvents = mScanner.getChangesSince(mLastScan);
+        if (changedEvents == null) {
+            return false;
+        }
+        LongSparseArray<Boolean> changed = new LongSparseArray<>();
+        int read = 0;
+        if (changedEvents.isAll()) {
+            LongSparseArray<EventState> events = new LongSparseArray<>(mEvents.size());
+            read = readEvents(resolver, null, events, changed);
+            if (read < 0) {
+                return false;
+            }
+            for (int i = 0; i < mEvents.size(); ++i) {
+                if (events.get(mEvents.keyAt(i)) == null) {
+                    removed(mEvents.valueAt(i), changed);
+                }
+            }
+            mEvents = events;
+        } else {
+            long[] ids = changedEvents.getIds();
+            for (int i = 0; i < ids.length; i += EventScanner.MAX_IDS_PER_QUERY) {
+                int end = Math.min(i + EventScanner.MAX_IDS_PER_QUERY, ids.length);
+                LongSparseArray<EventState> events = new LongSparseArray<>(end - i);
+                int count = readEvents(resolver, Arrays.copyOfRange(ids, i, end), events,
+                    changed);
+                if (count < 0) {
+                    return false;
+                }
+                read += count;
+                for (int j = i; j < end; ++j) {
+                    EventState state = events.get(ids[j]);
+                    if (state != null) {
+                        mEvents.put(ids[j], state);
+                    } else if (mEvents.get(ids[j]) != null) {
+                        removed(mEvents.get(ids[j]), changed);
+                        mEvents.remove(ids[j]);
+                    }
+                }
+            }
+        }
+        mLastScan = changedEvents.getScan();
+        // Give every changed event a new version, so that its old alarms
+        // are dropped. The alarms of deleted events are dropped because
+        // they have no state.
+        for (int i = 0; i < changed.size(); ++i) {
+            EventState state = mEvents.get(changed.keyAt(i));
+            if (state != null) {
+                state.version = mNextVersion++;
+            }
+        }
+        int maxMinutes = 0;
+        for (int i = 0; i < mEvents.size(); ++i) {
+            int[] minutes = mEvents.valueAt(i).minutes;
+            if (minutes != null) {
+                maxMinutes = Math.max(maxMinutes, minutes[minutes.length - 1]);
+            }
+        }
+        mMaxReminderMinutes = maxMinutes;
+        // Alarms at or before now are dropped, so the changed events'
+        // instances can be expanded from a little early.
+        if (   changed.size() > 0
+            && !expand(resolver, now - ALL_DAY_SLACK_MS, mCoveredUntil, changed))
+        {
+            return false;
+        }
+        if (AlertService.DEBUG) {
+            Log.d(TAG, "Read " + read + " and updated " + changed.size() + " of "
+                + mEvents.size() + " events in " + (System.nanoTime() - start) / 1000000
+                + "ms, " + mHeap.size() + " alarms");
+        }
+        return true;
+    }
+
+    // An exception which has gone changes the instances of the event which
+    // it was an exception to.
+    private static void removed(EventState old, LongSparseArray<Boolean> changed) {
+        if (old.originalId >= 0) {
+            changed.put(old.originalId, Boolean.TRUE);
+        }
+    }
+
+    // Reads the events in ids, or all of them if ids is null, with their
+    // reminders, into events, and marks those whose fingerprint differs
+    // from mEvents as changed. Returns the number of events read, or -1 if
+    // a query failed.
+    private int readEvents(ContentResolver resolver, long[] ids,
+                           LongSparseArray<EventState> events,
+                           LongSparseArray<Boolean> changed) {
+        String eventsWhere = EVENTS_WHERE;
+        String remindersWhere = REMINDERS_WHERE;
+        if (ids != null) {
+            eventsWhere += " AND " + EventScanner.buildIdSelection(Events._ID, ids, 0,
+                ids.length);
+            remindersWhere += " AND " + EventScanner.buildIdSelection(Reminders.EVENT_ID,
+                ids, 0, ids.length);
+        }
+        LongSparseArray<int[]> reminders = readReminders(resolver, remindersWhere);
+        if (reminders == null) {
+            return -1;
+        }
+        Cursor cursor = resolver.query(Events.CONTENT_URI, EVENTS_PROJECTION, eventsWhere,
+            null, null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(EVENTS_INDEX_ID);
+                EventState state = new EventState();
+                state.minutes = reminders.get(id);
+                state.hash = hash(cursor, state.minutes);
+                if (!cursor.isNull(EVENTS_INDEX_ORIGINAL_ID)) {
+                    state.originalId = cursor.getLong(EVENTS_INDEX_ORIGINAL_ID);
+                }
+                EventState old = mEvents.get(id);
+                if (old == null || old.hash != state.hash) {
+                    changed.put(id, Boolean.TRUE);
+                    if (state.originalId >= 0) {
+                        // An exception also changes the instances of the
+                        // event which it is an exception to.
+                        changed.put(state.originalId, Boolean.TRUE);
+                    }
+                } else {
+                    state.version = old.version;
+                }
+                events.put(id, state);
+            }
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Expands the next slice of instances, so that the heap stays more
+    // than the longest reminder ahead of now.
+    private boolean extend(ContentResolver resolver, long now) {
+        long from = Math.max(mCoveredUntil, now);
+        long until = now + mMaxReminderMinutes * DateUtils.MINUTE_IN_MILLIS
+            + ALL_DAY_SLACK_MS + MAX_ALARM_ELAPSED_MS + LOOKAHEAD_MS;
+        if (!expand(resolver, from, until, null)) {
+            return false;
+        }
+        mCoveredUntil = until;
+        return true;
+    }
+
+    // Adds the alarms of the instances which begin after from and no later
+    // than until, for the events in only, or all events if only is null.
+    private boolean expand(ContentResolver resolver, long from, long until,
+                           LongSparseArray<Boolean> only) {
+        if (until <= from) {
+            return true;
+        }
+        // Expand the range by a day on either end to account for all day
+        // events.
+        Uri.Builder builder = Instances.CONTENT_URI.buildUpon();
+        ContentUris.appendId(builder, from - DateUtils.DAY_IN_MILLIS);
+        ContentUris.appendId(builder, until + DateUtils.DAY_IN_MILLIS);
+        Cursor cursor = resolver.query(builder.build(), AlarmScheduler.INSTANCES_PROJECTION,
+            INSTANCES_WHERE, null, null);
+        if (cursor == null) {
+            return false;
+        }
+        Time time = new Time();
+        try {
+            while (cursor.moveToNext()) {
+                long eventId = cursor.getLong(0);
+                long begin = cursor.getLong(1);
+                // The slices meet without overlapping, so each instance is
+                // added once.
+                if (begin <= from || begin > until) {
+                    continue;
+                }
+                if (only != null && only.get(eventId) == null) {
+                    continue;
+                }
+                EventState state = mEvents.get(eventId);
+                if (state == null || state.minutes == null) {
+                    continue;
+                }
+                long localStart = cursor.getInt(2) != 0
+                    ? Utils.convertAlldayUtcToLocal(time, begin, mTimeZone)
+                    : begin;
+                for (int minutes : state.minutes) {
+                    mHeap.add(localStart - minutes * DateUtils.MINUTE_IN_MILLIS, eventId,
+                        begin, state.version);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return true;
+    }
+
+    // Returns the sorted, distinct reminder minutes of each event which has
+    // any, or null if the query failed.
+    private static LongSparseArray<int[]> readReminders(ContentResolver resolver,
+                                                        String where) {
+        Cursor cursor = resolver.query(Reminders.CONTENT_URI,
+            AlarmScheduler.REMINDERS_PROJECTION, where, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        LongSparseArray<int[]> reminders = new LongSparseArray<>();
+        try {
+            while (cursor.moveToNext()) {
+                long eventId = cursor.getLong(0);
+                int minutes = cursor.getInt(1);
+                int[] old = reminders.get(eventId);
+                if (old == null) {
+                    reminders.put(eventId, new int[] { minutes });
+                } else if (Arrays.binarySearch(old, minutes) < 0) {
+                    int[] all = Arrays.copyOf(old, old.length + 1);
+                    all[old.length] = minutes;
+                    Arrays.sort(all);
+                    reminders.put(eventId, all);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return reminders;
+    }
+
+    // A fingerprint of the columns which decide when the instances are,
+    // and the reminders.
+    private static long hash(Cursor cursor, int[] minutes) {
+        long hash = Fingerprint.START;
+        for (int i = 0; i < EVENTS_PROJECTION.length; ++i) {
+            if (i == EVENTS_INDEX_ID) {
+                continue;
+            }
+            hash = Fingerprint.add(hash, cursor.getString(i));
+        }
+        if (minutes != null) {
+            hash = Fingerprint.add(hash, minutes.length);
+            for (int m : minutes) {
+                hash = Fingerprint.add(hash, m);
+            }
+        }
+        return hash;
+    }
+
+    private void load() {
+        FileInputStream stream = null;
+        try {
+            stream = mFile.openRead();
+            DataInputStream in = new DataInputStream(stream);
+            if (in.readInt() != FILE_VERSION) {
+                return;
+            }
+            String timeZone = in.readUTF();
+            long coveredUntil = in.readLong();
+            int maxReminderMinutes = in.readInt();
+            int nextVersion = in.readInt();
+            int count = in.readInt();
+            LongSparseArray<EventState> events = new LongSparseArray<>(count);
+            for (int i = 0; i < count; ++i) {
+                long id = in.readLong();
+                EventState state = new EventState();
+                state.hash = in.readLong();
+                state.version = in.readInt();
+                state.originalId = in.readLong();
+                int reminders = in.readInt();
+                if (reminders > 0) {
+                    state.minutes = new int[reminders];
+                    for (int j = 0; j < reminders; ++j) {
+                        state.minutes[j] = in.readInt();
+                    }
+                }
+                events.append(id, state);
+            }
+            mHeap.read(in);
+            mTimeZone = timeZone;
+            mCoveredUntil = coveredUntil;
+            mMaxReminderMinutes = maxReminderMinutes;
+            mNextVersion = nextVersion;
+            mEvents = events;
+        } catch (IOException e) {
+            // Missing or damaged, so make it again.
+            clear(null, 0);
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // Ignore.
+                }
+            }
+        }
+    }
+
+    private void save() {
+        FileOutputStream stream = null;
+        try {
+            stream = mFile.startWrite();
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(mTimeZone);
+            out.writeLong(mCoveredUntil);
+            out.writeInt(mMaxReminderMinutes);
+            out.writeInt(mNextVersion);
+            out.writeInt(mEvents.size());
+            for (int i = 0; i < mEvents.size(); ++i) {
+                EventState state = mEvents.valueAt(i);
+                out.writeLong(mEvents.keyAt(i));
+                out.writeLong(state.hash);
+                out.writeInt(state.version);
+                out.writeLong(state.originalId);
+                int reminders = state.minutes == null ? 0 : state.minutes.length;
+                out.writeInt(reminders);
+                for (int j = 0; j < reminders; ++j) {
+                    out.writeInt(state.minutes[j]);
+                }
+            }
+            mHeap.write(out);
+            out.flush();
+            mFile.finishWrite(stream);
+        } catch (IOException e) {
+            Log.e(TAG, "Saving the alarm index failed", e);
+            if (stream != null) {
+                mFile.failWrite(stream);
+            }
+        }
+    }
+
+    /**
+     * A binary min-heap of alarms ordered by alarm time, in parallel arrays.
+     * Each alarm carries the version of its event when it was added.
+     */
+    static final class AlarmHeap {
+        private long[] mAlarmTime = new long[64];
+        private long[] mEventId = new long[64];
+        private long[] mBegin = new long[64];
+        private int[] mVersion = new int[64];
+        private int mSize;
+
+        int size() {
+            return mSize;
+        }
+
+        boolean isEmpty() {
+            return mSize == 0;
+        }
+
+        void clear() {
+            mSize = 0;
+        }
+
+        long peekEventId() {
+            return mEventId[0];
+        }
+
+        void add(long alarmTime, long eventId, long begin, int version) {
+            if (mSize == mAlarmTime.length) {
+                grow(2 * mSize);
+            }
+            set(mSize, alarmTime, eventId, begin, version);
+            siftUp(mSize++);
+        }
+
+        /**
+         * Drops the alarms at the top which are no later than now, or whose
+         * event has gone or has a newer version.
+         * @return the time of the first alarm left, or Long.MAX_VALUE
+         */
+        long next(long now, LongSparseArray<EventState> events) {
+            while (mSize > 0 && (mAlarmTime[0] <= now || isStale(0, events))) {
+                removeTop();
+            }
+            return mSize == 0 ? Long.MAX_VALUE : mAlarmTime[0];
+        }
+
+        /**
+         * Drops all the stale alarms if they are more than half of the heap.
+         */
+        void compact(LongSparseArray<EventState> events) {
+            int live = 0;
+            for (int i = 0; i < mSize; ++i) {
+                if (!isStale(i, events)) {
+                    ++live;
+                }
+            }
+            if (2 * live >= mSize) {
+                return;
+            }
+            int j = 0;
+            for (int i = 0; i < mSize; ++i) {
+                if (!isStale(i, events)) {
+                    set(j++, mAlarmTime[i], mEventId[i], mBegin[i], mVersion[i]);
+                }
+            }
+            mSize = j;
+            for (int i = mSize / 2 - 1; i >= 0; --i) {
+                siftDown(i);
+            }
+        }
+
+        private boolean isStale(int i, LongSparseArray<EventState> events) {
+            EventState state = events.get(mEventId[i]);
+            return state == null || state.version != mVersion[i];
+        }
+
+        private void removeTop() {
+            --mSize;
+            if (mSize > 0) {
+                set(0, mAlarmTime[mSize], mEventId[mSize], mBegin[mSize], mVersion[mSize]);
+                siftDown(0);
+            }
+        }
+
+        private void set(int i, long alarmTime, long eventId, long begin, int version) {
+            mAlarmTime[i] = alarmTime;
+            mEventId[i] = eventId;
+            mBegin[i] = begin;
+            mVersion[i] = version;
+        }
+
+        private void swap(int i, int j) {
+            long alarmTime = mAlarmTime[i];
+            long eventId = mEventId[i];
+            long begin = mBegin[i];
+            int version = mVersion[i];
+            set(i, mAlarmTime[j], mEventId[j], mBegin[j], mVersion[j]);
+            set(j, alarmTime, eventId, begin, version);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (mAlarmTime[parent] <= mAlarmTime[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= mSize) {
+                    return;
+                }
+                if (child + 1 < mSize && mAlarmTime[child + 1] < mAlarmTime[child]) {
+                    ++child;
+                }
+                if (mAlarmTime[i] <= mAlarmTime[child]) {
+                    return;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void grow(int capacity) {
+            mAlarmTime = Arrays.copyOf(mAlarmTime, capacity);
+            mEventId = Arrays.copyOf(mEventId, capacity);
+            mBegin = Arrays.copyOf(mBegin, capacity);
+            mVersion = Arrays.copyOf(mVersion, capacity);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(mSize);
+            for (int i = 0; i < mSize; ++i) {
+                out.writeLong(mAlarmTime[i]);
+                out.writeLong(mEventId[i]);
+                out.writeLong(mBegin[i]);
+                out.writeInt(mVersion[i]);
+            }
+        }
+
+        // The array is already in heap order.
+        void read(DataInputStream in) throws IOException {
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("Bad heap size " + size);
+            }
+            mSize = 0;
+            if (size > mAlarmTime.length) {
+                grow(size);
+            }
+            for (int i = 0; i < size; ++i) {
+                set(i, in.readLong(), in.readLong(), in.readLong(), in.readInt());
+            }
+            mSize = size;
+        }
+    }
+}
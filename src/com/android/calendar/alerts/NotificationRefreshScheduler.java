@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.alerts;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces the notification refreshes asked for by PROVIDER_CHANGED
+ * broadcasts, of which a sync can send dozens in a few seconds.
+ *
+ * Each request puts the refresh off until DEBOUNCE_MS after it, so that a
+ * burst of broadcasts makes one refresh after the burst, but never more
+ * than MAX_LATENCY_MS after the first request which is still waiting.
+ * There is only ever one refresh waiting. The delay also gives the
+ * provider time to finish writing (b/7652098), which used to be done by
+ * sleeping the service's thread for five seconds on every broadcast.
+ *
+ * This is only used from the thread of the handler given to the
+ * constructor.
+ */
+class NotificationRefreshScheduler {
+    static final long DEBOUNCE_MS = 5000;
+    static final long MAX_LATENCY_MS = 15000;
+
+    // Counted for the whole process, since the service comes and goes
+    private static final AtomicInteger sRequestCount = new AtomicInteger();
+    private static final AtomicInteger sRefreshCount = new AtomicInteger();
+
+    private final Handler mHandler;
+    private final Runnable mRefresh;
+    private final long mDebounceMs;
+    private final long mMaxLatencyMs;
+    // The uptime of the first request which is still waiting, or -1
+    private long mFirstRequest = -1;
+
+    /**
+     * @param handler the handler on which to run the refresh
+     * @param refresh does the refresh, and must call {@link #onRefreshed}
+     */
+    NotificationRefreshScheduler(Handler handler, Runnable refresh) {
+        this(handler, refresh, DEBOUNCE_MS, MAX_LATENCY_MS);
+    }
+
+    // Tests use shorter delays, so that they don't have to wait seconds
+    NotificationRefreshScheduler(Handler handler, Runnable refresh,
+                                 long debounceMs, long maxLatencyMs)
+    {
+        mHandler = handler;
+        mRefresh = refresh;
+        mDebounceMs = debounceMs;
+        mMaxLatencyMs = maxLatencyMs;
+    }
+
+    /**
+     * @return the number of refreshes which have been asked for
+     */
+    static int getRequestCount() {
+        return sRequestCount.get();
+    }
+
+    /**
+     * @return the number of refreshes which have been done, whether
+     * asked for or not
+     */
+    static int getRefreshCount() {
+        return sRefreshCount.get();
+    }
+
+    /**
+     * Works out when a waiting refresh should run.
+     *
+     * @param firstRequest when the first request still waiting was made
+     * @param now when the latest request was made
+     */
+    static long getRunTime(long firstRequest, long now) {
+        return getRunTime(firstRequest, now, DEBOUNCE_MS, MAX_LATENCY_MS);
+    }
+
+    private static long getRunTime(long firstRequest, long now,
+                                   long debounceMs, long maxLatencyMs)
+    {
+        return Math.min(now + debounceMs, firstRequest + maxLatencyMs);
+    }
+
+    /**
+     * Asks for a refresh, putting off the one waiting if there is one.
+     */
+    void request() {
+        sRequestCount.incrementAndGet();
+        long now = SystemClock.uptimeMillis();
+        if (mFirstRequest < 0) {
+            mFirstRequest = now;
+        }
+        mHandler.removeCallbacks(mRefresh);
+        mHandler.postAtTime(mRefresh,
+            getRunTime(mFirstRequest, now, mDebounceMs, mMaxLatencyMs));
+    }
+
+    /**
+     * @return true if a refresh is waiting to run
+     */
+    boolean isPending() {
+        return mFirstRequest >= 0;
+    }
+
+    /**
+     * Must be called by every refresh, whether it was asked for through
+     * {@link #request} or not, so that a waiting one doesn't run as well.
+     */
+    void onRefreshed() {
+        sRefreshCount.incrementAndGet();
+        mHandler.removeCallbacks(mRefresh);
+        mFirstRequest = -1;
+    }
+}
@@ -75,6 +75,7 @@ public class SnoozeAlarmsService extends IntentService {
                 NotificationManager nm =
                     (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
                 nm.cancel(notificationId);
+                AlertService.NotificationMgrWrapper.forget();
             }
             if (Build.VERSION.SDK_INT >= 23 && ContextCompat.checkSelfPermission(this,
                     Manifest.permission.WRITE_CALENDAR)
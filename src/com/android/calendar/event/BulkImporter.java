@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.event;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.provider.CalendarContract;
+import android.provider.CalendarContract.Calendars;
+import android.provider.CalendarContract.Events;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.android.calendar.CalendarEventModel;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.UUID;
+
+/**
+ * Imports many events into one calendar without editing them.
+ *
+ * The operations for each event are made by
+ * {@link EditEventHelper#addSaveOperations}, just as if the event had been
+ * saved from the editor, and are applied EVENTS_PER_BATCH events at a time
+ * with a yield point before each event, so that a big import doesn't keep
+ * the provider's database locked. Events whose UID is already in the
+ * calendar, or earlier in the import, are skipped: the calendar's UIDs are
+ * read into a hash set once rather than queried for each event.
+ *
+ * The provider commits its transaction at a yield point if another thread
+ * is waiting for the database, so if a batch fails some of its events may
+ * have been written. Every event is given a UID if it hasn't got one, as
+ * the exporter does, so that we can find out which they were and write
+ * the others one at a time.
+ *
+ * This does provider I/O, so it must not be used on the UI thread.
+ */
+public class BulkImporter {
+    private static final String TAG = "BulkImporter";
+
+    static final int EVENTS_PER_BATCH = 100;
+
+    private static final String UIDS_WHERE = Events.CALENDAR_ID + "=? AND "
+        + Events.UID_2445 + " IS NOT NULL AND " + Events.DELETED + "=0";
+    private static final String WRITTEN_WHERE = Events.CALENDAR_ID + "=? AND "
+        + Events.DELETED + "=0 AND " + Events.UID_2445 + " IN (";
+
+    public interface ProgressListener {
+        /**
+         * Called after each batch has been applied.
+         */
+        void onProgress(BulkImporter importer);
+    }
+
+    private final Context mContext;
+    private final ContentResolver mResolver;
+    private final EditEventHelper mHelper = new EditEventHelper();
+    private final ArrayList<ContentProviderOperation> mOps = new ArrayList<>();
+    // The UIDs in the calendar and those already imported
+    private final HashSet<String> mUids = new HashSet<>();
+    private ProgressListener mListener;
+    private long mCalendarId = -1;
+    private String mOwnerAccount;
+    // The events whose operations are in mOps
+    private final ArrayList<CalendarEventModel> mPending = new ArrayList<>();
+    private int mImported;
+    private int mSkipped;
+    private int mFailed;
+    private long mStartTime;
+    private long mElapsed;
+
+    public BulkImporter(Context context) {
+        mContext = context;
+        mResolver = context.getContentResolver();
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Chooses the calendar to import into, which is the one the editor
+     * would choose for a new event, and reads the UIDs of its events.
+     *
+     * @return false if there is no calendar which we can write to
+     */
+    public boolean start() {
+        mStartTime = SystemClock.elapsedRealtime();
+        Cursor cursor = mResolver.query(Calendars.CONTENT_URI,
+            EditEventHelper.CALENDARS_PROJECTION,
+            EditEventHelper.CALENDARS_WHERE_WRITEABLE_VISIBLE, null, null);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            int position = EditEventHelper.findDefaultCalendarPosition(mContext, cursor);
+            if ((position < 0) || !cursor.moveToPosition(position)) {
+                return false;
+            }
+            mCalendarId = cursor.getLong(EditEventHelper.CALENDARS_INDEX_ID);
+            mOwnerAccount = cursor.getString(EditEventHelper.CALENDARS_INDEX_OWNER_ACCOUNT);
+        } finally {
+            cursor.close();
+        }
+        cursor = mResolver.query(Events.CONTENT_URI, new String[] {Events.UID_2445},
+            UIDS_WHERE, new String[] {Long.toString(mCalendarId)}, null);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    mUids.add(cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds an event to the import, applying the batch if it is full.
+     * The model is changed to belong to the chosen calendar, and its times
+     * are filled in as the editor would fill them in.
+     */
+    public void add(CalendarEventModel model) {
+        String uid = model.mUid;
+        if (   model.isEmpty()
+            || (!TextUtils.isEmpty(uid) && !mUids.add(uid)))
+        {
+            ++mSkipped;
+            return;
+        }
+        if (TextUtils.isEmpty(uid)) {
+            model.mUid = UUID.randomUUID().toString();
+        }
+        EditEventHelper.setImportedTimes(mContext, model);
+        model.mCalendarId = mCalendarId;
+        model.mOwnerAccount = mOwnerAccount;
+        model.mHasAttendeeData = !model.mAttendeesList.isEmpty();
+        if (mHelper.addSaveOperations(mOps, model, null,
+            EditEventHelper.MODIFY_UNINITIALIZED, !mPending.isEmpty()))
+        {
+            mPending.add(model);
+            if (mPending.size() >= EVENTS_PER_BATCH) {
+                applyBatch();
+            }
+        } else {
+            fail(model);
+        }
+    }
+
+    /**
+     * Applies the last batch, and logs how long the import took.
+     */
+    public void finish() {
+        applyBatch();
+        Log.i(TAG, "Imported " + mImported + " events, skipped " + mSkipped
+            + ", failed " + mFailed + ", in " + mElapsed + "ms ("
+            + getEventsPerSecond() + " events/s)");
+    }
+
+    private void applyBatch() {
+        if (!mPending.isEmpty()) {
+            try {
+                mResolver.applyBatch(CalendarContract.AUTHORITY, mOps);
+                mImported += mPending.size();
+            } catch (RemoteException | OperationApplicationException | RuntimeException e) {
+                // The provider throws a RuntimeException for a value it
+                // won't take.
+                Log.w(TAG, "Failed to import a batch of " + mPending.size() + " events", e);
+                retryBatch();
+            }
+            mOps.clear();
+            mPending.clear();
+        }
+        mElapsed = SystemClock.elapsedRealtime() - mStartTime;
+        if (mListener != null) {
+            mListener.onProgress(this);
+        }
+    }
+
+    // Counts the events of a failed batch which were committed at a yield
+    // point as imported, and applies each of the others on its own.
+    private void retryBatch() {
+        HashSet<String> written = queryWrittenUids();
+        ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        for (CalendarEventModel model : mPending) {
+            if (written.contains(model.mUid)) {
+                ++mImported;
+                continue;
+            }
+            ops.clear();
+            if (mHelper.addSaveOperations(ops, model, null,
+                EditEventHelper.MODIFY_UNINITIALIZED, false))
+            {
+                try {
+                    mResolver.applyBatch(CalendarContract.AUTHORITY, ops);
+                    ++mImported;
+                    continue;
+                } catch (RemoteException | OperationApplicationException
+                         | RuntimeException e)
+                {
+                    Log.w(TAG, "Failed to import event " + model.mUid, e);
+                }
+            }
+            fail(model);
+        }
+    }
+
+    // Returns the UIDs of the pending events which are in the calendar.
+    private HashSet<String> queryWrittenUids() {
+        HashSet<String> written = new HashSet<>();
+        StringBuilder where = new StringBuilder(WRITTEN_WHERE);
+        String[] args = new String[mPending.size() + 1];
+        args[0] = Long.toString(mCalendarId);
+        for (int i = 0; i < mPending.size(); ++i) {
+            where.append(i == 0 ? "?" : ",?");
+            args[i + 1] = mPending.get(i).mUid;
+        }
+        where.append(')');
+        Cursor cursor = mResolver.query(Events.CONTENT_URI, new String[] {Events.UID_2445},
+            where.toString(), args, null);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    written.add(cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return written;
+    }
+
+    // The event wasn't written, so a later event with the same UID may be.
+    private void fail(CalendarEventModel model) {
+        ++mFailed;
+        mUids.remove(model.mUid);
+    }
+
+    /**
+     * @return the number of events which have been written to the calendar
+     */
+    public int getImportedCount() {
+        return mImported;
+    }
+
+    /**
+     * @return the number of events which were already in the calendar or
+     * had no title, location, or description
+     */
+    public int getSkippedCount() {
+        return mSkipped;
+    }
+
+    /**
+     * @return the number of events which couldn't be written
+     */
+    public int getFailedCount() {
+        return mFailed;
+    }
+
+    /**
+     * @return the number of events dealt with for each second since
+     * {@link #start} was called, up to the last batch
+     */
+    public long getEventsPerSecond() {
+        return getRate(mImported + mSkipped + mFailed, mElapsed);
+    }
+
+    static long getRate(int events, long millis) {
+        return events * 1000L / Math.max(millis, 1);
+    }
+}
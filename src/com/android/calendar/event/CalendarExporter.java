@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.event;
+
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.database.Cursor;
+import android.os.AsyncTask;
+import android.provider.CalendarContract.Attendees;
+import android.provider.CalendarContract.Calendars;
+import android.provider.CalendarContract.Events;
+import android.provider.CalendarContract.Reminders;
+import android.util.Log;
+import android.util.LongSparseArray;
+import android.widget.Toast;
+
+import com.android.calendar.CalendarEventModel;
+import com.android.calendar.EventInfoFragment;
+import com.android.calendar.icalendar.IcalendarUtils;
+import com.android.calendar.icalendar.VCalendarWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+
+import ws.xsoh.etar.R;
+
+/**
+ * Exports the events of a calendar, or those of them which have instances
+ * in a range of times, as an iCalendar file.
+ *
+ * The events are read through one cursor, which the provider sends a
+ * window at a time, and are formatted EVENTS_PER_PAGE at a time: the
+ * reminders and attendees for each page are read with one query each,
+ * and the page is written out through a {@link VCalendarWriter} before
+ * the next one is read. So the memory used doesn't grow with the number
+ * of events.
+ *
+ * Exceptions to recurring events are left out: VEvent can't write them
+ * with a RECURRENCE-ID, and they would be imported as separate events.
+ *
+ * This does provider and file I/O, so it must not be used on the UI thread.
+ */
+public class CalendarExporter {
+    private static final String TAG = "CalendarExporter";
+
+    static final int EVENTS_PER_PAGE = 100;
+
+    // Exceptions, including cancelled instances, have an original event.
+    private static final String EVENTS_WHERE =
+        Events.CALENDAR_ID + "=? AND " + Events.DELETED + "=0 AND "
+        + Events.ORIGINAL_ID + " IS NULL AND " + Events.ORIGINAL_SYNC_ID + " IS NULL";
+    // Events which start before the end of the range, and whose last
+    // instance ends at or after its start (LAST_DATE is null if they
+    // repeat for ever)
+    private static final String RANGE_WHERE = " AND " + Events.DTSTART + "<? AND ("
+        + Events.LAST_DATE + " IS NULL OR " + Events.LAST_DATE + ">=?)";
+
+    private static final String[] REMINDERS_PROJECTION = new String[] {
+        Reminders.EVENT_ID,
+        Reminders.MINUTES,
+        Reminders.METHOD,
+    };
+    private static final int REMINDERS_INDEX_EVENT_ID = 0;
+    private static final int REMINDERS_INDEX_MINUTES = 1;
+    private static final int REMINDERS_INDEX_METHOD = 2;
+
+    private static final String[] ATTENDEES_PROJECTION = new String[] {
+        Attendees.EVENT_ID,
+        Attendees.ATTENDEE_NAME,
+        Attendees.ATTENDEE_EMAIL,
+        Attendees.ATTENDEE_STATUS,
+        Attendees.ATTENDEE_TYPE,
+        Attendees.ATTENDEE_IDENTITY,
+        Attendees.ATTENDEE_ID_NAMESPACE,
+    };
+    private static final int ATTENDEES_INDEX_EVENT_ID = 0;
+    private static final int ATTENDEES_INDEX_NAME = 1;
+    private static final int ATTENDEES_INDEX_EMAIL = 2;
+    private static final int ATTENDEES_INDEX_STATUS = 3;
+    private static final int ATTENDEES_INDEX_TYPE = 4;
+    private static final int ATTENDEES_INDEX_IDENTITY = 5;
+    private static final int ATTENDEES_INDEX_ID_NAMESPACE = 6;
+
+    private final ContentResolver mResolver;
+    // The page of events being formatted, by id
+    private final LongSparseArray<CalendarEventModel> mPage = new LongSparseArray<>();
+
+    public CalendarExporter(ContentResolver resolver) {
+        mResolver = resolver;
+    }
+
+    /**
+     * Writes the events of a calendar as VEVENTs. The caller writes the
+     * start and end of the VCALENDAR.
+     *
+     * @param calendarId the calendar to export
+     * @param begin the start of the range, in UTC milliseconds
+     * @param end the end of the range, or Long.MAX_VALUE to export the
+     *            whole calendar
+     * @return the number of events written
+     */
+    public int export(long calendarId, long begin, long end, VCalendarWriter writer)
+        throws IOException
+    {
+        String selection = EVENTS_WHERE;
+        String[] selectionArgs;
+        if (end == Long.MAX_VALUE) {
+            selectionArgs = new String[] {Long.toString(calendarId)};
+        } else {
+            selection += RANGE_WHERE;
+            selectionArgs = new String[] {
+                Long.toString(calendarId), Long.toString(end), Long.toString(begin)
+            };
+        }
+        Cursor cursor = mResolver.query(Events.CONTENT_URI,
+            EditEventHelper.EVENT_PROJECTION, selection, selectionArgs, Events._ID);
+        if (cursor == null) {
+            return 0;
+        }
+        int count = 0;
+        try {
+            while (cursor.moveToNext()) {
+                CalendarEventModel model = new CalendarEventModel();
+                EditEventHelper.setModelFromCursorRow(model, cursor);
+                mPage.append(model.mId, model);
+                if (mPage.size() >= EVENTS_PER_PAGE) {
+                    count += writePage(writer);
+                }
+            }
+            count += writePage(writer);
+        } finally {
+            cursor.close();
+            mPage.clear();
+        }
+        return count;
+    }
+
+    private int writePage(VCalendarWriter writer) throws IOException {
+        int n = mPage.size();
+        if (n == 0) {
+            return 0;
+        }
+        StringBuilder sb = new StringBuilder(" IN (");
+        for (int i = 0; i < n; ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(mPage.keyAt(i));
+        }
+        sb.append(')');
+        String ids = sb.toString();
+        readReminders(ids);
+        readAttendees(ids);
+        for (int i = 0; i < n; ++i) {
+            writer.write(mPage.valueAt(i));
+        }
+        mPage.clear();
+        return n;
+    }
+
+    private void readReminders(String ids) {
+        Cursor cursor = mResolver.query(Reminders.CONTENT_URI, REMINDERS_PROJECTION,
+            Reminders.EVENT_ID + ids, null, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                CalendarEventModel model =
+                    mPage.get(cursor.getLong(REMINDERS_INDEX_EVENT_ID));
+                if (model != null) {
+                    model.mReminders.add(CalendarEventModel.ReminderEntry.valueOf(
+                        cursor.getInt(REMINDERS_INDEX_MINUTES),
+                        cursor.getInt(REMINDERS_INDEX_METHOD)));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        // VEvent expects them in the same order as the editor has them
+        for (int i = mPage.size() - 1; i >= 0; --i) {
+            Collections.sort(mPage.valueAt(i).mReminders);
+        }
+    }
+
+    private void readAttendees(String ids) {
+        Cursor cursor = mResolver.query(Attendees.CONTENT_URI, ATTENDEES_PROJECTION,
+            Attendees.EVENT_ID + ids + " AND " + Attendees.ATTENDEE_EMAIL + " IS NOT NULL",
+            null, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                CalendarEventModel model =
+                    mPage.get(cursor.getLong(ATTENDEES_INDEX_EVENT_ID));
+                if (model != null) {
+                    model.addAttendee(new CalendarEventModel.Attendee(
+                        cursor.getString(ATTENDEES_INDEX_NAME),
+                        cursor.getString(ATTENDEES_INDEX_EMAIL),
+                        cursor.getInt(ATTENDEES_INDEX_STATUS),
+                        cursor.getInt(ATTENDEES_INDEX_TYPE),
+                        cursor.getString(ATTENDEES_INDEX_IDENTITY),
+                        cursor.getString(ATTENDEES_INDEX_ID_NAMESPACE)));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Exports a whole calendar to a new file in the export directory.
+     *
+     * @return the file, or null if it couldn't be written
+     */
+    public File exportToFile(long calendarId, String name) {
+        String prefix = name.replaceAll("\\W+", " ").trim();
+        if (prefix.length() < 3) {
+            prefix = "calendar";
+        }
+        File dir = EventInfoFragment.EXPORT_SDCARD_DIRECTORY;
+        if (!dir.exists()) {
+            dir.mkdir();
+        }
+        VCalendarWriter writer = null;
+        try {
+            File file = IcalendarUtils.createTempFile(prefix + " ", ".ics", dir);
+            writer = new VCalendarWriter(new FileOutputStream(file));
+            writer.begin();
+            int count = export(calendarId, 0, Long.MAX_VALUE, writer);
+            writer.end();
+            Log.i(TAG, "Exported " + count + " events to " + file);
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "Couldn't export calendar " + calendarId, e);
+            return null;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private static class ListCalendarsTask extends AsyncTask<Void, Void, Cursor> {
+        // The activity may be closed before the query finishes, and mustn't
+        // be kept alive by it.
+        private final WeakReference<Activity> mActivity;
+        private final ContentResolver mResolver;
+
+        ListCalendarsTask(Activity activity) {
+            mActivity = new WeakReference<>(activity);
+            mResolver = activity.getApplicationContext().getContentResolver();
+        }
+
+        @Override
+        protected Cursor doInBackground(Void... params) {
+            return mResolver.query(Calendars.CONTENT_URI,
+                EditEventHelper.CALENDARS_PROJECTION, Calendars.VISIBLE + "=1",
+                null, null);
+        }
+
+        @Override
+        protected void onPostExecute(final Cursor cursor) {
+            if (cursor == null) {
+                return;
+            }
+            final Activity activity = mActivity.get();
+            if (activity == null || activity.isFinishing() || activity.isDestroyed()) {
+                cursor.close();
+                return;
+            }
+            final int n = cursor.getCount();
+            if (n == 0) {
+                cursor.close();
+                Toast.makeText(activity, R.string.cal_nothing_to_export,
+                    Toast.LENGTH_SHORT).show();
+                return;
+            }
+            final long[] ids = new long[n];
+            final String[] names = new String[n];
+            for (int i = 0; cursor.moveToNext(); ++i) {
+                ids[i] = cursor.getLong(EditEventHelper.CALENDARS_INDEX_ID);
+                names[i] = cursor.getString(EditEventHelper.CALENDARS_INDEX_DISPLAY_NAME);
+            }
+            cursor.close();
+
+            AlertDialog.Builder builder = new AlertDialog.Builder(activity);
+            builder.setTitle(R.string.cal_pick_calendar_to_export)
+                .setItems(names, new DialogInterface.OnClickListener() {
+                    public void onClick(DialogInterface dialog, int which) {
+                        new ExportTask(activity, ids[which], names[which]).execute();
+                    }
+                });
+            builder.show();
+        }
+    }
+
+    private static class ExportTask extends AsyncTask<Void, Void, File> {
+        private final Context mContext;
+        private final long mCalendarId;
+        private final String mName;
+
+        ExportTask(Context context, long calendarId, String name) {
+            mContext = context.getApplicationContext();
+            mCalendarId = calendarId;
+            mName = (name == null) ? "" : name;
+        }
+
+        @Override
+        protected File doInBackground(Void... params) {
+            return new CalendarExporter(mContext.getContentResolver())
+                .exportToFile(mCalendarId, mName);
+        }
+
+        @Override
+        protected void onPostExecute(File file) {
+            if (file == null) {
+                Toast.makeText(mContext, R.string.error_generating_ics,
+                    Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(mContext,
+                    String.format(mContext.getString(R.string.cal_export_succ_msg), file),
+                    Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+
+    /**
+     * Asks which calendar to export, and exports it to the export directory.
+     */
+    public static void pickCalendar(Activity activity) {
+        new ListCalendarsTask(activity).execute();
+    }
+}
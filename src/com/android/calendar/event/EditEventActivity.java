@@ -47,7 +47,6 @@ import androidx.core.content.FileProvider;
 import android.os.Environment;
 import android.provider.CalendarContract;
 import android.text.TextUtils;
-import android.text.format.DateUtils;
 import android.text.format.Time;
 import android.util.Log;
 import android.view.Menu;
@@ -70,8 +69,6 @@ import com.android.calendar.colorpicker.ColorPickerSwatch;
 import com.android.calendar.colorpicker.HsvColorComparator;
 import com.android.calendar.icalendar.IcalendarUtils;
 import com.android.calendar.icalendar.VCalendar;
-import com.android.calendarcommon2.DateException;
-import com.android.calendarcommon2.Duration;
 
 import java.io.File;
 import java.io.IOException;
@@ -654,38 +651,7 @@ public class EditEventActivity extends AbstractCalendarActivity
             synchronized (CalendarApplication.mEvents) {
                 try {
                     mModel = CalendarApplication.mEvents.remove(0);
-                    // FIXME check if this can ever happen
-                    if (mModel.mEventStart <= 0) {
-                        // use a default value instead
-                        long now = System.currentTimeMillis();
-                        Time defaultStart = new Time();
-                        defaultStart.set(now);
-                        defaultStart.second = 0;
-                        defaultStart.minute = 30;
-                        long defaultStartMillis =
-                            defaultStart.toMillis(false);
-                        if (now < defaultStartMillis) {
-                            mModel.mEventStart = defaultStartMillis;
-                        } else {
-                            mModel.mEventStart =
-                                defaultStartMillis + 30 * DateUtils.MINUTE_IN_MILLIS;
-                        }
-                    }
-                    if (!TextUtils.isEmpty(mModel.mDuration)) {
-                        try {
-                            Duration d = new Duration();
-                            d.parse(mModel.mDuration);
-                            mModel.mEventEnd = d.addTo( mModel.mEventStart);
-                        } catch (DateException ignore) {}
-                    }
-                    if (mModel.mEventEnd < mModel.mEventStart) {
-                        // use a default value instead
-                        mModel.mEventEnd = mModel.mEventStart
-                            + Utils.getDefaultEventDurationInMillis(this);
-                    }
-
-                    mModel.mInstanceStart = mModel.mEventStart;
-                    mModel.mInstanceEnd = mModel.mEventEnd;
+                    EditEventHelper.setImportedTimes(this, mModel);
                 } catch (IndexOutOfBoundsException ignore) {
                 }
             }
@@ -21,9 +21,11 @@ package com.android.calendar.event;
 import android.content.ContentProviderOperation;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
 import android.database.Cursor;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.provider.CalendarContract;
 import android.provider.CalendarContract.Attendees;
 import android.provider.CalendarContract.Calendars;
 import android.provider.CalendarContract.Colors;
@@ -41,7 +43,9 @@ import com.android.calendar.CalendarEventModel;
 import com.android.calendar.CalendarEventModel.Attendee;
 import com.android.calendar.CalendarEventModel.ReminderEntry;
 import com.android.calendar.Utils;
+import com.android.calendar.settings.GeneralPreferences;
 import com.android.calendarcommon2.DateException;
+import com.android.calendarcommon2.Duration;
 import com.android.calendarcommon2.EventRecurrence;
 import com.android.calendarcommon2.RecurrenceProcessor;
 import com.android.calendarcommon2.RecurrenceSet;
@@ -312,6 +316,36 @@ public class EditEventHelper {
      */
     public boolean saveEvent(CalendarEventModel model,
                              CalendarEventModel originalModel, int modifyWhich)
+    {
+        ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        if (!addSaveOperations(ops, model, originalModel, modifyWhich, false)) {
+            return false;
+        }
+
+        mService.startBatch(null, null,
+            android.provider.CalendarContract.AUTHORITY, ops);
+
+        return true;
+    }
+
+    /**
+     * Adds the operations to save the event to the end of ops, without
+     * applying them, so that the operations for many events can be applied
+     * in one batch. Back references are relative to the start of ops, so
+     * the batch must start at the beginning of ops or with an event.
+     *
+     * @param ops The list to add the operations to
+     * @param model The event model to save
+     * @param originalModel A model of the original event if it exists
+     * @param modifyWhich For recurring events which type of series modification to use
+     * @param yieldAllowed true if the provider may yield its transaction
+     *                     before inserting a new event
+     * @return true if the operations were added
+     */
+    public boolean addSaveOperations(ArrayList<ContentProviderOperation> ops,
+                                     CalendarEventModel model,
+                                     CalendarEventModel originalModel, int modifyWhich,
+                                     boolean yieldAllowed)
     {
         boolean forceSaveReminders = false;
 
@@ -358,7 +392,6 @@ public class EditEventHelper {
 
         }
 
-        ArrayList<ContentProviderOperation> ops = new ArrayList<>();
         int eventIdIndex = -1;
 
         ContentValues values = getContentValuesFromModel(model);
@@ -376,9 +409,10 @@ public class EditEventHelper {
             // Add hasAttendeeData for a new event
             values.put(Events.HAS_ATTENDEE_DATA, 1);
             values.put(Events.STATUS, Events.STATUS_CONFIRMED);
-            eventIdIndex = 0;
+            eventIdIndex = ops.size();
             ContentProviderOperation.Builder b
                 = ContentProviderOperation.newInsert( Events.CONTENT_URI).withValues(values);
+            b.withYieldAllowed(yieldAllowed);
             ops.add(b.build());
             forceSaveReminders = true;
 
@@ -404,7 +438,7 @@ public class EditEventHelper {
             values.put(Events.ORIGINAL_ALL_DAY, allDay ? 1 : 0);
             values.put(Events.STATUS, originalModel.mEventStatus);
 
-            eventIdIndex = 0;
+            eventIdIndex = ops.size();
             ContentProviderOperation.Builder b = ContentProviderOperation.newInsert(
                     Events.CONTENT_URI).withValues(values);
             ops.add(b.build());
@@ -638,10 +672,6 @@ public class EditEventHelper {
             }
         }
 
-
-        mService.startBatch(null, null,
-            android.provider.CalendarContract.AUTHORITY, ops);
-
         return true;
     }
 
@@ -905,6 +935,83 @@ public class EditEventHelper {
         }
     }
 
+    // Find the calendar position in the cursor that matches calendar in
+    // preference
+    static int findDefaultCalendarPosition(Context context, Cursor calendarsCursor) {
+        if (calendarsCursor.getCount() <= 0) {
+            return -1;
+        }
+
+        String defaultCalendar = Utils.getSharedPreference(
+                context, GeneralPreferences.KEY_DEFAULT_CALENDAR, (String) null);
+
+        int calendarsOwnerIndex = calendarsCursor.getColumnIndexOrThrow(Calendars.OWNER_ACCOUNT);
+        int calendarNameIndex = calendarsCursor.getColumnIndexOrThrow(Calendars.CALENDAR_DISPLAY_NAME);
+        int accountNameIndex = calendarsCursor.getColumnIndexOrThrow(Calendars.ACCOUNT_NAME);
+        int accountTypeIndex = calendarsCursor.getColumnIndexOrThrow(Calendars.ACCOUNT_TYPE);
+        int position = 0;
+        calendarsCursor.moveToPosition(-1);
+        while (calendarsCursor.moveToNext()) {
+            String calendarOwner = calendarsCursor.getString(calendarsOwnerIndex);
+            String calendarName = calendarsCursor.getString(calendarNameIndex);
+            String currentCalendar = calendarOwner + "/" + calendarName;
+            if (defaultCalendar == null) {
+                // There is no stored default upon the first time running.  Use a primary
+                // calendar in this case.
+                if (calendarOwner != null &&
+                        calendarOwner.equals(calendarsCursor.getString(accountNameIndex)) &&
+                        !CalendarContract.ACCOUNT_TYPE_LOCAL.equals(
+                                calendarsCursor.getString(accountTypeIndex))) {
+                    return position;
+                }
+            } else if (defaultCalendar.equals(currentCalendar)) {
+                // Found the default calendar.
+                return position;
+            }
+            position++;
+        }
+        return 0;
+    }
+
+    /**
+     * Fills in the times of an event read from an iCalendar file, which
+     * only sets the event's own times: a default start if it has none, the
+     * end from its DURATION if it has one, a default end if that is before
+     * the start, and the instance times, which are what is saved.
+     */
+    public static void setImportedTimes(Context context, CalendarEventModel model) {
+        // FIXME check if this can ever happen
+        if (model.mEventStart <= 0) {
+            // use a default value instead
+            long now = System.currentTimeMillis();
+            Time defaultStart = new Time();
+            defaultStart.set(now);
+            defaultStart.second = 0;
+            defaultStart.minute = 30;
+            long defaultStartMillis = defaultStart.toMillis(false);
+            if (now < defaultStartMillis) {
+                model.mEventStart = defaultStartMillis;
+            } else {
+                model.mEventStart = defaultStartMillis + 30 * DateUtils.MINUTE_IN_MILLIS;
+            }
+        }
+        if (!TextUtils.isEmpty(model.mDuration)) {
+            try {
+                Duration d = new Duration();
+                d.parse(model.mDuration);
+                model.mEventEnd = d.addTo(model.mEventStart);
+            } catch (DateException ignore) {}
+        }
+        if (model.mEventEnd < model.mEventStart) {
+            // use a default value instead
+            model.mEventEnd = model.mEventStart
+                + Utils.getDefaultEventDurationInMillis(context);
+        }
+
+        model.mInstanceStart = model.mEventStart;
+        model.mInstanceEnd = model.mEventEnd;
+    }
+
     // It's the first event in the series if the start time before being
     // modified is the same as the original event's start time
     static boolean isFirstEventInSeries(CalendarEventModel model,
@@ -968,7 +1075,18 @@ public class EditEventHelper {
         }
 
         cursor.moveToFirst();
+        setModelFromCursorRow(model, cursor);
+    }
 
+    /**
+     * Fills in the model from the current row of an event cursor which used
+     * {@link #EVENT_PROJECTION} for the query, for callers which read more
+     * than one event.
+     *
+     * @param model The model to fill in
+     * @param cursor An event cursor that used {@link #EVENT_PROJECTION} for the query
+     */
+    public static void setModelFromCursorRow(CalendarEventModel model, Cursor cursor) {
         model.mId = cursor.getInt(EVENT_INDEX_ID);
         model.mUid = cursor.getString(EVENT_INDEX_UID);
         model.mTitle = cursor.getString(EVENT_INDEX_TITLE);
@@ -33,7 +33,6 @@ import android.database.Cursor;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
-import android.provider.CalendarContract;
 import android.provider.CalendarContract.Attendees;
 import android.provider.CalendarContract.Calendars;
 import android.provider.CalendarContract.Reminders;
@@ -1221,7 +1220,7 @@ public class EditEventView
         if (selectedCalendarId != -1) {
             selection = findSelectedCalendarPosition(cursor, selectedCalendarId);
         } else {
-            selection = findDefaultCalendarPosition(cursor);
+            selection = EditEventHelper.findDefaultCalendarPosition(mActivity, cursor);
         }
 
         // populate the calendars spinner
@@ -1347,44 +1346,6 @@ public class EditEventView
         return 0;
     }
 
-    // Find the calendar position in the cursor that matches calendar in
-    // preference
-    private int findDefaultCalendarPosition(Cursor calendarsCursor) {
-        if (calendarsCursor.getCount() <= 0) {
-            return -1;
-        }
-
-        String defaultCalendar = Utils.getSharedPreference(
-                mActivity, GeneralPreferences.KEY_DEFAULT_CALENDAR, (String) null);
-
-        int calendarsOwnerIndex = calendarsCursor.getColumnIndexOrThrow(Calendars.OWNER_ACCOUNT);
-        int calendarNameIndex = calendarsCursor.getColumnIndexOrThrow(Calendars.CALENDAR_DISPLAY_NAME);
-        int accountNameIndex = calendarsCursor.getColumnIndexOrThrow(Calendars.ACCOUNT_NAME);
-        int accountTypeIndex = calendarsCursor.getColumnIndexOrThrow(Calendars.ACCOUNT_TYPE);
-        int position = 0;
-        calendarsCursor.moveToPosition(-1);
-        while (calendarsCursor.moveToNext()) {
-            String calendarOwner = calendarsCursor.getString(calendarsOwnerIndex);
-            String calendarName = calendarsCursor.getString(calendarNameIndex);
-            String currentCalendar = calendarOwner + "/" + calendarName;
-            if (defaultCalendar == null) {
-                // There is no stored default upon the first time running.  Use a primary
-                // calendar in this case.
-                if (calendarOwner != null &&
-                        calendarOwner.equals(calendarsCursor.getString(accountNameIndex)) &&
-                        !CalendarContract.ACCOUNT_TYPE_LOCAL.equals(
-                                calendarsCursor.getString(accountTypeIndex))) {
-                    return position;
-                }
-            } else if (defaultCalendar.equals(currentCalendar)) {
-                // Found the default calendar.
-                return position;
-            }
-            position++;
-        }
-        return 0;
-    }
-
     private void updateAttendees(HashMap<String, Attendee> attendeesList) {
         if (attendeesList == null || attendeesList.isEmpty()) {
             return;
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.icalendar;
+
+/**
+ * Splits an unfolded content line (RFC 5545 section 3.1) into its name,
+ * parameters, and value without copying it: it just remembers where they
+ * are, so one of these can be reused for every line of a file.
+ *
+ * The names of properties and parameters which we understand are returned
+ * as constant Strings, so that they can be used in switch statements
+ * without making a new String for every line. Other names are upper-cased,
+ * since RFC 5545 allows mixed case, although nobody uses it.
+ *
+ * It allows some illegal things:
+ *     quoted-strings concatenated with other quoted strings or characters
+ *     invalid characters in property and parameter names
+ *     no property value
+ *     parameters without values, which are ignored
+ * RFC 5545 does not provide a way to include a " in a parameter value.
+ */
+final class ContentLine {
+    private static final String[] PROPERTY_NAMES = {
+        "BEGIN", "END", "UID", "DTSTAMP", "DTSTART", "DTEND", "DURATION",
+        "SUMMARY", "DESCRIPTION", "LOCATION", "CLASS", "STATUS", "TRANSP",
+        "ORGANIZER", "ATTENDEE", "RRULE", "RDATE", "EXDATE",
+        "ACTION", "TRIGGER", "REPEAT", "CREATED", "LAST-MODIFIED", "SEQUENCE",
+    };
+    private static final String[] PARAMETER_NAMES = {
+        "CN", "TZID", "VALUE", "PARTSTAT", "CUTYPE", "ROLE", "RELATED", "RSVP",
+    };
+
+    private CharSequence mLine;
+    private String mName;
+    // The parameters are between mNameEnd and mParametersEnd, each one
+    // starting with a semicolon
+    private int mNameEnd;
+    private int mParametersEnd;
+    private int mValueStart;
+
+    // Where nextParameter looks next
+    private int mNextParameter;
+    // The parameter found by nextParameter
+    private int mParameterStart;
+    private int mParameterNameEnd;
+    private int mParameterValueStart;
+    private int mParameterValueEnd;
+    private boolean mParameterQuoted;
+
+    /**
+     * Splits a new line. A line without a colon has an empty name, so that
+     * it is ignored.
+     */
+    void set(CharSequence line) {
+        mLine = line;
+        int length = line.length();
+        mNameEnd = -1;
+        mParametersEnd = -1;
+        boolean inQuotedString = false;
+        for (int i = 0; i < length; ++i) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                inQuotedString = !inQuotedString;
+            } else if (!inQuotedString) {
+                if ((c == ';') && (mNameEnd < 0)) {
+                    mNameEnd = i;
+                } else if (c == ':') {
+                    mParametersEnd = i;
+                    break;
+                }
+            }
+        }
+        if (mParametersEnd < 0) {
+            mNameEnd = 0;
+            mParametersEnd = 0;
+            mValueStart = length;
+        } else {
+            if (mNameEnd < 0) {
+                mNameEnd = mParametersEnd;
+            }
+            mValueStart = mParametersEnd + 1;
+        }
+        mName = intern(PROPERTY_NAMES, line, 0, mNameEnd);
+        mNextParameter = mNameEnd;
+    }
+
+    // Returns the name in upper case, as a constant String if it is in names
+    private static String intern(String[] names, CharSequence s, int start, int end) {
+        int length = end - start;
+        for (String name : names) {
+            if ((name.length() == length) && regionMatches(s, start, name)) {
+                return name;
+            }
+        }
+        return s.subSequence(start, end).toString().toUpperCase();
+    }
+
+    // Case insensitive comparison with an upper case String
+    private static boolean regionMatches(CharSequence s, int start, String upper) {
+        int n = upper.length();
+        if (start + n > s.length()) {
+            return false;
+        }
+        for (int i = 0; i < n; ++i) {
+            char c = s.charAt(start + i);
+            char u = upper.charAt(i);
+            if ((c != u) && (Character.toUpperCase(c) != u)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the property name in upper case
+     */
+    String getName() {
+        return mName;
+    }
+
+    /**
+     * @return the value, exactly as it is in the line
+     */
+    String getValue() {
+        return mLine.subSequence(mValueStart, mLine.length()).toString();
+    }
+
+    /**
+     * @return the value with TEXT escapes (RFC 5545 section 3.3.11) removed
+     */
+    String getUnescapedValue() {
+        return IcalendarUtils.unescape(mLine, mValueStart, mLine.length());
+    }
+
+    /**
+     * @return the value with any mailto: prefix removed, for CAL-ADDRESS
+     * values
+     */
+    String getAddressValue() {
+        int start = mValueStart;
+        if (regionMatches(mLine, start, "MAILTO:")) {
+            start += 7;
+        }
+        return mLine.subSequence(start, mLine.length()).toString();
+    }
+
+    /**
+     * @return true if the value is upper, ignoring case
+     */
+    boolean valueEqualsIgnoreCase(String upper) {
+        return    (mLine.length() - mValueStart == upper.length())
+               && regionMatches(mLine, mValueStart, upper);
+    }
+
+    /**
+     * @return true if the value starts with c
+     */
+    boolean valueStartsWith(char c) {
+        return (mValueStart < mLine.length()) && (mLine.charAt(mValueStart) == c);
+    }
+
+    /**
+     * Moves on to the next parameter which has a value.
+     *
+     * @return false if there are no more
+     */
+    boolean nextParameter() {
+        while (mNextParameter < mParametersEnd) {
+            // Skip the semicolon
+            int start = mNextParameter + 1;
+            int equals = -1;
+            boolean inQuotedString = false;
+            mParameterQuoted = false;
+            int i;
+            for (i = start; i < mParametersEnd; ++i) {
+                char c = mLine.charAt(i);
+                if (equals < 0) {
+                    if (c == '=') {
+                        equals = i;
+                    } else if (c == ';') {
+                        // No value
+                        break;
+                    }
+                } else if (c == '"') {
+                    inQuotedString = !inQuotedString;
+                    mParameterQuoted = true;
+                } else if ((c == ';') && !inQuotedString) {
+                    break;
+                }
+            }
+            mNextParameter = i;
+            if (equals >= 0) {
+                mParameterNameEnd = equals;
+                mParameterValueStart = equals + 1;
+                mParameterValueEnd = i;
+                mParameterStart = start;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the name of the parameter found by {@link #nextParameter},
+     * in upper case
+     */
+    String getParameterName() {
+        return intern(PARAMETER_NAMES, mLine, mParameterStart, mParameterNameEnd);
+    }
+
+    /**
+     * @return the value of the parameter found by {@link #nextParameter},
+     * without any quotes
+     */
+    String getParameterValue() {
+        if (!mParameterQuoted) {
+            return mLine.subSequence(mParameterValueStart, mParameterValueEnd).toString();
+        }
+        StringBuilder sb = new StringBuilder(mParameterValueEnd - mParameterValueStart);
+        for (int i = mParameterValueStart; i < mParameterValueEnd; ++i) {
+            char c = mLine.charAt(i);
+            if (c != '"') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Looks for a parameter from the first one, so this can't be used while
+     * stepping through them with {@link #nextParameter}.
+     *
+     * @return the value of the first parameter called name (which must be
+     * in upper case), or null if there isn't one
+     */
+    String getParameter(String name) {
+        mNextParameter = mNameEnd;
+        while (nextParameter()) {
+            if (   (mParameterNameEnd - mParameterStart == name.length())
+                && regionMatches(mLine, mParameterStart, name))
+            {
+                return getParameterValue();
+            }
+        }
+        return null;
+    }
+}
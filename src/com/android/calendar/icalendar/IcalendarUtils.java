@@ -23,7 +23,9 @@ import android.os.Build;
 import android.system.ErrnoException;
 import android.system.OsConstants;
 
-import java.io.BufferedReader;
+import com.android.calendar.CalendarApplication;
+import com.android.calendar.CalendarEventModel;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -32,6 +34,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -52,15 +55,84 @@ public class IcalendarUtils {
      */
     public static String cleanseString(CharSequence sequence) {
         if (sequence == null) return null;
-        String input = sequence.toString();
+        int length = sequence.length();
+        StringBuilder sb = null;
+        for (int i = 0; i < length; ++i) {
+            char c = sequence.charAt(i);
+            String replacement;
+            switch (c) {
+                case '\r':
+                case '\n':
+                    // Replace new lines with the literal '\n'
+                    replacement = "\\n";
+                    break;
+                case ';':
+                    replacement = "\\;";
+                    break;
+                case ',':
+                    replacement = "\\,";
+                    break;
+                default:
+                    if (sb != null) {
+                        sb.append(c);
+                    }
+                    continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(length + 16);
+                sb.append(sequence, 0, i);
+            }
+            sb.append(replacement);
+        }
+        return (sb == null) ? sequence.toString() : sb.toString();
+    }
 
-        // Replace new lines with the literal '\n'
-        input = input.replaceAll("\\r|\\n|\\r\\n", "\\\\n");
-        // Escape semicolons and commas
-        input = input.replace(";", "\\;");
-        input = input.replace(",", "\\,");
+    /**
+     * Appends s to sb, escaped as a TEXT value (RFC 5545 section 3.3.11).
+     */
+    public static void appendEscaped(StringBuilder sb, CharSequence s) {
+        int length = s.length();
+        int start = 0;
+        for (int i = 0; i < length; ++i) {
+            char c = s.charAt(i);
+            if ((c == '\\') || (c == ';') || (c == ',') || (c == '\n')) {
+                sb.append(s, start, i).append('\\').append((c == '\n') ? 'n' : c);
+                start = i + 1;
+            }
+        }
+        sb.append(s, start, length);
+    }
 
-        return input;
+    /**
+     * Removes the escapes from part of a TEXT value. We leave an (illegal)
+     * unescaped backslash as a backslash.
+     */
+    public static String unescape(CharSequence s, int start, int end) {
+        int i = start;
+        while ((i < end) && (s.charAt(i) != '\\')) {
+            ++i;
+        }
+        if (i >= end - 1) {
+            // No escapes
+            return s.subSequence(start, end).toString();
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        sb.append(s, start, i);
+        while (i < end) {
+            char c = s.charAt(i++);
+            if ((c == '\\') && (i < end)) {
+                char next = s.charAt(i);
+                if ((next == 'n') || (next == 'N')) {
+                    c = '\n';
+                    ++i;
+                } else if ((next == '\\') || (next == ';') || (next == ',')) {
+                    c = next;
+                    ++i;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
     }
 
     /**
@@ -112,17 +184,46 @@ public class IcalendarUtils {
         return result;
     }
 
+    /**
+     * Reads the events from an iCalendar file into CalendarApplication.mEvents,
+     * one VEVENT at a time.
+     * @return the calendar, or null if the file couldn't be opened
+     */
     public static VCalendar readCalendarFromFile(Context context, Uri uri) {
-        ArrayList<String> contents = getStringArrayFromFile(context, uri);
-        if (contents == null || contents.isEmpty()) {
+        VCalendarReader reader = openCalendarReader(context, uri);
+        if (reader == null) {
             return null;
         }
         VCalendar calendar = new VCalendar();
-        calendar.populateFromString(contents);
+        try {
+            calendar.populateFromReader(reader);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
         return calendar;
     }
 
-    public static ArrayList<String> getStringArrayFromFile(Context context, Uri uri) {
+    /**
+     * Opens an iCalendar file to read its events one at a time.
+     * @return the reader, which the caller must close, or null if the file
+     * couldn't be opened
+     */
+    public static VCalendarReader openCalendarReader(Context context, Uri uri) {
+        InputStream inputStream = openInputStream(context, uri);
+        if (inputStream == null) {
+            return null;
+        }
+        return new VCalendarReader(
+            new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    private static InputStream openInputStream(Context context, Uri uri) {
         String scheme = uri.getScheme();
         InputStream inputStream = null;
         if(ContentResolver.SCHEME_CONTENT.equals(scheme)) {
@@ -139,34 +240,33 @@ public class IcalendarUtils {
                 e.printStackTrace();
             }
         }
+        return inputStream;
+    }
 
+    public static ArrayList<String> getStringArrayFromFile(Context context, Uri uri) {
+        InputStream inputStream = openInputStream(context, uri);
         if (inputStream == null) {
             return null;
         }
 
         ArrayList<String> result = new ArrayList<>();
 
+        // read file, removing RFC5545 line folding
+        VCalendarReader reader = new VCalendarReader(
+            new InputStreamReader(inputStream, StandardCharsets.UTF_8));
         try {
-            // read file, removing RFC5545 line folding
-            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-            String previous = null;
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (previous == null) {
-                    previous = line;
-                } else if (line.startsWith(" ") || line.startsWith("\t")) {
-                    // line starts with space or tab, fold
-                    previous = previous + line.substring(1);
-                } else {
-                    result.add(previous);
-                    previous = line;
-                }
-            }
-            if (previous != null) {
-                result.add(previous);
+            CharSequence line;
+            while ((line = reader.nextLine()) != null) {
+                result.add(line.toString());
             }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Ignore
+            }
         }
         return result;
     }
@@ -179,14 +279,26 @@ public class IcalendarUtils {
      */
     public static boolean writeCalendarToFile(VCalendar calendar, File file) {
         if (calendar == null || file == null) return false;
-        String icsFormattedString = calendar.getICalFormattedString();
-        FileOutputStream outStream;
+        VCalendarWriter writer = null;
         try {
-            outStream = new FileOutputStream(file);
-            outStream.write(icsFormattedString.getBytes());
-            outStream.close();
+            writer = new VCalendarWriter(new FileOutputStream(file));
+            writer.begin();
+            synchronized (CalendarApplication.mEvents) {
+                for (CalendarEventModel event : CalendarApplication.mEvents) {
+                    writer.write(event);
+                }
+            }
+            writer.end();
         } catch (IOException e) {
             return false;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
         }
         return true;
     }
@@ -202,18 +314,28 @@ public class IcalendarUtils {
      * @return A StringBuilder whose content satisfies RFC5545 requirements
      */
     public static StringBuilder enforceICalLineLength(StringBuilder input) {
+        StringBuilder output = new StringBuilder();
+        foldLines(input, output);
+        return output;
+    }
+
+    /**
+     * Appends input to output, folded as {@link #enforceICalLineLength} does,
+     * so that a caller can reuse the output buffer.
+     */
+    public static void foldLines(CharSequence input, StringBuilder output) {
         final int sPermittedLineLength = 75; // Line length mandated by iCalendar format
 
-        StringBuilder output = new StringBuilder();
         int length = input.length();
 
         boolean justHadNewline = false;
         int currentLineLength = 0;
+        // Characters are copied a run at a time, up to each fold
+        int runStart = 0;
         for (int i = 0; i < length; i++) {
             char currentChar = input.charAt(i);
             if (currentChar == '\n') {
                 // A real newline
-                output.append(currentChar);
                 currentLineLength = 0; // Reset char counter
                 justHadNewline = true;
             } else if (   (currentLineLength >= sPermittedLineLength)
@@ -227,19 +349,17 @@ public class IcalendarUtils {
                 // Since we don't want the receiving decoder to ignore a real newline,
                 // we need to insert another newline and space to separate
                 // the following space or tab from it.
-                output.append("\n ");
-                output.append(currentChar);
+                output.append(input, runStart, i).append("\n ");
+                runStart = i;
                 currentLineLength = 2; // Already has 2 chars: space and currentChar
                 justHadNewline = false;
             } else {
                 // A non-newline char that can be part of the current line
-                output.append(currentChar);
                 currentLineLength++;
                 justHadNewline = false;
             }
         }
-
-        return output;
+        output.append(input, runStart, length);
     }
 
     /**
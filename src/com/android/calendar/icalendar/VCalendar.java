@@ -19,6 +19,7 @@ package com.android.calendar.icalendar;
 import com.android.calendar.CalendarApplication;
 import com.android.calendar.CalendarEventModel;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -43,11 +44,7 @@ public class VCalendar {
      */
     public String getICalFormattedString() {
         StringBuilder output = new StringBuilder();
-
-        output.append("BEGIN:VCALENDAR\n")
-              .append("PRODID:").append(PRODID).append("\n")
-              .append("VERSION:2.0\n")
-              .append("METHOD:PUBLISH\n");
+        appendHeader(output);
 
         // Enforce line length requirements
         output = IcalendarUtils.enforceICalLineLength(output);
@@ -62,19 +59,37 @@ public class VCalendar {
         return output.toString();
     }
 
+    /* package */ static void appendHeader(StringBuilder output) {
+        output.append("BEGIN:VCALENDAR\n")
+              .append("PRODID:").append(PRODID).append("\n")
+              .append("VERSION:2.0\n")
+              .append("METHOD:PUBLISH\n");
+    }
+
     public void populateFromString(ArrayList<String> input) {
         ListIterator<String> iter = input.listIterator();
         while (iter.hasNext()) {
             String line = iter.next();
-            if (line.toUpperCase().startsWith("BEGIN:VEVENT")) {
+            if (VCalendarReader.startsWithIgnoreCase(line, "BEGIN:VEVENT")) {
                 // Offload to vevent for parsing
                 CalendarEventModel event = new CalendarEventModel();
-                // This sets mInstanceStart and mInstanceEnd
+                // This only sets the event's own times: see
+                // EditEventHelper.setImportedTimes.
                 VEvent.populateFromEntries(event, iter);
                 CalendarApplication.mEvents.add(event);
-            } else if (line.toUpperCase().startsWith("END:VCALENDAR")) {
+            } else if (VCalendarReader.startsWithIgnoreCase(line, "END:VCALENDAR")) {
                 break;
             }
         }
     }
+
+    /**
+     * Reads the events one at a time, adding them to CalendarApplication.mEvents.
+     */
+    public void populateFromReader(VCalendarReader reader) throws IOException {
+        CalendarEventModel event;
+        while ((event = reader.nextEvent()) != null) {
+            CalendarApplication.mEvents.add(event);
+        }
+    }
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.icalendar;
+
+import com.android.calendar.CalendarEventModel;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads the events of an iCalendar file one at a time, without reading the
+ * whole file into memory, so the memory used only depends on the size of
+ * the largest VEVENT.
+ *
+ * Folded lines (RFC 5545 section 3.1) are unfolded into a StringBuilder
+ * which is reused for every line, and lines outside a VEVENT (such as
+ * VTIMEZONEs, or the properties of the VCALENDAR) are skipped without
+ * making Strings of them. The lines of each VEVENT, including any VALARMs
+ * inside it, are collected and handed to
+ * {@link VEvent#populateFromEntries}.
+ *
+ * In parallel mode (see {@link #setParallel}) the VEVENTs are decoded on a
+ * shared ForkJoinPool while we go on reading the file: up to
+ * MAX_PENDING_EVENTS are read ahead, and {@link #nextEvent} still returns
+ * them in the order in which they are in the file.
+ */
+public class VCalendarReader implements Closeable {
+
+    private static final String BEGIN_VEVENT = "BEGIN:VEVENT";
+    private static final String END_VEVENT = "END:VEVENT";
+    private static final String END_VCALENDAR = "END:VCALENDAR";
+
+    // Enough to keep every thread busy, but not so many that a big file
+    // uses a lot of memory
+    static final int MAX_PENDING_EVENTS = 64;
+    private static final int MAX_THREADS = 4;
+    private static ForkJoinPool sPool;
+
+    private final BufferedReader mReader;
+    // The content line being unfolded
+    private final StringBuilder mLine = new StringBuilder();
+    // The next physical line, which we had to read to know that mLine
+    // wasn't continued, or null
+    private String mNext;
+    // The lines of the VEVENT being read, reused for each one
+    private final ArrayList<String> mEntries = new ArrayList<>();
+    // The VEVENTs being decoded in parallel mode, in file order
+    private final ArrayDeque<ForkJoinTask<CalendarEventModel>> mPending =
+        new ArrayDeque<>();
+    private boolean mParallel;
+    private boolean mFinished;
+
+    /**
+     * @param reader the iCalendar text, which {@link #close} closes
+     */
+    public VCalendarReader(Reader reader) {
+        mReader = reader instanceof BufferedReader
+            ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * Reads the next content line, unfolded.
+     *
+     * @return the line, which is only valid until the next call, or null
+     * at the end of the input
+     */
+    CharSequence nextLine() throws IOException {
+        String physical = mNext != null ? mNext : mReader.readLine();
+        mNext = null;
+        if (physical == null) {
+            return null;
+        }
+        mLine.setLength(0);
+        mLine.append(physical);
+        while ((physical = mReader.readLine()) != null) {
+            if (   physical.isEmpty()
+                || (physical.charAt(0) != ' ' && physical.charAt(0) != '\t'))
+            {
+                mNext = physical;
+                break;
+            }
+            // Line starts with space or tab, so it continues the last one.
+            mLine.append(physical, 1, physical.length());
+        }
+        return mLine;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (sPool == null) {
+            sPool = new ForkJoinPool(
+                Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS));
+        }
+        return sPool;
+    }
+
+    /**
+     * Decoding a VEVENT takes much longer than reading it, so for a big
+     * file it is faster to decode several at once on different threads.
+     * This isn't worth doing for a file with only one or two events.
+     *
+     * @param parallel true to decode the events in parallel from now on
+     */
+    public void setParallel(boolean parallel) {
+        mParallel = parallel;
+    }
+
+    /**
+     * Reads the next VEVENT.
+     *
+     * @return a new model for the event, or null if there are no more
+     */
+    public CalendarEventModel nextEvent() throws IOException {
+        if (mParallel) {
+            while (!mFinished && (mPending.size() < MAX_PENDING_EVENTS)) {
+                ArrayList<String> entries = new ArrayList<>();
+                if (!readEntries(entries)) {
+                    break;
+                }
+                mPending.add(getPool().submit(new DecodeTask(entries)));
+            }
+        }
+        if (!mPending.isEmpty()) {
+            // Any RuntimeException from decoding is rethrown here
+            return mPending.poll().join();
+        }
+        if (!readEntries(mEntries)) {
+            return null;
+        }
+        CalendarEventModel event = decode(mEntries);
+        mEntries.clear();
+        return event;
+    }
+
+    // Skips to the next BEGIN:VEVENT and collects the lines up to END:VEVENT.
+    private boolean readEntries(ArrayList<String> entries) throws IOException {
+        if (mFinished) {
+            return false;
+        }
+        CharSequence line;
+        while ((line = nextLine()) != null) {
+            if (startsWithIgnoreCase(line, BEGIN_VEVENT)) {
+                entries.clear();
+                while ((line = nextLine()) != null) {
+                    String entry = line.toString();
+                    entries.add(entry);
+                    if (startsWithIgnoreCase(entry, END_VEVENT)) {
+                        break;
+                    }
+                }
+                return true;
+            } else if (startsWithIgnoreCase(line, END_VCALENDAR)) {
+                break;
+            }
+        }
+        mFinished = true;
+        return false;
+    }
+
+    private static CalendarEventModel decode(ArrayList<String> entries) {
+        CalendarEventModel event = new CalendarEventModel();
+        // This only sets the event's own times: see
+        // EditEventHelper.setImportedTimes.
+        VEvent.populateFromEntries(event, entries.listIterator());
+        return event;
+    }
+
+    private static class DecodeTask implements Callable<CalendarEventModel> {
+        private final ArrayList<String> mEntries;
+
+        DecodeTask(ArrayList<String> entries) {
+            mEntries = entries;
+        }
+
+        @Override
+        public CalendarEventModel call() {
+            return decode(mEntries);
+        }
+    }
+
+    /* package */ static boolean startsWithIgnoreCase(CharSequence s, String prefix) {
+        int n = prefix.length();
+        if (s.length() < n) {
+            return false;
+        }
+        for (int i = 0; i < n; ++i) {
+            char c = s.charAt(i);
+            char p = prefix.charAt(i);
+            if (c != p && Character.toUpperCase(c) != p) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ForkJoinTask<CalendarEventModel> task : mPending) {
+            task.cancel(false);
+        }
+        mPending.clear();
+        mReader.close();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.icalendar;
+
+import com.android.calendar.CalendarEventModel;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes an iCalendar file one VEVENT at a time, so that the memory used
+ * only depends on the size of the largest VEVENT, however many there are.
+ *
+ * Each event is formatted into a StringBuilder and folded into another,
+ * both of which are reused for every event, and written through a
+ * buffered UTF-8 writer.
+ */
+public class VCalendarWriter implements Closeable {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Writer mWriter;
+    private final VEvent mVEvent = new VEvent();
+    // The unfolded text of the component being written
+    private final StringBuilder mText = new StringBuilder();
+    // mText folded
+    private final StringBuilder mFolded = new StringBuilder();
+    // mFolded copied out for the writer
+    private char[] mChars = new char[1024];
+
+    /**
+     * @param out where to write the file, which {@link #close} closes
+     */
+    public VCalendarWriter(OutputStream out) {
+        mWriter = new BufferedWriter(
+            new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Writes the start of the VCALENDAR.
+     */
+    public void begin() throws IOException {
+        mText.setLength(0);
+        VCalendar.appendHeader(mText);
+        writeText();
+    }
+
+    /**
+     * Writes one event as a VEVENT.
+     */
+    public void write(CalendarEventModel event) throws IOException {
+        mText.setLength(0);
+        mVEvent.appendICalFormatted(mText, event);
+        writeText();
+    }
+
+    /**
+     * Writes the end of the VCALENDAR, and flushes it out.
+     */
+    public void end() throws IOException {
+        mWriter.write("END:VCALENDAR\n");
+        mWriter.flush();
+    }
+
+    private void writeText() throws IOException {
+        mFolded.setLength(0);
+        IcalendarUtils.foldLines(mText, mFolded);
+        int length = mFolded.length();
+        if (mChars.length < length) {
+            mChars = new char[length];
+        }
+        mFolded.getChars(0, length, mChars, 0);
+        mWriter.write(mChars, 0, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mWriter.close();
+    }
+}
@@ -23,14 +23,12 @@ import android.provider.CalendarContract.Events;
 import android.provider.CalendarContract.Reminders;
 import android.text.format.Time;
 
-import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-
 import com.android.calendar.CalendarEventModel;
 
 import java.util.ArrayList;
 import java.util.ListIterator;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Models the Event/VEvent component of the iCalendar format
@@ -43,114 +41,6 @@ public class VEvent {
     public VEvent() {
     }
 
-    private String escape(String s) {
-        return s.replace("\\", "\\\\")
-                .replace(";", "\\;")
-                .replace(",", "\\,")
-                .replace("\n", "\\n");
-    }
-
-    // We leave an (i;;egal) unescaped backslash as a backslash.
-    private static String unEscape(String s) {
-        return s.replace("\\n", "\n")
-                .replace("\\,", ",")
-                .replace("\\;", ";")
-                .replace("\\\\", "\\");
-    }
-
-    // This splits a property into name, possible parameters, and value
-    // allowing for Unicode code points and quoted strings.
-    // The property name is forced to upper case to be on the safe side:
-    // RFC5545 allows mixed case although nobody uses it.
-    // Line unfolding must already have been done.
-    // It allows some illegal things:
-    //     quoted-strings concatenated with other quoted strings or characters
-    //     invalid characters in property names
-    //     no property value
-    // RFC 5545 does not provide a way to include a " in a parameter value.
-    private static String[] splitProperty(@NonNull String s) {
-        String[] result = new String[] {"", null, ""};
-        boolean inQuotedString = false;
-        boolean seencolon = false;
-        boolean seensemicolon = false;
-        StringBuilder sb = new StringBuilder();
-        int n = s.codePointCount(0, s.length());
-        for (int i = 0; i < n; ++i) {
-            int code = s.codePointAt(s.offsetByCodePoints(0, i));
-            if (seencolon) {
-                sb.appendCodePoint(code);
-            } else if (code == '"') {
-                inQuotedString = !inQuotedString;
-                sb.appendCodePoint(code);
-            } else if (inQuotedString) {
-                sb.appendCodePoint(code);
-            } else if (code == ':') {
-                if (seensemicolon) {
-                    result[1] = sb.toString();
-                } else {
-                    result[0] = sb.toString().toUpperCase();
-                }
-                sb.setLength(0);
-                seencolon = true;
-            } else if (seensemicolon || (code != ';')) {
-                sb.appendCodePoint(code);
-            } else {
-                result[0] = sb.toString().toUpperCase();
-                seensemicolon = true;
-                sb.setLength(0);
-            }
-        }
-        if (seencolon) { result[2] = sb.toString(); }
-        return result;
-    }
-
-    // This splits a parameter string into a list of parameter names and
-    // values allowing for Unicode code points and quoted strings.
-    // Parameter names are forced to upper case to be on the safe side:
-    // RFC5545 allows mixed case although nobody uses it.
-    // The line must have been unfolded and the initial semicolon removed.
-    // If the argument is null, this returns an empty ArrayList.
-    // Otherwise pairs of elements in the returned ArrYList
-    // are a parameter name and its value.
-    // It allows some illegal things:
-    //     quoted-strings concatenated with other quoted strings or characters
-    //     invalid characters in parameter names
-    //     last parameter not having a value
-    // RFC 5545 does not provide a way to include a " in a parameter value.
-    private static ArrayList<String> splitParameters(@Nullable String s) {
-        ArrayList<String> result = new ArrayList<>();
-        if (s != null ) {
-            boolean inQuotedString = false;
-            boolean inValue = false;
-            StringBuilder sb = new StringBuilder();
-            int n = s.codePointCount(0, s.length());
-            for (int i = 0; i < n; ++i) {
-                int code = s.codePointAt(s.offsetByCodePoints(0, i));
-                if (inValue) {
-                    if (code == '"') {
-                        inQuotedString = !inQuotedString;
-                    } else if ((code == ';') && !inQuotedString) {
-                        result.add(sb.toString());
-                        sb.setLength(0);
-                        inValue = false;
-                    } else {
-                        sb.appendCodePoint(code);
-                    }
-                } else if (code == '=') {
-                    result.add(sb.toString().toUpperCase());
-                    sb.setLength(0);
-                    inValue = true;
-                } else {
-                    sb.appendCodePoint(code);
-                }
-            }
-            if (inValue || (sb.length() > 0)) {
-                result.add(sb.toString());
-            }
-        }
-        return result;
-    }
-
     // This quote a parameter value if it contains ";" or ":" or ","
     public String quote(String s) {
         if ((s.contains(";")) || (s.contains(":")) || (s.contains(","))) {
@@ -165,7 +55,19 @@ public class VEvent {
      */
     public String getICalFormattedString(CalendarEventModel event) {
         StringBuilder sb = new StringBuilder();
+        appendICalFormatted(sb, event);
+
+        // Enforce line length requirements
+        sb = IcalendarUtils.enforceICalLineLength(sb);
 
+        return sb.toString();
+    }
+
+    /**
+     * Appends the iCal representation of the Event component to sb,
+     * without folding long lines.
+     */
+    public void appendICalFormatted(StringBuilder sb, CalendarEventModel event) {
         // Add Event properties
         sb.append("BEGIN:VEVENT\n");
         Time tStart = new Time("UTC");
@@ -216,13 +118,19 @@ public class VEvent {
             sb.append("EXDATE:").append(event.mExdate).append("\n");
         }
         if (event.mTitle != null) {
-            sb.append("SUMMARY:").append(escape(event.mTitle)).append("\n");
+            sb.append("SUMMARY:");
+            IcalendarUtils.appendEscaped(sb, event.mTitle);
+            sb.append("\n");
         }
         if (event.mDescription != null) {
-            sb.append("DESCRIPTION:").append(escape(event.mDescription)).append("\n");
+            sb.append("DESCRIPTION:");
+            IcalendarUtils.appendEscaped(sb, event.mDescription);
+            sb.append("\n");
         }
         if (event.mLocation != null) {
-            sb.append("LOCATION:").append(escape(event.mLocation)).append("\n");
+            sb.append("LOCATION:");
+            IcalendarUtils.appendEscaped(sb, event.mLocation);
+            sb.append("\n");
         }
         switch (event.mAccessLevel) {
             default:
@@ -231,11 +139,11 @@ public class VEvent {
                 // This is the default for RFC5545, so do nothing
                 break;
             case Events.ACCESS_PRIVATE:
-                sb.append("CLASS:PRIVATE");
+                sb.append("CLASS:PRIVATE\n");
                 break;
             case Events.ACCESS_CONFIDENTIAL:
                 // This is used by RFC5545, but currently not by Android
-                sb.append("CLASS:CONFIDENTIAL");
+                sb.append("CLASS:CONFIDENTIAL\n");
                 break;
         }
         if (event.mAvailability == Events.AVAILABILITY_FREE) {
@@ -347,12 +255,14 @@ public class VEvent {
                 case Reminders.METHOD_ALERT:
                     sb.append("ACTION:DISPLAY\n");
                     sb.append("DESCRIPTION:");
-                    if (event.mTitle != null) { sb.append(escape(event.mTitle)); }
+                    if (event.mTitle != null) {
+                        IcalendarUtils.appendEscaped(sb, event.mTitle);
+                    }
                     else if (event.mLocation != null) {
-                        sb.append(escape(event.mLocation));
+                        IcalendarUtils.appendEscaped(sb, event.mLocation);
                     }
                     else if (event.mDescription != null) {
-                        sb.append(escape(event.mDescription));
+                        IcalendarUtils.appendEscaped(sb, event.mDescription);
                     } else {
                         // RFC5545 requires that we must have some text here
                         sb.append("Event reminder");
@@ -405,11 +315,6 @@ public class VEvent {
             sb.append("END:VALARM\n");
         }
         sb.append("END:VEVENT\n");
-
-        // Enforce line length requirements
-        sb = IcalendarUtils.enforceICalLineLength(sb);
-
-        return sb.toString();
     }
 
     // Returns duration in minutes or -1 if bad.
@@ -464,20 +369,38 @@ public class VEvent {
     // declarations in the VCALENDAR.
     private static final String chop = "/freeassociation.sourceforge.net/";
 
-    private static void parseDateTime(
-        String[] splitLine, CalendarEventModel model)
-    {
-        String tz = Time.getCurrentTimezone();
-        ArrayList<String> params = splitParameters(splitLine[1]);
-        int n = params.size();
-        for (int i = 0; i < n; i += 2) {
-            if (params.get(i).compareTo("TZID") == 0) {
-                tz = params.get(i + 1).replace(chop, "");
+    // The timezones we have seen, from TZID parameter value to the name we
+    // give to Android. This is shared by all the threads decoding events
+    // (see VCalendarReader), so each TZID is only cleaned up once, and all
+    // the events in a zone share one String for it.
+    private static final ConcurrentHashMap<String, String> sTimezones =
+        new ConcurrentHashMap<>();
+
+    private static String getTimezone(ContentLine cl) {
+        String tzid = cl.getParameter("TZID");
+        if (tzid == null) {
+            return null;
+        }
+        String tz = sTimezones.get(tzid);
+        if (tz == null) {
+            tz = tzid.startsWith(chop) ? tzid.substring(chop.length()) : tzid;
+            String old = sTimezones.putIfAbsent(tzid, tz);
+            if (old != null) {
+                tz = old;
             }
         }
+        return tz;
+    }
+
+    private static void parseDateTime(ContentLine cl, CalendarEventModel model)
+    {
+        String tz = getTimezone(cl);
+        if (tz == null) {
+            tz = Time.getCurrentTimezone();
+        }
         Time t = new Time(tz);
-        if (t.parse(splitLine[2])) { tz = "UTC"; }
-        switch (splitLine[0]) {
+        if (t.parse(cl.getValue())) { tz = "UTC"; }
+        switch (cl.getName()) {
             case "DTSTART":
                 model.mEventStart = t.normalize(false);
                 model.mTimezoneStart = tz;
@@ -495,18 +418,11 @@ public class VEvent {
     // and each one can have a comma-separated list of dates.
     // Android can only have a single comma-separated list,
     // So we pass the old list and append any valid dates we find to it.
-    static private String parseDateList(String[] splitLine, String old)
+    static private String parseDateList(ContentLine cl, String old)
     {
-        String tz = null;
-        ArrayList<String> params = splitParameters(splitLine[1]);
-        int n = params.size();
-        for (int i = 0; i < n; i += 2) {
-            if (params.get(i).compareTo("TZID") == 0) {
-                tz = params.get(i + 1).replace(chop, "");
-            }
-        }
-        String[] dates = splitLine[2].split(",");
-        n = dates.length;
+        String tz = getTimezone(cl);
+        String[] dates = cl.getValue().split(",");
+        int n = dates.length;
         StringBuilder sb = (old == null ) ? new StringBuilder() : new StringBuilder(old);
         for (int i = 0; i < n; ++i) {
             String s = dates[i];
@@ -523,32 +439,33 @@ public class VEvent {
         return sb.toString();
     }
 
-    // Extract one event from an ical file and populate a CalendarEventModel for it
+    // Extract one event from an ical file and populate a CalendarEventModel for it.
+    // This only uses its arguments and sTimezones, so several events can be
+    // decoded at once on different threads.
     static public void populateFromEntries(
         CalendarEventModel model, ListIterator<String> iter)
     {
-        ArrayList<String> params;
-        int n;
+        ContentLine cl = new ContentLine();
         while (iter.hasNext()) {
             String line = iter.next();
             if ((line == null) || line.isEmpty()) { continue; }
-            String[] splitLine = splitProperty(line);
-            switch (splitLine[0]) {
+            cl.set(line);
+            switch (cl.getName()) {
                 case "END":
-                    if (splitLine[2].toUpperCase().compareTo("VEVENT") == 0) {
+                    if (cl.valueEqualsIgnoreCase("VEVENT")) {
                         return; // finished this VEVENT
                     } else {
                         continue;
                     }
                     // DTSTAMP is ignored because Android doesn't handle it
                 case "UID":
-                    model.mUid = splitLine[2];
+                    model.mUid = cl.getValue();
                     continue;
                 case "DTSTART":
-                    parseDateTime(splitLine, model);
+                    parseDateTime(cl, model);
                     continue;
                 case "CLASS":
-                    switch (splitLine[2].toUpperCase()) {
+                    switch (cl.getValue().toUpperCase()) {
                         case "CONFIDENTIAL":
                             model.mAccessLevel = Events.ACCESS_CONFIDENTIAL;
                             break;
@@ -562,29 +479,21 @@ public class VEvent {
                     continue;
                     // CREATED is ignored because Android doesn't handle it
                 case "DESCRIPTION":
-                    model.mDescription = unEscape(splitLine[2]);
+                    model.mDescription = cl.getUnescapedValue();
                     continue;
                     // GEO is ignored because Android doesn't handle it
                     // LAST-MODIFIED is ignored because Android doesn't handle it
                 case "LOCATION":
-                    model.mLocation = unEscape(splitLine[2]);
+                    model.mLocation = cl.getUnescapedValue();
                     continue;
                 case "ORGANIZER":
-                    model.mOrganizerDisplayName = null;
-                    model.mOrganizer = splitLine[2].replaceFirst(
-                        "[mM][aA][iI][lL][tT][oO]:", "");
-                    params = splitParameters(splitLine[1]);
-                    n = params.size();
-                    for (int i = 0; i < n; i += 2) {
-                        if (params.get(i).compareTo("CN") == 0) {
-                            model.mOrganizerDisplayName = params.get(i + 1);
-                        }
-                    }
+                    model.mOrganizer = cl.getAddressValue();
+                    model.mOrganizerDisplayName = cl.getParameter("CN");
                     continue;
                     // PRIORITY is ignored because Android doesn't handle it
                     // SEQUENCE is ignored because Android doesn't handle it
                 case "STATUS":
-                    switch (splitLine[2].toUpperCase()) {
+                    switch (cl.getValue().toUpperCase()) {
                         case "TENTATIVE":
                             model.mEventStatus = Events.STATUS_TENTATIVE;
                             break;
@@ -596,41 +505,38 @@ public class VEvent {
                     }
                     continue;
                 case "SUMMARY":
-                    model.mTitle = unEscape(splitLine[2]);
+                    model.mTitle = cl.getUnescapedValue();
                     continue;
                 case "TRANSP":
                     model.mAvailability =
-                        (splitLine[2].toUpperCase().compareTo("TRANSPARENT") == 0)
+                        cl.valueEqualsIgnoreCase("TRANSPARENT")
                             ? Events.AVAILABILITY_FREE
                             : Events.AVAILABILITY_BUSY;
                     continue;
                     // URL is ignored because Android doesn't handle it
                     // RECURRENCE-ID is ignored because Android doesn't handle it
                 case "RRULE":
-                    model.mRrule = splitLine[2];
+                    model.mRrule = cl.getValue();
                     continue;
                 case "DTEND":
-                    parseDateTime(splitLine, model);
+                    parseDateTime(cl, model);
                     continue;
                 case "DURATION":
-                    model.mDuration = splitLine[2];
+                    model.mDuration = cl.getValue();
                     continue;
                     // ATTACH is ignored because Android doesn't handle it
                 case "ATTENDEE":
-                    String email = splitLine[2].replaceFirst(
-                        "[mM][aA][iI][lL][tT][oO]:", "");
+                    String email = cl.getAddressValue();
                     CalendarEventModel.Attendee attendee =
                         new CalendarEventModel.Attendee(null, email);
                     attendee.mType = Attendees.TYPE_NONE;
-                    params = splitParameters(splitLine[1]);
-                    n = params.size();
-                    for (int i = 0; i < n; i += 2) {
-                        switch (params.get(i)) {
+                    while (cl.nextParameter()) {
+                        switch (cl.getParameterName()) {
                             case "CN":
-                                attendee.mName = params.get(i + 1);
+                                attendee.mName = cl.getParameterValue();
                                 break;
                             case "PARTSTAT":
-                                switch (params.get(i + 1).toUpperCase()) {
+                                switch (cl.getParameterValue().toUpperCase()) {
                                     case "ACCEPTED":
                                         attendee.mStatus =
                                             Attendees.ATTENDEE_STATUS_ACCEPTED;
@@ -653,7 +559,7 @@ public class VEvent {
                                 }
                                 break;
                             case "CUTYPE":
-                                switch (params.get(i + 1).toUpperCase()) {
+                                switch (cl.getParameterValue().toUpperCase()) {
                                     case "RESOURCE":
                                     case "ROOM":
                                         attendee.mType = Attendees.TYPE_RESOURCE;
@@ -662,7 +568,7 @@ public class VEvent {
                                 break;
                             case "ROLE":
                                 if (attendee.mType != Attendees.TYPE_RESOURCE) {
-                                    switch (params.get(i + 1).toUpperCase()) {
+                                    switch (cl.getParameterValue().toUpperCase()) {
                                         case "OPT-PARTICIPANT":
                                             attendee.mType = Attendees.TYPE_OPTIONAL;
                                             break;
@@ -683,16 +589,16 @@ public class VEvent {
                     // COMMENT is ignored because Android doesn't handle it
                     // CONTACT is ignored because Android doesn't handle it
                 case "EXDATE":
-                    model.mExdate = parseDateList(splitLine, model.mExdate);
+                    model.mExdate = parseDateList(cl, model.mExdate);
                     continue;
                 case "RDATE":
-                    model.mRdate = parseDateList(splitLine, model.mRdate);
+                    model.mRdate = parseDateList(cl, model.mRdate);
                     continue;
                     // REQUEST-STATUS is ignored because Android doesn't handle it
                     // RELATED-TO is ignored because Android doesn't handle it
                     // RESOURCES is ignored because Android doesn't handle it
                 case "BEGIN":
-                    if (splitLine[2].compareTo("VALARM") == 0) {
+                    if (cl.valueEqualsIgnoreCase("VALARM")) {
                         // Start with an invalid minutes value: if we don't see
                         // a valid TRIGGER property, we'll throw the whole reminder away.
                         int minutes = -1;
@@ -707,16 +613,15 @@ public class VEvent {
                             if ((line == null) || line.isEmpty()) {
                                 continue;
                             }
-                            splitLine = splitProperty(line);
-                            switch (splitLine[0]) {
+                            cl.set(line);
+                            switch (cl.getName()) {
                                 case "END":
-                                    if (splitLine[2].toUpperCase().compareTo("VALARM") == 0)
-                                    {
+                                    if (cl.valueEqualsIgnoreCase("VALARM")) {
                                         break;
                                     }
                                     continue;
                                 case "ACTION":
-                                    switch (splitLine[2]) {
+                                    switch (cl.getValue()) {
                                         case "AUDIO":
                                             method = Reminders.METHOD_ALARM;
                                             break;
@@ -742,25 +647,21 @@ public class VEvent {
                                     // Android will make a notification
                                     // from the event title.
                                 case "TRIGGER":
-                                    params = splitParameters(splitLine[1]);
-                                    n = params.size();
-                                    for (int i = 0; i < n; i += 2) {
-                                        switch (params.get(i)) {
+                                    while (cl.nextParameter()) {
+                                        switch (cl.getParameterName()) {
                                             case "RELATED":
                                                 // Android can't do alarm for end of event
                                                 //FIXME offer to create a dummy
                                                 // event to hold the alarm
-                                                validAlarm = params.get(i + 1)
-                                                    .toUpperCase()
-                                                    .compareTo("START") == 0;
+                                                validAlarm = "START".equalsIgnoreCase(
+                                                    cl.getParameterValue());
                                                 break;
                                             case "VALUE":
                                                 // Android can't do fixed time reminder
                                                 //FIXME offer to create a dummy
                                                 // event to hold the alarm
-                                                validAlarm = params.get(i + 1)
-                                                    .toUpperCase()
-                                                    .compareTo("DURATION") == 0;
+                                                validAlarm = "DURATION".equalsIgnoreCase(
+                                                    cl.getParameterValue());
                                                 break;
                                             default:
                                                 // just ignore invalid parameter
@@ -776,19 +677,18 @@ public class VEvent {
                                         // and throw away the - sign for a negative one.
                                         //FIXME if the alarm is after the start of the event
                                         // offer to create a dummy event to hold the alarm
-                                        if (splitLine[2].startsWith("-")) {
+                                        if (cl.valueStartsWith('-')) {
                                             minutes = parseDuration(
-                                                splitLine[2].replaceFirst(
-                                                    "-", ""));
+                                                cl.getValue().substring(1));
                                         }
                                     }
                                     continue;
                                 case "DURATION":
-                                    duration = parseDuration(splitLine[2]);
+                                    duration = parseDuration(cl.getValue());
                                     continue;
                                 case "REPEAT":
                                     try {
-                                        repeat = Integer.parseInt(splitLine[2]);
+                                        repeat = Integer.parseInt(cl.getValue());
                                     } catch (NumberFormatException ignore) {
                                     }
                                 default: //ignore anything we don't understand
@@ -39,12 +39,14 @@ import com.android.calendar.CalendarController;
 import com.android.calendar.CalendarController.ControllerAction;
 import com.android.calendar.CalendarController.ViewType;
 import com.android.calendar.Event;
+import com.android.calendar.EventChangeTracker;
 import com.android.calendar.Llog;
 import com.android.calendar.Utils;
 import com.android.calendar.event.EditEventActivity;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import ws.xsoh.etar.R;
 
@@ -67,12 +69,10 @@ public class MonthByWeekAdapter extends SimpleWeeksAdapter {
     protected String mHomeTimeZone;
     protected Time mTempTime;
     protected Time mToday;
-    protected int mFirstJulianDay;
-    protected int mQueryDays;
     protected boolean mIsMiniMonth = true;
     protected int mOrientation = Configuration.ORIENTATION_LANDSCAPE;
-    protected ArrayList<ArrayList<Event>> mEventDayList = new ArrayList<>();
-    protected ArrayList<Event> mEvents = null;
+    // The events for the weeks which we have loaded
+    private final MonthWeekCache mWeeks = new MonthWeekCache();
     // Synchronisation object needs to be final, but mClickedView is modified
     private final Object mClickedViewSync = new Object();
     private MonthWeekEventsView mClickedView;
@@ -179,7 +179,10 @@ public class MonthByWeekAdapter extends SimpleWeeksAdapter {
         notifyDataSetChanged();
     }
 
-    public void setEvents(int firstJulianDay, int numDays, ArrayList<Event> events) {
+    /**
+     * Adds the weeks which a load has returned.
+     */
+    public void setEvents(MonthEventsLoader.Result result) {
         if (mIsMiniMonth) {
             if (Log.isLoggable(TAG, Log.ERROR)) {
                 Log.e(TAG, "Attempted to set events for mini view. Events only supported in full"
@@ -187,52 +190,41 @@ public class MonthByWeekAdapter extends SimpleWeeksAdapter {
             }
             return;
         }
-        mEvents = events;
-        mFirstJulianDay = firstJulianDay;
-        mQueryDays = numDays;
-        // Create a new list, this is necessary since the weeks are referencing
-        // pieces of the old list
-        ArrayList<ArrayList<Event>> eventDayList = new ArrayList<>();
-        for (int i = 0; i < numDays; i++) {
-            eventDayList.add(new ArrayList<Event>());
+        mWeeks.put(result);
+        if(Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Processed " + result.events.size() + " events.");
         }
+        refresh();
+    }
 
-        if (events == null || events.size() == 0) {
-            if(Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "No events. Returning early--go schedule something fun.");
-            }
-            mEventDayList = eventDayList;
-            refresh();
-            return;
+    /**
+     * Forgets the weeks which a change to the calendar data may affect,
+     * or all of them if changes is null.
+     */
+    public void invalidateEvents(EventChangeTracker.Changes changes) {
+        if (changes == null) {
+            mWeeks.clear();
+        } else {
+            mWeeks.invalidate(changes);
         }
+    }
 
-        // Compute the new set of days with events
-        for (Event event : events) {
-            int startDay = event.startDay - mFirstJulianDay;
-            int endDay = event.endDay - mFirstJulianDay + 1;
-            if (startDay < numDays || endDay >= 0) {
-                if (startDay < 0) {
-                    startDay = 0;
-                }
-                if (startDay > numDays) {
-                    continue;
-                }
-                if (endDay < 0) {
-                    continue;
-                }
-                if (endDay > numDays) {
-                    endDay = numDays;
-                }
-                for (int j = startDay; j < endDay; j++) {
-                    eventDayList.get(j).add(event);
-                }
-            }
-        }
-        if(Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "Processed " + events.size() + " events.");
-        }
-        mEventDayList = eventDayList;
-        refresh();
+    /**
+     * @return the first day of the first week starting between
+     * firstJulianDay and lastJulianDay whose events we haven't loaded, or
+     * lastJulianDay + 1 if we have loaded them all.
+     */
+    public int firstMissingWeek(int firstJulianDay, int lastJulianDay) {
+        return mWeeks.firstMissingWeek(firstJulianDay, lastJulianDay);
+    }
+
+    /**
+     * @return the first day of the last week starting between
+     * firstJulianDay and lastJulianDay whose events we haven't loaded, or
+     * firstJulianDay - 1 if we have loaded them all.
+     */
+    public int lastMissingWeek(int firstJulianDay, int lastJulianDay) {
+        return mWeeks.lastMissingWeek(firstJulianDay, lastJulianDay);
     }
 
     @SuppressWarnings("unchecked")
@@ -304,25 +296,17 @@ public class MonthByWeekAdapter extends SimpleWeeksAdapter {
     }
 
     private void sendEventsToView(MonthWeekEventsView v) {
-        if (mEventDayList.size() == 0) {
-            if (Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "No events loaded, did not pass any events to view.");
-            }
-            v.setEvents(null, null);
-            return;
-        }
         int viewJulianDay = v.getFirstJulianDay();
-        int start = viewJulianDay - mFirstJulianDay;
-        int end = start + v.mNumDays;
-        if (start < 0 || end > mEventDayList.size()) {
+        List<ArrayList<Event>> days = mWeeks.getDays(viewJulianDay, v.mNumDays);
+        if (days == null) {
             if (Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "Week is outside range of loaded events. viewStart: " + viewJulianDay
-                        + " eventsStart: " + mFirstJulianDay);
+                Log.d(TAG, "Week is outside range of loaded events. viewStart: "
+                        + viewJulianDay);
             }
             v.setEvents(null, null);
             return;
         }
-        v.setEvents(mEventDayList.subList(start, end), mEvents);
+        v.setEvents(days, mWeeks.getEvents(viewJulianDay), mWeeks);
     }
 
     @Override
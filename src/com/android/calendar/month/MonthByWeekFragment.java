@@ -22,7 +22,6 @@ import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.LoaderManager;
 import android.content.ContentUris;
-import android.content.CursorLoader;
 import android.content.Loader;
 import android.content.res.Resources;
 import android.database.Cursor;
@@ -48,13 +47,12 @@ import com.android.calendar.CalendarController;
 import com.android.calendar.CalendarController.ControllerAction;
 import com.android.calendar.CalendarController.ViewType;
 import com.android.calendar.DynamicTheme;
-import com.android.calendar.Event;
+import com.android.calendar.EventChangeTracker;
 import com.android.calendar.Utils;
 
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
-import java.util.List;
 
 import ws.xsoh.etar.R;
 
@@ -89,7 +87,11 @@ public class MonthByWeekFragment extends SimpleDayPickerFragment implements
             mFirstVisibleDay.timezone = tz;
             mFirstVisibleDay.normalize(true);
             if (mAdapter != null) {
+                // The cached weeks were laid out in the old time zone, so
+                // forget them all and load the visible ones again.
+                ((MonthByWeekAdapter) mAdapter).invalidateEvents(null);
                 mAdapter.refresh();
+                mUpdateLoader.run();
             }
         }
     };
@@ -98,7 +100,11 @@ public class MonthByWeekFragment extends SimpleDayPickerFragment implements
     protected boolean mHideDeclined;
     protected int mFirstLoadedJulianDay;
     protected int mLastLoadedJulianDay;
-    private CursorLoader mLoader;
+    // The weeks which the loader is querying: those in the window above
+    // whose events the adapter hasn't already got
+    private int mFirstQueryJulianDay;
+    private int mLastQueryJulianDay;
+    private MonthEventsLoader mLoader;
     private Uri mEventUri;
     private volatile boolean mShouldLoad = true;
     private final Runnable mUpdateLoader = new Runnable() {
@@ -108,13 +114,19 @@ public class MonthByWeekFragment extends SimpleDayPickerFragment implements
                 if (!mShouldLoad || mLoader == null) {
                     return;
                 }
+                Uri uri = updateUri();
+                if (uri == null) {
+                    // We already have all the weeks in the window.
+                    return;
+                }
                 // Stop any previous loads while we update the uri
                 stopLoader();
 
                 // Start the loader again
-                mEventUri = updateUri();
+                mEventUri = uri;
 
                 mLoader.setUri(mEventUri);
+                mLoader.setDays(mFirstQueryJulianDay, mLastQueryJulianDay);
                 mLoader.startLoading();
                 mLoader.onContentChanged();
                 if (Log.isLoggable(TAG, Log.DEBUG)) {
@@ -132,7 +144,7 @@ public class MonthByWeekFragment extends SimpleDayPickerFragment implements
         @Override
         public void run() {
             if (!mIsDetached) {
-                mLoader = (CursorLoader) getLoaderManager().initLoader(0, null,
+                mLoader = (MonthEventsLoader) getLoaderManager().initLoader(0, null,
                         MonthByWeekFragment.this);
             }
         }
@@ -150,22 +162,36 @@ public class MonthByWeekFragment extends SimpleDayPickerFragment implements
     }
 
     /**
-     * Updates the uri used by the loader according to the current position of
-     * the listview.
+     * Updates the window of weeks which we want events for according to the
+     * current position of the listview, and the uri used by the loader to
+     * query the weeks in it which the adapter hasn't already got.
      *
-     * @return The new Uri to use
+     * @return The new Uri to use, or null if the adapter has all the weeks
      */
     private Uri updateUri() {
         SimpleWeekView child = (SimpleWeekView) mListView.getChildAt(0);
         if (child != null) {
-            mFirstLoadedJulianDay = child.getFirstJulianDay();
+            mFirstLoadedJulianDay = child.getFirstJulianDay() - WEEKS_BUFFER * 7;
         }
+        mLastLoadedJulianDay = mFirstLoadedJulianDay + (mNumWeeks + 2 * WEEKS_BUFFER) * 7 - 1;
+        MonthByWeekAdapter adapter = (MonthByWeekAdapter) mAdapter;
+        int first = adapter.firstMissingWeek(mFirstLoadedJulianDay, mLastLoadedJulianDay);
+        if (first > mLastLoadedJulianDay) {
+            return null;
+        }
+        // Usually only the weeks at the leading edge are missing.
+        mFirstQueryJulianDay = first;
+        mLastQueryJulianDay =
+            adapter.lastMissingWeek(mFirstLoadedJulianDay, mLastLoadedJulianDay) + 6;
+        return buildUri(mFirstQueryJulianDay, mLastQueryJulianDay);
+    }
+
+    private Uri buildUri(int firstJulianDay, int lastJulianDay) {
         // -1 to ensure we get all day events from any time zone
-        mTempTime.setJulianDay(mFirstLoadedJulianDay - 1);
+        mTempTime.setJulianDay(firstJulianDay - 1);
         long start = mTempTime.toMillis(true);
-        mLastLoadedJulianDay = mFirstLoadedJulianDay + (mNumWeeks + 2 * WEEKS_BUFFER) * 7;
         // +1 to ensure we get all day events from any time zone
-        mTempTime.setJulianDay(mLastLoadedJulianDay + 1);
+        mTempTime.setJulianDay(lastJulianDay + 1);
         long end = mTempTime.toMillis(true);
 
         // Create a new uri with the updated times
@@ -175,21 +201,6 @@ public class MonthByWeekFragment extends SimpleDayPickerFragment implements
         return builder.build();
     }
 
-    // Extract range of julian days from URI
-    private void updateLoadedDays() {
-        List<String> pathSegments = mEventUri.getPathSegments();
-        int size = pathSegments.size();
-        if (size <= 2) {
-            return;
-        }
-        long first = Long.parseLong(pathSegments.get(size - 2));
-        long last = Long.parseLong(pathSegments.get(size - 1));
-        mTempTime.set(first);
-        mFirstLoadedJulianDay = Time.getJulianDay(first, mTempTime.gmtoff);
-        mTempTime.set(last);
-        mLastLoadedJulianDay = Time.getJulianDay(last, mTempTime.gmtoff);
-    }
-
     protected String updateWhere() {
         // TODO fix selection/selection args after b/3206641 is fixed
         String where = WHERE_CALENDARS_VISIBLE;
@@ -294,7 +305,7 @@ public class MonthByWeekFragment extends SimpleDayPickerFragment implements
         if (mShowCalendarControls) {
             mListView.postDelayed(mLoadingRunnable, mEventsLoadingDelay);
         } else {
-            mLoader = (CursorLoader) getLoaderManager().initLoader(0, null, this);
+            mLoader = (MonthEventsLoader) getLoaderManager().initLoader(0, null, this);
         }
         mAdapter.setListView(mListView);
     }
@@ -319,17 +330,23 @@ public class MonthByWeekFragment extends SimpleDayPickerFragment implements
         if (mIsMiniMonth) {
             return null;
         }
-        CursorLoader loader;
+        MonthEventsLoader loader;
         synchronized (mUpdateLoader) {
-            mFirstLoadedJulianDay =
+            mFirstLoadedJulianDay = MonthWeekCache.getWeekStart(
                     Time.getJulianDay(mSelectedDay.toMillis(true), mSelectedDay.gmtoff)
-                    - (mNumWeeks * 7 / 2);
+                    - (mNumWeeks * 7 / 2), mFirstDayOfWeek);
             mEventUri = updateUri();
+            if (mEventUri == null) {
+                // The loader needs a uri even if we have all the weeks.
+                mFirstQueryJulianDay = mFirstLoadedJulianDay;
+                mLastQueryJulianDay = mLastLoadedJulianDay;
+                mEventUri = buildUri(mFirstQueryJulianDay, mLastQueryJulianDay);
+            }
             String where = updateWhere();
 
-            loader = new CursorLoader(
-                    getActivity(), mEventUri, Event.EVENT_PROJECTION, where,
-                    null /* WHERE_CALENDARS_SELECTED_ARGS */, INSTANCES_SORT_ORDER);
+            loader = new MonthEventsLoader(
+                    getActivity(), mEventUri, where, INSTANCES_SORT_ORDER);
+            loader.setDays(mFirstQueryJulianDay, mLastQueryJulianDay);
             loader.setUpdateThrottle(LOADER_THROTTLE_DELAY);
         }
         if (Log.isLoggable(TAG, Log.DEBUG)) {
@@ -362,21 +379,20 @@ public class MonthByWeekFragment extends SimpleDayPickerFragment implements
             if (Log.isLoggable(TAG, Log.DEBUG)) {
                 Log.d(TAG, "Found " + data.getCount() + " cursor entries for uri " + mEventUri);
             }
-            CursorLoader cLoader = (CursorLoader) loader;
+            MonthEventsLoader cLoader = (MonthEventsLoader) loader;
             if (mEventUri == null) {
                 mEventUri = cLoader.getUri();
-                updateLoadedDays();
             }
             if (cLoader.getUri().compareTo(mEventUri) != 0) {
                 // We've started a new query since this loader ran so ignore the
                 // result
                 return;
             }
-            ArrayList<Event> events = new ArrayList<>();
-            Event.buildEventsFromCursor(
-                    events, data, mContext, mFirstLoadedJulianDay, mLastLoadedJulianDay);
-            ((MonthByWeekAdapter) mAdapter).setEvents(mFirstLoadedJulianDay,
-                    mLastLoadedJulianDay - mFirstLoadedJulianDay + 1, events);
+            if (!(data instanceof MonthEventsLoader.Result)) {
+                return;
+            }
+            // The loader has already decoded the events on its thread.
+            ((MonthByWeekAdapter) mAdapter).setEvents((MonthEventsLoader.Result) data);
         }
     }
 
@@ -386,9 +402,19 @@ public class MonthByWeekFragment extends SimpleDayPickerFragment implements
 
     @Override
     public void eventsChanged() {
-        // TODO remove this after b/3387924 is resolved
-        if (mLoader != null) {
-            mLoader.forceLoad();
+        EventChangeTracker.Changes changes =
+            CalendarController.getInstance(mContext).getEventChanges();
+        if (mAdapter == null) {
+            return;
+        }
+        // Forget the weeks which have changed, so that they are loaded again
+        // when we next show them.
+        ((MonthByWeekAdapter) mAdapter).invalidateEvents(changes);
+        if (   (changes == null)
+            || changes.intersects(mFirstLoadedJulianDay, mLastLoadedJulianDay))
+        {
+            // Reload the ones in the window now.
+            mUpdateLoader.run();
         }
     }
 
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.month;
+
+import android.content.Context;
+import android.content.CursorLoader;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.net.Uri;
+import android.util.Log;
+
+import com.android.calendar.Event;
+import com.android.calendar.EventStore;
+
+/**
+ * The loader for the month view's events. As well as running the query on
+ * a background thread as a CursorLoader does, it decodes the cursor into an
+ * EventStore and works out which events fall on each day, so that all the
+ * UI thread has to do when a load finishes is to swap in the result.
+ *
+ * The cursor which it delivers is a {@link Result}, which carries the
+ * decoded events. The cursor itself is kept open because CursorLoader
+ * watches it for changes to the calendar data.
+ */
+public class MonthEventsLoader extends CursorLoader {
+    private static final String TAG = "MonthEventsLoader";
+
+    // The days which the next load is for: guarded by this
+    private int mFirstJulianDay;
+    private int mLastJulianDay;
+
+    /**
+     * A loaded cursor and the events decoded from it.
+     */
+    public static class Result extends CursorWrapper {
+        public final EventStore events;
+        public final int firstJulianDay;
+        public final int numDays;
+        // The indices in events of the events on each day
+        final int[][] dayIndices;
+
+        Result(Cursor cursor, EventStore events, int firstJulianDay, int numDays,
+               int[][] dayIndices)
+        {
+            super(cursor);
+            this.events = events;
+            this.firstJulianDay = firstJulianDay;
+            this.numDays = numDays;
+            this.dayIndices = dayIndices;
+        }
+    }
+
+    public MonthEventsLoader(Context context, Uri uri, String selection, String sortOrder) {
+        super(context, uri, Event.EVENT_PROJECTION, selection, null, sortOrder);
+    }
+
+    /**
+     * Sets the days which the events are decoded for. Call this whenever
+     * the uri is changed.
+     */
+    public synchronized void setDays(int firstJulianDay, int lastJulianDay) {
+        mFirstJulianDay = firstJulianDay;
+        mLastJulianDay = lastJulianDay;
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        int firstJulianDay;
+        int lastJulianDay;
+        synchronized (this) {
+            firstJulianDay = mFirstJulianDay;
+            lastJulianDay = mLastJulianDay;
+        }
+        Cursor cursor = super.loadInBackground();
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            long start = System.nanoTime();
+            int numDays = lastJulianDay - firstJulianDay + 1;
+            EventStore events = EventStore.fromCursor(
+                cursor, getContext(), firstJulianDay, lastJulianDay);
+            int[][] dayIndices = indexDays(events, firstJulianDay, numDays);
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Decoded " + events.size() + " events for " + numDays
+                    + " days in " + (System.nanoTime() - start) / 1000 + "us");
+            }
+            return new Result(cursor, events, firstJulianDay, numDays, dayIndices);
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the events on each day: first counts the events on each day,
+     * then fills in their indices.
+     * @return for each day from firstJulianDay, the indices in events of
+     * the events on that day, in the order in which they appear in events
+     */
+    static int[][] indexDays(EventStore events, int firstJulianDay, int numDays) {
+        int[][] dayIndices = new int[numDays][];
+        int size = events.size();
+        int[] counts = new int[numDays];
+        for (int pass = 0; pass < 2; ++pass) {
+            for (int i = 0; i < size; ++i) {
+                int startDay = Math.max(events.getStartDay(i) - firstJulianDay, 0);
+                int endDay = Math.min(events.getEndDay(i) - firstJulianDay + 1, numDays);
+                for (int j = startDay; j < endDay; j++) {
+                    if (pass == 0) {
+                        ++counts[j];
+                    } else {
+                        dayIndices[j][counts[j]++] = i;
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int j = 0; j < numDays; j++) {
+                    dayIndices[j] = new int[counts[j]];
+                    counts[j] = 0;
+                }
+            }
+        }
+        return dayIndices;
+    }
+}
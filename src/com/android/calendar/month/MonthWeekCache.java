@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.month;
+
+import android.content.Context;
+
+import com.android.calendar.DNAStrandEngine;
+import com.android.calendar.Event;
+import com.android.calendar.EventChangeTracker;
+import com.android.calendar.EventStore;
+import com.android.calendar.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The events for the weeks which the month view has loaded. Scrolling the
+ * month view used to reload the whole visible window each time the first
+ * visible week changed: now MonthByWeekFragment only queries the weeks
+ * which aren't here, and MonthByWeekAdapter finds the events for each week
+ * which it shows here.
+ *
+ * The weeks are kept in a ring indexed by week number, so a newly loaded
+ * week replaces the one MAX_WEEKS weeks before or after it, which is far
+ * behind the trailing edge of the window whichever way the user is
+ * scrolling. The weeks filled in by one load share its EventStore, and the
+ * Events for each day are only made when a week is first shown.
+ *
+ * Each week also keeps the events as MonthWeekEventsView last formatted
+ * them, so that a recycled row showing the week again can just draw them,
+ * and the dna for all the weeks of a load is made at once and kept.
+ * Each load gets a new version number, so that a view still showing the
+ * events from an earlier load can tell that they are out of date.
+ *
+ * This is only used on the UI thread.
+ */
+class MonthWeekCache {
+
+    // More than a year, so that flinging through a year and back doesn't
+    // query any week twice.
+    static final int MAX_WEEKS = 64;
+    static final int DAYS_PER_WEEK = 7;
+
+    // What one load returned, shared by the weeks which it filled in
+    private static final class Load {
+        final EventStore events;
+        final int firstJulianDay;
+        final int[][] dayIndices;
+        // The Event for each index in events, made when first needed so
+        // that an event on several days is only made once.
+        final Event[] eventObjects;
+        // The dna for all the weeks, made when first needed
+        DNAStrandEngine dna;
+
+        Load(MonthEventsLoader.Result result) {
+            events = result.events;
+            firstJulianDay = result.firstJulianDay;
+            dayIndices = result.dayIndices;
+            eventObjects = new Event[events.size()];
+        }
+
+        Event getEvent(int i) {
+            if (eventObjects[i] == null) {
+                eventObjects[i] = events.getEvent(i, new Event());
+            }
+            return eventObjects[i];
+        }
+    }
+
+    private static final class Week {
+        final Load load;
+        final int firstJulianDay;
+        final int version;
+        // The events on each day, made by getDays()
+        ArrayList<ArrayList<Event>> days;
+        // The last formatting of days, set by putRenderModel()
+        MonthWeekEventsView.WeekRenderModel renderModel;
+
+        Week(Load load, int firstJulianDay, int version) {
+            this.load = load;
+            this.firstJulianDay = firstJulianDay;
+            this.version = version;
+        }
+    }
+
+    private final Week[] mWeeks = new Week[MAX_WEEKS];
+    private int mVersion = 0;
+
+    /**
+     * @return the Julian day on which the week containing julianDay starts
+     * @param firstDayOfWeek Time.SUNDAY, Time.MONDAY etc.
+     */
+    static int getWeekStart(int julianDay, int firstDayOfWeek) {
+        // Julian day 0 was a Monday, and Time.SUNDAY is 0.
+        int weekDay = (julianDay + 1) % DAYS_PER_WEEK;
+        return julianDay - (weekDay - firstDayOfWeek + DAYS_PER_WEEK) % DAYS_PER_WEEK;
+    }
+
+    private static int slot(int firstJulianDay) {
+        return (firstJulianDay / DAYS_PER_WEEK) % MAX_WEEKS;
+    }
+
+    private Week getWeek(int firstJulianDay) {
+        Week week = mWeeks[slot(firstJulianDay)];
+        return week != null && week.firstJulianDay == firstJulianDay ? week : null;
+    }
+
+    /**
+     * Adds the weeks which a load covered. Any partial week at the end of
+     * the load is ignored.
+     */
+    void put(MonthEventsLoader.Result result) {
+        Load load = new Load(result);
+        int numWeeks = result.numDays / DAYS_PER_WEEK;
+        ++mVersion;
+        for (int i = 0; i < numWeeks; ++i) {
+            int firstJulianDay = result.firstJulianDay + i * DAYS_PER_WEEK;
+            mWeeks[slot(firstJulianDay)] = new Week(load, firstJulianDay, mVersion);
+        }
+    }
+
+    /**
+     * @return the version of the events of the week starting on
+     * firstJulianDay, or -1 if we haven't loaded it
+     */
+    int getVersion(int firstJulianDay) {
+        Week week = getWeek(firstJulianDay);
+        return week == null ? -1 : week.version;
+    }
+
+    /**
+     * @return the render model last stored for the week starting on
+     * firstJulianDay, or null if there isn't one
+     */
+    MonthWeekEventsView.WeekRenderModel getRenderModel(int firstJulianDay) {
+        Week week = getWeek(firstJulianDay);
+        return week == null ? null : week.renderModel;
+    }
+
+    /**
+     * Keeps a render model for the week starting on firstJulianDay, unless
+     * the week has been reloaded since version was loaded.
+     */
+    void putRenderModel(int firstJulianDay, int version,
+                        MonthWeekEventsView.WeekRenderModel model)
+    {
+        Week week = getWeek(firstJulianDay);
+        if (week != null && week.version == version) {
+            week.renderModel = model;
+        }
+    }
+
+    /**
+     * @return the events on each day of the week starting on firstJulianDay,
+     * or null if we haven't loaded it
+     * @param numDays the number of days wanted, at most DAYS_PER_WEEK
+     */
+    List<ArrayList<Event>> getDays(int firstJulianDay, int numDays) {
+        Week week = getWeek(firstJulianDay);
+        if (week == null) {
+            return null;
+        }
+        if (week.days == null) {
+            Load load = week.load;
+            week.days = new ArrayList<>(DAYS_PER_WEEK);
+            for (int day = 0; day < DAYS_PER_WEEK; ++day) {
+                int[] indices = load.dayIndices[firstJulianDay - load.firstJulianDay + day];
+                ArrayList<Event> list = new ArrayList<>(indices.length);
+                for (int i : indices) {
+                    list.add(load.getEvent(i));
+                }
+                week.days.add(list);
+            }
+        }
+        return week.days.subList(0, numDays);
+    }
+
+    /**
+     * @return the EventStore holding the events of the week starting on
+     * firstJulianDay, or null if we haven't loaded it. It may hold other
+     * weeks' events as well.
+     */
+    EventStore getEvents(int firstJulianDay) {
+        Week week = getWeek(firstJulianDay);
+        return week == null ? null : week.load.events;
+    }
+
+    /**
+     * @return the dna strands of the week starting on firstJulianDay, as
+     * {@link DNAStrandEngine#getStrands} makes them, or null if we haven't
+     * loaded the week or it has no events
+     */
+    Utils.DNAStrand[] getDna(int firstJulianDay, int top, int bottom, int minPixels,
+                             int[] dayXs, Context context)
+    {
+        Week week = getWeek(firstJulianDay);
+        if (week == null) {
+            return null;
+        }
+        Load load = week.load;
+        if (load.dna == null) {
+            load.dna = new DNAStrandEngine(load.events, load.firstJulianDay,
+                load.dayIndices.length / DAYS_PER_WEEK);
+        }
+        return load.dna.getStrands(firstJulianDay, top, bottom, minPixels, dayXs, context);
+    }
+
+    /**
+     * @return the first day of the first week starting between firstJulianDay
+     * and lastJulianDay which we haven't loaded, or lastJulianDay + 1 if we
+     * have loaded them all. firstJulianDay must be the first day of a week.
+     */
+    int firstMissingWeek(int firstJulianDay, int lastJulianDay) {
+        for (int day = firstJulianDay; day <= lastJulianDay; day += DAYS_PER_WEEK) {
+            if (getWeek(day) == null) {
+                return day;
+            }
+        }
+        return lastJulianDay + 1;
+    }
+
+    /**
+     * @return the first day of the last week starting between firstJulianDay
+     * and lastJulianDay which we haven't loaded, or firstJulianDay - 1 if we
+     * have loaded them all. firstJulianDay must be the first day of a week.
+     */
+    int lastMissingWeek(int firstJulianDay, int lastJulianDay) {
+        int last = firstJulianDay
+            + (lastJulianDay - firstJulianDay) / DAYS_PER_WEEK * DAYS_PER_WEEK;
+        for (int day = last; day >= firstJulianDay; day -= DAYS_PER_WEEK) {
+            if (getWeek(day) == null) {
+                return day;
+            }
+        }
+        return firstJulianDay - 1;
+    }
+
+    /**
+     * Forgets the weeks which a change to the calendar data may affect.
+     */
+    void invalidate(EventChangeTracker.Changes changes) {
+        for (int i = 0; i < MAX_WEEKS; ++i) {
+            Week week = mWeeks[i];
+            if (   (week != null)
+                && changes.intersects(week.firstJulianDay,
+                                      week.firstJulianDay + DAYS_PER_WEEK - 1))
+            {
+                mWeeks[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Forgets everything.
+     */
+    void clear() {
+        for (int i = 0; i < MAX_WEEKS; ++i) {
+            mWeeks[i] = null;
+        }
+    }
+}
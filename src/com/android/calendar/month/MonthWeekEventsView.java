@@ -18,8 +18,10 @@
 
 package com.android.calendar.month;
 
+import com.android.calendar.DNAStrandEngine;
 import com.android.calendar.DynamicTheme;
 import com.android.calendar.Event;
+import com.android.calendar.EventStore;
 import com.android.calendar.LunarUtils;
 import com.android.calendar.Utils;
 import com.android.calendar.settings.ViewDetailsPreferences;
@@ -84,7 +86,6 @@ public class MonthWeekEventsView extends SimpleWeekView {
     private static int mDnaWidth = 8;
     private static int mDnaAllDayWidth = 32;
     private static int mDnaSidePadding = 6;
-    private static int mConflictColor = Color.BLACK;
     private static int mEventTextColor = Color.WHITE;
     private static int mDefaultEdgeSpacing = 0;
     private static int mSidePaddingMonthNumber = 4;
@@ -111,7 +112,7 @@ public class MonthWeekEventsView extends SimpleWeekView {
     protected int mTodayIndex = -1;
     protected int mOrientation = Configuration.ORIENTATION_LANDSCAPE;
     protected List<ArrayList<Event>> mEvents = null;
-    protected ArrayList<Event> mUnsortedEvents = null;
+    protected EventStore mUnsortedEvents = null;
     // This is for drawing the outlines around event chips and supports up to 10
     // events being drawn on each day. The code will expand this if necessary.
     protected TextPaint mEventPaint;
@@ -151,14 +152,19 @@ public class MonthWeekEventsView extends SimpleWeekView {
     protected int mMonthBusyBitsConflictTimeColor;
     protected int mDaySeparatorInnerColor;
     protected int mTodayAnimateColor;
-    HashMap<Integer, Utils.DNAStrand> mDna = null;
+    // The conflict strand comes first.
+    Utils.DNAStrand[] mDna = null;
     private int mClickedDayIndex = -1;
     private int mClickedDayColor;
     private boolean mAnimateToday;
     private int mAnimateTodayAlpha = 0;
     private ObjectAnimator mTodayAnimator = null;
     private int[] mDayXs;
-    private ArrayList<DayEventFormatter> mDayFormatters;
+    // Where the formatted events of the week are kept between binds, and
+    // the version of the week's events which we were given.
+    private MonthWeekCache mWeekCache = null;
+    private int mEventsVersion = -1;
+    private WeekRenderModel mRenderModel = null;
 
     /**
      * Shows up as an error if we don't include this.
@@ -169,20 +175,37 @@ public class MonthWeekEventsView extends SimpleWeekView {
 
     // Sets the list of events for this week. Takes a sorted list of arrays
     // divided up by day for generating the large month version and the full
-    // arraylist sorted by start time to generate the dna version.
-    public void setEvents(List<ArrayList<Event>> sortedEvents, ArrayList<Event> unsortedEvents) {
+    // store of all the loaded events sorted by start time to generate the
+    // dna version.
+    public void setEvents(List<ArrayList<Event>> sortedEvents, EventStore unsortedEvents) {
         setEvents(sortedEvents);
         // The mMinWeekWidth is a hack to prevent the view from trying to
         // generate dna bits before its width has been fixed.
         createDna(unsortedEvents);
     }
 
+    /**
+     * Sets the events for this week as above, and where to find and keep
+     * the formatted events and the dna so that they don't have to be made
+     * again when this week is shown again.
+     */
+    public void setEvents(List<ArrayList<Event>> sortedEvents, EventStore unsortedEvents,
+                          MonthWeekCache weekCache)
+    {
+        setEvents(sortedEvents);
+        if (weekCache != null && mEvents != null) {
+            mWeekCache = weekCache;
+            mEventsVersion = weekCache.getVersion(mFirstJulianDay);
+        }
+        createDna(unsortedEvents);
+    }
+
     /**
      * Sets up the dna bits for the view. This will return early if the view
      * isn't in a state that will create a valid set of dna yet (such as the
      * views width not being set correctly yet).
      */
-    public void createDna(ArrayList<Event> unsortedEvents) {
+    public void createDna(EventStore unsortedEvents) {
         int mMinWeekWidth = 50;
         if (unsortedEvents == null || mWidth <= mMinWeekWidth || getContext() == null) {
             // Stash the list of events for use when this view is ready, or
@@ -209,13 +232,22 @@ public class MonthWeekEventsView extends SimpleWeekView {
 
             int top = mDaySeparatorInnerWidth + mDnaMargin + mDnaAllDayHeight + 1;
             int bottom = mHeight - mDnaMargin;
-            mDna = Utils.createDNAStrands(mFirstJulianDay, unsortedEvents, top, bottom,
-                    mDnaMinSegmentHeight, mDayXs, getContext());
+            if (mWeekCache != null) {
+                mDna = mWeekCache.getDna(mFirstJulianDay, top, bottom,
+                        mDnaMinSegmentHeight, mDayXs, getContext());
+            } else {
+                mDna = new DNAStrandEngine(unsortedEvents, mFirstJulianDay, 1).getStrands(
+                        mFirstJulianDay, top, bottom, mDnaMinSegmentHeight, mDayXs,
+                        getContext());
+            }
         }
     }
 
     public void setEvents(List<ArrayList<Event>> sortedEvents) {
         mEvents = sortedEvents;
+        mWeekCache = null;
+        mEventsVersion = -1;
+        mRenderModel = null;
         if (sortedEvents == null) {
             return;
         }
@@ -265,7 +297,6 @@ public class MonthWeekEventsView extends SimpleWeekView {
             mTextSizeEventTitle = resources.getInteger(R.integer.text_size_event_title);
             mTextSizeMonthNumber = resources.getInteger(R.integer.text_size_month_number);
             mSidePaddingMonthNumber = resources.getInteger(R.integer.month_day_number_margin);
-            mConflictColor = resources.getColor(R.color.month_dna_conflict_time_color);
             mEventTextColor = resources.getColor(R.color.calendar_event_text_color);
             if (mScale != 1) {
                 mTopPaddingMonthNumber *= mScale;
@@ -693,11 +724,153 @@ public class MonthWeekEventsView extends SimpleWeekView {
             return;
         }
 
+        ViewDetailsPreferences.Preferences preferences =
+                ViewDetailsPreferences.Companion.getPreferences(getContext());
+        WeekRenderModel model = getRenderModel(preferences);
+        for (WeekRenderModel.EventItem item : model.mEvents) {
+            drawEvent(canvas, item);
+        }
+        for (int day = 0; day < model.mMoreEvents.length; day++) {
+            if (model.mMoreEvents[day] != null) {
+                drawMoreEvents(canvas, model.mMoreEvents[day], model.mMoreEventsX[day]);
+            }
+        }
+    }
+
+    /**
+     * Finds the formatted events of this week for the current size and
+     * preferences, formatting them only if neither this view nor the week
+     * cache has them.
+     */
+    protected WeekRenderModel getRenderModel(ViewDetailsPreferences.Preferences preferences) {
+        String timeZone = Utils.getTimeZone(getContext(), null);
+        if (mRenderModel != null && mRenderModel.isValid(this, preferences, timeZone)) {
+            return mRenderModel;
+        }
+        if (mWeekCache != null) {
+            WeekRenderModel model = mWeekCache.getRenderModel(mFirstJulianDay);
+            if (model != null && model.isValid(this, preferences, timeZone)) {
+                mRenderModel = model;
+                return model;
+            }
+        }
         DayBoxBoundaries boxBoundaries = new DayBoxBoundaries();
         WeekEventFormatter weekFormatter = new WeekEventFormatter(boxBoundaries);
-        mDayFormatters = weekFormatter.prepareFormattedEvents();
-        for (DayEventFormatter dayEventFormatter : mDayFormatters) {
-            dayEventFormatter.drawDay(canvas, boxBoundaries);
+        ArrayList<DayEventFormatter> dayFormatters =
+            weekFormatter.prepareFormattedEvents(preferences);
+        mRenderModel = new WeekRenderModel(mFirstJulianDay, mEventsVersion,
+            mWidth, mHeight, mNumDays, preferences, timeZone);
+        for (DayEventFormatter dayEventFormatter : dayFormatters) {
+            dayEventFormatter.layoutDay(mRenderModel, boxBoundaries);
+        }
+        if (mWeekCache != null) {
+            mWeekCache.putRenderModel(mFirstJulianDay, mEventsVersion, mRenderModel);
+        }
+        return mRenderModel;
+    }
+
+    /**
+     * The events of a week laid out for drawing: the rectangle and the
+     * ellipsized lines of text of each event, where they go, and the "more
+     * events" text of each day. Formatting these is the slow part of drawing
+     * a week, so we keep them for as long as the events, the size of the
+     * view and the preferences which affect them stay the same. The text is
+     * ellipsized once for the width of the view.
+     *
+     * A model in the week cache may be drawn by any view showing the week,
+     * so it holds no view, and the view drawing it uses its own paints.
+     */
+    protected static class WeekRenderModel {
+        /**
+         * A visible event, or the part of one in a run of days
+         */
+        protected static class EventItem {
+            private final Event mEvent;
+            private final Rect mRect = new Rect();
+            // The rectangle which catches touches on the event
+            private final Rect mTouchRect = new Rect();
+            private final int mTextX;
+            private String[] mLines;
+            private int[] mLineYs;
+            // The times on a line of their own, or null
+            private String mTimes;
+            private int mTimesY;
+
+            EventItem(Event event, int textX) {
+                mEvent = event;
+                mTextX = textX;
+            }
+        }
+
+        private final ArrayList<EventItem> mEvents = new ArrayList<>();
+        // The "more events" text of each day, or null, and where it goes
+        private final String[] mMoreEvents;
+        private final int[] mMoreEventsX;
+        private final int mFirstJulianDay;
+        private final int mEventsVersion;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mNumDays;
+        private final ViewDetailsPreferences.TimeVisibility mTimeVisibility;
+        private final boolean mLocationVisibility;
+        private final int mMaxLines;
+        private final String mTimeZone;
+
+        WeekRenderModel(int firstJulianDay, int eventsVersion, int width, int height,
+                        int numDays, ViewDetailsPreferences.Preferences preferences,
+                        String timeZone)
+        {
+            mMoreEvents = new String[numDays];
+            mMoreEventsX = new int[numDays];
+            mFirstJulianDay = firstJulianDay;
+            mEventsVersion = eventsVersion;
+            mWidth = width;
+            mHeight = height;
+            mNumDays = numDays;
+            mTimeVisibility = preferences.TIME_VISIBILITY;
+            mLocationVisibility = preferences.LOCATION_VISIBILITY;
+            mMaxLines = preferences.MAX_LINES;
+            mTimeZone = timeZone;
+        }
+
+        /**
+         * @return true if this is how view would format its week now. A
+         * model in the week cache may have been made by another view.
+         */
+        boolean isValid(MonthWeekEventsView view,
+                        ViewDetailsPreferences.Preferences preferences, String timeZone)
+        {
+            return (mFirstJulianDay == view.mFirstJulianDay)
+                && (mEventsVersion == view.mEventsVersion)
+                && (mWidth == view.mWidth)
+                && (mHeight == view.mHeight)
+                && (mNumDays == view.mNumDays)
+                && (mTimeVisibility == preferences.TIME_VISIBILITY)
+                && (mLocationVisibility == preferences.LOCATION_VISIBILITY)
+                && (mMaxLines == preferences.MAX_LINES)
+                && mTimeZone.equals(timeZone);
+        }
+
+        void setMoreEvents(int day, String text, int x) {
+            if (day < mMoreEvents.length) {
+                mMoreEvents[day] = text;
+                mMoreEventsX[day] = x;
+            }
+        }
+
+        /**
+         * @return the event drawn at (x, y), or null if there isn't one
+         */
+        Event getEventAt(int x, int y) {
+            for (EventItem item : mEvents) {
+                Rect rect = item.mTouchRect;
+                if ((rect.left <= x) && (x <= rect.right)
+                    && (rect.top <= y) && (y <= rect.bottom))
+                {
+                    return item.mEvent;
+                }
+            }
+            return null;
         }
     }
 
@@ -847,10 +1020,10 @@ public class MonthWeekEventsView extends SimpleWeekView {
          * Prepares events to be drawn. It creates FormattedEvents from mEvent.
          * @return ArrayList of DayEventFormatters
          */
-        public ArrayList<DayEventFormatter> prepareFormattedEvents() {
+        public ArrayList<DayEventFormatter> prepareFormattedEvents(
+            ViewDetailsPreferences.Preferences preferences)
+        {
             prepareFormattedEventsWithEventDaySpan();
-            ViewDetailsPreferences.Preferences preferences =
-                    ViewDetailsPreferences.Companion.getPreferences(getContext());
             preFormatEventText(preferences);
             setYindexInEvents();
             return formatDays(mBoxBoundaries.getAvailableYSpace(), preferences);
@@ -1038,20 +1211,23 @@ public class MonthWeekEventsView extends SimpleWeekView {
         }
 
         /**
-         * Draws all events in a given day and more events indicator if needed.
+         * Lays out all events in a given day and more events indicator if needed.
          * As a result of this call boxBoundaries will be set to next day.
          */
-        public void drawDay(Canvas canvas, DayBoxBoundaries boxBoundaries) {
+        public void layoutDay(WeekRenderModel model, DayBoxBoundaries boxBoundaries) {
             for (FormattedEventBase event : mEventDay) {
                 if (eventShouldBeSkipped(event)) {
                     event.skip(mViewPreferences);
                 } else {
-                    event.draw(canvas, mViewPreferences, mDay);
+                    event.layout(model, mViewPreferences, mDay);
                 }
             }
             if (moreLinesWillBeDisplayed()) {
                 int hiddenEvents = mEventsByHeight.get(0).size();
-                drawMoreEvents(canvas, hiddenEvents, boxBoundaries.getX());
+                String text = getContext().getResources().getQuantityString(
+                        R.plurals.month_more_events, hiddenEvents);
+                model.setMoreEvents(mDay, String.format(text, hiddenEvents),
+                        boxBoundaries.getX());
             }
             boxBoundaries.nextDay();
         }
@@ -1444,7 +1620,8 @@ public class MonthWeekEventsView extends SimpleWeekView {
         public EventFormat getFormat() { return mFormat; }
         public abstract void initialPreFormatText(ViewDetailsPreferences.Preferences preferences);
         protected abstract boolean isTimeInNextLine(ViewDetailsPreferences.Preferences preferences);
-        public abstract void draw(Canvas canvas, ViewDetailsPreferences.Preferences preferences, int day);
+        public abstract void layout(WeekRenderModel model,
+                                    ViewDetailsPreferences.Preferences preferences, int day);
         public abstract boolean containsEvent(Event event);
 
         public void skip(ViewDetailsPreferences.Preferences preferences) {
@@ -1479,16 +1656,14 @@ public class MonthWeekEventsView extends SimpleWeekView {
          * Null object won't be drawn
 
          */
-        public void draw(Canvas canvas, ViewDetailsPreferences.Preferences preferences, int day) { /*nop*/ }
+        public void layout(WeekRenderModel model,
+                           ViewDetailsPreferences.Preferences preferences, int day) { /*nop*/ }
         public boolean containsEvent(Event event) { return false; }
     }
 
     protected class FormattedEvent extends FormattedEventBase {
         private final Event mEvent;
         private DynamicLayout mTextLayout;
-        // We need a private Rect here because we need to preserve it
-        // to catch touches on the event.
-        private final Rect mRect = new Rect();
         public FormattedEvent(
             Event event, EventFormat format, BoundariesSetter boundaries)
         {
@@ -1496,29 +1671,11 @@ public class MonthWeekEventsView extends SimpleWeekView {
             mEvent = event;
         }
 
-        protected boolean isDeclined() {
-            return mEvent.selfAttendeeStatus == Attendees.ATTENDEE_STATUS_DECLINED;
-        }
-
-        protected boolean isAtendeeStatusInvited() {
-            return mEvent.selfAttendeeStatus == Attendees.ATTENDEE_STATUS_INVITED;
-        }
-
-        protected Paint.Style getRectanglePaintStyle() {
-           return (isAtendeeStatusInvited()) ?
-                            Style.STROKE : Style.FILL_AND_STROKE;
-        }
-        protected int getRectangleColor() {
-            return isDeclined() ? Utils.getDeclinedColorFromColor(mEvent.color) : mEvent.color;
-        }
-
-        protected void drawEventRectangle(Canvas canvas, int day)  {
+        protected void layoutEventRectangle(WeekRenderModel.EventItem item, int day)  {
             mBoundaries.setRectangle(
-                mRect, mFormat.getDaySpan(day), mFormat.getEventLines());
-            mEventSquarePaint.setStyle(getRectanglePaintStyle());
-            mEventSquarePaint.setColor(getRectangleColor());
-            canvas.drawRect(mRect, mEventSquarePaint);
-            mBoundaries.setRightEdge(mRect);
+                item.mRect, mFormat.getDaySpan(day), mFormat.getEventLines());
+            item.mTouchRect.set(item.mRect);
+            mBoundaries.setRightEdge(item.mTouchRect);
         }
 
         protected int getAvailableSpaceForText(int spanningDays) {
@@ -1570,29 +1727,16 @@ public class MonthWeekEventsView extends SimpleWeekView {
             return TextUtils.ellipsize(text, mEventPaint, avail, TextUtils.TruncateAt.END);
         }
 
-        protected Paint getTextPaint() {
-            if (!isAtendeeStatusInvited() && mEvent.drawAsAllday()){
-                // Text color needs to contrast with solid background.
-                return mSolidBackgroundEventPaint;
-            } else if (isDeclined()) {
-                // Use "declined event" color.
-                return mDeclinedEventPaint;
-            } else if (mEvent.drawAsAllday()) {
-                // Text inside frame is same color as frame.
-                mFramedEventPaint.setColor(getRectangleColor());
-                return mFramedEventPaint;
-            }
-            // Use generic event text color.
-            return mEventPaint;
-        }
-
-        protected void drawText(Canvas canvas, ViewDetailsPreferences.Preferences preferences, int day) {
+        protected void layoutText(WeekRenderModel.EventItem item,
+                                  ViewDetailsPreferences.Preferences preferences, int day) {
             CharSequence baseText = getBaseText(preferences);
             final int linesNo = mFormat.getEventLines();
             final int span = mFormat.getDaySpan(day);
             if (mFormat.isPartiallyHidden()) {
                 preFormatText(preferences, span);
             }
+            item.mLines = new String[linesNo];
+            item.mLineYs = new int[linesNo];
             for (int i = 0; i < linesNo; i++) {
                 CharSequence lineText;
                 if (i == linesNo - 1) {
@@ -1602,8 +1746,8 @@ public class MonthWeekEventsView extends SimpleWeekView {
                     lineText = baseText.subSequence(mTextLayout.getLineStart(i),
                             mTextLayout.getLineEnd(i));
                 }
-                canvas.drawText(lineText.toString(), mBoundaries.getTextX(), mBoundaries.getTextY(),
-                        getTextPaint());
+                item.mLines[i] = lineText.toString();
+                item.mLineYs[i] = mBoundaries.getTextY();
                 mBoundaries.moveLinesDown(1);
             }
         }
@@ -1614,10 +1758,6 @@ public class MonthWeekEventsView extends SimpleWeekView {
             return preferences.isTimeShownBelow() && !mBoundaries.hasBorder();
         }
 
-        protected Paint getTimesPaint() {
-            return isDeclined() ? mEventDeclinedExtrasPaint : mEventExtrasPaint;
-        }
-
         protected CharSequence getFormattedTime(ViewDetailsPreferences.Preferences preferences) {
             StringBuilder time = new StringBuilder();
             if (preferences.isStartTimeVisible()) {
@@ -1651,45 +1791,94 @@ public class MonthWeekEventsView extends SimpleWeekView {
             return time;
         }
 
-        protected void drawTimes(Canvas canvas, ViewDetailsPreferences.Preferences preferences) {
+        protected void layoutTimes(WeekRenderModel.EventItem item,
+                                   ViewDetailsPreferences.Preferences preferences) {
             CharSequence text = getFormattedTime(preferences);
             float avail = getAvailableSpaceForText(1);
             text = TextUtils.ellipsize(text, mEventExtrasPaint, avail, TextUtils.TruncateAt.END);
-            canvas.drawText(text.toString(), mBoundaries.getTextX(),
-                    mBoundaries.getTextY(), getTimesPaint());
+            item.mTimes = text.toString();
+            item.mTimesY = mBoundaries.getTextY();
             mBoundaries.moveAfterDrawingTimes();
         }
 
         @Override
-        public void draw(Canvas canvas, ViewDetailsPreferences.Preferences preferences, int day) {
+        public void layout(WeekRenderModel model,
+                           ViewDetailsPreferences.Preferences preferences, int day) {
            if (mFormat.isVisible() && mEvent != null) {
-               drawEventRectangle(canvas, day);
+               WeekRenderModel.EventItem item =
+                   new WeekRenderModel.EventItem(mEvent, mBoundaries.getTextX());
+               layoutEventRectangle(item, day);
                mBoundaries.moveToFirstLine();
-               drawText(canvas, preferences, day);
+               layoutText(item, preferences, day);
                if (isTimeInNextLine(preferences)) {
-                   drawTimes(canvas, preferences);
+                   layoutTimes(item, preferences);
                }
                mBoundaries.moveToNextItem();
+               model.mEvents.add(item);
            }
         }
         public boolean containsEvent(Event event) { return event.equals(mEvent); }
+    }
+
+    protected static boolean isDeclined(Event event) {
+        return event.selfAttendeeStatus == Attendees.ATTENDEE_STATUS_DECLINED;
+    }
+
+    protected static boolean isAtendeeStatusInvited(Event event) {
+        return event.selfAttendeeStatus == Attendees.ATTENDEE_STATUS_INVITED;
+    }
+
+    protected static Paint.Style getRectanglePaintStyle(Event event) {
+       return (isAtendeeStatusInvited(event)) ?
+                        Style.STROKE : Style.FILL_AND_STROKE;
+    }
+
+    protected static int getRectangleColor(Event event) {
+        return isDeclined(event) ? Utils.getDeclinedColorFromColor(event.color) : event.color;
+    }
+
+    protected Paint getTextPaint(Event event) {
+        if (!isAtendeeStatusInvited(event) && event.drawAsAllday()){
+            // Text color needs to contrast with solid background.
+            return mSolidBackgroundEventPaint;
+        } else if (isDeclined(event)) {
+            // Use "declined event" color.
+            return mDeclinedEventPaint;
+        } else if (event.drawAsAllday()) {
+            // Text inside frame is same color as frame.
+            mFramedEventPaint.setColor(getRectangleColor(event));
+            return mFramedEventPaint;
+        }
+        // Use generic event text color.
+        return mEventPaint;
+    }
+
+    protected Paint getTimesPaint(Event event) {
+        return isDeclined(event) ? mEventDeclinedExtrasPaint : mEventExtrasPaint;
+    }
 
-        // returns true if (X, Y) is inside this FormattedEvent
-        public boolean isWithin(int X, int Y) {
-            return (mRect.left <= X)
-                && (X <= mRect.right)
-                && (mRect.top <= Y)
-                && (Y <= mRect.bottom);
+    /**
+     * Draws an event laid out by a WeekRenderModel with this view's paints.
+     */
+    protected void drawEvent(Canvas canvas, WeekRenderModel.EventItem item) {
+        Event event = item.mEvent;
+        mEventSquarePaint.setStyle(getRectanglePaintStyle(event));
+        mEventSquarePaint.setColor(getRectangleColor(event));
+        canvas.drawRect(item.mRect, mEventSquarePaint);
+        Paint textPaint = getTextPaint(event);
+        for (int i = 0; i < item.mLines.length; i++) {
+            canvas.drawText(item.mLines[i], item.mTextX, item.mLineYs[i], textPaint);
+        }
+        if (item.mTimes != null) {
+            canvas.drawText(item.mTimes, item.mTextX, item.mTimesY, getTimesPaint(event));
         }
     }
 
-    protected void drawMoreEvents(Canvas canvas, int remainingEvents, int x) {
+    protected void drawMoreEvents(Canvas canvas, String text, int x) {
         int y = mHeight - (mExtrasDescent + mEventBottomPadding);
-        String text = getContext().getResources().getQuantityString(
-                R.plurals.month_more_events, remainingEvents);
         mEventExtrasPaint.setAntiAlias(true);
         mEventExtrasPaint.setFakeBoldText(true);
-        canvas.drawText(String.format(text, remainingEvents), x, y, mEventExtrasPaint);
+        canvas.drawText(text, x, y, mEventExtrasPaint);
         mEventExtrasPaint.setFakeBoldText(false);
     }
 
@@ -1703,16 +1892,16 @@ public class MonthWeekEventsView extends SimpleWeekView {
     protected void drawDNA(Canvas canvas) {
         // Draw event and conflict times
         if (mDna != null) {
-            for (Utils.DNAStrand strand : mDna.values()) {
-                if (strand.color == mConflictColor || strand.points == null
-                        || strand.points.length == 0) {
+            for (int i = 1; i < mDna.length; ++i) {
+                Utils.DNAStrand strand = mDna[i];
+                if (strand.points == null || strand.points.length == 0) {
                     continue;
                 }
                 mDNATimePaint.setColor(strand.color);
                 canvas.drawLines(strand.points, mDNATimePaint);
             }
             // Draw black last to make sure it's on top
-            Utils.DNAStrand strand = mDna.get(mConflictColor);
+            Utils.DNAStrand strand = mDna[0];
             if (strand != null && strand.points != null && strand.points.length != 0) {
                 mDNATimePaint.setColor(strand.color);
                 canvas.drawLines(strand.points, mDNATimePaint);
@@ -1833,14 +2022,10 @@ public class MonthWeekEventsView extends SimpleWeekView {
     }
 
     public long getClickedEventId(float xLocation, float yLocation) {
-        for (DayEventFormatter f : mDayFormatters) {
-            for (FormattedEventBase b : f.mEventDay) {
-                if (b instanceof FormattedEvent) {
-                    FormattedEvent fe = (FormattedEvent)b;
-                    if (fe.isWithin((int)xLocation, (int)yLocation)) {
-                        return fe.mEvent.id;
-                    }
-                }
+        if (mRenderModel != null) {
+            Event event = mRenderModel.getEventAt((int)xLocation, (int)yLocation);
+            if (event != null) {
+                return event.id;
             }
         }
         mClickedDayIndex = getDayIndexFromLocation(xLocation);
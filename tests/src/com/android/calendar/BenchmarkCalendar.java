@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.provider.CalendarContract;
+import android.provider.CalendarContract.Calendars;
+import android.provider.CalendarContract.Events;
+import android.text.format.DateUtils;
+
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * A local calendar in the real calendar provider, filled with synthetic
+ * events, for the benchmarks. Call delete() when finished with it: this
+ * deletes the calendar and all its events.
+ */
+class BenchmarkCalendar {
+    private static final String ACCOUNT_NAME = "etar_benchmark";
+
+    private final ContentResolver mResolver;
+    private final long mCalendarId;
+    private final Random mRandom = new Random(1234);
+
+    BenchmarkCalendar(ContentResolver resolver) {
+        mResolver = resolver;
+        ContentValues values = new ContentValues();
+        values.put(Calendars.ACCOUNT_NAME, ACCOUNT_NAME);
+        values.put(Calendars.ACCOUNT_TYPE, CalendarContract.ACCOUNT_TYPE_LOCAL);
+        values.put(Calendars.OWNER_ACCOUNT, ACCOUNT_NAME);
+        values.put(Calendars.NAME, ACCOUNT_NAME);
+        values.put(Calendars.CALENDAR_DISPLAY_NAME, "Benchmark");
+        values.put(Calendars.CALENDAR_COLOR, 0xff3366cc);
+        values.put(Calendars.CALENDAR_ACCESS_LEVEL, Calendars.CAL_ACCESS_OWNER);
+        values.put(Calendars.VISIBLE, 1);
+        values.put(Calendars.SYNC_EVENTS, 1);
+        Uri uri = mResolver.insert(asSyncAdapter(Calendars.CONTENT_URI), values);
+        mCalendarId = ContentUris.parseId(uri);
+    }
+
+    private static Uri asSyncAdapter(Uri uri) {
+        return uri.buildUpon()
+            .appendQueryParameter(CalendarContract.CALLER_IS_SYNCADAPTER, "true")
+            .appendQueryParameter(Calendars.ACCOUNT_NAME, ACCOUNT_NAME)
+            .appendQueryParameter(Calendars.ACCOUNT_TYPE,
+                CalendarContract.ACCOUNT_TYPE_LOCAL)
+            .build();
+    }
+
+    long getCalendarId() {
+        return mCalendarId;
+    }
+
+    /**
+     * Adds count events starting at random times in the days starting at
+     * startMillis. One in allDayRatio is an all day event, and one in
+     * repeatRatio repeats daily for a year.
+     */
+    void addEvents(int count, long startMillis, int days,
+                   int allDayRatio, int repeatRatio)
+    {
+        String tz = TimeZone.getDefault().getID();
+        for (int i = 0; i < count; ++i) {
+            ContentValues values = new ContentValues();
+            values.put(Events.CALENDAR_ID, mCalendarId);
+            values.put(Events.TITLE, "Benchmark event " + i);
+            values.put(Events.EVENT_LOCATION, "Room " + mRandom.nextInt(50));
+            long start;
+            long duration;
+            if (mRandom.nextInt(allDayRatio) == 0) {
+                values.put(Events.ALL_DAY, 1);
+                values.put(Events.EVENT_TIMEZONE, "UTC");
+                start = mRandom.nextInt(days) * DateUtils.DAY_IN_MILLIS
+                    + startMillis - startMillis % DateUtils.DAY_IN_MILLIS;
+                duration = (1 + mRandom.nextInt(3)) * DateUtils.DAY_IN_MILLIS;
+            } else {
+                values.put(Events.EVENT_TIMEZONE, tz);
+                start = startMillis
+                    + mRandom.nextInt(days * 48) * DateUtils.HOUR_IN_MILLIS / 2;
+                duration = (1 + mRandom.nextInt(6)) * DateUtils.HOUR_IN_MILLIS / 2;
+            }
+            values.put(Events.DTSTART, start);
+            if (mRandom.nextInt(repeatRatio) == 0) {
+                values.put(Events.RRULE, "FREQ=DAILY;COUNT=365");
+                values.put(Events.DURATION, "P" + duration / 1000 + "S");
+            } else {
+                values.put(Events.DTEND, start + duration);
+            }
+            mResolver.insert(asSyncAdapter(Events.CONTENT_URI), values);
+        }
+    }
+
+    void delete() {
+        mResolver.delete(asSyncAdapter(
+            ContentUris.withAppendedId(Calendars.CONTENT_URI, mCalendarId)),
+            null, null);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.test.suitebuilder.annotation.LargeTest;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares {@link Event#computePositions} with the old version which kept
+ * the occupied columns in a 64 bit mask, for 10000 heavily overlapping
+ * events, as on a busy shared calendar of room bookings. It also checks
+ * that the layouts agree when there are few enough columns for the old
+ * version to work, and that no two overlapping events share a column when
+ * there are not.
+ *
+ * Run it with:
+ * "adb shell am instrument -w -e class com.android.calendar.ComputePositionsBenchmark
+ *          com.android.calendar.tests/android.test.InstrumentationTestRunner"
+ * and look for the results in the log under the tag ComputePositionsBenchmark.
+ */
+public class ComputePositionsBenchmark extends TestCase {
+    private static final String TAG = "ComputePositionsBenchmark";
+    private static final int EVENTS = 10000;
+    private static final int WARMUP_RUNS = 5;
+    private static final int RUNS = 20;
+    private static final long MINIMUM_DURATION = 15 * DateUtils.MINUTE_IN_MILLIS;
+
+    // Makes events starting in a window of the given number of minutes,
+    // sorted by start time as Event.loadEvents() returns them.
+    private static ArrayList<Event> makeEvents(int minutes, int maxDuration) {
+        Random random = new Random(5678);
+        long[] starts = new long[EVENTS];
+        for (int i = 0; i < EVENTS; ++i) {
+            starts[i] = random.nextInt(minutes) * DateUtils.MINUTE_IN_MILLIS;
+        }
+        Arrays.sort(starts);
+        ArrayList<Event> events = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; ++i) {
+            Event e = new Event();
+            e.id = i;
+            e.startMillis = starts[i];
+            e.endMillis = starts[i]
+                + (1 + random.nextInt(maxDuration)) * DateUtils.MINUTE_IN_MILLIS;
+            events.add(e);
+        }
+        return events;
+    }
+
+    // The old column allocation, for comparison
+    private static void legacyComputePositions(ArrayList<Event> eventsList,
+            long minimumDurationMillis) {
+        final ArrayList<Event> activeList = new ArrayList<>();
+        final ArrayList<Event> groupList = new ArrayList<>();
+        long colMask = 0;
+        int maxCols = 0;
+        for (Event event : eventsList) {
+            long start = event.getStartMillis();
+            Iterator<Event> iter = activeList.iterator();
+            while (iter.hasNext()) {
+                final Event active = iter.next();
+                final long duration = Math.max(
+                        active.getEndMillis() - active.getStartMillis(), minimumDurationMillis);
+                if ((active.getStartMillis() + duration) <= start) {
+                    colMask &= ~(1L << active.getColumn());
+                    iter.remove();
+                }
+            }
+            if (activeList.isEmpty()) {
+                for (Event ev : groupList) {
+                    ev.setMaxColumns(maxCols);
+                }
+                maxCols = 0;
+                colMask = 0;
+                groupList.clear();
+            }
+            int col = 64;
+            for (int ii = 0; ii < 64; ++ii) {
+                if ((colMask & (1L << ii)) == 0) {
+                    col = ii;
+                    break;
+                }
+            }
+            if (col == 64)
+                col = 63;
+            colMask |= (1L << col);
+            event.setColumn(col);
+            activeList.add(event);
+            groupList.add(event);
+            int len = activeList.size();
+            if (maxCols < len)
+                maxCols = len;
+        }
+        for (Event ev : groupList) {
+            ev.setMaxColumns(maxCols);
+        }
+    }
+
+    private static void layout(ArrayList<Event> events, boolean legacy) {
+        if (legacy) {
+            legacyComputePositions(events, MINIMUM_DURATION);
+        } else {
+            Event.computePositions(events, MINIMUM_DURATION);
+        }
+    }
+
+    // Returns the average time in microseconds for one layout.
+    private static long time(ArrayList<Event> events, boolean legacy) {
+        for (int i = 0; i < WARMUP_RUNS; ++i) {
+            layout(events, legacy);
+        }
+        System.gc();
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; ++i) {
+            layout(events, legacy);
+        }
+        return (System.nanoTime() - start) / RUNS / 1000;
+    }
+
+    private static void assertNoSharedColumns(ArrayList<Event> events) {
+        ArrayList<Event> active = new ArrayList<>();
+        int maxActive = 0;
+        for (Event e : events) {
+            Iterator<Event> iter = active.iterator();
+            while (iter.hasNext()) {
+                Event a = iter.next();
+                long end = a.startMillis + Math.max(a.endMillis - a.startMillis, MINIMUM_DURATION);
+                if (end <= e.startMillis) {
+                    iter.remove();
+                } else {
+                    assertTrue(a.getColumn() != e.getColumn());
+                }
+            }
+            active.add(e);
+            maxActive = Math.max(maxActive, active.size());
+            assertTrue(e.getColumn() < e.getMaxColumns());
+        }
+        assertTrue(maxActive > 64);
+    }
+
+    @LargeTest
+    public void testHeavyOverlap() {
+        // Two days of bookings lasting up to eight hours: several hundred
+        // overlap at once.
+        ArrayList<Event> events = makeEvents(2 * 24 * 60, 8 * 60);
+        long legacy = time(events, true);
+        long current = time(events, false);
+        Log.i(TAG, EVENTS + " events, bit mask: " + legacy + "us, allocator: "
+            + current + "us");
+        assertNoSharedColumns(events);
+    }
+
+    @LargeTest
+    public void testSameAsLegacyWithFewColumns() {
+        // A month of events lasting up to two hours: far fewer than 64
+        // overlap at once.
+        ArrayList<Event> events = makeEvents(30 * 24 * 60, 2 * 60);
+        long legacy = time(events, true);
+        int[] columns = new int[EVENTS];
+        int[] maxColumns = new int[EVENTS];
+        for (int i = 0; i < EVENTS; ++i) {
+            columns[i] = events.get(i).getColumn();
+            maxColumns[i] = events.get(i).getMaxColumns();
+        }
+        long current = time(events, false);
+        Log.i(TAG, EVENTS + " sparse events, bit mask: " + legacy + "us, allocator: "
+            + current + "us");
+        for (int i = 0; i < EVENTS; ++i) {
+            assertEquals(columns[i], events.get(i).getColumn());
+            assertEquals(maxColumns[i], events.get(i).getMaxColumns());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Compares {@link DNAStrandEngine} with making the strands for each week
+ * with {@link Utils#createDNAStrands}, for a dense synthetic week and for
+ * the six weeks of a month view, and checks that they make the same
+ * strands.
+ *
+ * Run it with:
+ * "adb shell am instrument -w -e class com.android.calendar.DNAStrandBenchmark
+ *          com.android.calendar.tests/android.test.InstrumentationTestRunner"
+ * and look for the results in the log under the tag DNAStrandBenchmark.
+ */
+public class DNAStrandBenchmark extends AndroidTestCase {
+    private static final String TAG = "DNAStrandBenchmark";
+    private static final int SUNDAY = 2440591; // Jan 4th, 1970
+    private static final int WARMUP_RUNS = 5;
+    private static final int RUNS = 20;
+    private static final int TOP = 10;
+    private static final int BOTTOM = 190;
+    private static final int MIN_PIXELS = 4;
+    private static final int[] COLORS = {
+        0xFFE57373, 0xFF64B5F6, 0xFF81C784, 0xFFFFB74D, 0xFFBA68C8, 0xFF4DB6AC
+    };
+
+    private static final int[] DAY_XS = { 20, 60, 100, 140, 180, 220, 260 };
+
+    // Makes events starting at random times in the given weeks, sorted by
+    // start time as the month view loads them. A few last most of a day or
+    // are all day events.
+    private static EventStore makeEvents(int weeks, int eventsPerWeek) {
+        Random random = new Random(4321);
+        int count = weeks * eventsPerWeek;
+        int days = weeks * 7;
+        int[] starts = new int[count];
+        for (int i = 0; i < count; ++i) {
+            starts[i] = random.nextInt(days * Utils.DAY_IN_MINUTES);
+        }
+        Arrays.sort(starts);
+        EventStore store = new EventStore(count);
+        for (int i = 0; i < count; ++i) {
+            Event e = new Event();
+            e.id = i;
+            e.color = COLORS[random.nextInt(COLORS.length)];
+            int kind = random.nextInt(20);
+            int duration = kind == 0 ? 20 * 60 : 15 + random.nextInt(180);
+            e.allDay = kind == 1;
+            int start = e.allDay ? starts[i] - starts[i] % Utils.DAY_IN_MINUTES : starts[i];
+            int end = e.allDay ? start + Utils.DAY_IN_MINUTES : start + duration;
+            e.startDay = SUNDAY + start / Utils.DAY_IN_MINUTES;
+            e.startTime = start % Utils.DAY_IN_MINUTES;
+            e.endDay = SUNDAY + (end - 1) / Utils.DAY_IN_MINUTES;
+            e.endTime = end - (e.endDay - SUNDAY) * Utils.DAY_IN_MINUTES;
+            e.startMillis = (long) start * DateUtils.MINUTE_IN_MILLIS;
+            e.endMillis = (long) end * DateUtils.MINUTE_IN_MILLIS;
+            store.add(e);
+        }
+        return store;
+    }
+
+    private void assertSameStrands(HashMap<Integer, Utils.DNAStrand> expected,
+                                   Utils.DNAStrand[] actual)
+    {
+        if (expected == null || expected.isEmpty()) {
+            assertTrue(actual == null
+                || (actual.length == 1 && actual[0].count == 0 && actual[0].allDays == null));
+            return;
+        }
+        assertNotNull(actual);
+        int strands = 0;
+        for (Utils.DNAStrand strand : actual) {
+            if (strand.count == 0 && strand.allDays == null) {
+                continue;
+            }
+            ++strands;
+            Utils.DNAStrand e = expected.get(strand.color);
+            assertNotNull(e);
+            assertTrue(Arrays.equals(e.points, strand.points));
+            assertTrue(Arrays.equals(e.allDays, strand.allDays));
+        }
+        assertEquals(expected.size(), strands);
+    }
+
+    // The events in a list, which is what Utils.createDNAStrands takes
+    private static ArrayList<Event> toList(EventStore events) {
+        ArrayList<Event> list = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); ++i) {
+            list.add(events.getEvent(i, new Event()));
+        }
+        return list;
+    }
+
+    // Returns the average time in microseconds to make all the weeks'
+    // strands.
+    private long time(EventStore events, int weeks, boolean engine) {
+        ArrayList<Event> list = toList(events);
+        long start = 0;
+        for (int i = 0; i < WARMUP_RUNS + RUNS; ++i) {
+            if (i == WARMUP_RUNS) {
+                System.gc();
+                start = System.nanoTime();
+            }
+            if (engine) {
+                DNAStrandEngine dna = new DNAStrandEngine(events, SUNDAY, weeks);
+                for (int w = 0; w < weeks; ++w) {
+                    dna.getStrands(SUNDAY + w * 7, TOP, BOTTOM, MIN_PIXELS, DAY_XS,
+                        getContext());
+                }
+            } else {
+                for (int w = 0; w < weeks; ++w) {
+                    Utils.createDNAStrands(SUNDAY + w * 7, list, TOP, BOTTOM, MIN_PIXELS,
+                        DAY_XS, getContext());
+                }
+            }
+        }
+        return (System.nanoTime() - start) / RUNS / 1000;
+    }
+
+    private void compare(int weeks, int eventsPerWeek, String name) {
+        EventStore events = makeEvents(weeks, eventsPerWeek);
+        ArrayList<Event> list = toList(events);
+        DNAStrandEngine dna = new DNAStrandEngine(events, SUNDAY, weeks);
+        for (int w = 0; w < weeks; ++w) {
+            int weekStart = SUNDAY + w * 7;
+            assertSameStrands(
+                Utils.createDNAStrands(weekStart, list, TOP, BOTTOM, MIN_PIXELS, DAY_XS,
+                    getContext()),
+                dna.getStrands(weekStart, TOP, BOTTOM, MIN_PIXELS, DAY_XS, getContext()));
+        }
+        long legacy = time(events, weeks, false);
+        long current = time(events, weeks, true);
+        Log.i(TAG, name + ": " + events.size() + " events, each week: " + legacy
+            + "us, one sweep: " + current + "us");
+    }
+
+    @LargeTest
+    public void testDenseWeek() {
+        compare(1, 500, "Dense week");
+    }
+
+    @LargeTest
+    public void testMonth() {
+        compare(6, 60, "Month");
+    }
+
+    @LargeTest
+    public void testGeometryChange() {
+        EventStore events = makeEvents(2, 50);
+        DNAStrandEngine dna = new DNAStrandEngine(events, SUNDAY, 2);
+        Utils.DNAStrand[] strands =
+            dna.getStrands(SUNDAY + 7, TOP, BOTTOM, MIN_PIXELS, DAY_XS, getContext());
+        // The same geometry gets the same strands.
+        assertSame(strands,
+            dna.getStrands(SUNDAY + 7, TOP, BOTTOM, MIN_PIXELS, DAY_XS.clone(), getContext()));
+        // A different one makes them again.
+        Utils.DNAStrand[] taller =
+            dna.getStrands(SUNDAY + 7, TOP, BOTTOM + 40, MIN_PIXELS, DAY_XS, getContext());
+        assertNotSame(strands, taller);
+        assertSameStrands(
+            Utils.createDNAStrands(SUNDAY + 7, toList(events), TOP, BOTTOM + 40, MIN_PIXELS, DAY_XS,
+                getContext()),
+            taller);
+        assertNull(dna.getStrands(SUNDAY + 14, TOP, BOTTOM, MIN_PIXELS, DAY_XS, getContext()));
+    }
+}
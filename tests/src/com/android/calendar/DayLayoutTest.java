@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import android.text.format.DateUtils;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link DayLayout}.
+ */
+public class DayLayoutTest extends TestCase {
+
+    private static final int DAY = 2440588; // Jan 1st, 1970
+
+    private static Event makeEvent(long id, int day, int startHour, int hours, boolean allDay) {
+        Event e = new Event();
+        e.id = id;
+        e.allDay = allDay;
+        e.startDay = day;
+        e.startTime = startHour * 60;
+        e.startMillis = (day - DAY) * DateUtils.DAY_IN_MILLIS
+            + startHour * DateUtils.HOUR_IN_MILLIS;
+        e.endMillis = e.startMillis + hours * DateUtils.HOUR_IN_MILLIS;
+        e.endDay = day + (startHour + hours - 1) / 24;
+        e.endTime = ((startHour + hours) % 24) * 60;
+        return e;
+    }
+
+    @SmallTest
+    public void testLayOut() {
+        ArrayList<Event> events = new ArrayList<>();
+        events.add(makeEvent(1, DAY, 9, 2, false));
+        events.add(makeEvent(2, DAY, 10, 2, false));
+        events.add(makeEvent(3, DAY + 1, 7, 1, false));
+        events.add(makeEvent(4, DAY, 0, 48, true));
+        events.add(makeEvent(5, DAY + 1, 0, 24, true));
+        DayLayout layout = new DayLayout(events, DAY, 3, 0);
+        layout.layOut();
+
+        // Columns are assigned
+        assertEquals(0, events.get(0).getColumn());
+        assertEquals(1, events.get(1).getColumn());
+        assertEquals(2, events.get(1).getMaxColumns());
+        assertEquals(1, events.get(2).getMaxColumns());
+
+        // All day events are packed
+        assertEquals(2, layout.allDayEvents.size());
+        assertEquals(1, layout.numAllDayEvents[0]);
+        assertEquals(2, layout.numAllDayEvents[1]);
+        assertEquals(0, layout.numAllDayEvents[2]);
+        assertEquals(2, layout.maxAllDayEvents);
+
+        assertEquals(9, layout.earliestStartHour[0]);
+        assertEquals(7, layout.earliestStartHour[1]);
+        assertEquals(Integer.MAX_VALUE, layout.earliestStartHour[2]);
+
+        assertEquals(2, layout.eventIndex.queryDays(DAY, DAY));
+        assertEquals(2, layout.allDayIndex.queryDays(DAY + 1, DAY + 1));
+    }
+}
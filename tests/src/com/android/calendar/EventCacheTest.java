@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import android.text.format.DateUtils;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link EventCache}.
+ */
+public class EventCacheTest extends TestCase {
+
+    private static final int DAY = 2440588; // Jan 1st, 1970
+
+    private static Event makeEvent(long id, int startDay, int endDay, boolean allDay) {
+        Event e = new Event();
+        e.id = id;
+        e.title = "event " + id;
+        e.startDay = startDay;
+        e.endDay = endDay;
+        e.allDay = allDay;
+        e.startMillis = (startDay - DAY) * DateUtils.DAY_IN_MILLIS + id;
+        e.endMillis = allDay ? (endDay - DAY + 1) * DateUtils.DAY_IN_MILLIS
+                             : e.startMillis + DateUtils.HOUR_IN_MILLIS;
+        return e;
+    }
+
+    @SmallTest
+    public void testMissingDays() {
+        EventCache cache = new EventCache();
+        ArrayList<Event> loaded = new ArrayList<>();
+        cache.put(cache.getGeneration(), DAY + 2, DAY + 4, loaded);
+        assertEquals(DAY, cache.firstMissingDay(DAY, DAY + 6));
+        assertEquals(DAY + 6, cache.lastMissingDay(DAY, DAY + 6));
+        assertEquals(DAY + 5, cache.firstMissingDay(DAY + 2, DAY + 6));
+        assertEquals(DAY + 1, cache.lastMissingDay(DAY, DAY + 4));
+        assertEquals(DAY + 5, cache.firstMissingDay(DAY + 2, DAY + 4));
+    }
+
+    @SmallTest
+    public void testMultiDayEventReturnedOnce() {
+        EventCache cache = new EventCache();
+        ArrayList<Event> loaded = new ArrayList<>();
+        loaded.add(makeEvent(1, DAY, DAY, false));
+        loaded.add(makeEvent(2, DAY + 1, DAY + 1, false));
+        loaded.add(makeEvent(3, DAY - 1, DAY + 2, true));
+        loaded.add(makeEvent(4, DAY + 1, DAY + 2, true));
+        cache.put(cache.getGeneration(), DAY, DAY + 2, loaded);
+
+        ArrayList<Event> events = new ArrayList<>();
+        assertTrue(cache.get(DAY, DAY + 2, events));
+        assertEquals(4, events.size());
+        // Timed events first, then all day ones, each in their original order
+        assertEquals(1, events.get(0).id);
+        assertEquals(2, events.get(1).id);
+        assertEquals(3, events.get(2).id);
+        assertEquals(4, events.get(3).id);
+        // We get copies, not the cached objects
+        assertNotSame(loaded.get(0), events.get(0));
+
+        assertTrue(cache.get(DAY + 1, DAY + 1, events));
+        assertEquals(3, events.size());
+        assertEquals(2, events.get(0).id);
+    }
+
+    @SmallTest
+    public void testInvalidate() {
+        EventCache cache = new EventCache();
+        int generation = cache.getGeneration();
+        cache.invalidate();
+        // A load which started before the invalidation is discarded
+        cache.put(generation, DAY, DAY, new ArrayList<Event>());
+        assertFalse(cache.get(DAY, DAY, new ArrayList<Event>()));
+
+        cache.put(cache.getGeneration(), DAY, DAY, new ArrayList<Event>());
+        assertTrue(cache.get(DAY, DAY, new ArrayList<Event>()));
+        cache.checkTimezone("Europe/London");
+        assertFalse(cache.get(DAY, DAY, new ArrayList<Event>()));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.database.MatrixCursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.CalendarContract.Events;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.text.format.DateUtils;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * Unit tests for {@link EventChangeTracker}.
+ */
+public class EventChangeTrackerTest extends AndroidTestCase {
+
+    private static final int DAY = 2440588; // Jan 1st, 1970
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static void set(Object[] row, String column, Object value) {
+        row[Arrays.asList(EventChangeTracker.PROJECTION).indexOf(column)] = value;
+    }
+
+    // A one hour event at 9am, or a recurring event starting then, which
+    // has no last date if it doesn't end.
+    private static Object[] makeRow(long id, long calendarId, int day, String title,
+                                    String rrule, Integer lastDay) {
+        Object[] row = new Object[EventChangeTracker.PROJECTION.length];
+        long start = (day - DAY) * DateUtils.DAY_IN_MILLIS + 9 * DateUtils.HOUR_IN_MILLIS;
+        set(row, Events._ID, id);
+        set(row, Events.CALENDAR_ID, calendarId);
+        set(row, Events.DTSTART, start);
+        set(row, Events.TITLE, title);
+        if (rrule == null) {
+            set(row, Events.DTEND, start + DateUtils.HOUR_IN_MILLIS);
+        } else {
+            set(row, Events.RRULE, rrule);
+        }
+        if (lastDay != null) {
+            set(row, Events.LAST_DATE,
+                (lastDay - DAY) * DateUtils.DAY_IN_MILLIS + 10 * DateUtils.HOUR_IN_MILLIS);
+        }
+        return row;
+    }
+
+    private static MatrixCursor makeCursor(Object[]... rows) {
+        MatrixCursor cursor = new MatrixCursor(EventChangeTracker.PROJECTION);
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    private EventChangeTracker makeTracker() {
+        return new EventChangeTracker(getContext(), new Handler(Looper.getMainLooper()),
+            new EventChangeTracker.Listener() {
+                @Override
+                public void onEventsChanged(EventChangeTracker.Changes changes) {
+                }
+            });
+    }
+
+    @SmallTest
+    public void testChangedDays() {
+        EventChangeTracker tracker = makeTracker();
+        Object[] meeting = makeRow(1, 1, DAY + 10, "Meeting", null, DAY + 10);
+        Object[] lunch = makeRow(2, 1, DAY + 20, "Lunch", null, DAY + 20);
+        Object[] weekly = makeRow(3, 2, DAY, "Weekly", "FREQ=WEEKLY", null);
+
+        // We don't know what was loaded before the first scan.
+        assertTrue(tracker.update(makeCursor(meeting, lunch, weekly), UTC).needsFullReload());
+        // Nothing has changed
+        assertTrue(tracker.update(makeCursor(weekly, lunch, meeting), UTC).isEmpty());
+
+        // Changing an event affects only its own days.
+        Object[] renamed = makeRow(2, 1, DAY + 20, "Dinner", null, DAY + 20);
+        EventChangeTracker.Changes changes =
+            tracker.update(makeCursor(meeting, renamed, weekly), UTC);
+        assertFalse(changes.needsFullReload());
+        assertTrue(changes.intersects(DAY + 20, DAY + 20));
+        assertFalse(changes.intersects(DAY + 10, DAY + 10));
+        assertFalse(changes.intersects(DAY + 30, DAY + 40));
+
+        // So does moving one, before and after.
+        Object[] moved = makeRow(1, 1, DAY + 15, "Meeting", null, DAY + 15);
+        changes = tracker.update(makeCursor(moved, renamed, weekly), UTC);
+        assertTrue(changes.intersects(DAY + 10, DAY + 10));
+        assertTrue(changes.intersects(DAY + 15, DAY + 15));
+        assertFalse(changes.intersects(DAY + 20, DAY + 20));
+
+        // and deleting one.
+        changes = tracker.update(makeCursor(moved, weekly), UTC);
+        assertTrue(changes.intersects(DAY + 20, DAY + 20));
+        assertFalse(changes.intersects(DAY + 15, DAY + 15));
+
+        // Changing a recurrence rule needs a full reload.
+        Object[] daily = makeRow(3, 2, DAY, "Weekly", "FREQ=DAILY", null);
+        assertTrue(tracker.update(makeCursor(moved, daily), UTC).needsFullReload());
+    }
+
+    @SmallTest
+    public void testChangedIds() {
+        EventChangeTracker tracker = makeTracker();
+        Object[] meeting = makeRow(1, 1, DAY + 10, "Meeting", null, DAY + 10);
+        Object[] lunch = makeRow(2, 1, DAY + 20, "Lunch", null, DAY + 20);
+        Object[] weekly = makeRow(3, 2, DAY, "Weekly", "FREQ=WEEKLY", null);
+        assertTrue(tracker.update(makeCursor(meeting, lunch, weekly), UTC).needsFullReload());
+
+        // Only the rows which the scanner says have changed are read, and
+        // one which isn't returned has gone.
+        Object[] moved = makeRow(1, 1, DAY + 15, "Meeting", null, DAY + 15);
+        EventChangeTracker.Changes changes = new EventChangeTracker.Changes();
+        tracker.update(makeCursor(moved), new long[] { 1, 2 }, UTC, changes);
+        assertFalse(changes.needsFullReload());
+        assertTrue(changes.intersects(DAY + 10, DAY + 10));
+        assertTrue(changes.intersects(DAY + 15, DAY + 15));
+        assertTrue(changes.intersects(DAY + 20, DAY + 20));
+
+        // A change to a column which we don't show changes nothing.
+        changes = new EventChangeTracker.Changes();
+        tracker.update(makeCursor(moved), new long[] { 1 }, UTC, changes);
+        assertTrue(changes.isEmpty());
+
+        // The full scan agrees with what the partial ones left.
+        assertTrue(tracker.update(makeCursor(moved, weekly), UTC).isEmpty());
+    }
+
+    @SmallTest
+    public void testRangesMerge() {
+        EventChangeTracker.Changes changes = new EventChangeTracker.Changes();
+        assertTrue(changes.isEmpty());
+        changes.addRange(10, 12);
+        changes.addRange(20, 22);
+        changes.addRange(14, 15);
+        assertEquals(3, changes.getRangeCount());
+        changes.addRange(13, 19);
+        assertEquals(1, changes.getRangeCount());
+        assertEquals(10, changes.getFirstDay(0));
+        assertEquals(22, changes.getLastDay(0));
+        changes.addRange(1, 2);
+        assertEquals(2, changes.getRangeCount());
+        assertEquals(1, changes.getFirstDay(0));
+        assertEquals(10, changes.getFirstDay(1));
+    }
+}
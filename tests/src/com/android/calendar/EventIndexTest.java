@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link EventIndex}, comparing it with looking at every
+ * event.
+ */
+public class EventIndexTest extends TestCase {
+
+    private static final int DAY = 2440588; // Jan 1st, 1970
+    private static final int EVENTS = 500;
+
+    private static Event makeEvent(long id, int startMinute, int minutes) {
+        Event e = new Event();
+        e.id = id;
+        e.startMillis = startMinute * 60000L;
+        e.endMillis = e.startMillis + minutes * 60000L;
+        e.startDay = DAY + startMinute / DayView.MINUTES_PER_DAY;
+        e.endDay = DAY + (startMinute + minutes) / DayView.MINUTES_PER_DAY;
+        e.startTime = startMinute % DayView.MINUTES_PER_DAY;
+        e.endTime = (startMinute + minutes) % DayView.MINUTES_PER_DAY;
+        return e;
+    }
+
+    private static ArrayList<Event> makeEvents(Random random) {
+        ArrayList<Event> events = new ArrayList<>();
+        for (int i = 0; i < EVENTS; ++i) {
+            events.add(makeEvent(i, random.nextInt(30 * DayView.MINUTES_PER_DAY),
+                random.nextInt(3 * DayView.MINUTES_PER_DAY)));
+        }
+        return events;
+    }
+
+    private static void checkDays(EventIndex index, ArrayList<Event> events,
+                                  int firstDay, int lastDay)
+    {
+        int found = index.queryDays(firstDay, lastDay);
+        int n = 0;
+        for (int i = 0; i < events.size(); ++i) {
+            Event e = events.get(i);
+            if (e.startDay <= lastDay && e.endDay >= firstDay) {
+                assertTrue(n < found);
+                assertEquals(i, index.getResult(n++));
+            }
+        }
+        assertEquals(n, found);
+    }
+
+    @SmallTest
+    public void testQueryDays() {
+        ArrayList<Event> events = makeEvents(new Random(1));
+        EventIndex byDay = EventIndex.forEvents(events, EventIndex.BY_DAY, 0, false);
+        EventIndex byMinute = EventIndex.forEvents(events, EventIndex.BY_MINUTE, 0, false);
+        assertEquals(EVENTS, byDay.size());
+        for (int day = DAY - 1; day < DAY + 34; ++day) {
+            checkDays(byDay, events, day, day);
+            checkDays(byMinute, events, day, day);
+            checkDays(byDay, events, day, day + 6);
+        }
+    }
+
+    @SmallTest
+    public void testQueryPointByMillis() {
+        ArrayList<Event> events = makeEvents(new Random(2));
+        long minimum = 30 * 60000L;
+        EventIndex index = EventIndex.forEvents(events, EventIndex.BY_MILLIS, minimum, false);
+        Random random = new Random(3);
+        for (int k = 0; k < 200; ++k) {
+            long t = random.nextInt(33 * DayView.MINUTES_PER_DAY) * 60000L;
+            int found = index.queryPoint(t);
+            int n = 0;
+            for (int i = 0; i < events.size(); ++i) {
+                Event e = events.get(i);
+                long end = e.startMillis + Math.max(e.endMillis - e.startMillis, minimum);
+                // An event ending at t doesn't include t
+                if (e.startMillis <= t && end > t) {
+                    assertEquals(i, index.getResult(n++));
+                }
+            }
+            assertEquals(n, found);
+        }
+    }
+}
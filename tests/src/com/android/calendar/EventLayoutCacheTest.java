@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.graphics.Paint;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.text.StaticLayout;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link EventLayoutCache}.
+ */
+public class EventLayoutCacheTest extends TestCase {
+
+    private static Event makeEvent(long id, String title, String location) {
+        Event e = new Event();
+        e.id = id;
+        e.title = title;
+        e.location = location;
+        return e;
+    }
+
+    @SmallTest
+    public void testLayoutsAreReused() {
+        EventLayoutCache cache = new EventLayoutCache();
+        Paint paint = new Paint();
+        paint.setTextSize(12);
+        paint.setColor(0xff000000);
+
+        StaticLayout layout = cache.getLayout(makeEvent(1, "Meeting", "Room 1"), paint, 100);
+        assertEquals(100, layout.getWidth());
+        assertEquals(0, cache.getHits());
+        // A reloaded copy of the same event gets the same layout
+        assertSame(layout, cache.getLayout(makeEvent(1, "Meeting", "Room 1"), paint, 100));
+        assertEquals(1, cache.getHits());
+        assertEquals(0.5f, cache.getHitRate());
+
+        // but anything which changes the layout doesn't
+        assertNotSame(layout, cache.getLayout(makeEvent(1, "Meeting", "Room 1"), paint, 120));
+        assertNotSame(layout, cache.getLayout(makeEvent(1, "Meeting", "Room 2"), paint, 100));
+        paint.setColor(0xffff0000);
+        assertNotSame(layout, cache.getLayout(makeEvent(1, "Meeting", "Room 1"), paint, 100));
+        assertEquals(4, cache.getMisses());
+    }
+
+    @SmallTest
+    public void testPreparedLayoutsAreHits() {
+        EventLayoutCache cache = new EventLayoutCache();
+        Paint paint = new Paint();
+        paint.setTextSize(12);
+        paint.setColor(0xff000000);
+
+        cache.prepare(makeEvent(1, "Meeting", "Room 1"), paint, 100);
+        StaticLayout layout = cache.getLayout(makeEvent(1, "Meeting", "Room 1"), paint, 100);
+        assertEquals(100, layout.getWidth());
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        // Preparing it again keeps the layout which is already cached
+        cache.prepare(makeEvent(1, "Meeting", "Room 1"), paint, 100);
+        assertSame(layout, cache.getLayout(makeEvent(1, "Meeting", "Room 1"), paint, 100));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares loading instances with one query against the old pair of
+ * queries in {@link Event#loadEvents}, using a local calendar seeded with
+ * a mixture of timed, all day and repeating events.
+ *
+ * Run it with:
+ * "adb shell am instrument -w -e class com.android.calendar.EventLoadBenchmark
+ *          com.android.calendar.tests/android.test.InstrumentationTestRunner"
+ * and look for the results in the log under the tag EventLoadBenchmark.
+ */
+public class EventLoadBenchmark extends AndroidTestCase {
+    private static final String TAG = "EventLoadBenchmark";
+    private static final int EVENTS = 2000;
+    private static final int DAYS = 9; // a week view plus a day either side
+    private static final int RUNS = 20;
+
+    private BenchmarkCalendar mCalendar;
+    private int mStartDay;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCalendar = new BenchmarkCalendar(getContext().getContentResolver());
+        long now = System.currentTimeMillis();
+        mCalendar.addEvents(EVENTS, now, 60, 5, 4);
+        Time t = new Time();
+        t.set(now);
+        mStartDay = Time.getJulianDay(now, t.gmtoff) + 14;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mCalendar.delete();
+        super.tearDown();
+    }
+
+    // Returns {wall time, thread cpu time} in ms for RUNS loads.
+    private long[] time(boolean singleQuery, ArrayList<Event> events) {
+        AtomicInteger sequence = new AtomicInteger(1);
+        long wall = SystemClock.uptimeMillis();
+        long cpu = SystemClock.currentThreadTimeMillis();
+        for (int i = 0; i < RUNS; ++i) {
+            // Move the range so the provider can't reuse its expansion
+            assertTrue(Event.loadEvents(getContext(), events,
+                mStartDay + i * DAYS, DAYS, 1, sequence, singleQuery));
+        }
+        return new long[] {
+            SystemClock.uptimeMillis() - wall,
+            SystemClock.currentThreadTimeMillis() - cpu
+        };
+    }
+
+    @LargeTest
+    public void testSingleQuery() {
+        ArrayList<Event> single = new ArrayList<>();
+        ArrayList<Event> dual = new ArrayList<>();
+        // Warm up both paths
+        time(true, single);
+        time(false, dual);
+
+        long[] dualTimes = time(false, dual);
+        long[] singleTimes = time(true, single);
+        Log.i(TAG, "two queries: " + dualTimes[0] + "ms, cpu " + dualTimes[1] + "ms");
+        Log.i(TAG, "one query: " + singleTimes[0] + "ms, cpu " + singleTimes[1] + "ms");
+
+        // Both paths must give the same events in the same order
+        assertEquals(dual.size(), single.size());
+        for (int i = 0; i < dual.size(); ++i) {
+            Event a = dual.get(i);
+            Event b = single.get(i);
+            assertEquals(a.id, b.id);
+            assertEquals(a.startMillis, b.startMillis);
+            assertEquals(a.endMillis, b.endMillis);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.provider.CalendarContract;
+import android.provider.CalendarContract.Calendars;
+import android.provider.CalendarContract.Events;
+import android.provider.CalendarContract.Reminders;
+import android.test.AndroidTestCase;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link EventSearchIndex}.
+ */
+public class EventSearchIndexTest extends AndroidTestCase {
+    private static final String DATABASE_NAME = "test_event_search.db";
+    private static final long CALENDAR_ID = 1;
+
+    private MockProvider mMockProvider;
+    private EventSearchIndex mIndex;
+
+    private static class MockProvider extends MockContentProvider {
+        final TreeMap<Long, HashMap<String, Object>> mEvents = new TreeMap<>();
+        // The selections of the index's queries which read descriptions
+        final ArrayList<String> mDescriptionQueries = new ArrayList<>();
+        // The selections of the scanner's queries of the events
+        final ArrayList<String> mScanQueries = new ArrayList<>();
+        // The calendar's sync state, which a sync adapter changes
+        int mSyncState;
+
+        void put(long id, String title, String description, String location) {
+            HashMap<String, Object> event = new HashMap<>();
+            event.put(Events._ID, id);
+            event.put(Events.CALENDAR_ID, CALENDAR_ID);
+            event.put(Events.VISIBLE, 1);
+            event.put(Events.DIRTY, 0);
+            event.put(Events.DELETED, 0);
+            event.put(Events.TITLE, title);
+            event.put(Events.DESCRIPTION, description);
+            event.put(Events.EVENT_LOCATION, location);
+            mEvents.put(id, event);
+        }
+
+        // What a sync adapter does when it has changed the events
+        void sync() {
+            ++mSyncState;
+        }
+
+        // Whether an event matches a selection made of "column=value" and
+        // "column IN (...)" terms joined by AND, as ours are
+        private static boolean matches(HashMap<String, Object> event, String selection) {
+            for (String term : selection.split(" AND ")) {
+                HashSet<String> values = new HashSet<>();
+                String column;
+                int in = term.indexOf(" IN (");
+                if (in >= 0) {
+                    column = term.substring(0, in);
+                    String list = term.substring(in + 5, term.indexOf(')', in));
+                    values.addAll(Arrays.asList(list.split(",")));
+                } else {
+                    int equals = term.indexOf('=');
+                    column = term.substring(0, equals);
+                    values.add(term.substring(equals + 1));
+                }
+                if (!values.contains(String.valueOf(event.get(column)))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection,
+                            String[] selectionArgs, String sortOrder) {
+            if (Reminders.CONTENT_URI.equals(uri)) {
+                return new MatrixCursor(projection);
+            } else if (Calendars.CONTENT_URI.equals(uri)) {
+                List<String> columns = Arrays.asList(projection);
+                Object[] row = new Object[projection.length];
+                row[columns.indexOf(Calendars._ID)] = CALENDAR_ID;
+                row[columns.indexOf(Calendars.CAL_SYNC1)] = mSyncState;
+                MatrixCursor cursor = new MatrixCursor(projection);
+                cursor.addRow(row);
+                return cursor;
+            } else if (!Events.CONTENT_URI.equals(uri)) {
+                return super.query(uri, projection, selection, selectionArgs, sortOrder);
+            }
+            if (projection == EventScanner.PROJECTION) {
+                mScanQueries.add(selection);
+            } else if (Arrays.asList(projection).contains(Events.DESCRIPTION)) {
+                mDescriptionQueries.add(selection);
+            }
+            MatrixCursor cursor = new MatrixCursor(projection);
+            for (HashMap<String, Object> event : mEvents.values()) {
+                if (!matches(event, selection)) {
+                    continue;
+                }
+                Object[] row = new Object[projection.length];
+                for (int i = 0; i < projection.length; ++i) {
+                    row[i] = event.get(projection[i]);
+                }
+                cursor.addRow(row);
+            }
+            return cursor;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        mMockProvider = new MockProvider();
+        final MockContentResolver mockResolver = new MockContentResolver();
+        mockResolver.addProvider(CalendarContract.AUTHORITY, mMockProvider);
+        Context context = new ContextWrapper(getContext()) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return mockResolver;
+            }
+        };
+        getContext().deleteDatabase(DATABASE_NAME);
+        mIndex = new EventSearchIndex(context, new EventScanner(context), DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mIndex.close();
+        getContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    // Runs update() and waits for it to finish.
+    private void update() throws InterruptedException {
+        mIndex.update();
+        final CountDownLatch done = new CountDownLatch(1);
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    private void assertMatches(String query, long... expected) {
+        long[] ids = mIndex.match(query);
+        assertNotNull(query, ids);
+        Arrays.sort(ids);
+        assertEquals(query, Arrays.toString(expected), Arrays.toString(ids));
+    }
+
+    @SmallTest
+    public void testBuildMatchExpression() {
+        assertEquals("\"din*\"", EventSearchIndex.buildMatchExpression("din"));
+        assertEquals("\"team*\" \"lunch*\"",
+            EventSearchIndex.buildMatchExpression("  team \t lunch "));
+        // Quotes and operators can't change the meaning of the expression.
+        assertEquals("\"a*\" \"OR*\" \"b*\"",
+            EventSearchIndex.buildMatchExpression("a \"OR\" b"));
+        assertEquals("\"fish*\" \"chips*\"",
+            EventSearchIndex.buildMatchExpression("fish & chips"));
+        assertNull(EventSearchIndex.buildMatchExpression(" \" - "));
+        assertNull(EventSearchIndex.buildMatchExpression(null));
+    }
+
+    @SmallTest
+    public void testHash() {
+        long hash = EventSearchIndex.hash("Lunch", null, "Cafe");
+        assertEquals(hash, EventSearchIndex.hash("Lunch", null, "Cafe"));
+        // Moving text from one column to another is a change.
+        assertFalse(hash == EventSearchIndex.hash("Lunch", "Cafe", null));
+        assertFalse(hash == EventSearchIndex.hash("Lunch", "", "Cafe"));
+    }
+
+    @SmallTest
+    public void testUpdateAndMatch() throws InterruptedException {
+        mMockProvider.put(1, "Team lunch", null, "Cafe");
+        mMockProvider.put(2, "Dentist", "Bring the forms", null);
+        mMockProvider.put(3, "Dinner", null, null);
+        assertFalse(mIndex.isReady());
+        assertNull(mIndex.match("lunch"));
+
+        // The first update reads every event.
+        update();
+        assertTrue(mIndex.isReady());
+        assertEquals(3, mIndex.getEventCount());
+        assertEquals(1, mMockProvider.mDescriptionQueries.size());
+        assertFalse(mMockProvider.mDescriptionQueries.get(0).contains(" IN ("));
+        assertMatches("lun", 1);
+        assertMatches("team LUNCH", 1);
+        assertMatches("cafe", 1);
+        assertMatches("forms", 2);
+        assertMatches("d", 2, 3);
+        // Only the starts of words match.
+        assertMatches("ner");
+
+        // Later ones only read the events which have changed.
+        mMockProvider.put(3, "Supper", null, null);
+        mMockProvider.put(4, "Dance class", null, "Hall");
+        mMockProvider.sync();
+        update();
+        assertEquals(2, mMockProvider.mDescriptionQueries.size());
+        assertTrue(mMockProvider.mDescriptionQueries.get(1).contains(" IN (3,4)"));
+        assertEquals(4, mIndex.getEventCount());
+        assertMatches("d", 2, 4);
+        assertMatches("sup", 3);
+
+        // A change to only the description is seen because it sets DIRTY,
+        // even if the calendar hasn't been synced.
+        mMockProvider.put(2, "Dentist", "Bring the passport", null);
+        mMockProvider.mEvents.get(2L).put(Events.DIRTY, 1);
+        update();
+        assertTrue(mMockProvider.mDescriptionQueries.get(2).contains(" IN (2)"));
+        assertMatches("pass", 2);
+        assertMatches("forms");
+
+        // A sync adapter uploads it, and removes another event.
+        mMockProvider.mEvents.get(2L).put(Events.DIRTY, 0);
+        mMockProvider.mEvents.remove(1L);
+        mMockProvider.sync();
+        update();
+        assertTrue(mMockProvider.mDescriptionQueries.get(3).contains(" IN (1,2)"));
+        assertEquals(3, mIndex.getEventCount());
+        assertMatches("pass", 2);
+        assertMatches("lunch");
+
+        // Nothing has changed, so nothing is read.
+        update();
+        assertEquals(4, mMockProvider.mDescriptionQueries.size());
+
+        // A sync adapter can change only the description, without DIRTY.
+        mMockProvider.mEvents.get(2L).put(Events.DESCRIPTION, "Bring the visa");
+        mMockProvider.sync();
+        update();
+        assertEquals(5, mMockProvider.mDescriptionQueries.size());
+        assertTrue(mMockProvider.mDescriptionQueries.get(4).contains(" IN (2)"));
+        assertMatches("visa", 2);
+        assertMatches("pass");
+
+        // Only the first scan read every event.
+        assertEquals(1, Collections.frequency(mMockProvider.mScanQueries, Events.DELETED + "=0"));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import android.text.format.DateUtils;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link EventStore}.
+ */
+public class EventStoreTest extends TestCase {
+
+    private static final int DAY = 2440588; // Jan 1st, 1970
+
+    private static Event makeEvent(long id, int startMinute, int minutes, boolean allDay) {
+        Event e = new Event();
+        e.id = id;
+        e.title = "event " + id;
+        e.location = "room " + (id % 3);
+        e.color = 0xff000000 + (int)id;
+        e.allDay = allDay;
+        e.hasAlarm = (id & 1) != 0;
+        e.startMillis = startMinute * DateUtils.MINUTE_IN_MILLIS;
+        e.endMillis = e.startMillis + minutes * DateUtils.MINUTE_IN_MILLIS;
+        e.startDay = DAY + startMinute / (24 * 60);
+        e.endDay = DAY + (startMinute + minutes - 1) / (24 * 60);
+        e.startTime = startMinute % (24 * 60);
+        e.endTime = (startMinute + minutes) % (24 * 60);
+        return e;
+    }
+
+    private static ArrayList<Event> makeEvents() {
+        ArrayList<Event> events = new ArrayList<>();
+        events.add(makeEvent(1, 0, 24 * 60, true));
+        events.add(makeEvent(2, 9 * 60, 60, false));
+        events.add(makeEvent(3, 9 * 60, 30, false));
+        events.add(makeEvent(4, 9 * 60 + 15, 60, false));
+        events.add(makeEvent(5, 11 * 60, 30, false));
+        events.add(makeEvent(6, 12 * 60, 3 * 24 * 60, false));
+        events.get(4).untitled = true;
+        return events;
+    }
+
+    @SmallTest
+    public void testFlyweight() {
+        ArrayList<Event> events = makeEvents();
+        EventStore store = new EventStore(1);
+        for (Event e : events) {
+            store.add(e);
+        }
+        assertEquals(events.size(), store.size());
+        Event flyweight = new Event();
+        for (int i = 0; i < events.size(); ++i) {
+            Event e = events.get(i);
+            assertSame(flyweight, store.getEvent(i, flyweight));
+            assertEquals(e.id, flyweight.id);
+            assertEquals(e.title, flyweight.title);
+            assertEquals(e.location, flyweight.location);
+            assertEquals(e.color, flyweight.color);
+            assertEquals(e.startMillis, flyweight.startMillis);
+            assertEquals(e.endMillis, flyweight.endMillis);
+            assertEquals(e.hasAlarm, flyweight.hasAlarm);
+            assertEquals(e.untitled, flyweight.untitled);
+            assertEquals(e.drawAsAllday(), store.drawAsAllday(i));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link Fingerprint}.
+ */
+public class FingerprintTest extends TestCase {
+
+    private static long hash(String... values) {
+        long hash = Fingerprint.START;
+        for (String value : values) {
+            hash = Fingerprint.add(hash, value);
+        }
+        return hash;
+    }
+
+    @SmallTest
+    public void testStrings() {
+        assertEquals(hash("Lunch", "Cafe"), hash("Lunch", "Cafe"));
+        assertEquals(hash("Lunch"), Fingerprint.add(Fingerprint.START,
+            new StringBuilder("Lunch")));
+        assertFalse(hash((String) null) == hash(""));
+        assertFalse(hash("ab", "c") == hash("a", "bc"));
+        assertFalse(hash("Lunch", null) == hash(null, "Lunch"));
+        // These have the same String.hashCode()
+        assertFalse(hash("Aa") == hash("BB"));
+        // These only differ in the high byte of a char
+        assertFalse(hash("Ł") == hash("A"));
+    }
+
+    @SmallTest
+    public void testNumbers() {
+        long hash = Fingerprint.add(Fingerprint.START, 1L);
+        assertFalse(hash == Fingerprint.add(Fingerprint.START, 1L << 32));
+        assertFalse(hash == Fingerprint.add(Fingerprint.START, -1L));
+        assertFalse(Fingerprint.START == Fingerprint.add(Fingerprint.START, 0L));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.agenda;
+
+import android.database.MatrixCursor;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.text.format.DateUtils;
+import android.text.format.Time;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link AgendaPage}.
+ */
+public class AgendaPageTest extends TestCase {
+
+    private static final int SUNDAY = 2440591; // Jan 4th, 1970
+    private static final int EPOCH_DAY = 2440588; // Jan 1st, 1970
+    private static final String[] COLUMNS = {
+        "_id", "title", "eventLocation", "allDay", "hasAlarm", "displayColor", "rrule",
+        "begin", "end", "event_id", "startDay", "endDay", "selfAttendeeStatus", "organizer",
+        "ownerAccount", "canOrganizerRespond", "eventTimezone"
+    };
+
+    private static long millis(int julianDay, int hour) {
+        return (julianDay - EPOCH_DAY) * DateUtils.DAY_IN_MILLIS
+            + hour * DateUtils.HOUR_IN_MILLIS;
+    }
+
+    private static void addInstance(MatrixCursor cursor, long id, int startDay, int startHour,
+                                    int endDay, int endHour) {
+        cursor.addRow(new Object[] {
+            id, "event " + id, null, 0, 0, 0xFF64B5F6, null,
+            millis(startDay, startHour), millis(endDay, endHour), id + 100, startDay, endDay,
+            0, "me", "me", 1, Time.TIMEZONE_UTC
+        });
+    }
+
+    @SmallTest
+    public void testRows() {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        addInstance(cursor, 1, SUNDAY, 9, SUNDAY, 10);
+        // Runs from Sunday evening to Monday morning
+        addInstance(cursor, 2, SUNDAY, 20, SUNDAY + 1, 8);
+        addInstance(cursor, 3, SUNDAY + 3, 12, SUNDAY + 3, 13);
+        AgendaPage page = AgendaPage.fromCursor(cursor, SUNDAY, SUNDAY + 6, Time.TIMEZONE_UTC);
+        cursor.close();
+
+        assertEquals(3, page.size());
+        assertEquals("event 2", page.getTitle(1));
+        assertEquals(102, page.getEventId(1));
+        assertEquals(2, page.indexOfInstance(3));
+        assertEquals(-1, page.indexOfInstance(4));
+
+        ArrayList<AgendaByDayAdapter.RowInfo> rows = page.getRows();
+        assertEquals(7, rows.size());
+        assertEquals(SUNDAY, rows.get(0).mDay);
+        assertEquals(0, rows.get(1).mPosition);
+        assertEquals(1, rows.get(2).mPosition);
+        assertEquals(millis(SUNDAY + 1, 0), rows.get(2).mEventEndTimeMilli);
+        // The second day of event 2 gets its own header.
+        assertEquals(SUNDAY + 1, rows.get(3).mDay);
+        assertEquals(1, rows.get(4).mPosition);
+        assertEquals(millis(SUNDAY + 1, 0), rows.get(4).mEventStartTimeMilli);
+        assertEquals(SUNDAY + 3, rows.get(5).mDay);
+        assertEquals(2, rows.get(6).mPosition);
+    }
+
+    @SmallTest
+    public void testClippedToRange() {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        // Started before the page's range
+        addInstance(cursor, 1, SUNDAY - 2, 9, SUNDAY + 1, 10);
+        AgendaPage page = AgendaPage.fromCursor(cursor, SUNDAY, SUNDAY, Time.TIMEZONE_UTC);
+        cursor.close();
+
+        ArrayList<AgendaByDayAdapter.RowInfo> rows = page.getRows();
+        assertEquals(2, rows.size());
+        assertEquals(SUNDAY, rows.get(0).mDay);
+        assertEquals(millis(SUNDAY, 0), rows.get(1).mEventStartTimeMilli);
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.agenda;
+
+import android.database.MatrixCursor;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.text.format.DateUtils;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.android.calendar.Utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares {@link AgendaByDayAdapter#calculateDays} with the old version,
+ * which rescanned a linked list of the running multiple-day events for
+ * every day and redid the Time calculations for every row, on a two year
+ * agenda with many multiple-week events. It also checks that they make the
+ * same rows.
+ *
+ * Run it with:
+ * "adb shell am instrument -w -e class com.android.calendar.agenda.CalculateDaysBenchmark
+ *          com.android.calendar.tests/android.test.InstrumentationTestRunner"
+ * and look for the results in the log under the tag CalculateDaysBenchmark.
+ */
+public class CalculateDaysBenchmark extends TestCase {
+    private static final String TAG = "CalculateDaysBenchmark";
+    private static final String TIME_ZONE = "Europe/London";
+    private static final int FIRST_DAY = 2457024; // Jan 1st, 2015
+    private static final int DAYS = 2 * 365;
+    private static final int WARMUP_RUNS = 3;
+    private static final int RUNS = 10;
+    private static final String[] COLUMNS = {
+        "_id", "title", "eventLocation", "allDay", "hasAlarm", "displayColor", "rrule",
+        "begin", "end", "event_id", "startDay", "endDay", "selfAttendeeStatus", "organizer",
+        "ownerAccount", "canOrganizerRespond", "eventTimezone"
+    };
+
+    private static final int TYPE_DAY = 0;
+    private static final int TYPE_MEETING = 1;
+
+    // Makes two years of instances, sorted as the agenda query sorts them.
+    // Each day has a few short events, and about one day in three starts an
+    // event lasting one to four weeks. Some of both are all day events.
+    private static AgendaPage makePage() {
+        Random random = new Random(2468);
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        Time time = new Time(TIME_ZONE);
+        long id = 0;
+        for (int day = FIRST_DAY; day < FIRST_DAY + DAYS; ++day) {
+            long midnight = time.setJulianDay(day);
+            long utcMidnight = (day - 2440588) * DateUtils.DAY_IN_MILLIS;
+            if (random.nextInt(3) == 0) {
+                int weeks = 1 + random.nextInt(4);
+                boolean allDay = random.nextBoolean();
+                long begin = allDay ? utcMidnight
+                    : midnight + (8 + random.nextInt(10)) * DateUtils.HOUR_IN_MILLIS;
+                long end = allDay ? utcMidnight + weeks * DateUtils.WEEK_IN_MILLIS
+                    : begin + weeks * DateUtils.WEEK_IN_MILLIS;
+                int endDay = allDay ? day + weeks * 7 - 1 : day + weeks * 7;
+                addInstance(cursor, ++id, allDay, begin, end, day, endDay);
+            }
+            if (random.nextInt(10) == 0) {
+                addInstance(cursor, ++id, true, utcMidnight,
+                    utcMidnight + DateUtils.DAY_IN_MILLIS, day, day);
+            }
+            int events = random.nextInt(4);
+            long begin = midnight + 8 * DateUtils.HOUR_IN_MILLIS;
+            for (int i = 0; i < events; ++i) {
+                begin += (1 + random.nextInt(3)) * DateUtils.HOUR_IN_MILLIS;
+                addInstance(cursor, ++id, false, begin,
+                    begin + DateUtils.HOUR_IN_MILLIS, day, day);
+            }
+        }
+        AgendaPage page =
+            AgendaPage.fromCursor(cursor, FIRST_DAY, FIRST_DAY + DAYS - 1, TIME_ZONE);
+        cursor.close();
+        return page;
+    }
+
+    private static void addInstance(MatrixCursor cursor, long id, boolean allDay, long begin,
+                                    long end, int startDay, int endDay) {
+        cursor.addRow(new Object[] {
+            id, "event " + id, null, allDay ? 1 : 0, 0, 0xFF81C784, null,
+            begin, end, id, startDay, endDay, 0, "me", "me", 1, TIME_ZONE
+        });
+    }
+
+    private static class LegacyMultipleDayInfo {
+        final int mPosition;
+        final int mEndDay;
+        final long mEventId;
+        final long mInstanceId;
+        final boolean mAllDay;
+        long mEventStartTimeMilli;
+        long mEventEndTimeMilli;
+
+        LegacyMultipleDayInfo(int position, int endDay, long id, long startTime, long endTime,
+                              long instanceId, boolean allDay) {
+            mPosition = position;
+            mEndDay = endDay;
+            mEventId = id;
+            mEventStartTimeMilli = startTime;
+            mEventEndTimeMilli = endTime;
+            mInstanceId = instanceId;
+            mAllDay = allDay;
+        }
+    }
+
+    // The old row calculation, for comparison
+    private static ArrayList<AgendaByDayAdapter.RowInfo> legacyCalculateDays(AgendaPage page,
+            String timeZone) {
+        ArrayList<AgendaByDayAdapter.RowInfo> rowInfo =
+            new ArrayList<AgendaByDayAdapter.RowInfo>();
+        int prevStartDay = -1;
+        Time tempTime = new Time(timeZone);
+        LinkedList<LegacyMultipleDayInfo> multipleDayList =
+            new LinkedList<LegacyMultipleDayInfo>();
+        for (int position = 0; position < page.size(); position++) {
+            int startDay = page.getStartDay(position);
+            long id = page.getEventId(position);
+            long startTime = page.getBegin(position);
+            long endTime = page.getEnd(position);
+            long instanceId = page.getInstanceId(position);
+            boolean allDay = page.isAllDay(position);
+            if (allDay) {
+                startTime = Utils.convertAlldayUtcToLocal(tempTime, startTime, timeZone);
+                endTime = Utils.convertAlldayUtcToLocal(tempTime, endTime, timeZone);
+            }
+            startDay = Math.max(startDay, page.start);
+            long adapterStartTime = tempTime.setJulianDay(startDay);
+            startTime = Math.max(startTime, adapterStartTime);
+
+            if (startDay != prevStartDay) {
+                if (prevStartDay == -1) {
+                    rowInfo.add(new AgendaByDayAdapter.RowInfo(TYPE_DAY, startDay));
+                } else {
+                    boolean dayHeaderAdded = false;
+                    for (int currentDay = prevStartDay + 1; currentDay <= startDay; currentDay++) {
+                        dayHeaderAdded = false;
+                        Iterator<LegacyMultipleDayInfo> iter = multipleDayList.iterator();
+                        while (iter.hasNext()) {
+                            LegacyMultipleDayInfo info = iter.next();
+                            if (info.mEndDay < currentDay) {
+                                iter.remove();
+                                continue;
+                            }
+                            if (!dayHeaderAdded) {
+                                rowInfo.add(new AgendaByDayAdapter.RowInfo(TYPE_DAY, currentDay));
+                                dayHeaderAdded = true;
+                            }
+                            long nextMidnight = Utils.getNextMidnight(tempTime,
+                                info.mEventStartTimeMilli, timeZone);
+                            long infoEndTime = (info.mEndDay == currentDay) ?
+                                info.mEventEndTimeMilli : nextMidnight;
+                            rowInfo.add(new AgendaByDayAdapter.RowInfo(TYPE_MEETING, currentDay,
+                                info.mPosition, info.mEventId, info.mEventStartTimeMilli,
+                                infoEndTime, info.mInstanceId, info.mAllDay));
+                            info.mEventStartTimeMilli = nextMidnight;
+                        }
+                    }
+                    if (!dayHeaderAdded) {
+                        rowInfo.add(new AgendaByDayAdapter.RowInfo(TYPE_DAY, startDay));
+                    }
+                }
+                prevStartDay = startDay;
+            }
+
+            int endDay = Math.min(page.getEndDay(position), page.end);
+            if (endDay > startDay) {
+                long nextMidnight = Utils.getNextMidnight(tempTime, startTime, timeZone);
+                multipleDayList.add(new LegacyMultipleDayInfo(position, endDay, id, nextMidnight,
+                    endTime, instanceId, allDay));
+                rowInfo.add(new AgendaByDayAdapter.RowInfo(TYPE_MEETING, startDay, position, id,
+                    startTime, nextMidnight, instanceId, allDay));
+            } else {
+                rowInfo.add(new AgendaByDayAdapter.RowInfo(TYPE_MEETING, startDay, position, id,
+                    startTime, endTime, instanceId, allDay));
+            }
+        }
+
+        if (prevStartDay > 0) {
+            for (int currentDay = prevStartDay + 1; currentDay <= page.end; currentDay++) {
+                boolean dayHeaderAdded = false;
+                Iterator<LegacyMultipleDayInfo> iter = multipleDayList.iterator();
+                while (iter.hasNext()) {
+                    LegacyMultipleDayInfo info = iter.next();
+                    if (info.mEndDay < currentDay) {
+                        iter.remove();
+                        continue;
+                    }
+                    if (!dayHeaderAdded) {
+                        rowInfo.add(new AgendaByDayAdapter.RowInfo(TYPE_DAY, currentDay));
+                        dayHeaderAdded = true;
+                    }
+                    long nextMidnight = Utils.getNextMidnight(tempTime,
+                        info.mEventStartTimeMilli, timeZone);
+                    long infoEndTime =
+                        (info.mEndDay == currentDay) ? info.mEventEndTimeMilli : nextMidnight;
+                    rowInfo.add(new AgendaByDayAdapter.RowInfo(TYPE_MEETING, currentDay,
+                        info.mPosition, info.mEventId, info.mEventStartTimeMilli, infoEndTime,
+                        info.mInstanceId, info.mAllDay));
+                    info.mEventStartTimeMilli = nextMidnight;
+                }
+            }
+        }
+        return rowInfo;
+    }
+
+    private static void assertSameRows(ArrayList<AgendaByDayAdapter.RowInfo> expected,
+                                       ArrayList<AgendaByDayAdapter.RowInfo> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            AgendaByDayAdapter.RowInfo e = expected.get(i);
+            AgendaByDayAdapter.RowInfo a = actual.get(i);
+            assertEquals(e.mType, a.mType);
+            assertEquals(e.mDay, a.mDay);
+            assertEquals(e.mPosition, a.mPosition);
+            assertEquals(e.mEventId, a.mEventId);
+            assertEquals(e.mEventStartTimeMilli, a.mEventStartTimeMilli);
+            assertEquals(e.mEventEndTimeMilli, a.mEventEndTimeMilli);
+            assertEquals(e.mInstanceId, a.mInstanceId);
+            assertEquals(e.mAllDay, a.mAllDay);
+        }
+    }
+
+    // Returns the average time in microseconds to work out the rows.
+    private static long time(AgendaPage page, boolean legacy) {
+        long start = 0;
+        for (int i = 0; i < WARMUP_RUNS + RUNS; ++i) {
+            if (i == WARMUP_RUNS) {
+                System.gc();
+                start = System.nanoTime();
+            }
+            if (legacy) {
+                legacyCalculateDays(page, TIME_ZONE);
+            } else {
+                AgendaByDayAdapter.calculateDays(page, TIME_ZONE);
+            }
+        }
+        return (System.nanoTime() - start) / RUNS / 1000;
+    }
+
+    @LargeTest
+    public void testTwoYears() {
+        AgendaPage page = makePage();
+        ArrayList<AgendaByDayAdapter.RowInfo> rows = page.getRows();
+        assertSameRows(legacyCalculateDays(page, TIME_ZONE), rows);
+        long legacy = time(page, true);
+        long current = time(page, false);
+        Log.i(TAG, page.size() + " events, " + rows.size() + " rows, linked list: " + legacy
+            + "us, sorted spans: " + current + "us");
+    }
+}
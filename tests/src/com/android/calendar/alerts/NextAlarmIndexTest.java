@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.alerts;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import android.util.LongSparseArray;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link NextAlarmIndex.AlarmHeap}.
+ */
+public class NextAlarmIndexTest extends TestCase {
+
+    private static LongSparseArray<NextAlarmIndex.EventState> makeEvents(int count) {
+        LongSparseArray<NextAlarmIndex.EventState> events = new LongSparseArray<>();
+        for (int id = 1; id <= count; ++id) {
+            NextAlarmIndex.EventState state = new NextAlarmIndex.EventState();
+            state.version = 1;
+            events.put(id, state);
+        }
+        return events;
+    }
+
+    @SmallTest
+    public void testOrder() {
+        LongSparseArray<NextAlarmIndex.EventState> events = makeEvents(10);
+        NextAlarmIndex.AlarmHeap heap = new NextAlarmIndex.AlarmHeap();
+        Random random = new Random(1357);
+        for (int i = 0; i < 1000; ++i) {
+            heap.add(random.nextInt(100000), 1 + random.nextInt(10), 0, 1);
+        }
+        long previous = -1;
+        while (true) {
+            long next = heap.next(previous, events);
+            if (next == Long.MAX_VALUE) {
+                break;
+            }
+            assertTrue(next > previous);
+            previous = next;
+        }
+        assertTrue(heap.isEmpty());
+    }
+
+    @SmallTest
+    public void testStaleAlarms() {
+        LongSparseArray<NextAlarmIndex.EventState> events = makeEvents(3);
+        NextAlarmIndex.AlarmHeap heap = new NextAlarmIndex.AlarmHeap();
+        heap.add(100, 1, 1000, 1);
+        heap.add(200, 2, 2000, 1);
+        heap.add(300, 3, 3000, 1);
+        // Event 1 has changed, and event 2 has gone.
+        events.get(1).version = 2;
+        events.remove(2);
+        heap.add(400, 1, 1000, 2);
+        assertEquals(300, heap.next(0, events));
+        assertEquals(3, heap.peekEventId());
+        // Alarms which have passed are dropped as well.
+        assertEquals(400, heap.next(300, events));
+        assertEquals(1, heap.peekEventId());
+    }
+
+    @SmallTest
+    public void testCompact() {
+        LongSparseArray<NextAlarmIndex.EventState> events = makeEvents(4);
+        NextAlarmIndex.AlarmHeap heap = new NextAlarmIndex.AlarmHeap();
+        for (int id = 1; id <= 4; ++id) {
+            heap.add(100 * id, id, 0, 1);
+        }
+        events.remove(1);
+        heap.compact(events);
+        // One stale alarm in four isn't worth the work.
+        assertEquals(4, heap.size());
+        events.remove(2);
+        events.remove(3);
+        heap.compact(events);
+        assertEquals(1, heap.size());
+        assertEquals(400, heap.next(0, events));
+    }
+
+    @SmallTest
+    public void testReadWrite() throws IOException {
+        LongSparseArray<NextAlarmIndex.EventState> events = makeEvents(5);
+        NextAlarmIndex.AlarmHeap heap = new NextAlarmIndex.AlarmHeap();
+        for (int i = 100; i > 0; --i) {
+            heap.add(i * 10, 1 + i % 5, i, 1);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        heap.write(new DataOutputStream(bytes));
+        NextAlarmIndex.AlarmHeap copy = new NextAlarmIndex.AlarmHeap();
+        copy.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(100, copy.size());
+        for (int i = 1; i <= 100; ++i) {
+            assertEquals(i * 10, copy.next(i * 10 - 1, events));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.alerts;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link NotificationRefreshScheduler}.
+ */
+public class NotificationRefreshSchedulerTest extends TestCase {
+    // Much shorter than the real delays, so that the test is quick
+    private static final long DEBOUNCE_MS = 20;
+    private static final long MAX_LATENCY_MS = 100;
+
+    @SmallTest
+    public void testRunTime() {
+        // A single request waits for the debounce time.
+        assertEquals(1000 + NotificationRefreshScheduler.DEBOUNCE_MS,
+            NotificationRefreshScheduler.getRunTime(1000, 1000));
+        // Each request in a burst puts it off again...
+        assertEquals(4000 + NotificationRefreshScheduler.DEBOUNCE_MS,
+            NotificationRefreshScheduler.getRunTime(1000, 4000));
+        // ...but not beyond the latency bound.
+        assertEquals(1000 + NotificationRefreshScheduler.MAX_LATENCY_MS,
+            NotificationRefreshScheduler.getRunTime(1000,
+                1000 + NotificationRefreshScheduler.MAX_LATENCY_MS));
+    }
+
+    @SmallTest
+    public void testCoalesce() throws InterruptedException {
+        HandlerThread thread = new HandlerThread("NotificationRefreshSchedulerTest");
+        thread.start();
+        final Handler handler = new Handler(thread.getLooper());
+        final CountDownLatch done = new CountDownLatch(1);
+        final int[] refreshes = new int[1];
+        final int[] requests = new int[1];
+        final boolean[] pending = new boolean[1];
+        final NotificationRefreshScheduler[] scheduler = new NotificationRefreshScheduler[1];
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                scheduler[0] = new NotificationRefreshScheduler(handler, new Runnable() {
+                    @Override
+                    public void run() {
+                        ++refreshes[0];
+                        scheduler[0].onRefreshed();
+                        done.countDown();
+                    }
+                }, DEBOUNCE_MS, MAX_LATENCY_MS);
+                int before = NotificationRefreshScheduler.getRequestCount();
+                for (int i = 0; i < 20; ++i) {
+                    scheduler[0].request();
+                }
+                pending[0] = scheduler[0].isPending();
+                requests[0] = NotificationRefreshScheduler.getRequestCount() - before;
+            }
+        });
+        // Allow for a slow test device
+        assertTrue(done.await(10 * MAX_LATENCY_MS, TimeUnit.MILLISECONDS));
+        // Give any extra refresh time to run.
+        Thread.sleep(2 * DEBOUNCE_MS);
+        assertTrue(pending[0]);
+        assertEquals(20, requests[0]);
+        assertEquals(1, refreshes[0]);
+        thread.quit();
+    }
+}
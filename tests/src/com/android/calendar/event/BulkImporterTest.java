@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.event;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.provider.CalendarContract;
+import android.provider.CalendarContract.Calendars;
+import android.provider.CalendarContract.Events;
+import android.test.AndroidTestCase;
+import android.test.IsolatedContext;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.text.format.DateUtils;
+
+import com.android.calendar.CalendarEventModel;
+import com.android.calendar.icalendar.VCalendarReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+/**
+ * Unit tests for {@link BulkImporter}.
+ */
+public class BulkImporterTest extends AndroidTestCase {
+    private static final long CALENDAR_ID = 7;
+    private static final String OWNER = "owner@example.com";
+
+    private MockProvider mMockProvider;
+    private IsolatedContext mIsolatedContext;
+
+    private static class MockProvider extends MockContentProvider {
+        final ArrayList<String> mUids = new ArrayList<>();
+        final ArrayList<ArrayList<ContentProviderOperation>> mBatches = new ArrayList<>();
+        // A batch fails at the event with this UID, after committing the
+        // events before it at a yield point
+        String mBadUid;
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection,
+                            String[] selectionArgs, String sortOrder) {
+            if (Calendars.CONTENT_URI.equals(uri)) {
+                MatrixCursor cursor = new MatrixCursor(projection);
+                Object[] row = new Object[projection.length];
+                row[EditEventHelper.CALENDARS_INDEX_ID] = CALENDAR_ID;
+                row[EditEventHelper.CALENDARS_INDEX_OWNER_ACCOUNT] = OWNER;
+                row[EditEventHelper.CALENDARS_INDEX_ACCOUNT_NAME] = OWNER;
+                row[EditEventHelper.CALENDARS_INDEX_ACCOUNT_TYPE] = "com.example";
+                cursor.addRow(row);
+                return cursor;
+            } else if (Events.CONTENT_URI.equals(uri)) {
+                assertEquals(Long.toString(CALENDAR_ID), selectionArgs[0]);
+                MatrixCursor cursor = new MatrixCursor(projection);
+                for (String uid : mUids) {
+                    cursor.addRow(new Object[] {uid});
+                }
+                return cursor;
+            } else {
+                return super.query(uri, projection, selection, selectionArgs, sortOrder);
+            }
+        }
+
+        @Override
+        public ContentProviderResult[] applyBatch(
+            ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException
+        {
+            mBatches.add(new ArrayList<>(operations));
+            ArrayList<String> uids = new ArrayList<>();
+            for (ContentProviderOperation op : operations) {
+                if (Events.CONTENT_URI.equals(op.getUri())) {
+                    String uid = getValues(op).getAsString(Events.UID_2445);
+                    if (uid.equals(mBadUid)) {
+                        mUids.addAll(uids);
+                        throw new OperationApplicationException("bad event");
+                    }
+                    uids.add(uid);
+                }
+            }
+            mUids.addAll(uids);
+            return new ContentProviderResult[operations.size()];
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        mMockProvider = new MockProvider();
+        MockContentResolver mockResolver = new MockContentResolver();
+        mockResolver.addProvider(CalendarContract.AUTHORITY, mMockProvider);
+        mIsolatedContext = new IsolatedContext(mockResolver, mContext);
+    }
+
+    // Reads the event from iCalendar text, as an import does, so that
+    // only the event's own times are set.
+    private static CalendarEventModel makeEvent(String uid, String title, String times)
+        throws IOException
+    {
+        StringBuilder sb = new StringBuilder("BEGIN:VCALENDAR\nBEGIN:VEVENT\n");
+        if (uid != null) {
+            sb.append("UID:").append(uid).append('\n');
+        }
+        if (title != null) {
+            sb.append("SUMMARY:").append(title).append('\n');
+        }
+        sb.append(times).append("END:VEVENT\nEND:VCALENDAR\n");
+        VCalendarReader reader = new VCalendarReader(new StringReader(sb.toString()));
+        CalendarEventModel model = reader.nextEvent();
+        reader.close();
+        return model;
+    }
+
+    private static CalendarEventModel makeEvent(String uid, String title) throws IOException {
+        return makeEvent(uid, title, "DTSTART:20231114T221320Z\nDURATION:PT1H\n");
+    }
+
+    private static ContentValues getValues(ContentProviderOperation op) {
+        return op.resolveValueBackReferences(new ContentProviderResult[0], 0);
+    }
+
+    @SmallTest
+    public void testSkipsDuplicates() throws IOException {
+        mMockProvider.mUids.add("existing");
+        BulkImporter importer = new BulkImporter(mIsolatedContext);
+        assertTrue(importer.start());
+        importer.add(makeEvent("existing", "already there"));
+        importer.add(makeEvent("new", "first"));
+        importer.add(makeEvent("new", "repeated"));
+        importer.add(makeEvent(null, "no uid"));
+        importer.add(makeEvent("empty", null));
+        importer.finish();
+
+        assertEquals(2, importer.getImportedCount());
+        assertEquals(3, importer.getSkippedCount());
+        assertEquals(0, importer.getFailedCount());
+        assertEquals(1, mMockProvider.mBatches.size());
+        ContentProviderOperation insert = mMockProvider.mBatches.get(0).get(0);
+        assertEquals(Events.CONTENT_URI, insert.getUri());
+        assertFalse(insert.isYieldAllowed());
+    }
+
+    @SmallTest
+    public void testBatches() throws IOException {
+        BulkImporter importer = new BulkImporter(mIsolatedContext);
+        assertTrue(importer.start());
+        int events = BulkImporter.EVENTS_PER_BATCH + 1;
+        for (int i = 0; i < events; ++i) {
+            importer.add(makeEvent("uid" + i, "event " + i));
+        }
+        assertEquals(1, mMockProvider.mBatches.size());
+        importer.finish();
+        assertEquals(events, importer.getImportedCount());
+        assertEquals(2, mMockProvider.mBatches.size());
+
+        // Each batch must be complete in itself, with a yield point before
+        // every event but the first.
+        for (ArrayList<ContentProviderOperation> batch : mMockProvider.mBatches) {
+            boolean first = true;
+            for (ContentProviderOperation op : batch) {
+                if (Events.CONTENT_URI.equals(op.getUri())) {
+                    assertEquals(!first, op.isYieldAllowed());
+                    first = false;
+                } else {
+                    assertFalse(op.isYieldAllowed());
+                }
+            }
+        }
+    }
+
+    @SmallTest
+    public void testFailedBatch() throws IOException {
+        mMockProvider.mBadUid = "bad";
+        BulkImporter importer = new BulkImporter(mIsolatedContext);
+        assertTrue(importer.start());
+        importer.add(makeEvent("uid0", "committed"));
+        importer.add(makeEvent("uid1", "committed"));
+        importer.add(makeEvent("bad", "fails"));
+        importer.add(makeEvent(null, "no uid"));
+        importer.add(makeEvent("uid4", "after"));
+        importer.finish();
+
+        // The events before the bad one aren't written again, and the
+        // others are written one at a time.
+        assertEquals(4, importer.getImportedCount());
+        assertEquals(1, importer.getFailedCount());
+        assertEquals(4, mMockProvider.mBatches.size());
+        assertEquals(4, mMockProvider.mUids.size());
+
+        // The failed event can be imported again.
+        mMockProvider.mBadUid = null;
+        importer.add(makeEvent("bad", "fixed"));
+        importer.add(makeEvent("uid1", "repeated"));
+        importer.finish();
+        assertEquals(5, importer.getImportedCount());
+        assertEquals(1, importer.getSkippedCount());
+    }
+
+    @SmallTest
+    public void testTimes() throws IOException {
+        BulkImporter importer = new BulkImporter(mIsolatedContext);
+        assertTrue(importer.start());
+        importer.add(makeEvent("duration", "an hour long"));
+        importer.add(makeEvent("end", "half an hour long",
+            "DTSTART:20231114T221320Z\nDTEND:20231114T224320Z\n"));
+        importer.finish();
+        assertEquals(2, importer.getImportedCount());
+
+        long start = 1700000000000L;
+        ArrayList<ContentValues> events = new ArrayList<>();
+        for (ContentProviderOperation op : mMockProvider.mBatches.get(0)) {
+            if (Events.CONTENT_URI.equals(op.getUri())) {
+                events.add(getValues(op));
+            }
+        }
+        assertEquals(2, events.size());
+        assertEquals(start, (long) events.get(0).getAsLong(Events.DTSTART));
+        assertEquals(start + DateUtils.HOUR_IN_MILLIS,
+            (long) events.get(0).getAsLong(Events.DTEND));
+        assertEquals(start, (long) events.get(1).getAsLong(Events.DTSTART));
+        assertEquals(start + 30 * DateUtils.MINUTE_IN_MILLIS,
+            (long) events.get(1).getAsLong(Events.DTEND));
+    }
+
+    @SmallTest
+    public void testRate() {
+        assertEquals(2000, BulkImporter.getRate(10000, 5000));
+        assertEquals(5000, BulkImporter.getRate(5, 0));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.icalendar;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link ContentLine} and the escaping and folding in
+ * {@link IcalendarUtils}.
+ */
+public class ContentLineTest extends TestCase {
+
+    @SmallTest
+    public void testSplit() {
+        ContentLine cl = new ContentLine();
+        cl.set("attendee;CN=\"Smith; John\";partstat=ACCEPTED:MAILTO:john@example.com");
+        assertSame("ATTENDEE", cl.getName());
+        assertEquals("john@example.com", cl.getAddressValue());
+        assertEquals("MAILTO:john@example.com", cl.getValue());
+        assertTrue(cl.nextParameter());
+        assertSame("CN", cl.getParameterName());
+        assertEquals("Smith; John", cl.getParameterValue());
+        assertTrue(cl.nextParameter());
+        assertSame("PARTSTAT", cl.getParameterName());
+        assertEquals("ACCEPTED", cl.getParameterValue());
+        assertFalse(cl.nextParameter());
+        assertEquals("ACCEPTED", cl.getParameter("PARTSTAT"));
+        assertNull(cl.getParameter("ROLE"));
+    }
+
+    @SmallTest
+    public void testOddLines() {
+        ContentLine cl = new ContentLine();
+        cl.set("X-WR-CALNAME:Home");
+        assertEquals("X-WR-CALNAME", cl.getName());
+        assertEquals("Home", cl.getValue());
+        cl.set("no colon here");
+        assertEquals("", cl.getName());
+        cl.set("DTSTART;VALUE;TZID=Europe/London:20240101T090000");
+        assertEquals("Europe/London", cl.getParameter("TZID"));
+        assertEquals("20240101T090000", cl.getValue());
+        cl.set("END:vevent");
+        assertTrue(cl.valueEqualsIgnoreCase("VEVENT"));
+        assertFalse(cl.valueEqualsIgnoreCase("VALARM"));
+        cl.set("TRIGGER:-PT15M");
+        assertTrue(cl.valueStartsWith('-'));
+        cl.set("DESCRIPTION:");
+        assertFalse(cl.valueStartsWith('-'));
+        assertEquals("", cl.getUnescapedValue());
+    }
+
+    @SmallTest
+    public void testEscaping() {
+        String text = "a\\b;c,d\ne";
+        StringBuilder sb = new StringBuilder();
+        IcalendarUtils.appendEscaped(sb, text);
+        assertEquals("a\\\\b\\;c\\,d\\ne", sb.toString());
+        ContentLine cl = new ContentLine();
+        cl.set("SUMMARY:" + sb);
+        assertEquals(text, cl.getUnescapedValue());
+        assertEquals("one\ntwo\\", IcalendarUtils.unescape("one\\Ntwo\\", 0, 9));
+        assertEquals("plain", IcalendarUtils.unescape("xplainx", 1, 6));
+        assertEquals("a\\,b\\;c\\n\\n", IcalendarUtils.cleanseString("a,b;c\r\n"));
+        assertEquals("plain", IcalendarUtils.cleanseString("plain"));
+    }
+
+    @SmallTest
+    public void testFolding() {
+        StringBuilder line = new StringBuilder("DESCRIPTION:");
+        while (line.length() < 200) {
+            line.append("0123456789");
+        }
+        line.append("\n ");
+        StringBuilder folded = new StringBuilder();
+        IcalendarUtils.foldLines(line, folded);
+        String[] lines = folded.toString().split("\n", -1);
+        for (String s : lines) {
+            assertTrue(s, s.length() <= 75);
+        }
+        assertEquals(75, lines[0].length());
+        assertEquals(' ', lines[1].charAt(0));
+        // A space after a real newline must be folded, so that it isn't
+        // taken as a continuation.
+        assertEquals("  ", lines[lines.length - 1]);
+        assertEquals("", lines[lines.length - 2]);
+        StringBuilder unfolded = new StringBuilder(lines[0]);
+        for (int i = 1; i < lines.length - 2; ++i) {
+            unfolded.append(lines[i].substring(1));
+        }
+        assertEquals(line.substring(0, line.length() - 2), unfolded.toString());
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.icalendar;
+
+import android.provider.CalendarContract.Attendees;
+import android.provider.CalendarContract.Reminders;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import com.android.calendar.CalendarEventModel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Measures how fast we write and read iCalendar files, for three kinds of
+ * event: short ones, ones with long descriptions full of non-ASCII text and
+ * characters which need escaping, and ones with many attendees and
+ * reminders. It also compares escaping and folding with the old versions,
+ * which used a chain of String.replace calls and copied one char at a
+ * time, and checks that they give the same result, and compares reading
+ * with and without {@link VCalendarReader#setParallel}.
+ *
+ * Run it with:
+ * "adb shell am instrument -w -e class com.android.calendar.icalendar.IcsCodecBenchmark
+ *          com.android.calendar.tests/android.test.InstrumentationTestRunner"
+ * and look for the results in the log under the tag IcsCodecBenchmark.
+ */
+public class IcsCodecBenchmark extends TestCase {
+    private static final String TAG = "IcsCodecBenchmark";
+    private static final int EVENTS = 500;
+    private static final int WARMUP_RUNS = 3;
+    private static final int RUNS = 10;
+    private static final String[] WORDS = {
+        "meeting", "café", "Zürich", "日本語", "naïve", "résumé", "; semicolon",
+        ", comma", "back\\slash", "\n", "Σύσκεψη", "встреча", "agenda", "room",
+    };
+
+    private static final int SIMPLE = 0;
+    private static final int LONG_TEXT = 1;
+    private static final int MANY_ATTENDEES = 2;
+    private static final String[] CORPUS_NAMES = {
+        "simple", "long text", "many attendees",
+    };
+
+    private static String makeText(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; ++i) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static ArrayList<CalendarEventModel> makeCorpus(int kind) {
+        Random random = new Random(1357 + kind);
+        ArrayList<CalendarEventModel> events = new ArrayList<>();
+        long start = 1700000000000L;
+        for (int i = 0; i < EVENTS; ++i) {
+            CalendarEventModel model = new CalendarEventModel();
+            model.mUid = "event" + i + "@example.com";
+            model.mTimezoneStart = "Europe/London";
+            model.mEventStart = start;
+            model.mEventEnd = start + DateUtils.HOUR_IN_MILLIS;
+            start += DateUtils.DAY_IN_MILLIS;
+            switch (kind) {
+                case SIMPLE:
+                    model.mTitle = "Event " + i;
+                    break;
+                case LONG_TEXT:
+                    model.mTitle = makeText(random, 8);
+                    model.mLocation = makeText(random, 5);
+                    model.mDescription = makeText(random, 150);
+                    break;
+                case MANY_ATTENDEES:
+                    model.mTitle = makeText(random, 4);
+                    model.mOrganizer = "organizer@example.com";
+                    for (int j = 0; j < 20; ++j) {
+                        CalendarEventModel.Attendee attendee = new CalendarEventModel.Attendee(
+                            "Person, " + j, "person" + j + "@example.com");
+                        attendee.mType = Attendees.TYPE_REQUIRED;
+                        attendee.mStatus = Attendees.ATTENDEE_STATUS_ACCEPTED;
+                        model.addAttendee(attendee);
+                    }
+                    for (int j = 1; j <= 5; ++j) {
+                        model.mReminders.add(CalendarEventModel.ReminderEntry.valueOf(
+                            j * 10, Reminders.METHOD_ALERT));
+                    }
+                    model.mHasAlarm = true;
+                    break;
+            }
+            events.add(model);
+        }
+        return events;
+    }
+
+    private static byte[] write(ArrayList<CalendarEventModel> events) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VCalendarWriter writer = new VCalendarWriter(out);
+        writer.begin();
+        for (CalendarEventModel event : events) {
+            writer.write(event);
+        }
+        writer.end();
+        writer.close();
+        return out.toByteArray();
+    }
+
+    private static int read(String text, boolean parallel) throws IOException {
+        VCalendarReader reader = new VCalendarReader(new StringReader(text));
+        reader.setParallel(parallel);
+        int count = 0;
+        while (reader.nextEvent() != null) {
+            ++count;
+        }
+        reader.close();
+        return count;
+    }
+
+    // The old escaping, for comparison
+    private static String legacyEscape(String s) {
+        return s.replace("\\", "\\\\")
+                .replace(";", "\\;")
+                .replace(",", "\\,")
+                .replace("\n", "\\n");
+    }
+
+    // The old unescaping, for comparison
+    private static String legacyUnEscape(String s) {
+        return s.replace("\\n", "\n")
+                .replace("\\,", ",")
+                .replace("\\;", ";")
+                .replace("\\\\", "\\");
+    }
+
+    // The old folding, for comparison
+    private static void legacyFoldLines(CharSequence input, StringBuilder output) {
+        int length = input.length();
+        boolean justHadNewline = false;
+        int currentLineLength = 0;
+        for (int i = 0; i < length; i++) {
+            char currentChar = input.charAt(i);
+            if (currentChar == '\n') {
+                output.append(currentChar);
+                currentLineLength = 0;
+                justHadNewline = true;
+            } else if (   (currentLineLength >= 75)
+                       || (   justHadNewline
+                           && ((currentChar == ' ') || (currentChar == '\t'))))
+            {
+                output.append("\n ");
+                output.append(currentChar);
+                currentLineLength = 2;
+                justHadNewline = false;
+            } else {
+                output.append(currentChar);
+                currentLineLength++;
+                justHadNewline = false;
+            }
+        }
+    }
+
+    // Returns the average time in microseconds to escape, unescape, and
+    // fold all the descriptions.
+    private static long time(ArrayList<String> texts, boolean legacy) {
+        StringBuilder sb = new StringBuilder();
+        StringBuilder folded = new StringBuilder();
+        long start = 0;
+        for (int i = 0; i < WARMUP_RUNS + RUNS; ++i) {
+            if (i == WARMUP_RUNS) {
+                System.gc();
+                start = System.nanoTime();
+            }
+            for (String text : texts) {
+                sb.setLength(0);
+                folded.setLength(0);
+                if (legacy) {
+                    String escaped = legacyEscape(text);
+                    legacyUnEscape(escaped);
+                    sb.append("DESCRIPTION:").append(escaped);
+                    legacyFoldLines(sb, folded);
+                } else {
+                    sb.append("DESCRIPTION:");
+                    IcalendarUtils.appendEscaped(sb, text);
+                    IcalendarUtils.unescape(sb, 12, sb.length());
+                    IcalendarUtils.foldLines(sb, folded);
+                }
+            }
+        }
+        return (System.nanoTime() - start) / RUNS / 1000;
+    }
+
+    @LargeTest
+    public void testEscapeAndFold() {
+        ArrayList<String> texts = new ArrayList<>();
+        for (CalendarEventModel event : makeCorpus(LONG_TEXT)) {
+            String text = event.mDescription;
+            texts.add(text);
+            StringBuilder sb = new StringBuilder();
+            IcalendarUtils.appendEscaped(sb, text);
+            String escaped = sb.toString();
+            assertEquals(legacyEscape(text), escaped);
+            assertEquals(text, IcalendarUtils.unescape(escaped, 0, escaped.length()));
+            StringBuilder expected = new StringBuilder();
+            legacyFoldLines(escaped, expected);
+            StringBuilder actual = new StringBuilder();
+            IcalendarUtils.foldLines(escaped, actual);
+            assertEquals(expected.toString(), actual.toString());
+        }
+        long legacy = time(texts, true);
+        long current = time(texts, false);
+        Log.i(TAG, texts.size() + " descriptions, String.replace: " + legacy
+            + "us, single pass: " + current + "us");
+    }
+
+    @LargeTest
+    public void testRoundTrip() throws IOException {
+        for (int kind = SIMPLE; kind <= MANY_ATTENDEES; ++kind) {
+            ArrayList<CalendarEventModel> events = makeCorpus(kind);
+            byte[] bytes = write(events);
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            assertEquals(EVENTS, read(text, false));
+            assertEquals(EVENTS, read(text, true));
+
+            long writeTime = 0;
+            long readTime = 0;
+            long parallelReadTime = 0;
+            for (int i = 0; i < WARMUP_RUNS + RUNS; ++i) {
+                if (i == WARMUP_RUNS) {
+                    System.gc();
+                    writeTime = 0;
+                    readTime = 0;
+                    parallelReadTime = 0;
+                }
+                long start = System.nanoTime();
+                write(events);
+                long middle = System.nanoTime();
+                read(text, false);
+                long end = System.nanoTime();
+                read(text, true);
+                writeTime += middle - start;
+                readTime += end - middle;
+                parallelReadTime += System.nanoTime() - end;
+            }
+            // Nanoseconds per run, at least one to avoid dividing by zero
+            writeTime = Math.max(writeTime / RUNS, 1);
+            readTime = Math.max(readTime / RUNS, 1);
+            parallelReadTime = Math.max(parallelReadTime / RUNS, 1);
+            long kilobytes = bytes.length / 1024;
+            Log.i(TAG, CORPUS_NAMES[kind] + ": " + EVENTS + " events, " + kilobytes
+                + "KB, export " + (EVENTS * 1000000000L / writeTime) + " events/s "
+                + (kilobytes * 1000000000L / writeTime) + "KB/s, import "
+                + (EVENTS * 1000000000L / readTime) + " events/s "
+                + (kilobytes * 1000000000L / readTime) + "KB/s, parallel import "
+                + (EVENTS * 1000000000L / parallelReadTime) + " events/s");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.icalendar;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.calendar.CalendarEventModel;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link VCalendarReader}.
+ */
+public class VCalendarReaderTest extends TestCase {
+
+    private static final String CALENDAR =
+        "BEGIN:VCALENDAR\r\n"
+        + "VERSION:2.0\r\n"
+        + "BEGIN:VTIMEZONE\r\n"
+        + "TZID:Europe/London\r\n"
+        + "END:VTIMEZONE\r\n"
+        + "BEGIN:VEVENT\r\n"
+        + "UID:one\r\n"
+        + "SUMMARY:A long\r\n"
+        + "  title\r\n"
+        + "DESCRIPTION:folded\r\n"
+        + "\t with a tab\r\n"
+        + "BEGIN:VALARM\r\n"
+        + "ACTION:DISPLAY\r\n"
+        + "END:VALARM\r\n"
+        + "END:VEVENT\r\n"
+        + "begin:vevent\r\n"
+        + "UID:two\r\n"
+        + "SUMMARY:Second\r\n"
+        + "end:vevent\r\n"
+        + "END:VCALENDAR\r\n"
+        + "BEGIN:VEVENT\r\n"
+        + "SUMMARY:After the end\r\n"
+        + "END:VEVENT\r\n";
+
+    @SmallTest
+    public void testNextLine() throws IOException {
+        VCalendarReader reader =
+            new VCalendarReader(new StringReader("A:1\n 2\n\t3\nB:4\n\nC:5\n 6"));
+        assertEquals("A:123", reader.nextLine().toString());
+        assertEquals("B:4", reader.nextLine().toString());
+        assertEquals("", reader.nextLine().toString());
+        assertEquals("C:56", reader.nextLine().toString());
+        assertNull(reader.nextLine());
+        reader.close();
+    }
+
+    @SmallTest
+    public void testNextEvent() throws IOException {
+        VCalendarReader reader = new VCalendarReader(new StringReader(CALENDAR));
+        CalendarEventModel event = reader.nextEvent();
+        assertNotNull(event);
+        assertEquals("one", event.mUid);
+        assertEquals("A long title", event.mTitle);
+        assertEquals("folded with a tab", event.mDescription);
+        event = reader.nextEvent();
+        assertNotNull(event);
+        assertEquals("two", event.mUid);
+        assertEquals("Second", event.mTitle);
+        assertNull(reader.nextEvent());
+        assertNull(reader.nextEvent());
+        reader.close();
+    }
+
+    @SmallTest
+    public void testParallel() throws IOException {
+        // Enough events to fill the read-ahead more than once, with a
+        // timezone so that they all use the shared cache
+        int events = VCalendarReader.MAX_PENDING_EVENTS * 2 + 3;
+        StringBuilder sb = new StringBuilder("BEGIN:VCALENDAR\n");
+        for (int i = 0; i < events; ++i) {
+            sb.append("BEGIN:VEVENT\nUID:").append(i)
+                .append("\nDTSTART;TZID=/freeassociation.sourceforge.net/Europe/London:")
+                .append(20240101 + (i % 28)).append("T090000\nSUMMARY:Event ")
+                .append(i).append("\nEND:VEVENT\n");
+        }
+        sb.append("END:VCALENDAR\n");
+        VCalendarReader reader = new VCalendarReader(new StringReader(sb.toString()));
+        // The first event is decoded here, the rest on the pool
+        CalendarEventModel event = reader.nextEvent();
+        assertEquals("0", event.mUid);
+        reader.setParallel(true);
+        for (int i = 1; i < events; ++i) {
+            event = reader.nextEvent();
+            assertNotNull(event);
+            assertEquals(Integer.toString(i), event.mUid);
+            assertEquals("Event " + i, event.mTitle);
+            assertEquals("Europe/London", event.mTimezoneStart);
+        }
+        assertNull(reader.nextEvent());
+        reader.close();
+    }
+
+    @SmallTest
+    public void testStartsWithIgnoreCase() {
+        assertTrue(VCalendarReader.startsWithIgnoreCase("begin:vevent", "BEGIN:VEVENT"));
+        assertTrue(VCalendarReader.startsWithIgnoreCase("BEGIN:VEVENT;X", "BEGIN:VEVENT"));
+        assertFalse(VCalendarReader.startsWithIgnoreCase("BEGIN:VEVEN", "BEGIN:VEVENT"));
+        assertFalse(VCalendarReader.startsWithIgnoreCase("BEGIN:VTODO", "BEGIN:VEVENT"));
+    }
+}
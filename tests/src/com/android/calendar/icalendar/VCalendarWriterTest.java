@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.icalendar;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import android.text.format.DateUtils;
+
+import com.android.calendar.CalendarEventModel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link VCalendarWriter}.
+ */
+public class VCalendarWriterTest extends TestCase {
+
+    private static CalendarEventModel makeEvent(String uid, String title) {
+        CalendarEventModel model = new CalendarEventModel();
+        model.mUid = uid;
+        model.mTitle = title;
+        model.mTimezoneStart = "Europe/London";
+        model.mEventStart = 1700000000000L;
+        model.mEventEnd = model.mEventStart + DateUtils.HOUR_IN_MILLIS;
+        return model;
+    }
+
+    @SmallTest
+    public void testRoundTrip() throws IOException {
+        StringBuilder longTitle = new StringBuilder();
+        for (int i = 0; i < 20; ++i) {
+            longTitle.append("café 日本 ");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VCalendarWriter writer = new VCalendarWriter(out);
+        writer.begin();
+        writer.write(makeEvent("one", "Short"));
+        writer.write(makeEvent("two", longTitle.toString()));
+        writer.end();
+        writer.close();
+
+        String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(text.startsWith("BEGIN:VCALENDAR\n"));
+        assertTrue(text.endsWith("END:VCALENDAR\n"));
+        for (String line : text.split("\n")) {
+            assertTrue(line, line.length() <= 75);
+        }
+
+        VCalendarReader reader = new VCalendarReader(new StringReader(text));
+        CalendarEventModel event = reader.nextEvent();
+        assertEquals("one", event.mUid);
+        assertEquals("Short", event.mTitle);
+        event = reader.nextEvent();
+        assertEquals("two", event.mUid);
+        assertEquals(longTitle.toString(), event.mTitle);
+        assertNull(reader.nextEvent());
+        reader.close();
+    }
+
+    @SmallTest
+    public void testSameAsVEvent() throws IOException {
+        CalendarEventModel event = makeEvent("one", "Same");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VCalendarWriter writer = new VCalendarWriter(out);
+        writer.write(event);
+        writer.close();
+
+        String expected = new VEvent().getICalFormattedString(event);
+        String actual = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        // DTSTAMP is the time of writing, which may have moved on
+        assertEquals(expected.replaceAll("DTSTAMP:.*\n", ""),
+            actual.replaceAll("DTSTAMP:.*\n", ""));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) Richard Parkins 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.calendar.month;
+
+import android.database.MatrixCursor;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.text.format.DateUtils;
+import android.text.format.Time;
+
+import com.android.calendar.Event;
+import com.android.calendar.EventChangeTracker;
+import com.android.calendar.EventStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link MonthWeekCache}.
+ */
+public class MonthWeekCacheTest extends TestCase {
+
+    private static final int SUNDAY = 2440591; // Jan 4th, 1970
+
+    private static Event makeEvent(long id, int startDay, int days) {
+        Event e = new Event();
+        e.id = id;
+        e.title = "event " + id;
+        e.startDay = startDay;
+        e.endDay = startDay + days - 1;
+        e.startMillis = (startDay - SUNDAY + 3) * DateUtils.DAY_IN_MILLIS;
+        e.endMillis = e.startMillis + days * DateUtils.DAY_IN_MILLIS;
+        return e;
+    }
+
+    // What the loader returns for the weeks from firstJulianDay
+    private static MonthEventsLoader.Result makeResult(int firstJulianDay, int weeks,
+                                                       Event... events) {
+        EventStore store = new EventStore(events.length);
+        for (Event e : events) {
+            store.add(e);
+        }
+        int numDays = weeks * MonthWeekCache.DAYS_PER_WEEK;
+        return new MonthEventsLoader.Result(new MatrixCursor(new String[] { "_id" }),
+            store, firstJulianDay, numDays,
+            MonthEventsLoader.indexDays(store, firstJulianDay, numDays));
+    }
+
+    @SmallTest
+    public void testGetWeekStart() {
+        assertEquals(SUNDAY, MonthWeekCache.getWeekStart(SUNDAY, Time.SUNDAY));
+        assertEquals(SUNDAY, MonthWeekCache.getWeekStart(SUNDAY + 6, Time.SUNDAY));
+        assertEquals(SUNDAY + 1, MonthWeekCache.getWeekStart(SUNDAY + 1, Time.MONDAY));
+        assertEquals(SUNDAY - 6, MonthWeekCache.getWeekStart(SUNDAY, Time.MONDAY));
+        assertEquals(SUNDAY - 1, MonthWeekCache.getWeekStart(SUNDAY + 5, Time.SATURDAY));
+    }
+
+    @SmallTest
+    public void testWeeks() {
+        MonthWeekCache cache = new MonthWeekCache();
+        int last = SUNDAY + 4 * 7 - 1;
+        assertEquals(SUNDAY, cache.firstMissingWeek(SUNDAY, last));
+
+        // An event spanning the end of the first week
+        cache.put(makeResult(SUNDAY, 2, makeEvent(1, SUNDAY + 5, 3),
+            makeEvent(2, SUNDAY + 8, 1)));
+        assertEquals(SUNDAY + 14, cache.firstMissingWeek(SUNDAY, last));
+        assertEquals(SUNDAY + 21, cache.lastMissingWeek(SUNDAY, last));
+
+        List<ArrayList<Event>> days = cache.getDays(SUNDAY, 7);
+        assertEquals(7, days.size());
+        assertTrue(days.get(4).isEmpty());
+        assertEquals(1, days.get(5).get(0).id);
+        assertEquals(1, days.get(6).size());
+        days = cache.getDays(SUNDAY + 7, 5);
+        assertEquals(5, days.size());
+        assertEquals(1, days.get(0).get(0).id);
+        assertEquals(2, days.get(1).get(0).id);
+        assertNull(cache.getDays(SUNDAY + 14, 7));
+
+        cache.put(makeResult(SUNDAY + 14, 2));
+        assertEquals(last + 1, cache.firstMissingWeek(SUNDAY, last));
+        assertEquals(SUNDAY - 1, cache.lastMissingWeek(SUNDAY, last));
+
+        // A week MAX_WEEKS weeks later replaces the first one.
+        cache.put(makeResult(SUNDAY + MonthWeekCache.MAX_WEEKS * 7, 1));
+        assertNull(cache.getDays(SUNDAY, 7));
+        assertNotNull(cache.getDays(SUNDAY + 7, 7));
+    }
+
+    @SmallTest
+    public void testInvalidate() {
+        MonthWeekCache cache = new MonthWeekCache();
+        cache.put(makeResult(SUNDAY, 3));
+        EventChangeTracker.Changes changes = new EventChangeTracker.Changes();
+        changes.addRange(SUNDAY + 9, SUNDAY + 9);
+        cache.invalidate(changes);
+        assertNotNull(cache.getDays(SUNDAY, 7));
+        assertNull(cache.getDays(SUNDAY + 7, 7));
+        assertNotNull(cache.getDays(SUNDAY + 14, 7));
+        cache.clear();
+        assertNull(cache.getDays(SUNDAY, 7));
+    }
+
+    @SmallTest
+    public void testVersions() {
+        MonthWeekCache cache = new MonthWeekCache();
+        assertEquals(-1, cache.getVersion(SUNDAY));
+        cache.put(makeResult(SUNDAY, 2));
+        int version = cache.getVersion(SUNDAY);
+        assertEquals(version, cache.getVersion(SUNDAY + 7));
+        assertNull(cache.getRenderModel(SUNDAY));
+
+        // Reloading a week gives it a new version.
+        cache.put(makeResult(SUNDAY + 7, 1));
+        assertEquals(version, cache.getVersion(SUNDAY));
+        assertTrue(cache.getVersion(SUNDAY + 7) != version);
+    }
+}